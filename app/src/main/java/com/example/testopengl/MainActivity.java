@@ -10,13 +10,21 @@ import android.opengl.GLSurfaceView;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.widget.VideoView;
 import androidx.appcompat.app.AppCompatActivity;
 import android.os.Bundle;
 import androidx.core.app.ActivityCompat;
 
-import java.io.IOException;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.image.BlurResultCache;
+import com.example.testopengl.image.ImageBlurPipeline;
+import com.example.testopengl.perf.AllocationMonitoringRenderer;
+import com.example.testopengl.perf.FrameAllocationMonitor;
+
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -24,23 +32,58 @@ public class MainActivity extends AppCompatActivity {
 
     private final String TAG ="MainActivity";
 
+    /**
+     * 调试包里统计 GL 线程每帧的内存分配，例如
+     * {@code adb shell am start -n com.example.testopengl/.MainActivity --ez monitor_allocations true}
+     */
+    public static final String EXTRA_MONITOR_ALLOCATIONS = "monitor_allocations";
+
     private static final int REQUEST_CODE_PICK_IMAGE = 1;
     private static final int REQUEST_CODE_PICK_Video = 2;
+    // 选中图片的模糊半径，单位像素
+    private static final float IMAGE_BLUR_RADIUS = 24f;
+    private static final long BLUR_DISK_CACHE_BYTES = 64L * 1024 * 1024;
+
     private ImageView imageView;
+    private ImageView imageView2;
     VideoView videoView;
+    // 图片按控件大小降采样解码并在后台模糊，结果回到UI线程
+    private ImageBlurPipeline mImagePipeline;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        // 链接好的着色器二进制缓存到应用私有目录，下次启动跳过编译
+        ShaderProgramCache.getInstance().setDiskCacheDir(new File(getCodeCacheDir(), "shaders"));
+
         GLSurfaceView surfaceView = new GLSurfaceView(this);
-        MyRenderer renderer = new MyRenderer();
+        MyRenderer renderer = new MyRenderer(this);
         surfaceView.setEGLContextClientVersion(3);
-        surfaceView.setRenderer(renderer);
+        boolean monitorAllocations = BuildConfig.DEBUG
+                && getIntent().getBooleanExtra(EXTRA_MONITOR_ALLOCATIONS, false);
+        if (monitorAllocations) {
+            // 统计每帧在GL线程上的内存分配，稳定后应为0。计数会拖慢整个进程的分配，所以只在显式打开时使用
+            surfaceView.setRenderer(new AllocationMonitoringRenderer(renderer,
+                    FrameAllocationMonitor.forRenderThread(0)));
+        } else {
+            surfaceView.setRenderer(renderer);
+        }
 
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        if (monitorAllocations) {
+            // 只有显示出来的 GLSurfaceView 才会绘制，统计才有意义
+            LinearLayout content = findViewById(R.id.content);
+            content.addView(surfaceView, new LinearLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, 0, 2f));
+        }
 
 
         imageView = findViewById(R.id.imageView);
+        imageView2 = findViewById(R.id.imageView2);
+        // 模糊结果缓存：内存占可用堆的 1/8，磁盘放在应用私有的缓存目录
+        BlurResultCache blurCache = new BlurResultCache(Runtime.getRuntime().maxMemory() / 8,
+                new File(getCacheDir(), "blur"), BLUR_DISK_CACHE_BYTES);
+        mImagePipeline = new ImageBlurPipeline(getContentResolver(), this::runOnUiThread, blurCache);
         videoView = findViewById(R.id.videoView);
 
         // 检查是否有读取外部存储器的权限
@@ -84,12 +127,25 @@ public class MainActivity extends AppCompatActivity {
             // 获取选取的图片的Uri
             Uri uri = data.getData();
 
-            try {
-                Bitmap bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
-                imageView.setImageBitmap(bitmap);
-            } catch (IOException e) {
-                e.printStackTrace();
+            // 左边显示原图，右边显示模糊后的图；再次选图会取消还没完成的上一张
+            int width = imageView.getWidth();
+            int height = imageView.getHeight();
+            if (width == 0 || height == 0) {
+                width = getResources().getDisplayMetrics().widthPixels / 2;
+                height = getResources().getDisplayMetrics().heightPixels / 2;
             }
+            mImagePipeline.load(uri, width, height, IMAGE_BLUR_RADIUS, new ImageBlurPipeline.Callback() {
+                @Override
+                public void onImageLoaded(Bitmap image, Bitmap blurred) {
+                    imageView.setImageBitmap(image);
+                    imageView2.setImageBitmap(blurred);
+                }
+
+                @Override
+                public void onImageFailed(Uri uri, Exception e) {
+                    Log.e(TAG, "onImageFailed: " + uri, e);
+                }
+            });
         } else if (requestCode == REQUEST_CODE_PICK_Video && resultCode == RESULT_OK && data != null){
             Uri uri = data.getData();
             String path = getRealPathFromURI(uri);
@@ -100,6 +156,12 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mImagePipeline.shutdown();
+    }
+
     private List<String> getPath() {
         String[] projection = { MediaStore.Video.Media.DATA };
         Cursor cursor = getContentResolver().query(MediaStore.Video.Media.EXTERNAL_CONTENT_URI, projection, null, null, null);
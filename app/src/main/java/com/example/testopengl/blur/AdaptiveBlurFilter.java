@@ -0,0 +1,176 @@
+package com.example.testopengl.blur;
+
+import android.util.Log;
+
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.RenderTargetPool;
+
+/**
+ * Picks the blur implementation from the radius: the separable Gaussian for small
+ * radii, where it is exact and cheap, and the dual-filter pyramid from
+ * {@link #PYRAMID_MIN_RADIUS} up, where its cost stays flat while the Gaussian's keeps
+ * growing with the tap count.
+ *
+ * With {@link Backend#COMPUTE} selected, radii that fit the compute filter's shared
+ * memory go to {@link ComputeBlurFilter} instead of the separable fragment passes. On a
+ * GLES 3.0 context the compute backend is unavailable and the fragment filters are used
+ * whatever the selection.
+ *
+ * Each implementation is created the first time it is needed, and all of them draw their
+ * intermediate targets from the same {@link RenderTargetPool}. Must be used on the GL thread.
+ */
+public class AdaptiveBlurFilter implements BlurRenderer {
+
+    private static final String TAG = "AdaptiveBlurFilter";
+
+    /** Radius, in pixels, from which the pyramid is used. */
+    public static final float PYRAMID_MIN_RADIUS = 10f;
+
+    public enum Backend {
+        /** Separable Gaussian and pyramid, drawn with fragment shaders. */
+        FRAGMENT,
+        /** Tiled compute shader where GLES 3.1 and the radius allow, fragment otherwise. */
+        COMPUTE
+    }
+
+    private final RenderTargetPool mPool;
+    private final boolean mOwnsPool;
+    private GaussianBlurFilter mGaussian;
+    private DualKawaseBlurFilter mPyramid;
+    private ComputeBlurFilter mCompute;
+    private Backend mBackend = Backend.FRAGMENT;
+    // Null until the compute backend is first selected
+    private Boolean mComputeSupported;
+    private BlurRenderer mActive;
+    private float mRadius = Float.NaN;
+    private int mWidth;
+    private int mHeight;
+
+    public AdaptiveBlurFilter() {
+        this(new RenderTargetPool(AndroidGl.getInstance()), true);
+    }
+
+    public AdaptiveBlurFilter(RenderTargetPool pool) {
+        this(pool, false);
+    }
+
+    private AdaptiveBlurFilter(RenderTargetPool pool, boolean ownsPool) {
+        mPool = pool;
+        mOwnsPool = ownsPool;
+        setRadius(0f);
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mActive.setSize(width, height);
+    }
+
+    @Override
+    public void setRadius(float blurRadius) {
+        // Cheap to call every frame: a new kernel or plan is only built on a change
+        if (blurRadius == mRadius) {
+            return;
+        }
+        mRadius = blurRadius;
+        BlurRenderer next;
+        if (useCompute(blurRadius)) {
+            next = mCompute;
+        } else if (blurRadius < PYRAMID_MIN_RADIUS) {
+            if (mGaussian == null) {
+                mGaussian = new GaussianBlurFilter(mPool);
+            }
+            next = mGaussian;
+        } else {
+            if (mPyramid == null) {
+                mPyramid = new DualKawaseBlurFilter(mPool);
+            }
+            next = mPyramid;
+        }
+        if (next != mActive && mWidth > 0) {
+            next.setSize(mWidth, mHeight);
+        }
+        next.setRadius(blurRadius);
+        mActive = next;
+    }
+
+    /** Selects the backend; takes effect immediately, including for the current radius. */
+    public void setBackend(Backend backend) {
+        if (backend == mBackend) {
+            return;
+        }
+        mBackend = backend;
+        float radius = mRadius;
+        mRadius = Float.NaN;
+        setRadius(radius);
+    }
+
+    public Backend getBackend() {
+        return mBackend;
+    }
+
+    private boolean useCompute(float blurRadius) {
+        if (mBackend != Backend.COMPUTE) {
+            return false;
+        }
+        if (mComputeSupported == null) {
+            mComputeSupported = ComputeBlurFilter.isSupported(mPool.getGl());
+            if (!mComputeSupported) {
+                Log.i(TAG, "GLES 3.1 is not available, blurring with fragment shaders");
+            }
+        }
+        if (!mComputeSupported) {
+            return false;
+        }
+        if (mCompute == null) {
+            mCompute = new ComputeBlurFilter(mPool);
+        }
+        return mCompute.canBlur(blurRadius);
+    }
+
+    /** Whether the current radius is served by the compute shader. */
+    public boolean isCompute() {
+        return mActive != null && mActive == mCompute;
+    }
+
+    /** Whether the current radius is served by the downsampled pyramid. */
+    public boolean isPyramid() {
+        return mActive == mPyramid;
+    }
+
+    @Override
+    public void draw(int textureId, int framebuffer) {
+        mActive.draw(textureId, framebuffer);
+    }
+
+    @Override
+    public void drawExternal(int textureId, float[] textureMatrix, int framebuffer) {
+        mActive.drawExternal(textureId, textureMatrix, framebuffer);
+    }
+
+    @Override
+    public int blur(int textureId) {
+        return mActive.blur(textureId);
+    }
+
+    @Override
+    public void release() {
+        if (mGaussian != null) {
+            mGaussian.release();
+            mGaussian = null;
+        }
+        if (mPyramid != null) {
+            mPyramid.release();
+            mPyramid = null;
+        }
+        if (mCompute != null) {
+            mCompute.release();
+            mCompute = null;
+        }
+        mActive = null;
+        if (mOwnsPool) {
+            mPool.evictAll();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.example.testopengl.blur;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gaussian blur of packed ARGB pixels ({@code Bitmap.getPixels} layout) on the CPU, for
+ * export, thumbnails and devices without usable GL.
+ *
+ * Each direction runs {@link #BOX_PASSES} sliding-window box blurs whose widths are
+ * chosen so that together they match the Gaussian's variance. A sliding window adds the
+ * entering pixel and subtracts the leaving one, so the cost per pixel does not depend on
+ * the radius. {@link Kernel#RECURSIVE} runs {@link RecursiveGaussian} instead, in float,
+ * whose tails are closer to a true Gaussian's.
+ *
+ * Rows are split into strips and blurred in place across a {@link ForkJoinPool}, then
+ * columns the same way. A column strip is read in blocks of {@link #COLUMN_BLOCK} adjacent
+ * columns, one cache line wide, instead of one column at a time. Line buffers are
+ * allocated per strip, never per pixel.
+ *
+ * The four channels are blurred independently, so pixels with transparency should be
+ * premultiplied, like GL textures are, to avoid dark fringes.
+ */
+public final class ArgbBlurEngine {
+
+    public enum Kernel {
+        /** Successive sliding-window box blurs; fastest. */
+        BOX,
+        /** Young-van Vliet recursive Gaussian; more accurate. */
+        RECURSIVE
+    }
+
+    public static final int BOX_PASSES = 3;
+
+    /** Columns gathered together by the vertical pass; 16 ints are one cache line. */
+    static final int COLUMN_BLOCK = 16;
+
+    /** Rows, or column blocks, handled by one task. */
+    private static final int LINES_PER_TASK = 32;
+
+    private final ForkJoinPool mPool;
+    private Kernel mKernel = Kernel.BOX;
+
+    /** Engine running on the common pool. */
+    public ArgbBlurEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ArgbBlurEngine(ForkJoinPool pool) {
+        mPool = pool;
+    }
+
+    public void setKernel(Kernel kernel) {
+        mKernel = kernel;
+    }
+
+    public Kernel getKernel() {
+        return mKernel;
+    }
+
+    /**
+     * Blurs {@code pixels} in place. An empty image is left alone.
+     *
+     * @param blurRadius radius in pixels, treated as 3 sigma like the GL filters do
+     */
+    public void blur(int[] pixels, int width, int height, float blurRadius) {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("Bad image size " + width + "x" + height);
+        }
+        if (width == 0 || height == 0) {
+            return;
+        }
+        if (pixels.length < (long) width * height) {
+            throw new IllegalArgumentException(width + "x" + height + " needs " + width * height
+                    + " pixels, got " + pixels.length);
+        }
+        float sigma = blurRadius / 3f;
+        Pass pass;
+        if (mKernel == Kernel.RECURSIVE) {
+            RecursiveGaussian recursive = RecursiveGaussian.forSigma(sigma);
+            if (recursive.isIdentity()) {
+                return;
+            }
+            pass = new RecursivePass(recursive);
+        } else {
+            int[] radii = boxRadii(sigma, BOX_PASSES);
+            if (radii[radii.length - 1] == 0) {
+                return;
+            }
+            pass = new BoxPass(radii);
+        }
+        mPool.invoke(new StripTask(pass, pixels, width, height, true, 0, height));
+        int blocks = (width + COLUMN_BLOCK - 1) / COLUMN_BLOCK;
+        mPool.invoke(new StripTask(pass, pixels, width, height, false, 0, blocks));
+    }
+
+    /**
+     * Radii of {@code passes} box filters whose combined variance is closest to sigma^2:
+     * the first boxes get the odd width just below the ideal one and the rest the next
+     * odd width up.
+     */
+    static int[] boxRadii(float sigma, int passes) {
+        int[] radii = new int[passes];
+        if (!(sigma > 0f)) {
+            return radii;
+        }
+        double variance = 12.0 * sigma * sigma;
+        int lower = (int) Math.floor(Math.sqrt(variance / passes + 1));
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        int lowerCount = (int) Math.round((variance - passes * lower * lower - 4.0 * passes * lower - 3.0 * passes)
+                / (-4.0 * lower - 4));
+        for (int i = 0; i < passes; i++) {
+            int size = i < lowerCount ? lower : upper;
+            radii[i] = (size - 1) / 2;
+        }
+        return radii;
+    }
+
+    /** Blurs one line of one channel; each task has its own instance of the buffers. */
+    private interface Pass {
+        LineBuffers newBuffers(int maxLength);
+
+        void blurLine(LineBuffers buffers, int[] line, int offset, int length);
+    }
+
+    private static final class LineBuffers {
+        final int[] mInts;
+        final int[] mInts2;
+        final float[] mFloats;
+        final double[] mDoubles;
+
+        LineBuffers(int ints, int floats, int doubles) {
+            mInts = new int[ints];
+            mInts2 = new int[ints];
+            mFloats = new float[floats];
+            mDoubles = new double[doubles];
+        }
+    }
+
+    private static final class BoxPass implements Pass {
+        private final int[] mRadii;
+        // Padding on each side of a line; see blurLine()
+        private final int mPadding;
+
+        BoxPass(int[] radii) {
+            mRadii = radii;
+            int padding = 0;
+            for (int radius : radii) {
+                padding += radius;
+            }
+            mPadding = padding;
+        }
+
+        @Override
+        public LineBuffers newBuffers(int maxLength) {
+            return new LineBuffers(maxLength + 2 * mPadding, 0, 0);
+        }
+
+        /**
+         * Clamping every box to the line would extend each intermediate result by its own
+         * edge value, which is not what one Gaussian over the clamped input sees. The line
+         * is padded with its edge values by the combined radius instead, so clamping only
+         * ever reaches samples that are thrown away.
+         */
+        @Override
+        public void blurLine(LineBuffers buffers, int[] line, int offset, int length) {
+            int padding = mPadding;
+            int padded = length + 2 * padding;
+            int[] src = buffers.mInts;
+            int[] dst = buffers.mInts2;
+            Arrays.fill(src, 0, padding, line[offset]);
+            System.arraycopy(line, offset, src, padding, length);
+            Arrays.fill(src, padding + length, padded, line[offset + length - 1]);
+            for (int radius : mRadii) {
+                if (radius == 0) {
+                    continue;
+                }
+                box(src, dst, padded, radius);
+                int[] swap = src;
+                src = dst;
+                dst = swap;
+            }
+            System.arraycopy(src, padding, line, offset, length);
+        }
+
+        /** Sliding-window mean of {@code src[0..length)} into {@code dst}, rounded, edges clamped. */
+        private static void box(int[] src, int[] dst, int length, int radius) {
+            int last = length - 1;
+            long scale = ((1L << 32) + 2 * radius) / (2 * radius + 1);
+            long sum = (long) (radius + 1) * src[0];
+            for (int i = 1; i <= radius; i++) {
+                sum += src[Math.min(i, last)];
+            }
+            for (int x = 0; x < length; x++) {
+                dst[x] = (int) ((sum * scale + (1L << 31)) >>> 32);
+                sum += src[Math.min(x + radius + 1, last)] - src[Math.max(x - radius, 0)];
+            }
+        }
+    }
+
+    private static final class RecursivePass implements Pass {
+        private final RecursiveGaussian mFilter;
+
+        RecursivePass(RecursiveGaussian filter) {
+            mFilter = filter;
+        }
+
+        @Override
+        public LineBuffers newBuffers(int maxLength) {
+            return new LineBuffers(0, maxLength, maxLength);
+        }
+
+        @Override
+        public void blurLine(LineBuffers buffers, int[] line, int offset, int length) {
+            float[] values = buffers.mFloats;
+            for (int i = 0; i < length; i++) {
+                values[i] = line[offset + i];
+            }
+            mFilter.blurLine(values, 0, 1, length, buffers.mDoubles);
+            for (int i = 0; i < length; i++) {
+                int value = Math.round(values[i]);
+                line[offset + i] = value < 0 ? 0 : (value > 255 ? 255 : value);
+            }
+        }
+    }
+
+    private static final class StripTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Pass mPass;
+        private final int[] mPixels;
+        private final int mWidth;
+        private final int mHeight;
+        private final boolean mRows;
+        // Rows, or blocks of COLUMN_BLOCK columns
+        private final int mFrom;
+        private final int mTo;
+
+        StripTask(Pass pass, int[] pixels, int width, int height, boolean rows, int from, int to) {
+            mPass = pass;
+            mPixels = pixels;
+            mWidth = width;
+            mHeight = height;
+            mRows = rows;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            int lines = mRows ? mTo - mFrom : (mTo - mFrom) * COLUMN_BLOCK;
+            if (lines <= LINES_PER_TASK || mTo - mFrom == 1) {
+                if (mRows) {
+                    blurRows();
+                } else {
+                    blurColumns();
+                }
+                return;
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            invokeAll(new StripTask(mPass, mPixels, mWidth, mHeight, mRows, mFrom, middle),
+                    new StripTask(mPass, mPixels, mWidth, mHeight, mRows, middle, mTo));
+        }
+
+        private void blurRows() {
+            int width = mWidth;
+            int[] channel = new int[width];
+            LineBuffers buffers = mPass.newBuffers(width);
+            for (int y = mFrom; y < mTo; y++) {
+                int row = y * width;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    for (int x = 0; x < width; x++) {
+                        channel[x] = (mPixels[row + x] >>> shift) & 0xff;
+                    }
+                    mPass.blurLine(buffers, channel, 0, width);
+                    int mask = ~(0xff << shift);
+                    for (int x = 0; x < width; x++) {
+                        mPixels[row + x] = (mPixels[row + x] & mask) | (channel[x] << shift);
+                    }
+                }
+            }
+        }
+
+        private void blurColumns() {
+            int width = mWidth;
+            int height = mHeight;
+            // Column j of the block lives at block[j * height .. (j + 1) * height)
+            int[] block = new int[COLUMN_BLOCK * height];
+            LineBuffers buffers = mPass.newBuffers(height);
+            for (int b = mFrom; b < mTo; b++) {
+                int x0 = b * COLUMN_BLOCK;
+                int columns = Math.min(COLUMN_BLOCK, width - x0);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    for (int y = 0; y < height; y++) {
+                        int row = y * width + x0;
+                        for (int j = 0; j < columns; j++) {
+                            block[j * height + y] = (mPixels[row + j] >>> shift) & 0xff;
+                        }
+                    }
+                    for (int j = 0; j < columns; j++) {
+                        mPass.blurLine(buffers, block, j * height, height);
+                    }
+                    int mask = ~(0xff << shift);
+                    for (int y = 0; y < height; y++) {
+                        int row = y * width + x0;
+                        for (int j = 0; j < columns; j++) {
+                            mPixels[row + j] = (mPixels[row + j] & mask) | (block[j * height + y] << shift);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.testopengl.blur;
+
+/**
+ * A GPU blur that reads a 2D texture and writes a blurred copy. Implementations own
+ * their intermediate targets and must be used on the GL thread.
+ */
+public interface BlurRenderer {
+
+    /** (Re)allocates intermediate targets for a full-resolution size. */
+    void setSize(int width, int height);
+
+    /** Blur radius in full-resolution pixels, treated as 3 sigma. */
+    void setRadius(float blurRadius);
+
+    /** Blurs {@code textureId} into {@code framebuffer}; 0 is the screen. */
+    void draw(int textureId, int framebuffer);
+
+    /**
+     * Blurs an external OES texture, such as a SurfaceTexture's, into {@code framebuffer}.
+     * The first pass samples it directly through {@code textureMatrix}, the transform
+     * from {@code SurfaceTexture.getTransformMatrix}, so no copy into a 2D texture is
+     * needed first.
+     */
+    void drawExternal(int textureId, float[] textureMatrix, int framebuffer);
+
+    /** Blurs into a target owned by the renderer and returns its texture. */
+    int blur(int textureId);
+
+    void release();
+}
@@ -0,0 +1,221 @@
+package com.example.testopengl.blur;
+
+import android.opengl.GLES30;
+import android.opengl.GLES31;
+
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.TextureInput;
+
+import java.util.Arrays;
+
+/**
+ * Separable Gaussian blur as a single GLES 3.1 compute dispatch. Each workgroup loads its
+ * tile plus apron into shared memory once and runs both passes from there (see
+ * {@link ComputeBlurKernel}), so a texel is fetched about (1 + 2r/tile)^2 times instead of
+ * 2(2r+1) times, and there is no intermediate target.
+ *
+ * The result is written to an image; {@link #draw} then blits it into the caller's
+ * framebuffer, while {@link #blur} hands out the image itself. Shared memory bounds the
+ * kernel radius to {@link #getMaxRadius()}; past it, and on GLES 3.0 devices, use the
+ * fragment filters instead. {@link AdaptiveBlurFilter} does both automatically.
+ *
+ * One program is linked per distinct kernel, with sigma rounded like
+ * {@link GaussianBlurFilter} does. Must be created and used on the GL thread of a
+ * context for which {@link #isSupported()} returns true.
+ */
+public class ComputeBlurFilter implements BlurRenderer {
+
+    // Indexed by GaussianBlurFilter.sigmaKey()
+    private final KernelProgram[] mPrograms = new KernelProgram[GaussianBlurFilter.MAX_SIGMA_KEY + 1];
+    private KernelProgram mProgram;
+
+    private final RenderTargetPool mPool;
+    private final boolean mOwnsPool;
+    private final Gl mGl;
+    private final int mTileSize;
+    private final int mMaxRadius;
+    // Holds the result of blur() until the next call
+    private FrameBufferObject mOutput;
+    private int mWidth;
+    private int mHeight;
+
+    public ComputeBlurFilter() {
+        this(new RenderTargetPool(AndroidGl.getInstance()), true);
+    }
+
+    public ComputeBlurFilter(RenderTargetPool pool) {
+        this(pool, false);
+    }
+
+    private ComputeBlurFilter(RenderTargetPool pool, boolean ownsPool) {
+        mGl = pool.getGl();
+        if (!isSupported(mGl)) {
+            throw new IllegalStateException("Compute shaders need GLES 3.1");
+        }
+        mPool = pool;
+        mOwnsPool = ownsPool;
+
+        // 3.1 only guarantees 128 invocations; 16x16 tiles waste less on the apron
+        mTileSize = mGl.getInteger(GLES31.GL_MAX_COMPUTE_WORK_GROUP_INVOCATIONS) >= 256 ? 16 : 8;
+        mMaxRadius = Math.min(GaussianKernel.MAX_RADIUS, ComputeBlurKernel.maxRadius(mTileSize,
+                mGl.getInteger(GLES31.GL_MAX_COMPUTE_SHARED_MEMORY_SIZE)));
+        setRadius(0f);
+    }
+
+    /** Whether the current context runs compute shaders, i.e. is GLES 3.1 or later. */
+    public static boolean isSupported(Gl gl) {
+        int major = gl.getInteger(GLES30.GL_MAJOR_VERSION);
+        int minor = gl.getInteger(GLES30.GL_MINOR_VERSION);
+        return major > 3 || (major == 3 && minor >= 1);
+    }
+
+    /** Largest kernel radius, in texels, whose tile fits in this device's shared memory. */
+    public int getMaxRadius() {
+        return mMaxRadius;
+    }
+
+    /** Whether a blur radius fits in shared memory; see {@link GaussianKernel#forBlurRadius}. */
+    public boolean canBlur(float blurRadius) {
+        int key = GaussianBlurFilter.sigmaKey(blurRadius / 3f);
+        return GaussianKernel.radiusForSigma(key * GaussianBlurFilter.SIGMA_STEP) <= mMaxRadius;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    /** Blur radius in pixels, clamped to what {@link #getMaxRadius()} allows. */
+    @Override
+    public void setRadius(float blurRadius) {
+        int key = GaussianBlurFilter.sigmaKey(blurRadius / 3f);
+        while (key > 0 && GaussianKernel.radiusForSigma(key * GaussianBlurFilter.SIGMA_STEP) > mMaxRadius) {
+            key--;
+        }
+        KernelProgram program = mPrograms[key];
+        if (program == null) {
+            program = new KernelProgram(mGl, ComputeBlurKernel.compile(
+                    GaussianKernel.forSigma(key * GaussianBlurFilter.SIGMA_STEP), mTileSize));
+            mPrograms[key] = program;
+        }
+        mProgram = program;
+    }
+
+    public GaussianKernel getKernel() {
+        return mProgram.mKernel.getKernel();
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public void draw(int textureId, int framebuffer) {
+        draw(textureId, null, framebuffer);
+    }
+
+    @Override
+    public void drawExternal(int textureId, float[] textureMatrix, int framebuffer) {
+        draw(textureId, textureMatrix, framebuffer);
+    }
+
+    private void draw(int textureId, float[] textureMatrix, int framebuffer) {
+        FrameBufferObject image = mPool.acquire(mWidth, mHeight, GLES30.GL_RGBA8);
+        dispatch(textureId, textureMatrix, image);
+
+        // Make the image writes visible to the blit, which reads through a framebuffer
+        mGl.memoryBarrier(GLES31.GL_FRAMEBUFFER_BARRIER_BIT);
+        mGl.bindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, image.getFramebuffer());
+        mGl.bindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, framebuffer);
+        mGl.blitFramebuffer(0, 0, mWidth, mHeight, 0, 0, mWidth, mHeight,
+                GLES30.GL_COLOR_BUFFER_BIT, GLES30.GL_NEAREST);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+        mPool.release(image);
+    }
+
+    /** Blurs straight into the filter's own image, without a blit. */
+    @Override
+    public int blur(int textureId) {
+        mOutput = mPool.ensure(mOutput, mWidth, mHeight, GLES30.GL_RGBA8);
+        dispatch(textureId, null, mOutput);
+        // Later passes sample the result
+        mGl.memoryBarrier(GLES31.GL_TEXTURE_FETCH_BARRIER_BIT);
+        return mOutput.getTexture();
+    }
+
+    private void dispatch(int textureId, float[] textureMatrix, FrameBufferObject image) {
+        boolean external = textureMatrix != null;
+        KernelProgram.Variant variant = mProgram.getVariant(external);
+        mGl.useProgram(variant.mProgram);
+        mGl.uniform1i(variant.mTextureLocation, 0);
+        mGl.uniform2i(variant.mSizeLocation, mWidth, mHeight);
+        if (external) {
+            mGl.uniformMatrix4fv(variant.mTexMatrixLocation, 1, false, textureMatrix, 0);
+        }
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(TextureInput.target(external), textureId);
+        mGl.bindImageTexture(0, image.getTexture(), 0, false, 0, GLES31.GL_WRITE_ONLY, GLES30.GL_RGBA8);
+
+        ComputeBlurKernel kernel = mProgram.mKernel;
+        mGl.dispatchCompute(kernel.getGroupCount(mWidth), kernel.getGroupCount(mHeight), 1);
+        mGl.bindImageTexture(0, 0, 0, false, 0, GLES31.GL_WRITE_ONLY, GLES30.GL_RGBA8);
+    }
+
+    @Override
+    public void release() {
+        if (mOutput != null) {
+            mPool.release(mOutput);
+            mOutput = null;
+        }
+        if (mOwnsPool) {
+            mPool.evictAll();
+        }
+        // The programs themselves belong to ShaderProgramCache
+        Arrays.fill(mPrograms, null);
+    }
+
+    private static final class KernelProgram {
+        final ComputeBlurKernel mKernel;
+        private final Gl mGl;
+        private final Variant mTexture2D;
+        // Linked the first time an external texture is blurred with this kernel
+        private Variant mExternal;
+
+        KernelProgram(Gl gl, ComputeBlurKernel kernel) {
+            mKernel = kernel;
+            mGl = gl;
+            mTexture2D = new Variant(gl, ProgramKey.ofCompute(kernel.toComputeShader()));
+        }
+
+        Variant getVariant(boolean external) {
+            if (!external) {
+                return mTexture2D;
+            }
+            if (mExternal == null) {
+                mExternal = new Variant(mGl, ProgramKey.ofCompute(mKernel.toComputeShader(),
+                        TextureInput.EXTERNAL_DEFINES));
+            }
+            return mExternal;
+        }
+
+        static final class Variant {
+            final int mProgram;
+            final int mTextureLocation;
+            final int mSizeLocation;
+            final int mTexMatrixLocation;
+
+            Variant(Gl gl, ProgramKey key) {
+                mProgram = ShaderProgramCache.getInstance().getProgram(gl, key);
+                mTextureLocation = gl.getUniformLocation(mProgram, "u_Texture");
+                mSizeLocation = gl.getUniformLocation(mProgram, "u_Size");
+                mTexMatrixLocation = gl.getUniformLocation(mProgram, "u_TexMatrix");
+            }
+        }
+    }
+}
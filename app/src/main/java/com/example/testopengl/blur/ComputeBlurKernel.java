@@ -0,0 +1,228 @@
+package com.example.testopengl.blur;
+
+import com.example.testopengl.gl.TextureInput;
+
+/**
+ * A {@link GaussianKernel} compiled for a GLES 3.1 compute shader that runs both
+ * separable passes from workgroup shared memory.
+ *
+ * Each workgroup of {@code tile x tile} invocations produces one tile of the output. It
+ * first loads the tile plus an apron of {@code radius} texels on every side into shared
+ * memory, clamping coordinates to the image like {@code GL_CLAMP_TO_EDGE}, so every input
+ * texel is fetched once per workgroup instead of once per tap. The horizontal pass then
+ * runs over every row of that region, for the tile's columns only, into a second shared
+ * array, and the vertical pass reads that array and writes the tile to an image.
+ *
+ * Shared memory holds RGBA as two packed half floats (8 bytes), which is what bounds the
+ * radius: see {@link #maxRadius}. {@link #simulate} runs the same index math on the CPU
+ * so that the tiling and border handling can be tested on the JVM.
+ */
+public final class ComputeBlurKernel {
+
+    /** Bytes per texel in shared memory: RGBA as two packHalf2x16 words. */
+    public static final int SHARED_TEXEL_BYTES = 8;
+
+    private final GaussianKernel mKernel;
+    private final int mTileSize;
+    private final int mRadius;
+
+    private ComputeBlurKernel(GaussianKernel kernel, int tileSize) {
+        mKernel = kernel;
+        mTileSize = tileSize;
+        mRadius = kernel.getRadius();
+    }
+
+    /** @param tileSize workgroup width and height, in invocations and output texels */
+    public static ComputeBlurKernel compile(GaussianKernel kernel, int tileSize) {
+        if (tileSize < 1) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        return new ComputeBlurKernel(kernel, tileSize);
+    }
+
+    /** Largest kernel radius whose shared arrays fit in {@code maxSharedBytes}. */
+    public static int maxRadius(int tileSize, int maxSharedBytes) {
+        int radius = -1;
+        while (sharedBytes(tileSize, radius + 1) <= maxSharedBytes) {
+            radius++;
+        }
+        return radius;
+    }
+
+    static int sharedBytes(int tileSize, int radius) {
+        int region = tileSize + 2 * radius;
+        return (region * region + region * tileSize) * SHARED_TEXEL_BYTES;
+    }
+
+    public GaussianKernel getKernel() {
+        return mKernel;
+    }
+
+    public int getTileSize() {
+        return mTileSize;
+    }
+
+    public int getRadius() {
+        return mRadius;
+    }
+
+    /** Width and height of the loaded region: the tile plus the apron on both sides. */
+    public int getRegionSize() {
+        return mTileSize + 2 * mRadius;
+    }
+
+    public int getSharedBytes() {
+        return sharedBytes(mTileSize, mRadius);
+    }
+
+    /** Workgroups needed along an axis of {@code size} texels. */
+    public int getGroupCount(int size) {
+        return (size + mTileSize - 1) / mTileSize;
+    }
+
+    /**
+     * Texture fetches per output texel for a full tile, against 2 * (2r + 1) for two
+     * plain separable passes.
+     */
+    public float getFetchesPerPixel() {
+        int region = getRegionSize();
+        return (float) (region * region) / (mTileSize * mTileSize);
+    }
+
+    /**
+     * Compute shader for this kernel. The output goes to the rgba8 image at binding 0;
+     * {@code u_Size} is the size of the input and output. Linked with
+     * {@link TextureInput#EXTERNAL_DEFINES} it reads an external texture through
+     * {@code u_TexMatrix}.
+     */
+    public String toComputeShader() {
+        StringBuilder weights = new StringBuilder();
+        for (int i = 0; i <= mRadius; i++) {
+            if (i > 0) {
+                weights.append(", ");
+            }
+            weights.append(mKernel.getWeight(i));
+        }
+
+        return "#version 310 es\n" +
+                TextureInput.EXTENSION +
+                "layout(local_size_x = " + mTileSize + ", local_size_y = " + mTileSize + ") in;\n" +
+                TextureInput.SAMPLER +
+                "layout(rgba8, binding = 0) writeonly uniform highp image2D u_Output;\n" +
+                "uniform ivec2 u_Size;\n" +
+                "#ifdef EXTERNAL_INPUT\n" +
+                "uniform mat4 u_TexMatrix;\n" +
+                "#endif\n" +
+                "const int TILE = " + mTileSize + ";\n" +
+                "const int RADIUS = " + mRadius + ";\n" +
+                "const int REGION = TILE + 2 * RADIUS;\n" +
+                "const float WEIGHTS[RADIUS + 1] = float[](" + weights + ");\n" +
+                "shared uvec2 s_Input[REGION * REGION];\n" +
+                "shared uvec2 s_Rows[REGION * TILE];\n" +
+                "uvec2 pack(vec4 c) {\n" +
+                "    return uvec2(packHalf2x16(c.rg), packHalf2x16(c.ba));\n" +
+                "}\n" +
+                "vec4 unpack(uvec2 p) {\n" +
+                "    return vec4(unpackHalf2x16(p.x), unpackHalf2x16(p.y));\n" +
+                "}\n" +
+                "vec4 fetch(ivec2 p) {\n" +
+                "#ifdef EXTERNAL_INPUT\n" +
+                "    vec2 uv = (vec2(p) + 0.5) / vec2(u_Size);\n" +
+                "    return texture(u_Texture, (u_TexMatrix * vec4(uv, 0.0, 1.0)).xy);\n" +
+                "#else\n" +
+                "    return texelFetch(u_Texture, p, 0);\n" +
+                "#endif\n" +
+                "}\n" +
+                "void main() {\n" +
+                "    ivec2 origin = ivec2(gl_WorkGroupID.xy) * TILE;\n" +
+                "    int local = int(gl_LocalInvocationIndex);\n" +
+                "    for (int i = local; i < REGION * REGION; i += TILE * TILE) {\n" +
+                "        ivec2 p = origin + ivec2(i % REGION, i / REGION) - RADIUS;\n" +
+                "        s_Input[i] = pack(fetch(clamp(p, ivec2(0), u_Size - 1)));\n" +
+                "    }\n" +
+                "    memoryBarrierShared();\n" +
+                "    barrier();\n" +
+                "    for (int i = local; i < REGION * TILE; i += TILE * TILE) {\n" +
+                "        int centre = (i / TILE) * REGION + i % TILE + RADIUS;\n" +
+                "        vec4 sum = unpack(s_Input[centre]) * WEIGHTS[0];\n" +
+                "        for (int k = 1; k <= RADIUS; k++) {\n" +
+                "            sum += (unpack(s_Input[centre - k]) + unpack(s_Input[centre + k])) * WEIGHTS[k];\n" +
+                "        }\n" +
+                "        s_Rows[i] = pack(sum);\n" +
+                "    }\n" +
+                "    memoryBarrierShared();\n" +
+                "    barrier();\n" +
+                "    ivec2 texel = ivec2(gl_LocalInvocationID.xy);\n" +
+                "    ivec2 p = origin + texel;\n" +
+                "    if (p.x >= u_Size.x || p.y >= u_Size.y) {\n" +
+                "        return;\n" +
+                "    }\n" +
+                "    int centre = (texel.y + RADIUS) * TILE + texel.x;\n" +
+                "    vec4 sum = unpack(s_Rows[centre]) * WEIGHTS[0];\n" +
+                "    for (int k = 1; k <= RADIUS; k++) {\n" +
+                "        sum += (unpack(s_Rows[centre - k * TILE]) + unpack(s_Rows[centre + k * TILE])) * WEIGHTS[k];\n" +
+                "    }\n" +
+                "    imageStore(u_Output, p, sum);\n" +
+                "}\n";
+    }
+
+    /**
+     * Runs the shader's tiling on a single-channel image: the same workgroups, the same
+     * strided loads into a region-sized array with clamped coordinates, and the same
+     * two passes through it. Invocations of a workgroup are run one after the other
+     * between the barriers, which is equivalent because they only share data across
+     * barriers.
+     */
+    public float[] simulate(float[] src, int width, int height) {
+        int tile = mTileSize;
+        int radius = mRadius;
+        int region = getRegionSize();
+        int invocations = tile * tile;
+        float[] input = new float[region * region];
+        float[] rows = new float[region * tile];
+        float[] dst = new float[width * height];
+
+        for (int groupY = 0; groupY < getGroupCount(height); groupY++) {
+            for (int groupX = 0; groupX < getGroupCount(width); groupX++) {
+                int originX = groupX * tile;
+                int originY = groupY * tile;
+
+                for (int local = 0; local < invocations; local++) {
+                    for (int i = local; i < region * region; i += invocations) {
+                        int x = ReferenceBlur.clamp(originX + i % region - radius, width);
+                        int y = ReferenceBlur.clamp(originY + i / region - radius, height);
+                        input[i] = src[y * width + x];
+                    }
+                }
+
+                for (int local = 0; local < invocations; local++) {
+                    for (int i = local; i < region * tile; i += invocations) {
+                        int centre = (i / tile) * region + i % tile + radius;
+                        float sum = input[centre] * mKernel.getWeight(0);
+                        for (int k = 1; k <= radius; k++) {
+                            sum += (input[centre - k] + input[centre + k]) * mKernel.getWeight(k);
+                        }
+                        rows[i] = sum;
+                    }
+                }
+
+                for (int local = 0; local < invocations; local++) {
+                    int texelX = local % tile;
+                    int texelY = local / tile;
+                    int x = originX + texelX;
+                    int y = originY + texelY;
+                    if (x >= width || y >= height) {
+                        continue;
+                    }
+                    int centre = (texelY + radius) * tile + texelX;
+                    float sum = rows[centre] * mKernel.getWeight(0);
+                    for (int k = 1; k <= radius; k++) {
+                        sum += (rows[centre - k * tile] + rows[centre + k * tile]) * mKernel.getWeight(k);
+                    }
+                    dst[y * width + x] = sum;
+                }
+            }
+        }
+        return dst;
+    }
+}
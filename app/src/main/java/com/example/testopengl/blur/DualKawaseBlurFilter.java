@@ -0,0 +1,264 @@
+package com.example.testopengl.blur;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.gl.TextureInput;
+
+/**
+ * Dual-filter (Kawase) pyramid blur for large radii. The input is downsampled to 1/2,
+ * 1/4, 1/8... with a 5-tap filter and then upsampled back with an 8-tap filter. The
+ * pyramid depth comes from {@link DualKawasePlan}, so the number of pixels shaded stays
+ * below two full-screen passes however large the radius gets.
+ *
+ * Pyramid levels are taken from a {@link RenderTargetPool}, in its intermediate format,
+ * for the duration of {@link #draw}; the level sizes are the same every frame, so a warm pool serves them all.
+ * All GL calls go through the pool's {@link Gl}.
+ *
+ * Must be created and used on the GL thread.
+ */
+public class DualKawaseBlurFilter implements BlurRenderer {
+
+    // u_CrossOffset is u_Offset mirrored in y; both are passed so that an external
+    // input's transform can be applied to each diagonal
+    private static final String DOWNSAMPLE_SHADER =
+            "#version 300 es\n" +
+                    TextureInput.EXTENSION +
+                    "precision mediump float;\n" +
+                    TextureInput.SAMPLER +
+                    "uniform vec2 u_Offset;\n" +
+                    "uniform vec2 u_CrossOffset;\n" +
+                    "uniform float u_DitherStep;\n" +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    TextureFormat.DITHER +
+                    "void main() {\n" +
+                    "    vec4 sum = texture(u_Texture, v_TexCoord) * 4.0;\n" +
+                    "    sum += texture(u_Texture, v_TexCoord - u_Offset);\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + u_Offset);\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + u_CrossOffset);\n" +
+                    "    sum += texture(u_Texture, v_TexCoord - u_CrossOffset);\n" +
+                    "    o_Color = dither(sum / 8.0, u_DitherStep);\n" +
+                    "}\n";
+
+    private static final String UPSAMPLE_SHADER =
+            "#version 300 es\n" +
+                    "precision mediump float;\n" +
+                    "uniform sampler2D u_Texture;\n" +
+                    "uniform vec2 u_Offset;\n" +
+                    "uniform float u_DitherStep;\n" +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    TextureFormat.DITHER +
+                    "void main() {\n" +
+                    "    vec4 sum = texture(u_Texture, v_TexCoord + vec2(-u_Offset.x * 2.0, 0.0));\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(u_Offset.x * 2.0, 0.0));\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(0.0, -u_Offset.y * 2.0));\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(0.0, u_Offset.y * 2.0));\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(-u_Offset.x, -u_Offset.y)) * 2.0;\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(u_Offset.x, -u_Offset.y)) * 2.0;\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(-u_Offset.x, u_Offset.y)) * 2.0;\n" +
+                    "    sum += texture(u_Texture, v_TexCoord + vec2(u_Offset.x, u_Offset.y)) * 2.0;\n" +
+                    "    o_Color = dither(sum / 12.0, u_DitherStep);\n" +
+                    "}\n";
+
+    private final Gl mGl;
+    private final FullScreenQuad mQuad;
+    private final DownProgram mDown;
+    // Linked the first time an external texture is blurred
+    private DownProgram mExternalDown;
+    private final int mUpProgram;
+    private final int mUpTextureLocation;
+    private final int mUpOffsetLocation;
+    private final int mUpDitherStepLocation;
+
+    private final RenderTargetPool mPool;
+    private final boolean mOwnsPool;
+    // Index i > 0 is level i, which the downsample chain writes and the upsample chain
+    // overwrites on the way back; index 0 is unused. Only filled during draw()
+    private final FrameBufferObject[] mLevels = new FrameBufferObject[DualKawasePlan.MAX_LEVELS + 1];
+    // Index 0 is the full resolution
+    private final int[] mWidths = new int[DualKawasePlan.MAX_LEVELS + 1];
+    private final int[] mHeights = new int[DualKawasePlan.MAX_LEVELS + 1];
+    // Holds the result of blur() until the next call
+    private FrameBufferObject mOutput;
+    private final float[] mOffset = new float[2];
+
+    private int mPlanLevels = DualKawasePlan.levelsFor(0f);
+    private float mPlanOffset = DualKawasePlan.offsetFor(mPlanLevels, 0f);
+    // Built on demand by getPlan(), so that animating the radius does not allocate
+    private DualKawasePlan mPlan;
+
+    public DualKawaseBlurFilter() {
+        this(new RenderTargetPool(AndroidGl.getInstance()), true);
+    }
+
+    public DualKawaseBlurFilter(RenderTargetPool pool) {
+        this(pool, false);
+    }
+
+    private DualKawaseBlurFilter(RenderTargetPool pool, boolean ownsPool) {
+        mPool = pool;
+        mOwnsPool = ownsPool;
+        mGl = pool.getGl();
+        mQuad = FullScreenQuad.getInstance(mGl);
+        mDown = new DownProgram(mGl, ProgramKey.of(mQuad.getVertexShader(), DOWNSAMPLE_SHADER));
+        mUpProgram = ShaderProgramCache.getInstance().getProgram(mGl, mQuad.getVertexShader(), UPSAMPLE_SHADER);
+        mUpTextureLocation = mGl.getUniformLocation(mUpProgram, "u_Texture");
+        mUpOffsetLocation = mGl.getUniformLocation(mUpProgram, "u_Offset");
+        mUpDitherStepLocation = mGl.getUniformLocation(mUpProgram, "u_DitherStep");
+    }
+
+    @Override
+    public void setRadius(float blurRadius) {
+        float sigma = blurRadius / 3f;
+        int levels = DualKawasePlan.levelsFor(sigma);
+        float offset = DualKawasePlan.offsetFor(levels, sigma);
+        if (levels == mPlanLevels && offset == mPlanOffset) {
+            return;
+        }
+        mPlanLevels = levels;
+        mPlanOffset = offset;
+        mPlan = null;
+    }
+
+    public DualKawasePlan getPlan() {
+        if (mPlan == null) {
+            mPlan = new DualKawasePlan(mPlanLevels, mPlanOffset);
+        }
+        return mPlan;
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidths[0] = width;
+        mHeights[0] = height;
+        for (int level = 1; level < mWidths.length; level++) {
+            mWidths[level] = (mWidths[level - 1] + 1) / 2;
+            mHeights[level] = (mHeights[level - 1] + 1) / 2;
+        }
+    }
+
+    @Override
+    public void draw(int textureId, int framebuffer) {
+        draw(textureId, null, framebuffer);
+    }
+
+    /** The first downsample samples the external texture; the rest of the pyramid is unchanged. */
+    @Override
+    public void drawExternal(int textureId, float[] textureMatrix, int framebuffer) {
+        draw(textureId, textureMatrix, framebuffer);
+    }
+
+    private void draw(int textureId, float[] textureMatrix, int framebuffer) {
+        int levels = mPlanLevels;
+        float offset = mPlanOffset;
+        TextureFormat format = mPool.getIntermediateFormat();
+        mQuad.bind();
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+
+        int input = textureId;
+        for (int level = 1; level <= levels; level++) {
+            DownProgram down = mDown;
+            float[] matrix = null;
+            if (level == 1 && textureMatrix != null) {
+                if (mExternalDown == null) {
+                    mExternalDown = new DownProgram(mGl, ProgramKey.of(mQuad.getVertexShader(),
+                            DOWNSAMPLE_SHADER, TextureInput.EXTERNAL_DEFINES));
+                }
+                down = mExternalDown;
+                matrix = textureMatrix;
+            }
+            if (level <= 2) {
+                // Level 1 may use the external variant, level 2 switches back
+                mGl.useProgram(down.mProgram);
+                mGl.uniform1i(down.mTextureLocation, 0);
+                mGl.uniform1f(down.mDitherStepLocation, format.getDitherStep());
+                if (matrix != null) {
+                    mGl.uniformMatrix4fv(down.mTexMatrixLocation, 1, false, matrix, 0);
+                }
+            }
+            mLevels[level] = mPool.acquire(mWidths[level], mHeights[level], format.getInternalFormat());
+            mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mLevels[level].getFramebuffer());
+            mGl.viewport(0, 0, mWidths[level], mHeights[level]);
+            // Half an output texel, scaled by the plan's offset
+            float ox = 0.5f * offset / mWidths[level];
+            float oy = 0.5f * offset / mHeights[level];
+            TextureInput.transformOffset(matrix, ox, oy, mOffset);
+            mGl.uniform2f(down.mOffsetLocation, mOffset[0], mOffset[1]);
+            TextureInput.transformOffset(matrix, ox, -oy, mOffset);
+            mGl.uniform2f(down.mCrossOffsetLocation, mOffset[0], mOffset[1]);
+            mGl.bindTexture(TextureInput.target(matrix != null), input);
+            mQuad.draw();
+            input = mLevels[level].getTexture();
+        }
+
+        mGl.useProgram(mUpProgram);
+        mGl.uniform1i(mUpTextureLocation, 0);
+        mGl.uniform1f(mUpDitherStepLocation, format.getDitherStep());
+        for (int level = levels; level > 0; level--) {
+            int target = level == 1 ? framebuffer : mLevels[level - 1].getFramebuffer();
+            if (level == 1 && format.getDitherStep() != 0f) {
+                // The last pass writes the caller's framebuffer, which needs no dither
+                mGl.uniform1f(mUpDitherStepLocation, 0f);
+            }
+            mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, target);
+            mGl.viewport(0, 0, mWidths[level - 1], mHeights[level - 1]);
+            // Half a texel of the low-resolution input, scaled by the plan's offset
+            mGl.uniform2f(mUpOffsetLocation,
+                    0.5f * offset / mWidths[level], 0.5f * offset / mHeights[level]);
+            mGl.bindTexture(GLES30.GL_TEXTURE_2D, mLevels[level].getTexture());
+            mQuad.draw();
+        }
+
+        for (int level = 1; level <= levels; level++) {
+            mPool.release(mLevels[level]);
+            mLevels[level] = null;
+        }
+        mQuad.unbind();
+    }
+
+    @Override
+    public int blur(int textureId) {
+        mOutput = mPool.ensure(mOutput, mWidths[0], mHeights[0], GLES30.GL_RGBA8);
+        draw(textureId, mOutput.getFramebuffer());
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+        return mOutput.getTexture();
+    }
+
+    @Override
+    public void release() {
+        if (mOutput != null) {
+            mPool.release(mOutput);
+            mOutput = null;
+        }
+        if (mOwnsPool) {
+            mPool.evictAll();
+        }
+    }
+
+    private static final class DownProgram {
+        final int mProgram;
+        final int mTextureLocation;
+        final int mOffsetLocation;
+        final int mCrossOffsetLocation;
+        final int mTexMatrixLocation;
+        final int mDitherStepLocation;
+
+        DownProgram(Gl gl, ProgramKey key) {
+            mProgram = ShaderProgramCache.getInstance().getProgram(gl, key);
+            mTextureLocation = gl.getUniformLocation(mProgram, "u_Texture");
+            mOffsetLocation = gl.getUniformLocation(mProgram, "u_Offset");
+            mCrossOffsetLocation = gl.getUniformLocation(mProgram, "u_CrossOffset");
+            mTexMatrixLocation = gl.getUniformLocation(mProgram, "u_TexMatrix");
+            mDitherStepLocation = gl.getUniformLocation(mProgram, "u_DitherStep");
+        }
+    }
+}
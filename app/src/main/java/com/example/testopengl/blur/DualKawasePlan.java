@@ -0,0 +1,82 @@
+package com.example.testopengl.blur;
+
+/**
+ * Pyramid depth and sample offset for a dual-filter (Kawase) blur of a given strength.
+ *
+ * Each level halves the resolution, so the blur a level adds in full-resolution pixels
+ * doubles while its cost quarters. Measured on impulse responses, the effective sigma
+ * of {@code levels} down/up passes is about {@code 2^levels * (0.2 + 0.75 * offset)}
+ * for offsets between 0.5 and 3; the plan picks the shallowest pyramid that reaches the
+ * requested sigma with an offset of at most {@link #MAX_OFFSET}, then solves for the
+ * offset.
+ */
+public final class DualKawasePlan {
+
+    public static final int MAX_LEVELS = 6;
+    static final float MIN_OFFSET = 0.5f;
+    static final float MAX_OFFSET = 1.6f;
+
+    private final int mLevels;
+    private final float mOffset;
+
+    public DualKawasePlan(int levels, float offset) {
+        mLevels = levels;
+        mOffset = offset;
+    }
+
+    /** Plan for a blur radius in pixels, treated as 3 sigma like {@link GaussianKernel}. */
+    public static DualKawasePlan forBlurRadius(float blurRadius) {
+        return forSigma(blurRadius / 3f);
+    }
+
+    public static DualKawasePlan forSigma(float sigma) {
+        int levels = levelsFor(sigma);
+        return new DualKawasePlan(levels, offsetFor(levels, sigma));
+    }
+
+    /** Depth of the plan for {@code sigma}; with {@link #offsetFor}, plans without allocating. */
+    static int levelsFor(float sigma) {
+        int levels = 1;
+        while (levels < MAX_LEVELS && sigma > sigmaFor(levels, MAX_OFFSET)) {
+            levels++;
+        }
+        return levels;
+    }
+
+    static float offsetFor(int levels, float sigma) {
+        float offset = (sigma / (1 << levels) - 0.2f) / 0.75f;
+        return Math.max(MIN_OFFSET, Math.min(3f, offset));
+    }
+
+    static float sigmaFor(int levels, float offset) {
+        return (1 << levels) * (0.2f + 0.75f * offset);
+    }
+
+    public int getLevels() {
+        return mLevels;
+    }
+
+    public float getOffset() {
+        return mOffset;
+    }
+
+    /** Approximate Gaussian sigma, in full-resolution pixels, this plan produces. */
+    public float getSigma() {
+        return sigmaFor(mLevels, mOffset);
+    }
+
+    /**
+     * Pixels shaded relative to one full-resolution pass. Every level is a quarter of the
+     * previous one and is visited twice, so this stays below 2 whatever the depth.
+     */
+    public float getRelativeCost() {
+        float cost = 0f;
+        float area = 1f;
+        for (int level = 1; level <= mLevels; level++) {
+            area /= 4f;
+            // Down pass writes this level; up pass writes the level above it
+            cost += area + area * 4f;
+        }
+        return cost;
+    }
+}
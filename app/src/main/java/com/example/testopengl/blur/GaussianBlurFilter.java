@@ -0,0 +1,226 @@
+package com.example.testopengl.blur;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.gl.TextureInput;
+
+import java.util.Arrays;
+
+/**
+ * Separable Gaussian blur: a horizontal pass into an offscreen target followed by a
+ * vertical pass into the caller's framebuffer. The tap count follows the requested
+ * sigma, so a pass costs 2r+1 fetches instead of the (2r+1)^2 of a 2D window, and the
+ * kernel is compiled with {@link LinearSampledKernel} so each fetch covers two texels.
+ *
+ * One program is linked per distinct kernel. Sigma is rounded to
+ * {@link #SIGMA_STEP} so that animating the radius does not link a program per frame,
+ * and the rounded value is compared before any kernel is built, so that it does not
+ * allocate per frame either.
+ *
+ * The intermediate target is taken from a {@link RenderTargetPool} for the duration of
+ * {@link #draw} and given back afterwards, so filters sharing a pool share it too, in the
+ * pool's intermediate format. All GL calls go through the pool's {@link Gl}.
+ *
+ * Must be created and used on the GL thread.
+ */
+public class GaussianBlurFilter implements BlurRenderer {
+
+    /** Sigma granularity, in pixels, of the compiled kernels. */
+    public static final float SIGMA_STEP = 0.25f;
+
+    /** Past {@link GaussianKernel#MAX_RADIUS} taps a larger sigma only truncates differently. */
+    static final int MAX_SIGMA_KEY = Math.round(GaussianKernel.MAX_RADIUS / 3f / SIGMA_STEP);
+
+    private final Gl mGl;
+    private final FullScreenQuad mQuad;
+    // Indexed by sigmaKey()
+    private final KernelProgram[] mPrograms = new KernelProgram[MAX_SIGMA_KEY + 1];
+    private KernelProgram mProgram;
+
+    private final RenderTargetPool mPool;
+    private final boolean mOwnsPool;
+    // Holds the result of blur() until the next call
+    private FrameBufferObject mOutput;
+    private int mWidth;
+    private int mHeight;
+    private final float[] mStep = new float[2];
+
+    public GaussianBlurFilter() {
+        this(new RenderTargetPool(AndroidGl.getInstance()), true);
+    }
+
+    public GaussianBlurFilter(RenderTargetPool pool) {
+        this(pool, false);
+    }
+
+    private GaussianBlurFilter(RenderTargetPool pool, boolean ownsPool) {
+        mPool = pool;
+        mOwnsPool = ownsPool;
+        mGl = pool.getGl();
+        mQuad = FullScreenQuad.getInstance(mGl);
+        setSigma(0f);
+    }
+
+    /** Blur radius in pixels; see {@link GaussianKernel#forBlurRadius}. */
+    @Override
+    public void setRadius(float blurRadius) {
+        setSigma(blurRadius / 3f);
+    }
+
+    public void setSigma(float sigma) {
+        int key = sigmaKey(sigma);
+        KernelProgram program = mPrograms[key];
+        if (program == null) {
+            program = new KernelProgram(mGl, mQuad, GaussianKernel.forSigma(key * SIGMA_STEP));
+            mPrograms[key] = program;
+        }
+        mProgram = program;
+    }
+
+    /** Index of the compiled kernel that stands in for {@code sigma}, 0 for none. */
+    static int sigmaKey(float sigma) {
+        if (GaussianKernel.radiusForSigma(sigma) == 0) {
+            return 0;
+        }
+        return Math.min(Math.round(sigma / SIGMA_STEP), MAX_SIGMA_KEY);
+    }
+
+    public GaussianKernel getKernel() {
+        return mProgram.mKernel.getKernel();
+    }
+
+    /** Size of the input texture and of the output. Call from onSurfaceChanged. */
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    /**
+     * Blurs {@code textureId} into {@code framebuffer} (0 for the screen). The input must
+     * be a GL_TEXTURE_2D of the size given to {@link #setSize}.
+     */
+    @Override
+    public void draw(int textureId, int framebuffer) {
+        draw(textureId, null, framebuffer);
+    }
+
+    /** The horizontal pass samples the external texture; the vertical pass is unchanged. */
+    @Override
+    public void drawExternal(int textureId, float[] textureMatrix, int framebuffer) {
+        draw(textureId, textureMatrix, framebuffer);
+    }
+
+    private void draw(int textureId, float[] textureMatrix, int framebuffer) {
+        KernelProgram program = mProgram;
+        boolean external = textureMatrix != null;
+        mGl.viewport(0, 0, mWidth, mHeight);
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mQuad.bind();
+        TextureFormat format = mPool.getIntermediateFormat();
+        FrameBufferObject horizontal = mPool.acquire(mWidth, mHeight, format.getInternalFormat());
+
+        // Horizontal pass, one output texel along x mapped into the input's texture space
+        KernelProgram.Variant first = program.getVariant(external);
+        mGl.useProgram(first.mProgram);
+        mGl.uniform1i(first.mTextureLocation, 0);
+        if (external) {
+            mGl.uniformMatrix4fv(first.mTexMatrixLocation, 1, false, textureMatrix, 0);
+        }
+        TextureInput.transformOffset(textureMatrix, 1f / mWidth, 0f, mStep);
+        mGl.uniform2f(first.mTexelStepLocation, mStep[0], mStep[1]);
+        mGl.uniform1f(first.mDitherStepLocation, format.getDitherStep());
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, horizontal.getFramebuffer());
+        mGl.bindTexture(TextureInput.target(external), textureId);
+        mQuad.draw();
+
+        // Vertical pass
+        KernelProgram.Variant second = program.getVariant(false);
+        if (second != first) {
+            mGl.useProgram(second.mProgram);
+            mGl.uniform1i(second.mTextureLocation, 0);
+        }
+        mGl.uniform2f(second.mTexelStepLocation, 0f, 1f / mHeight);
+        // The result is as precise as the caller's framebuffer
+        mGl.uniform1f(second.mDitherStepLocation, 0f);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, horizontal.getTexture());
+        mQuad.draw();
+
+        mPool.release(horizontal);
+        mQuad.unbind();
+    }
+
+    /** Blurs into the filter's own target and returns the texture holding the result. */
+    @Override
+    public int blur(int textureId) {
+        mOutput = mPool.ensure(mOutput, mWidth, mHeight, GLES30.GL_RGBA8);
+        draw(textureId, mOutput.getFramebuffer());
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+        return mOutput.getTexture();
+    }
+
+    @Override
+    public void release() {
+        if (mOutput != null) {
+            mPool.release(mOutput);
+            mOutput = null;
+        }
+        if (mOwnsPool) {
+            mPool.evictAll();
+        }
+        // The programs themselves belong to ShaderProgramCache
+        Arrays.fill(mPrograms, null);
+    }
+
+    private static final class KernelProgram {
+        final LinearSampledKernel mKernel;
+        private final Gl mGl;
+        private final FullScreenQuad mQuad;
+        private final Variant mTexture2D;
+        // Linked the first time an external texture is blurred with this kernel
+        private Variant mExternal;
+
+        KernelProgram(Gl gl, FullScreenQuad quad, GaussianKernel kernel) {
+            mKernel = LinearSampledKernel.compile(kernel);
+            mGl = gl;
+            mQuad = quad;
+            mTexture2D = new Variant(gl, ProgramKey.of(quad.getVertexShader(), mKernel.toFragmentShader()));
+        }
+
+        Variant getVariant(boolean external) {
+            if (!external) {
+                return mTexture2D;
+            }
+            if (mExternal == null) {
+                mExternal = new Variant(mGl, ProgramKey.of(mQuad.getVertexShader(),
+                        mKernel.toFragmentShader(), TextureInput.EXTERNAL_DEFINES));
+            }
+            return mExternal;
+        }
+
+        static final class Variant {
+            final int mProgram;
+            final int mTextureLocation;
+            final int mTexelStepLocation;
+            final int mTexMatrixLocation;
+            final int mDitherStepLocation;
+
+            Variant(Gl gl, ProgramKey key) {
+                mProgram = ShaderProgramCache.getInstance().getProgram(gl, key);
+                mTextureLocation = gl.getUniformLocation(mProgram, "u_Texture");
+                mTexelStepLocation = gl.getUniformLocation(mProgram, "u_TexelStep");
+                mTexMatrixLocation = gl.getUniformLocation(mProgram, "u_TexMatrix");
+                mDitherStepLocation = gl.getUniformLocation(mProgram, "u_DitherStep");
+            }
+        }
+    }
+}
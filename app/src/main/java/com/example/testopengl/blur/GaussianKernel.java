@@ -0,0 +1,85 @@
+package com.example.testopengl.blur;
+
+/**
+ * Discrete, normalised 1D Gaussian kernel.
+ *
+ * The kernel is symmetric, so only the centre tap and the positive half are stored:
+ * {@code getWeight(i)} is the weight of the taps at {@code -i} and {@code +i}.
+ * The weights are normalised so that {@code w(0) + 2 * sum(w(1..radius)) == 1}.
+ */
+public final class GaussianKernel {
+
+    /** Largest number of taps on each side of the centre that a single pass will use. */
+    public static final int MAX_RADIUS = 32;
+
+    private final float mSigma;
+    private final float[] mWeights;
+
+    private GaussianKernel(float sigma, float[] weights) {
+        mSigma = sigma;
+        mWeights = weights;
+    }
+
+    /**
+     * Kernel for a blur radius in pixels, as used by {@code setBlurRadius}/{@code setRadius}
+     * on the filters. The radius is treated as 3 sigma, which is where the Gaussian drops
+     * below 1% of its peak.
+     */
+    public static GaussianKernel forBlurRadius(float blurRadius) {
+        return forSigma(blurRadius / 3f);
+    }
+
+    public static GaussianKernel forSigma(float sigma) {
+        int radius = radiusForSigma(sigma);
+        float[] weights = new float[radius + 1];
+        if (radius == 0) {
+            weights[0] = 1f;
+            return new GaussianKernel(0f, weights);
+        }
+
+        double twoSigmaSq = 2.0 * sigma * sigma;
+        double sum = 0;
+        double[] raw = new double[radius + 1];
+        for (int i = 0; i <= radius; i++) {
+            raw[i] = Math.exp(-(i * i) / twoSigmaSq);
+            sum += i == 0 ? raw[i] : 2 * raw[i];
+        }
+        for (int i = 0; i <= radius; i++) {
+            weights[i] = (float) (raw[i] / sum);
+        }
+        return new GaussianKernel(sigma, weights);
+    }
+
+    /**
+     * Number of taps on each side of the centre needed to cover +-3 sigma, clamped to
+     * {@link #MAX_RADIUS}. Returns 0 for sigma values that would not visibly blur.
+     */
+    public static int radiusForSigma(float sigma) {
+        if (!(sigma > 0.1f)) {
+            return 0;
+        }
+        return Math.min(MAX_RADIUS, Math.max(1, (int) Math.ceil(3f * sigma)));
+    }
+
+    public float getSigma() {
+        return mSigma;
+    }
+
+    public int getRadius() {
+        return mWeights.length - 1;
+    }
+
+    /** Number of texture fetches a single pass of this kernel costs per pixel. */
+    public int getTapCount() {
+        return 2 * getRadius() + 1;
+    }
+
+    public float getWeight(int offset) {
+        return mWeights[Math.abs(offset)];
+    }
+
+    /** Centre and positive-side weights; the returned array is a copy. */
+    public float[] getWeights() {
+        return mWeights.clone();
+    }
+}
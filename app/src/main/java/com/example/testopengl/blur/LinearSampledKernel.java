@@ -0,0 +1,118 @@
+package com.example.testopengl.blur;
+
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.gl.TextureInput;
+
+/**
+ * A {@link GaussianKernel} compiled for bilinear texture fetches.
+ *
+ * Two neighbouring taps i and i+1 with weights w1 and w2 can be read with a single
+ * linearly filtered fetch at offset {@code (i*w1 + (i+1)*w2) / (w1 + w2)} weighted by
+ * {@code w1 + w2}. A kernel of radius r therefore needs 1 + 2*ceil(r/2) fetches per pass
+ * instead of 2r+1, and the shader generated by {@link #toFragmentShader()} has every
+ * offset and weight baked in as a constant, so it does no exp() or loop work per pixel.
+ */
+public final class LinearSampledKernel {
+
+    private final GaussianKernel mKernel;
+    private final float mCenterWeight;
+    private final float[] mOffsets;
+    private final float[] mWeights;
+
+    private LinearSampledKernel(GaussianKernel kernel, float centerWeight, float[] offsets, float[] weights) {
+        mKernel = kernel;
+        mCenterWeight = centerWeight;
+        mOffsets = offsets;
+        mWeights = weights;
+    }
+
+    public static LinearSampledKernel compile(GaussianKernel kernel) {
+        int radius = kernel.getRadius();
+        int pairs = (radius + 1) / 2;
+        float[] offsets = new float[pairs];
+        float[] weights = new float[pairs];
+        for (int p = 0; p < pairs; p++) {
+            int i = 2 * p + 1;
+            float w1 = kernel.getWeight(i);
+            // An odd radius leaves the outermost tap without a partner
+            float w2 = i + 1 <= radius ? kernel.getWeight(i + 1) : 0f;
+            weights[p] = w1 + w2;
+            offsets[p] = (i * w1 + (i + 1) * w2) / (w1 + w2);
+        }
+        return new LinearSampledKernel(kernel, kernel.getWeight(0), offsets, weights);
+    }
+
+    public GaussianKernel getKernel() {
+        return mKernel;
+    }
+
+    public float getCenterWeight() {
+        return mCenterWeight;
+    }
+
+    /** Number of merged fetches on each side of the centre. */
+    public int getPairCount() {
+        return mOffsets.length;
+    }
+
+    /** Offset of merged fetch {@code index}, in texels from the centre. */
+    public float getOffset(int index) {
+        return mOffsets[index];
+    }
+
+    public float getWeight(int index) {
+        return mWeights[index];
+    }
+
+    /** Texture fetches per pixel for one pass. */
+    public int getFetchCount() {
+        return 1 + 2 * mOffsets.length;
+    }
+
+    /**
+     * Expands the merged fetches back into per-texel weights, the way the bilinear filter
+     * splits them between the two texels it reads. Index 0 is the centre.
+     */
+    public float[] toTexelWeights() {
+        float[] texels = new float[mKernel.getRadius() + 2];
+        texels[0] = mCenterWeight;
+        for (int p = 0; p < mOffsets.length; p++) {
+            int i = (int) Math.floor(mOffsets[p]);
+            float fraction = mOffsets[p] - i;
+            texels[i] += mWeights[p] * (1f - fraction);
+            texels[i + 1] += mWeights[p] * fraction;
+        }
+        float[] result = new float[mKernel.getRadius() + 1];
+        System.arraycopy(texels, 0, result, 0, result.length);
+        return result;
+    }
+
+    /**
+     * GLSL ES 3.00 fragment shader for one pass of this kernel. It expects
+     * {@code u_Texture} (an external texture when linked with
+     * {@link TextureInput#EXTERNAL_DEFINES}), the per-pass direction {@code u_TexelStep} (one texel along the
+     * blur axis, in texture coordinates) and {@code v_TexCoord} from the vertex shader.
+     */
+    public String toFragmentShader() {
+        StringBuilder sb = new StringBuilder(256 + 128 * mOffsets.length);
+        sb.append("#version 300 es\n")
+                .append(TextureInput.EXTENSION)
+                .append("precision mediump float;\n")
+                .append(TextureInput.SAMPLER)
+                .append("uniform vec2 u_TexelStep;\n")
+                .append("uniform float u_DitherStep;\n")
+                .append("in vec2 v_TexCoord;\n")
+                .append("out vec4 o_Color;\n")
+                .append(TextureFormat.DITHER)
+                .append("void main() {\n")
+                .append("    vec4 color = texture(u_Texture, v_TexCoord) * ").append(mCenterWeight).append(";\n");
+        for (int p = 0; p < mOffsets.length; p++) {
+            sb.append("    color += (texture(u_Texture, v_TexCoord + u_TexelStep * ").append(mOffsets[p]).append(")\n")
+                    .append("            + texture(u_Texture, v_TexCoord - u_TexelStep * ").append(mOffsets[p]).append("))")
+                    .append(" * ").append(mWeights[p]).append(";\n");
+        }
+        sb.append("    o_Color = dither(color, u_DitherStep);\n")
+                .append("}\n");
+        return sb.toString();
+    }
+}
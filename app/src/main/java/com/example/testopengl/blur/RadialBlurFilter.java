@@ -0,0 +1,344 @@
+package com.example.testopengl.blur;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.Std140Layout;
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.gl.TextureInput;
+import com.example.testopengl.gl.UniformBlock;
+
+/**
+ * Radial (zoom) blur: every pixel is averaged along the line towards a centre point.
+ * The sample count scales with the distance to the centre (see {@link RadialBlurPlan}),
+ * and several short passes can replace one long pass. Centre, strength and quality can
+ * change every frame: each pass keeps them in a {@link UniformBlock} of its own, which
+ * is uploaded again only when one of them changes.
+ *
+ * As a {@link BlurRenderer} the radius is the length, in pixels, of the streak at the
+ * corner farthest from the centre; {@link #setStrength} sets the same thing as a fraction.
+ *
+ * Intermediate targets come from a {@link RenderTargetPool}, in its intermediate format,
+ * and all GL calls go through its {@link Gl}. Must be created and used on the GL thread.
+ */
+public class RadialBlurFilter implements BlurRenderer {
+
+    // The direction to the centre is worked out in output space from gl_FragCoord; with
+    // an external input u_TexBasis maps the step into the input's texture space. Both
+    // variants declare the same block, so that one layout serves them.
+    private static final String FRAGMENT_SHADER =
+            "#version 300 es\n" +
+                    TextureInput.EXTENSION +
+                    "precision highp float;\n" +
+                    TextureInput.SAMPLER +
+                    "layout(std140) uniform RadialParams {\n" +
+                    "    vec2 u_Resolution;\n" +
+                    "    vec2 u_Center;\n" +
+                    "    float u_Strength;\n" +
+                    "    int u_MaxSamples;\n" +
+                    "    float u_DitherStep;\n" +
+                    "    mat2 u_TexBasis;\n" +
+                    "};\n" +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    TextureFormat.DITHER +
+                    "void main() {\n" +
+                    "    vec2 toCenter = (u_Center - gl_FragCoord.xy / u_Resolution) * u_Strength;\n" +
+                    "    float blurLength = length(toCenter * u_Resolution);\n" +
+                    "    int samples = clamp(int(ceil(blurLength / " + RadialBlurPlan.SAMPLE_SPACING + ")), 1, u_MaxSamples);\n" +
+                    "    vec2 delta = toCenter / float(samples);\n" +
+                    "#ifdef EXTERNAL_INPUT\n" +
+                    "    delta = u_TexBasis * delta;\n" +
+                    "#endif\n" +
+                    "    vec4 color = vec4(0.0);\n" +
+                    "    for (int i = 0; i < samples; i++) {\n" +
+                    "        color += texture(u_Texture, v_TexCoord + delta * float(i));\n" +
+                    "    }\n" +
+                    "    o_Color = dither(color / float(samples), u_DitherStep);\n" +
+                    "}\n";
+
+    /** Uniform buffer binding point of the passes' parameter blocks. */
+    static final int PARAMS_BINDING = 0;
+
+    // Offsets in RadialParams, in declaration order
+    private static final Std140Layout PARAMS_LAYOUT = new Std140Layout();
+    private static final int RESOLUTION_OFFSET = PARAMS_LAYOUT.addVec2();
+    private static final int CENTER_OFFSET = PARAMS_LAYOUT.addVec2();
+    private static final int STRENGTH_OFFSET = PARAMS_LAYOUT.addFloat();
+    private static final int MAX_SAMPLES_OFFSET = PARAMS_LAYOUT.addInt();
+    private static final int DITHER_STEP_OFFSET = PARAMS_LAYOUT.addFloat();
+    private static final int TEX_BASIS_OFFSET = PARAMS_LAYOUT.addMat2();
+
+    private final Gl mGl;
+    private final FullScreenQuad mQuad;
+    private final Variant mTexture2D;
+    // Per pass, made on its first draw
+    private final UniformBlock[] mParams = new UniformBlock[RadialBlurPlan.MAX_PASSES];
+    // Linked the first time an external texture is blurred
+    private Variant mExternal;
+    private final float[] mTexBasis = new float[4];
+
+    private final RenderTargetPool mPool;
+    private final boolean mOwnsPool;
+    // Ping-pong targets for the passes before the last one, taken from the pool per draw
+    private final FrameBufferObject[] mTargets = new FrameBufferObject[2];
+    // Holds the result of blur() until the next call
+    private FrameBufferObject mOutput;
+    private int mWidth;
+    private int mHeight;
+    // NaN unless the strength was given in pixels through setRadius()
+    private float mRadius = Float.NaN;
+
+    private float mCenterX = 0.5f;
+    private float mCenterY = 0.5f;
+    private float mStrength = 0.1f;
+    private int mSamplesPerPass = 16;
+    private int mPasses = 1;
+    private int mDownsample = 1;
+    // Built on demand by getPlan(), so that animating the strength does not allocate
+    private RadialBlurPlan mPlan;
+
+    public RadialBlurFilter() {
+        this(new RenderTargetPool(AndroidGl.getInstance()), true);
+    }
+
+    public RadialBlurFilter(RenderTargetPool pool) {
+        this(pool, false);
+    }
+
+    private RadialBlurFilter(RenderTargetPool pool, boolean ownsPool) {
+        mPool = pool;
+        mOwnsPool = ownsPool;
+        mGl = pool.getGl();
+        mQuad = FullScreenQuad.getInstance(mGl);
+        mTexture2D = new Variant(mGl, ProgramKey.of(mQuad.getVertexShader(), FRAGMENT_SHADER));
+    }
+
+    /** Blur centre in texture coordinates, (0, 0) being the bottom-left corner. */
+    public void setCenter(float x, float y) {
+        mCenterX = x;
+        mCenterY = y;
+        applyRadius();
+    }
+
+    /** Fraction (0..1) of each pixel's distance to the centre that is smeared. */
+    public void setStrength(float strength) {
+        mRadius = Float.NaN;
+        updateStrength(strength);
+    }
+
+    /** Streak length at the corner farthest from the centre, in pixels. */
+    @Override
+    public void setRadius(float blurRadius) {
+        mRadius = blurRadius;
+        applyRadius();
+    }
+
+    private void applyRadius() {
+        if (Float.isNaN(mRadius) || mWidth <= 0) {
+            return;
+        }
+        float dx = Math.max(mCenterX, 1f - mCenterX) * mWidth;
+        float dy = Math.max(mCenterY, 1f - mCenterY) * mHeight;
+        updateStrength(Math.min(1f, mRadius / (float) Math.hypot(dx, dy)));
+    }
+
+    private void updateStrength(float strength) {
+        strength = RadialBlurPlan.clampStrength(strength);
+        if (strength == mStrength) {
+            return;
+        }
+        mStrength = strength;
+        mPlan = null;
+    }
+
+    /**
+     * @param samplesPerPass upper bound on the samples a pixel takes in one pass
+     * @param passes         1 for a single pass; more passes of fewer samples each give
+     *                       samplesPerPass^passes effective samples
+     */
+    public void setQuality(int samplesPerPass, int passes) {
+        samplesPerPass = RadialBlurPlan.clampSamplesPerPass(samplesPerPass);
+        passes = RadialBlurPlan.clampPasses(passes);
+        if (samplesPerPass == mSamplesPerPass && passes == mPasses) {
+            return;
+        }
+        mSamplesPerPass = samplesPerPass;
+        mPasses = passes;
+        mPlan = null;
+    }
+
+    /**
+     * Draws the passes at 1/{@code factor} of the size in each direction and scales the
+     * result up with a linear blit. Streaks are then shorter in pixels and take fewer
+     * samples, so a factor of 2 costs about a quarter; 1 draws at full size.
+     */
+    public void setDownsample(int factor) {
+        mDownsample = Math.max(1, Math.min(RadialBlurPlan.MAX_DOWNSAMPLE, factor));
+    }
+
+    public int getDownsample() {
+        return mDownsample;
+    }
+
+    public RadialBlurPlan getPlan() {
+        if (mPlan == null) {
+            mPlan = new RadialBlurPlan(mStrength, mSamplesPerPass, mPasses);
+        }
+        return mPlan;
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        applyRadius();
+    }
+
+    /** Blurs {@code textureId} into {@code framebuffer}; 0 is the screen. */
+    @Override
+    public void draw(int textureId, int framebuffer) {
+        draw(textureId, null, framebuffer);
+    }
+
+    /**
+     * Blurs an external OES texture into {@code framebuffer}. The first pass samples it
+     * through {@code textureMatrix}, the SurfaceTexture transform, so it needs no copy
+     * into a 2D texture first.
+     */
+    @Override
+    public void drawExternal(int textureId, float[] textureMatrix, int framebuffer) {
+        draw(textureId, textureMatrix, framebuffer);
+    }
+
+    private void draw(int textureId, float[] textureMatrix, int framebuffer) {
+        int passes = mPasses;
+        boolean scaled = mDownsample > 1;
+        int width = scaled ? Math.max(1, mWidth / mDownsample) : mWidth;
+        int height = scaled ? Math.max(1, mHeight / mDownsample) : mHeight;
+        // One intermediate for two passes, two to ping-pong between for more; a scaled
+        // result is blitted up from a target, so its last pass needs one too
+        int targets = Math.min(scaled ? passes : passes - 1, 2);
+        TextureFormat format = mPool.getIntermediateFormat();
+        for (int i = 0; i < targets; i++) {
+            mTargets[i] = mPool.acquire(width, height, format.getInternalFormat());
+        }
+
+        mGl.viewport(0, 0, width, height);
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mQuad.bind();
+
+        int input = textureId;
+        Variant current = null;
+        for (int pass = 0; pass < passes; pass++) {
+            // Only the first pass can read the external texture; later ones read 2D targets
+            boolean external = pass == 0 && textureMatrix != null;
+            Variant variant = external ? getExternal() : mTexture2D;
+            if (variant != current) {
+                mGl.useProgram(variant.mProgram);
+                if (external) {
+                    mGl.uniformMatrix4fv(variant.mTexMatrixLocation, 1, false, textureMatrix, 0);
+                }
+                current = variant;
+            }
+            UniformBlock params = mParams[pass];
+            if (params == null) {
+                params = new UniformBlock(mGl, PARAMS_LAYOUT);
+                mParams[pass] = params;
+            }
+            params.setVec2(RESOLUTION_OFFSET, width, height);
+            params.setVec2(CENTER_OFFSET, mCenterX, mCenterY);
+            params.setFloat(STRENGTH_OFFSET,
+                    RadialBlurPlan.passStrength(mStrength, mSamplesPerPass, passes, pass));
+            params.setInt(MAX_SAMPLES_OFFSET, mSamplesPerPass);
+            boolean last = pass == passes - 1;
+            // Passes into the intermediates dither for their format; the caller's is exact
+            params.setFloat(DITHER_STEP_OFFSET, last && !scaled ? 0f : format.getDitherStep());
+            if (external) {
+                mTexBasis[0] = textureMatrix[0];
+                mTexBasis[1] = textureMatrix[1];
+                mTexBasis[2] = textureMatrix[4];
+                mTexBasis[3] = textureMatrix[5];
+                params.setMat2(TEX_BASIS_OFFSET, mTexBasis, 0);
+            }
+            params.bind(PARAMS_BINDING);
+            if (last && !scaled) {
+                mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+            } else {
+                mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mTargets[pass % 2].getFramebuffer());
+            }
+            mGl.bindTexture(TextureInput.target(external), input);
+            mQuad.draw();
+            if (!last) {
+                input = mTargets[pass % 2].getTexture();
+            }
+        }
+        mQuad.unbind();
+
+        if (scaled) {
+            mGl.bindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, mTargets[(passes - 1) % 2].getFramebuffer());
+            mGl.bindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, framebuffer);
+            mGl.blitFramebuffer(0, 0, width, height, 0, 0, mWidth, mHeight,
+                    GLES30.GL_COLOR_BUFFER_BIT, GLES30.GL_LINEAR);
+            mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+            mGl.viewport(0, 0, mWidth, mHeight);
+        }
+        for (int i = 0; i < targets; i++) {
+            mPool.release(mTargets[i]);
+            mTargets[i] = null;
+        }
+    }
+
+    private Variant getExternal() {
+        if (mExternal == null) {
+            mExternal = new Variant(mGl, ProgramKey.of(mQuad.getVertexShader(), FRAGMENT_SHADER,
+                    TextureInput.EXTERNAL_DEFINES));
+        }
+        return mExternal;
+    }
+
+    /** Blurs into the filter's own target and returns the texture holding the result. */
+    @Override
+    public int blur(int textureId) {
+        mOutput = mPool.ensure(mOutput, mWidth, mHeight, GLES30.GL_RGBA8);
+        draw(textureId, mOutput.getFramebuffer());
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+        return mOutput.getTexture();
+    }
+
+    @Override
+    public void release() {
+        if (mOutput != null) {
+            mPool.release(mOutput);
+            mOutput = null;
+        }
+        if (mOwnsPool) {
+            mPool.evictAll();
+        }
+        for (UniformBlock params : mParams) {
+            if (params != null) {
+                params.release();
+            }
+        }
+    }
+
+    private static final class Variant {
+        final int mProgram;
+        final int mTexMatrixLocation;
+
+        /** Points the program at texture unit 0 and the parameter binding, once. */
+        Variant(Gl gl, ProgramKey key) {
+            mProgram = ShaderProgramCache.getInstance().getProgram(gl, key);
+            mTexMatrixLocation = gl.getUniformLocation(mProgram, "u_TexMatrix");
+            gl.uniformBlockBinding(mProgram, gl.getUniformBlockIndex(mProgram, "RadialParams"), PARAMS_BINDING);
+            gl.useProgram(mProgram);
+            gl.uniform1i(gl.getUniformLocation(mProgram, "u_Texture"), 0);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.testopengl.blur;
+
+/**
+ * Sample counts and pass lengths for {@link RadialBlurFilter}.
+ *
+ * A pixel is smeared towards the centre over {@code strength} times its distance to the
+ * centre. The number of samples follows that length, one every {@link #SAMPLE_SPACING}
+ * pixels, so pixels near the centre cost a single fetch. In multi-pass mode every pass
+ * takes at most {@code samplesPerPass} samples and each pass covers 1/k of the previous
+ * pass's length, so the later passes fill the gaps left by the earlier ones and N passes
+ * of k samples behave like k^N evenly spaced samples.
+ */
+public final class RadialBlurPlan {
+
+    /** Distance, in pixels, between two samples along the blur direction. */
+    public static final float SAMPLE_SPACING = 1.5f;
+    public static final int MAX_SAMPLES = 64;
+    public static final int MAX_PASSES = 4;
+    /** Largest factor {@link RadialBlurFilter#setDownsample} takes. */
+    public static final int MAX_DOWNSAMPLE = 8;
+
+    private final float mStrength;
+    private final int mSamplesPerPass;
+    private final int mPasses;
+
+    public RadialBlurPlan(float strength, int samplesPerPass, int passes) {
+        mStrength = clampStrength(strength);
+        mSamplesPerPass = clampSamplesPerPass(samplesPerPass);
+        mPasses = clampPasses(passes);
+    }
+
+    static float clampStrength(float strength) {
+        return Math.max(0f, Math.min(1f, strength));
+    }
+
+    static int clampSamplesPerPass(int samplesPerPass) {
+        return Math.max(1, Math.min(MAX_SAMPLES, samplesPerPass));
+    }
+
+    static int clampPasses(int passes) {
+        return Math.max(1, Math.min(MAX_PASSES, passes));
+    }
+
+    public float getStrength() {
+        return mStrength;
+    }
+
+    public int getSamplesPerPass() {
+        return mSamplesPerPass;
+    }
+
+    public int getPasses() {
+        return mPasses;
+    }
+
+    /** Fraction of the distance to the centre covered by {@code pass} (0 is the first). */
+    public float getPassStrength(int pass) {
+        return passStrength(mStrength, mSamplesPerPass, mPasses, pass);
+    }
+
+    /** {@link #getPassStrength} for already clamped values, without a plan. */
+    static float passStrength(float strength, int samplesPerPass, int passes, int pass) {
+        if (passes == 1) {
+            return strength;
+        }
+        return (float) (strength / Math.pow(samplesPerPass, pass));
+    }
+
+    /**
+     * Samples one pass takes for a pixel {@code distance} pixels from the centre. This is
+     * the same formula the fragment shader evaluates.
+     */
+    public int getSampleCount(int pass, float distance) {
+        float length = distance * getPassStrength(pass);
+        int samples = (int) Math.ceil(length / SAMPLE_SPACING);
+        return Math.max(1, Math.min(mSamplesPerPass, samples));
+    }
+
+    /** Upper bound on the distinct positions a pixel is averaged over across all passes. */
+    public int getEffectiveSamples() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.pow(mSamplesPerPass, mPasses));
+    }
+
+    /**
+     * Positions, as fractions of the distance to the centre, that all passes combined
+     * sample for a pixel far enough from the centre to take every sample. Each pass
+     * scales the image towards the centre, so the fractions compose multiplicatively.
+     */
+    public float[] getSamplePositions() {
+        int count = getEffectiveSamples();
+        float[] positions = new float[count];
+        for (int index = 0; index < count; index++) {
+            double remaining = 1.0;
+            int digits = index;
+            for (int pass = 0; pass < mPasses; pass++) {
+                int i = digits % mSamplesPerPass;
+                digits /= mSamplesPerPass;
+                remaining *= 1.0 - getPassStrength(pass) * i / mSamplesPerPass;
+            }
+            positions[index] = (float) (1.0 - remaining);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.testopengl.blur;
+
+/**
+ * Quality levels for {@link RadialBlurFilter}, from best to cheapest, for a
+ * {@link com.example.testopengl.perf.QualityGovernor} to step through. Each level sets
+ * the samples per pass, the pass count and the downsample factor; the first levels cut
+ * samples at full size, the later ones draw at a half and then a quarter of the size.
+ */
+public final class RadialBlurQuality {
+
+    // {samplesPerPass, passes, downsample}
+    private static final int[][] LEVELS = {
+            {16, 2, 1},
+            {8, 2, 1},
+            {16, 2, 2},
+            {8, 2, 2},
+            {8, 2, 4},
+            {4, 2, 4},
+    };
+
+    private RadialBlurQuality() {
+    }
+
+    public static int getLevelCount() {
+        return LEVELS.length;
+    }
+
+    public static void apply(RadialBlurFilter filter, int level) {
+        int[] settings = LEVELS[level];
+        filter.setQuality(settings[0], settings[1]);
+        filter.setDownsample(settings[2]);
+    }
+
+    /**
+     * Upper bound on the level's cost in full-size passes of one sample: the samples of
+     * every pass at the reduced size, plus the blit back up.
+     */
+    static float estimateCost(int level) {
+        int[] settings = LEVELS[level];
+        int downsample = settings[2];
+        float cost = (float) settings[0] * settings[1] / (downsample * downsample);
+        return downsample > 1 ? cost + 1f : cost;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.testopengl.blur;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Young-van Vliet recursive approximation of a Gaussian: a third-order causal filter
+ * followed by the same filter run backwards, once along every row and once along every
+ * column. Each pass is a handful of multiply-adds per sample whatever sigma is, so the
+ * cost per pixel stays flat for the 60-150px radii where the FIR kernels are far too
+ * long. Against the exact Gaussian the result is within about 2% from sigma 2 on, and
+ * closer as sigma grows; below that the FIR kernels are both cheap and exact anyway.
+ *
+ * Edges are clamped like {@code GL_CLAMP_TO_EDGE}. The causal pass starts in the steady
+ * state of the first sample; the anticausal pass starts from the state it would reach
+ * after an infinite run of the last sample, computed once per sigma (Triggs and Sdika's
+ * boundary matrix, here obtained by running the filters on the three unit states).
+ *
+ * Images are single-channel float planes in row-major order, like {@link ReferenceBlur}.
+ * Instances are immutable and can be shared between threads.
+ */
+public final class RecursiveGaussian {
+
+    /** Below this sigma the recursion is not a valid Gaussian fit; blurs copy instead. */
+    public static final float MIN_SIGMA = 0.5f;
+
+    /** Lines blurred by one task of the multithreaded path. */
+    private static final int LINES_PER_TASK = 16;
+
+    private final float mSigma;
+    // Normalised so that out[n] = mGain * in[n] + mA1 * out[n-1] + mA2 * out[n-2] + mA3 * out[n-3]
+    private final double mGain;
+    private final double mA1;
+    private final double mA2;
+    private final double mA3;
+    // Anticausal state after the last sample per unit of causal state deviation, [k][j]
+    private final double[][] mBoundary;
+
+    private RecursiveGaussian(float sigma) {
+        mSigma = sigma;
+        double q;
+        if (sigma >= 2.5f) {
+            q = 0.98711 * sigma - 0.96330;
+        } else {
+            q = 3.97156 - 4.14554 * Math.sqrt(1 - 0.26891 * sigma);
+        }
+        double q2 = q * q;
+        double q3 = q2 * q;
+        double b0 = 1.57825 + 2.44413 * q + 1.4281 * q2 + 0.422205 * q3;
+        double b1 = 2.44413 * q + 2.85619 * q2 + 1.26661 * q3;
+        double b2 = -(1.4281 * q2 + 1.26661 * q3);
+        double b3 = 0.422205 * q3;
+        mA1 = b1 / b0;
+        mA2 = b2 / b0;
+        mA3 = b3 / b0;
+        mGain = 1 - (mA1 + mA2 + mA3);
+        mBoundary = boundaryMatrix((int) Math.ceil(40 * q) + 64);
+    }
+
+    public static RecursiveGaussian forSigma(float sigma) {
+        return new RecursiveGaussian(Math.max(sigma, 0f));
+    }
+
+    /** Radius treated as 3 sigma, like {@link GaussianKernel#forBlurRadius}. */
+    public static RecursiveGaussian forBlurRadius(float blurRadius) {
+        return forSigma(blurRadius / 3f);
+    }
+
+    public float getSigma() {
+        return mSigma;
+    }
+
+    /** Whether the filter blurs at all; see {@link #MIN_SIGMA}. */
+    public boolean isIdentity() {
+        return !(mSigma >= MIN_SIGMA);
+    }
+
+    /**
+     * Response of the anticausal pass, for the three samples past the end, to a unit
+     * deviation of each of the last three causal outputs from the edge value. Both
+     * passes are linear, so any end state is a combination of these.
+     */
+    private double[][] boundaryMatrix(int length) {
+        double[][] matrix = new double[3][3];
+        double[] forward = new double[length + 3];
+        double[] backward = new double[length + 3];
+        for (int j = 0; j < 3; j++) {
+            // forward[0..2] hold the causal outputs at N-3..N-1; the input past N is the
+            // edge value, i.e. zero deviation
+            Arrays.fill(forward, 0);
+            forward[2 - j] = 1;
+            for (int n = 3; n < forward.length; n++) {
+                forward[n] = mA1 * forward[n - 1] + mA2 * forward[n - 2] + mA3 * forward[n - 3];
+            }
+            Arrays.fill(backward, 0);
+            for (int n = length - 1; n >= 3; n--) {
+                backward[n] = mGain * forward[n] + mA1 * backward[n + 1] + mA2 * backward[n + 2] + mA3 * backward[n + 3];
+            }
+            for (int k = 0; k < 3; k++) {
+                matrix[k][j] = backward[3 + k];
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Blurs {@code count} samples in place, starting at {@code offset} and {@code stride}
+     * apart. {@code scratch} must hold {@code count} values; it receives the causal pass.
+     */
+    public void blurLine(float[] data, int offset, int stride, int count, double[] scratch) {
+        if (isIdentity() || count == 0) {
+            return;
+        }
+        double g = mGain;
+        double a1 = mA1;
+        double a2 = mA2;
+        double a3 = mA3;
+
+        // Causal pass; before the first sample the input is constant, so is the output
+        double edge = data[offset];
+        double w1 = edge;
+        double w2 = edge;
+        double w3 = edge;
+        for (int n = 0, i = offset; n < count; n++, i += stride) {
+            double w = g * data[i] + a1 * w1 + a2 * w2 + a3 * w3;
+            scratch[n] = w;
+            w3 = w2;
+            w2 = w1;
+            w1 = w;
+        }
+
+        // Anticausal pass, started from where it would be after an infinite run of the
+        // last sample
+        edge = data[offset + (count - 1) * stride];
+        double d1 = w1 - edge;
+        double d2 = (count > 1 ? scratch[count - 2] : edge) - edge;
+        double d3 = (count > 2 ? scratch[count - 3] : edge) - edge;
+        double y1 = edge + mBoundary[0][0] * d1 + mBoundary[0][1] * d2 + mBoundary[0][2] * d3;
+        double y2 = edge + mBoundary[1][0] * d1 + mBoundary[1][1] * d2 + mBoundary[1][2] * d3;
+        double y3 = edge + mBoundary[2][0] * d1 + mBoundary[2][1] * d2 + mBoundary[2][2] * d3;
+        for (int n = count - 1, i = offset + n * stride; n >= 0; n--, i -= stride) {
+            double y = g * scratch[n] + a1 * y1 + a2 * y2 + a3 * y3;
+            data[i] = (float) y;
+            y3 = y2;
+            y2 = y1;
+            y1 = y;
+        }
+    }
+
+    /** Blurs rows and then columns; returns a new image. */
+    public float[] blur(float[] src, int width, int height) {
+        float[] dst = src.clone();
+        blurRows(dst, width, 0, height);
+        blurColumns(dst, width, height, 0, width);
+        return dst;
+    }
+
+    /**
+     * Blurs {@code image} in place, with the rows and then the columns split into strips
+     * of {@link #LINES_PER_TASK} lines across {@code pool}.
+     */
+    public void blur(float[] image, int width, int height, ForkJoinPool pool) {
+        pool.invoke(new LineTask(image, width, height, true, 0, height));
+        pool.invoke(new LineTask(image, width, height, false, 0, width));
+    }
+
+    private void blurRows(float[] image, int width, int from, int to) {
+        double[] scratch = new double[width];
+        for (int y = from; y < to; y++) {
+            blurLine(image, y * width, 1, width, scratch);
+        }
+    }
+
+    private void blurColumns(float[] image, int width, int height, int from, int to) {
+        double[] scratch = new double[height];
+        for (int x = from; x < to; x++) {
+            blurLine(image, x, width, height, scratch);
+        }
+    }
+
+    private final class LineTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final float[] mImage;
+        private final int mWidth;
+        private final int mHeight;
+        private final boolean mRows;
+        private final int mFrom;
+        private final int mTo;
+
+        LineTask(float[] image, int width, int height, boolean rows, int from, int to) {
+            mImage = image;
+            mWidth = width;
+            mHeight = height;
+            mRows = rows;
+            mFrom = from;
+            mTo = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom <= LINES_PER_TASK) {
+                if (mRows) {
+                    blurRows(mImage, mWidth, mFrom, mTo);
+                } else {
+                    blurColumns(mImage, mWidth, mHeight, mFrom, mTo);
+                }
+                return;
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            invokeAll(new LineTask(mImage, mWidth, mHeight, mRows, mFrom, middle),
+                    new LineTask(mImage, mWidth, mHeight, mRows, middle, mTo));
+        }
+    }
+}
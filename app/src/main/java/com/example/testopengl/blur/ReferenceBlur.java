@@ -0,0 +1,194 @@
+package com.example.testopengl.blur;
+
+/**
+ * Plain Java versions of the GPU blurs, used by the unit tests to check the shaders'
+ * math. Images are single-channel float planes in row-major order, and edges are
+ * clamped the same way {@code GL_CLAMP_TO_EDGE} does.
+ */
+public final class ReferenceBlur {
+
+    private ReferenceBlur() {
+    }
+
+    /** Horizontal pass followed by a vertical pass, like {@link GaussianBlurFilter}. */
+    public static float[] separable(float[] src, int width, int height, GaussianKernel kernel) {
+        return separable(src, width, height, kernel.getWeights());
+    }
+
+    /**
+     * Separable Gaussian without the {@link GaussianKernel#MAX_RADIUS} cap, as the ground
+     * truth for the approximate blurs.
+     */
+    public static float[] gaussian(float[] src, int width, int height, float sigma) {
+        int radius = (int) Math.ceil(3f * sigma);
+        double[] raw = new double[radius + 1];
+        double sum = 0;
+        for (int i = 0; i <= radius; i++) {
+            raw[i] = Math.exp(-(i * i) / (2.0 * sigma * sigma));
+            sum += i == 0 ? raw[i] : 2 * raw[i];
+        }
+        float[] weights = new float[radius + 1];
+        for (int i = 0; i <= radius; i++) {
+            weights[i] = (float) (raw[i] / sum);
+        }
+        return separable(src, width, height, weights);
+    }
+
+    private static float[] separable(float[] src, int width, int height, float[] weights) {
+        float[] tmp = new float[src.length];
+        float[] dst = new float[src.length];
+        int radius = weights.length - 1;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                float sum = 0f;
+                for (int i = -radius; i <= radius; i++) {
+                    sum += src[row + clamp(x + i, width)] * weights[Math.abs(i)];
+                }
+                tmp[row + x] = sum;
+            }
+        }
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float sum = 0f;
+                for (int i = -radius; i <= radius; i++) {
+                    sum += tmp[clamp(y + i, height) * width + x] * weights[Math.abs(i)];
+                }
+                dst[y * width + x] = sum;
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Brute-force 2D convolution with a square window of the same radius. The 2D weights
+     * are evaluated directly from the Gaussian rather than built from the 1D kernel, so
+     * this is an independent check of {@link #separable}.
+     */
+    public static float[] bruteForce(float[] src, int width, int height, float sigma, int radius) {
+        int size = 2 * radius + 1;
+        double[] weights = new double[size * size];
+        double total = 0;
+        for (int dy = -radius; dy <= radius; dy++) {
+            for (int dx = -radius; dx <= radius; dx++) {
+                double w = sigma > 0 ? Math.exp(-(dx * dx + dy * dy) / (2.0 * sigma * sigma)) : 1.0;
+                weights[(dy + radius) * size + dx + radius] = w;
+                total += w;
+            }
+        }
+
+        float[] dst = new float[src.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double sum = 0;
+                for (int dy = -radius; dy <= radius; dy++) {
+                    int row = clamp(y + dy, height) * width;
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        sum += src[row + clamp(x + dx, width)] * weights[(dy + radius) * size + dx + radius];
+                    }
+                }
+                dst[y * width + x] = (float) (sum / total);
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Dual-filter (Kawase) pyramid as run by {@link DualKawaseBlurFilter}: {@code levels}
+     * 2x downsample passes followed by the same number of 2x upsample passes. Sizes round
+     * up at each level, like the GL targets do.
+     */
+    public static float[] dualKawase(float[] src, int width, int height, int levels, float offset) {
+        int[] widths = new int[levels + 1];
+        int[] heights = new int[levels + 1];
+        float[][] images = new float[levels + 1][];
+        widths[0] = width;
+        heights[0] = height;
+        images[0] = src;
+
+        for (int level = 1; level <= levels; level++) {
+            int srcW = widths[level - 1];
+            int srcH = heights[level - 1];
+            int w = (srcW + 1) / 2;
+            int h = (srcH + 1) / 2;
+            float[] dst = new float[w * h];
+            // Sample positions are in source texels; one output texel spans 2 source texels
+            float sx = (float) srcW / w;
+            float sy = (float) srcH / h;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    float u = (x + 0.5f) * sx;
+                    float v = (y + 0.5f) * sy;
+                    float ox = 0.5f * sx * offset;
+                    float oy = 0.5f * sy * offset;
+                    float[] in = images[level - 1];
+                    float sum = 4f * bilinear(in, srcW, srcH, u, v)
+                            + bilinear(in, srcW, srcH, u - ox, v - oy)
+                            + bilinear(in, srcW, srcH, u + ox, v + oy)
+                            + bilinear(in, srcW, srcH, u + ox, v - oy)
+                            + bilinear(in, srcW, srcH, u - ox, v + oy);
+                    dst[y * w + x] = sum / 8f;
+                }
+            }
+            widths[level] = w;
+            heights[level] = h;
+            images[level] = dst;
+        }
+
+        float[] current = images[levels];
+        for (int level = levels; level > 0; level--) {
+            int srcW = widths[level];
+            int srcH = heights[level];
+            int w = widths[level - 1];
+            int h = heights[level - 1];
+            float[] dst = new float[w * h];
+            float sx = (float) srcW / w;
+            float sy = (float) srcH / h;
+            // Offsets are half a texel of the low-resolution input
+            float ox = 0.5f * offset;
+            float oy = 0.5f * offset;
+            for (int y = 0; y < h; y++) {
+                for (int x = 0; x < w; x++) {
+                    float u = (x + 0.5f) * sx;
+                    float v = (y + 0.5f) * sy;
+                    float sum = bilinear(current, srcW, srcH, u - 2f * ox, v)
+                            + bilinear(current, srcW, srcH, u + 2f * ox, v)
+                            + bilinear(current, srcW, srcH, u, v - 2f * oy)
+                            + bilinear(current, srcW, srcH, u, v + 2f * oy)
+                            + 2f * bilinear(current, srcW, srcH, u - ox, v - oy)
+                            + 2f * bilinear(current, srcW, srcH, u + ox, v - oy)
+                            + 2f * bilinear(current, srcW, srcH, u - ox, v + oy)
+                            + 2f * bilinear(current, srcW, srcH, u + ox, v + oy);
+                    dst[y * w + x] = sum / 12f;
+                }
+            }
+            current = dst;
+        }
+        return current;
+    }
+
+    /**
+     * Bilinear fetch at ({@code u}, {@code v}) in texel units (texel centres at i + 0.5),
+     * with GL_LINEAR / GL_CLAMP_TO_EDGE semantics.
+     */
+    static float bilinear(float[] image, int width, int height, float u, float v) {
+        float x = u - 0.5f;
+        float y = v - 0.5f;
+        int x0 = (int) Math.floor(x);
+        int y0 = (int) Math.floor(y);
+        float fx = x - x0;
+        float fy = y - y0;
+        int xa = clamp(x0, width);
+        int xb = clamp(x0 + 1, width);
+        int ya = clamp(y0, height) * width;
+        int yb = clamp(y0 + 1, height) * width;
+        float top = image[ya + xa] * (1f - fx) + image[ya + xb] * fx;
+        float bottom = image[yb + xa] * (1f - fx) + image[yb + xb] * fx;
+        return top * (1f - fy) + bottom * fy;
+    }
+
+    static int clamp(int i, int size) {
+        return i < 0 ? 0 : (i >= size ? size - 1 : i);
+    }
+}
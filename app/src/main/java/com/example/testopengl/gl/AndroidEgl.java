@@ -0,0 +1,119 @@
+package com.example.testopengl.gl;
+
+import android.opengl.EGL14;
+import android.opengl.EGLConfig;
+import android.opengl.EGLContext;
+import android.opengl.EGLDisplay;
+import android.opengl.EGLExt;
+import android.opengl.EGLSurface;
+
+/**
+ * {@link Egl} on the default display with an RGBA8888 config that supports both window
+ * and pbuffer surfaces. The display is initialized once and never terminated, since
+ * terminating it would also pull the contexts of any GLSurfaceView from under it.
+ */
+public final class AndroidEgl implements Egl {
+
+    private static AndroidEgl sInstance;
+
+    private final EGLDisplay mDisplay;
+    private final EGLConfig mConfig;
+
+    public static synchronized AndroidEgl getInstance() {
+        if (sInstance == null) {
+            sInstance = new AndroidEgl();
+        }
+        return sInstance;
+    }
+
+    private AndroidEgl() {
+        mDisplay = EGL14.eglGetDisplay(EGL14.EGL_DEFAULT_DISPLAY);
+        int[] version = new int[2];
+        if (mDisplay == EGL14.EGL_NO_DISPLAY || !EGL14.eglInitialize(mDisplay, version, 0, version, 1)) {
+            throw fail("eglInitialize");
+        }
+        int[] attributes = {
+                EGL14.EGL_RED_SIZE, 8,
+                EGL14.EGL_GREEN_SIZE, 8,
+                EGL14.EGL_BLUE_SIZE, 8,
+                EGL14.EGL_ALPHA_SIZE, 8,
+                EGL14.EGL_RENDERABLE_TYPE, EGLExt.EGL_OPENGL_ES3_BIT_KHR,
+                EGL14.EGL_SURFACE_TYPE, EGL14.EGL_WINDOW_BIT | EGL14.EGL_PBUFFER_BIT,
+                EGL14.EGL_NONE
+        };
+        EGLConfig[] configs = new EGLConfig[1];
+        int[] count = new int[1];
+        if (!EGL14.eglChooseConfig(mDisplay, attributes, 0, configs, 0, 1, count, 0) || count[0] == 0) {
+            throw fail("eglChooseConfig");
+        }
+        mConfig = configs[0];
+    }
+
+    @Override
+    public Object createContext(Object sharedContext) {
+        int[] attributes = {EGL14.EGL_CONTEXT_CLIENT_VERSION, 3, EGL14.EGL_NONE};
+        EGLContext shared = sharedContext != null ? (EGLContext) sharedContext : EGL14.EGL_NO_CONTEXT;
+        EGLContext context = EGL14.eglCreateContext(mDisplay, mConfig, shared, attributes, 0);
+        if (context == null || context == EGL14.EGL_NO_CONTEXT) {
+            throw fail("eglCreateContext");
+        }
+        return context;
+    }
+
+    @Override
+    public Object createWindowSurface(Object nativeWindow) {
+        int[] attributes = {EGL14.EGL_NONE};
+        EGLSurface surface = EGL14.eglCreateWindowSurface(mDisplay, mConfig, nativeWindow, attributes, 0);
+        if (surface == null || surface == EGL14.EGL_NO_SURFACE) {
+            throw fail("eglCreateWindowSurface");
+        }
+        return surface;
+    }
+
+    @Override
+    public Object createPbufferSurface(int width, int height) {
+        int[] attributes = {EGL14.EGL_WIDTH, width, EGL14.EGL_HEIGHT, height, EGL14.EGL_NONE};
+        EGLSurface surface = EGL14.eglCreatePbufferSurface(mDisplay, mConfig, attributes, 0);
+        if (surface == null || surface == EGL14.EGL_NO_SURFACE) {
+            throw fail("eglCreatePbufferSurface");
+        }
+        return surface;
+    }
+
+    @Override
+    public void makeCurrent(Object surface, Object context) {
+        EGLSurface eglSurface = (EGLSurface) surface;
+        if (!EGL14.eglMakeCurrent(mDisplay, eglSurface, eglSurface, (EGLContext) context)) {
+            throw fail("eglMakeCurrent");
+        }
+    }
+
+    @Override
+    public void makeNothingCurrent() {
+        EGL14.eglMakeCurrent(mDisplay, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_SURFACE, EGL14.EGL_NO_CONTEXT);
+    }
+
+    @Override
+    public boolean swapBuffers(Object surface) {
+        return EGL14.eglSwapBuffers(mDisplay, (EGLSurface) surface);
+    }
+
+    @Override
+    public void destroySurface(Object surface) {
+        EGL14.eglDestroySurface(mDisplay, (EGLSurface) surface);
+    }
+
+    @Override
+    public void destroyContext(Object context) {
+        EGL14.eglDestroyContext(mDisplay, (EGLContext) context);
+    }
+
+    @Override
+    public void releaseThread() {
+        EGL14.eglReleaseThread();
+    }
+
+    private static IllegalStateException fail(String call) {
+        return new IllegalStateException(call + " failed: 0x" + Integer.toHexString(EGL14.eglGetError()));
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.testopengl.gl;
+
+import android.opengl.EGL14;
+import android.opengl.GLES30;
+import android.opengl.GLES31;
+
+import java.nio.Buffer;
+
+/**
+ * {@link Gl} backed by the current thread's GL context. The GLES 3.1 calls must only be
+ * made on contexts that support them.
+ */
+public final class AndroidGl implements Gl {
+
+    private static final AndroidGl INSTANCE = new AndroidGl();
+
+    // Scratch for the gen/delete calls and queries; GL is only used from the GL thread
+    private final int[] mName = new int[1];
+    private final int[] mLength = new int[1];
+
+    public static AndroidGl getInstance() {
+        return INSTANCE;
+    }
+
+    private AndroidGl() {
+    }
+
+    @Override
+    public long currentContext() {
+        return EGL14.eglGetCurrentContext().getNativeHandle();
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        GLES30.glGetIntegerv(pname, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public String getString(int name) {
+        return GLES30.glGetString(name);
+    }
+
+    @Override
+    public int genTexture() {
+        GLES30.glGenTextures(1, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public void deleteTexture(int texture) {
+        mName[0] = texture;
+        GLES30.glDeleteTextures(1, mName, 0);
+    }
+
+    @Override
+    public void activeTexture(int unit) {
+        GLES30.glActiveTexture(unit);
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        GLES30.glBindTexture(target, texture);
+    }
+
+    @Override
+    public void texStorage2D(int target, int levels, int internalFormat, int width, int height) {
+        GLES30.glTexStorage2D(target, levels, internalFormat, width, height);
+    }
+
+    @Override
+    public void texParameteri(int target, int pname, int param) {
+        GLES30.glTexParameteri(target, pname, param);
+    }
+
+    @Override
+    public int genFramebuffer() {
+        GLES30.glGenFramebuffers(1, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        mName[0] = framebuffer;
+        GLES30.glDeleteFramebuffers(1, mName, 0);
+    }
+
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+        GLES30.glBindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+        GLES30.glFramebufferTexture2D(target, attachment, textureTarget, texture, level);
+    }
+
+    @Override
+    public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1,
+                                int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        GLES30.glBlitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        GLES30.glReadPixels(x, y, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        GLES30.glReadPixels(x, y, width, height, format, type, offset);
+    }
+
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+        GLES30.glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void scissor(int x, int y, int width, int height) {
+        GLES30.glScissor(x, y, width, height);
+    }
+
+    @Override
+    public void enable(int cap) {
+        GLES30.glEnable(cap);
+    }
+
+    @Override
+    public void disable(int cap) {
+        GLES30.glDisable(cap);
+    }
+
+    @Override
+    public void blendFunc(int sfactor, int dfactor) {
+        GLES30.glBlendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int genBuffer() {
+        GLES30.glGenBuffers(1, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        mName[0] = buffer;
+        GLES30.glDeleteBuffers(1, mName, 0);
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        GLES30.glBindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, int size, Buffer data, int usage) {
+        GLES30.glBufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, int offset, int size, Buffer data) {
+        GLES30.glBufferSubData(target, offset, size, data);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        GLES30.glBindBufferBase(target, index, buffer);
+    }
+
+    @Override
+    public Buffer mapBufferRange(int target, int offset, int length, int access) {
+        return GLES30.glMapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        return GLES30.glUnmapBuffer(target);
+    }
+
+    @Override
+    public int genVertexArray() {
+        GLES30.glGenVertexArrays(1, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public void deleteVertexArray(int vertexArray) {
+        mName[0] = vertexArray;
+        GLES30.glDeleteVertexArrays(1, mName, 0);
+    }
+
+    @Override
+    public void bindVertexArray(int vertexArray) {
+        GLES30.glBindVertexArray(vertexArray);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        GLES30.glVertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        GLES30.glEnableVertexAttribArray(index);
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        GLES30.glDrawArrays(mode, first, count);
+    }
+
+    @Override
+    public int createShader(int type) {
+        return GLES30.glCreateShader(type);
+    }
+
+    @Override
+    public void shaderSource(int shader, String source) {
+        GLES30.glShaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        GLES30.glCompileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(int shader, int pname) {
+        GLES30.glGetShaderiv(shader, pname, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return GLES30.glGetShaderInfoLog(shader);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        GLES30.glDeleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        return GLES30.glCreateProgram();
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        GLES30.glAttachShader(program, shader);
+    }
+
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+        GLES30.glProgramParameteri(program, pname, value);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        GLES30.glLinkProgram(program);
+    }
+
+    @Override
+    public int getProgrami(int program, int pname) {
+        GLES30.glGetProgramiv(program, pname, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public String getProgramInfoLog(int program) {
+        return GLES30.glGetProgramInfoLog(program);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        GLES30.glDeleteProgram(program);
+    }
+
+    @Override
+    public void programBinary(int program, int format, Buffer binary, int length) {
+        GLES30.glProgramBinary(program, format, binary, length);
+    }
+
+    @Override
+    public int getProgramBinary(int program, Buffer binary) {
+        GLES30.glGetProgramBinary(program, binary.remaining(), mLength, 0, mName, 0, binary);
+        return mName[0];
+    }
+
+    @Override
+    public void useProgram(int program) {
+        GLES30.glUseProgram(program);
+    }
+
+    @Override
+    public int getUniformLocation(int program, String name) {
+        return GLES30.glGetUniformLocation(program, name);
+    }
+
+    @Override
+    public int getUniformBlockIndex(int program, String name) {
+        return GLES30.glGetUniformBlockIndex(program, name);
+    }
+
+    @Override
+    public void uniformBlockBinding(int program, int blockIndex, int binding) {
+        GLES30.glUniformBlockBinding(program, blockIndex, binding);
+    }
+
+    @Override
+    public void uniform1i(int location, int x) {
+        GLES30.glUniform1i(location, x);
+    }
+
+    @Override
+    public void uniform1f(int location, float x) {
+        GLES30.glUniform1f(location, x);
+    }
+
+    @Override
+    public void uniform2i(int location, int x, int y) {
+        GLES30.glUniform2i(location, x, y);
+    }
+
+    @Override
+    public void uniform2f(int location, float x, float y) {
+        GLES30.glUniform2f(location, x, y);
+    }
+
+    @Override
+    public void uniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        GLES30.glUniformMatrix2fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void uniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        GLES30.glUniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        GLES31.glDispatchCompute(groupsX, groupsY, groupsZ);
+    }
+
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+        GLES31.glBindImageTexture(unit, texture, level, layered, layer, access, format);
+    }
+
+    @Override
+    public void memoryBarrier(int barriers) {
+        GLES31.glMemoryBarrier(barriers);
+    }
+
+    @Override
+    public int genQuery() {
+        GLES30.glGenQueries(1, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public void deleteQuery(int query) {
+        mName[0] = query;
+        GLES30.glDeleteQueries(1, mName, 0);
+    }
+
+    @Override
+    public void beginQuery(int target, int query) {
+        GLES30.glBeginQuery(target, query);
+    }
+
+    @Override
+    public void endQuery(int target) {
+        GLES30.glEndQuery(target);
+    }
+
+    @Override
+    public int getQueryObjectui(int query, int pname) {
+        GLES30.glGetQueryObjectuiv(query, pname, mName, 0);
+        return mName[0];
+    }
+
+    @Override
+    public long fenceSync() {
+        return GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeoutNanos) {
+        return GLES30.glClientWaitSync(sync, flags, timeoutNanos);
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        GLES30.glDeleteSync(sync);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads rendered pixels back to the CPU without stalling the pipeline, e.g. for a
+ * snapshot or a thumbnail of the blurred output.
+ *
+ * {@link #request} reads the framebuffer into a pixel-pack buffer, which only queues the
+ * copy on the GPU, and inserts a fence after it. {@link #poll()}, called once per frame,
+ * checks the fences without waiting and maps each buffer whose fence has signaled,
+ * usually one or two frames later. Results come in the order they were requested; up to
+ * {@link #RING_SIZE} may be in flight, each in a buffer of its own that is kept for the
+ * next request in that slot.
+ *
+ * Must be used on the GL thread.
+ */
+public final class AsyncReadback {
+
+    /** Readbacks in flight; the oldest slot is reused once its result is delivered. */
+    static final int RING_SIZE = 3;
+
+    static final int BYTES_PER_PIXEL = 4;
+
+    public interface Callback {
+        /**
+         * Called from {@link #poll()} with the pixels as RGBA bytes, rows from the bottom
+         * up. {@code pixels} is a direct buffer over the mapped pixel-pack buffer and is
+         * only valid during the call; copy out what is needed, e.g. with
+         * {@code Bitmap.copyPixelsFromBuffer}.
+         */
+        void onPixels(ByteBuffer pixels, int width, int height);
+    }
+
+    private final Gl mGl;
+    private final int[] mBuffers = new int[RING_SIZE];
+    private final int[] mCapacities = new int[RING_SIZE];
+    private final long[] mFences = new long[RING_SIZE];
+    private final int[] mWidths = new int[RING_SIZE];
+    private final int[] mHeights = new int[RING_SIZE];
+    private final Callback[] mCallbacks = new Callback[RING_SIZE];
+    // Readbacks in the ring: mHead is the oldest, mCount of them are pending
+    private int mHead;
+    private int mCount;
+    private int mDeliveredCount;
+    private int mFailedCount;
+
+    public AsyncReadback(Gl gl) {
+        mGl = gl;
+    }
+
+    /**
+     * Starts reading the {@code width} by {@code height} pixels at ({@code x}, {@code y})
+     * of {@code framebuffer}, 0 being the current surface. Leaves the read framebuffer
+     * bound.
+     *
+     * @return false, without reading, if {@link #RING_SIZE} readbacks are in flight
+     */
+    public boolean request(int framebuffer, int x, int y, int width, int height, Callback callback) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Bad size " + width + "x" + height);
+        }
+        if (mCount == RING_SIZE) {
+            return false;
+        }
+        int slot = (mHead + mCount) % RING_SIZE;
+        int size = width * height * BYTES_PER_PIXEL;
+        if (mBuffers[slot] == 0) {
+            mBuffers[slot] = mGl.genBuffer();
+        }
+        mGl.bindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mBuffers[slot]);
+        if (mCapacities[slot] < size) {
+            mGl.bufferData(GLES30.GL_PIXEL_PACK_BUFFER, size, null, GLES30.GL_STREAM_READ);
+            mCapacities[slot] = size;
+        }
+        mGl.bindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, framebuffer);
+        mGl.readPixels(x, y, width, height, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, 0);
+        // Bound, it would turn every later readPixels into one into the buffer
+        mGl.bindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        mFences[slot] = mGl.fenceSync();
+        mWidths[slot] = width;
+        mHeights[slot] = height;
+        mCallbacks[slot] = callback;
+        mCount++;
+        return true;
+    }
+
+    /**
+     * Delivers every readback that has finished, oldest first, without waiting for the
+     * ones that have not.
+     *
+     * @return the number delivered
+     */
+    public int poll() {
+        int delivered = 0;
+        while (mCount > 0) {
+            int slot = mHead;
+            if (mGl.clientWaitSync(mFences[slot], 0, 0) == GLES30.GL_TIMEOUT_EXPIRED) {
+                break;
+            }
+            mGl.deleteSync(mFences[slot]);
+            mFences[slot] = 0;
+            Callback callback = mCallbacks[slot];
+            mCallbacks[slot] = null;
+            mHead = (mHead + 1) % RING_SIZE;
+            mCount--;
+            deliver(slot, callback);
+            delivered++;
+        }
+        return delivered;
+    }
+
+    private void deliver(int slot, Callback callback) {
+        int width = mWidths[slot];
+        int height = mHeights[slot];
+        mGl.bindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mBuffers[slot]);
+        ByteBuffer pixels = (ByteBuffer) mGl.mapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0,
+                width * height * BYTES_PER_PIXEL, GLES30.GL_MAP_READ_BIT);
+        if (pixels != null) {
+            callback.onPixels(pixels, width, height);
+            mGl.unmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+            mDeliveredCount++;
+        } else {
+            mFailedCount++;
+        }
+        mGl.bindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+    }
+
+    /** Readbacks requested and not yet delivered. */
+    public int getPendingCount() {
+        return mCount;
+    }
+
+    public int getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /** Readbacks whose buffer could not be mapped; their callbacks were not called. */
+    public int getFailedCount() {
+        return mFailedCount;
+    }
+
+    /**
+     * Deletes the buffers and fences and drops the pending readbacks without calling
+     * them back; for when the context is still current.
+     */
+    public void release() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (mBuffers[i] != 0) {
+                mGl.deleteBuffer(mBuffers[i]);
+                mBuffers[i] = 0;
+                mCapacities[i] = 0;
+            }
+            if (mFences[i] != 0) {
+                mGl.deleteSync(mFences[i]);
+                mFences[i] = 0;
+            }
+            mCallbacks[i] = null;
+        }
+        mHead = 0;
+        mCount = 0;
+    }
+}
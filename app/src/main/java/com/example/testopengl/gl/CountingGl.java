@@ -0,0 +1,500 @@
+package com.example.testopengl.gl;
+
+import java.nio.Buffer;
+
+/**
+ * {@link Gl} decorator that counts the calls going through it, e.g. to compare the
+ * driver work per frame before and after a change:
+ * <pre>
+ * counting.reset();
+ * graph.draw();
+ * Log.d(TAG, counting.getCallCount() + " calls, " + counting.getDrawCount() + " draws");
+ * </pre>
+ * The filters, the graph and the shared quad make their calls through the
+ * {@link Gl} of their {@link RenderTargetPool}, so building the pool on a counting
+ * wrapper sees a whole frame. Static {@code GLES30} calls, such as the renderers' own
+ * clears, are not seen.
+ */
+public final class CountingGl implements Gl {
+
+    private final Gl mGl;
+    private int mCallCount;
+    private int mDrawCount;
+    private int mBindCount;
+    private int mUniformCount;
+
+    public CountingGl(Gl gl) {
+        mGl = gl;
+    }
+
+    /** Calls since the last {@link #reset()}. */
+    public int getCallCount() {
+        return mCallCount;
+    }
+
+    /** Draws, dispatches and blits since the last {@link #reset()}. */
+    public int getDrawCount() {
+        return mDrawCount;
+    }
+
+    /** Bind calls of any object type, programs included, since the last {@link #reset()}. */
+    public int getBindCount() {
+        return mBindCount;
+    }
+
+    /** Uniform updates since the last {@link #reset()}. */
+    public int getUniformCount() {
+        return mUniformCount;
+    }
+
+    public void reset() {
+        mCallCount = 0;
+        mDrawCount = 0;
+        mBindCount = 0;
+        mUniformCount = 0;
+    }
+
+    @Override
+    public int genTexture() {
+        mCallCount++;
+        return mGl.genTexture();
+    }
+
+    @Override
+    public void deleteTexture(int texture) {
+        mCallCount++;
+        mGl.deleteTexture(texture);
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindTexture(target, texture);
+    }
+
+    @Override
+    public void texStorage2D(int target, int levels, int internalFormat, int width, int height) {
+        mCallCount++;
+        mGl.texStorage2D(target, levels, internalFormat, width, height);
+    }
+
+    @Override
+    public void texParameteri(int target, int pname, int param) {
+        mCallCount++;
+        mGl.texParameteri(target, pname, param);
+    }
+
+    @Override
+    public int genFramebuffer() {
+        mCallCount++;
+        return mGl.genFramebuffer();
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        mCallCount++;
+        mGl.deleteFramebuffer(framebuffer);
+    }
+
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+        mCallCount++;
+        mGl.framebufferTexture2D(target, attachment, textureTarget, texture, level);
+    }
+
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+        mCallCount++;
+        mGl.viewport(x, y, width, height);
+    }
+
+    @Override
+    public void scissor(int x, int y, int width, int height) {
+        mCallCount++;
+        mGl.scissor(x, y, width, height);
+    }
+
+    @Override
+    public void enable(int cap) {
+        mCallCount++;
+        mGl.enable(cap);
+    }
+
+    @Override
+    public void disable(int cap) {
+        mCallCount++;
+        mGl.disable(cap);
+    }
+
+    @Override
+    public void blendFunc(int sfactor, int dfactor) {
+        mCallCount++;
+        mGl.blendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int genBuffer() {
+        mCallCount++;
+        return mGl.genBuffer();
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        mCallCount++;
+        mGl.deleteBuffer(buffer);
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, int size, Buffer data, int usage) {
+        mCallCount++;
+        mGl.bufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, int offset, int size, Buffer data) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.bufferSubData(target, offset, size, data);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindBufferBase(target, index, buffer);
+    }
+
+    @Override
+    public Buffer mapBufferRange(int target, int offset, int length, int access) {
+        mCallCount++;
+        return mGl.mapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        mCallCount++;
+        return mGl.unmapBuffer(target);
+    }
+
+    @Override
+    public int genVertexArray() {
+        mCallCount++;
+        return mGl.genVertexArray();
+    }
+
+    @Override
+    public void deleteVertexArray(int vertexArray) {
+        mCallCount++;
+        mGl.deleteVertexArray(vertexArray);
+    }
+
+    @Override
+    public void bindVertexArray(int vertexArray) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindVertexArray(vertexArray);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        mCallCount++;
+        mGl.vertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        mCallCount++;
+        mGl.enableVertexAttribArray(index);
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        mCallCount++;
+        mDrawCount++;
+        mGl.drawArrays(mode, first, count);
+    }
+
+    @Override
+    public long currentContext() {
+        mCallCount++;
+        return mGl.currentContext();
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        mCallCount++;
+        return mGl.getInteger(pname);
+    }
+
+    @Override
+    public String getString(int name) {
+        mCallCount++;
+        return mGl.getString(name);
+    }
+
+    @Override
+    public void activeTexture(int unit) {
+        mCallCount++;
+        mGl.activeTexture(unit);
+    }
+
+    @Override
+    public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1,
+                                int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        mCallCount++;
+        mDrawCount++;
+        mGl.blitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        mCallCount++;
+        mGl.readPixels(x, y, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        mCallCount++;
+        mGl.readPixels(x, y, width, height, format, type, offset);
+    }
+
+    @Override
+    public int createShader(int type) {
+        mCallCount++;
+        return mGl.createShader(type);
+    }
+
+    @Override
+    public void shaderSource(int shader, String source) {
+        mCallCount++;
+        mGl.shaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        mCallCount++;
+        mGl.compileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(int shader, int pname) {
+        mCallCount++;
+        return mGl.getShaderi(shader, pname);
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader) {
+        mCallCount++;
+        return mGl.getShaderInfoLog(shader);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        mCallCount++;
+        mGl.deleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        mCallCount++;
+        return mGl.createProgram();
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        mCallCount++;
+        mGl.attachShader(program, shader);
+    }
+
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+        mCallCount++;
+        mGl.programParameteri(program, pname, value);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        mCallCount++;
+        mGl.linkProgram(program);
+    }
+
+    @Override
+    public int getProgrami(int program, int pname) {
+        mCallCount++;
+        return mGl.getProgrami(program, pname);
+    }
+
+    @Override
+    public String getProgramInfoLog(int program) {
+        mCallCount++;
+        return mGl.getProgramInfoLog(program);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        mCallCount++;
+        mGl.deleteProgram(program);
+    }
+
+    @Override
+    public void programBinary(int program, int format, Buffer binary, int length) {
+        mCallCount++;
+        mGl.programBinary(program, format, binary, length);
+    }
+
+    @Override
+    public int getProgramBinary(int program, Buffer binary) {
+        mCallCount++;
+        return mGl.getProgramBinary(program, binary);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        mCallCount++;
+        mBindCount++;
+        mGl.useProgram(program);
+    }
+
+    @Override
+    public int getUniformLocation(int program, String name) {
+        mCallCount++;
+        return mGl.getUniformLocation(program, name);
+    }
+
+    @Override
+    public int getUniformBlockIndex(int program, String name) {
+        mCallCount++;
+        return mGl.getUniformBlockIndex(program, name);
+    }
+
+    @Override
+    public void uniformBlockBinding(int program, int blockIndex, int binding) {
+        mCallCount++;
+        mGl.uniformBlockBinding(program, blockIndex, binding);
+    }
+
+    @Override
+    public void uniform1i(int location, int x) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniform1i(location, x);
+    }
+
+    @Override
+    public void uniform1f(int location, float x) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniform1f(location, x);
+    }
+
+    @Override
+    public void uniform2i(int location, int x, int y) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniform2i(location, x, y);
+    }
+
+    @Override
+    public void uniform2f(int location, float x, float y) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniform2f(location, x, y);
+    }
+
+    @Override
+    public void uniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniformMatrix2fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void uniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mCallCount++;
+        mUniformCount++;
+        mGl.uniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        mCallCount++;
+        mDrawCount++;
+        mGl.dispatchCompute(groupsX, groupsY, groupsZ);
+    }
+
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+        mCallCount++;
+        mBindCount++;
+        mGl.bindImageTexture(unit, texture, level, layered, layer, access, format);
+    }
+
+    @Override
+    public void memoryBarrier(int barriers) {
+        mCallCount++;
+        mGl.memoryBarrier(barriers);
+    }
+
+    @Override
+    public int genQuery() {
+        mCallCount++;
+        return mGl.genQuery();
+    }
+
+    @Override
+    public void deleteQuery(int query) {
+        mCallCount++;
+        mGl.deleteQuery(query);
+    }
+
+    @Override
+    public void beginQuery(int target, int query) {
+        mCallCount++;
+        mGl.beginQuery(target, query);
+    }
+
+    @Override
+    public void endQuery(int target) {
+        mCallCount++;
+        mGl.endQuery(target);
+    }
+
+    @Override
+    public int getQueryObjectui(int query, int pname) {
+        mCallCount++;
+        return mGl.getQueryObjectui(query, pname);
+    }
+
+    @Override
+    public long fenceSync() {
+        mCallCount++;
+        return mGl.fenceSync();
+    }
+
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeoutNanos) {
+        mCallCount++;
+        return mGl.clientWaitSync(sync, flags, timeoutNanos);
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        mCallCount++;
+        mGl.deleteSync(sync);
+    }
+}
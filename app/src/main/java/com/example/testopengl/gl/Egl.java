@@ -0,0 +1,41 @@
+package com.example.testopengl.gl;
+
+/**
+ * The EGL calls a {@link RenderThread} makes, as an interface so that its queue and
+ * lifecycle can run against a fake on the JVM. {@link AndroidEgl} forwards to
+ * {@link android.opengl.EGL14}.
+ *
+ * Contexts and surfaces are opaque handles owned by the implementation. Calls that fail
+ * throw {@link IllegalStateException}, apart from {@link #swapBuffers}, whose failure
+ * usually just means the window has gone.
+ */
+public interface Egl {
+
+    /**
+     * Creates a GLES 3 context.
+     *
+     * @param sharedContext context to share textures and buffers with, or null
+     */
+    Object createContext(Object sharedContext);
+
+    /** @param nativeWindow a {@code Surface}, {@code SurfaceHolder} or {@code SurfaceTexture} */
+    Object createWindowSurface(Object nativeWindow);
+
+    Object createPbufferSurface(int width, int height);
+
+    /** Makes {@code context} current on the calling thread, drawing to {@code surface}. */
+    void makeCurrent(Object surface, Object context);
+
+    /** Leaves the calling thread without a current context. */
+    void makeNothingCurrent();
+
+    /** @return false if the surface can no longer be drawn to */
+    boolean swapBuffers(Object surface);
+
+    void destroySurface(Object surface);
+
+    void destroyContext(Object context);
+
+    /** Frees the calling thread's EGL state; call last on a thread that used EGL. */
+    void releaseThread();
+}
@@ -0,0 +1,87 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+/**
+ * A framebuffer with a single 2D color texture attached. The texture has immutable
+ * storage, linear filtering and edge clamping, so it can be sampled by the next pass
+ * as it is.
+ *
+ * Normally handed out by a {@link RenderTargetPool} and given back to it with
+ * {@link RenderTargetPool#release}, rather than created and deleted directly.
+ */
+public final class FrameBufferObject {
+
+    private final Gl mGl;
+    private final int mFramebuffer;
+    private final int mTexture;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mInternalFormat;
+
+    FrameBufferObject(Gl gl, int width, int height, int internalFormat) {
+        mGl = gl;
+        mWidth = width;
+        mHeight = height;
+        mInternalFormat = internalFormat;
+
+        mTexture = gl.genTexture();
+        gl.bindTexture(GLES30.GL_TEXTURE_2D, mTexture);
+        gl.texStorage2D(GLES30.GL_TEXTURE_2D, 1, internalFormat, width, height);
+        gl.texParameteri(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MIN_FILTER, GLES30.GL_LINEAR);
+        gl.texParameteri(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_LINEAR);
+        gl.texParameteri(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_WRAP_S, GLES30.GL_CLAMP_TO_EDGE);
+        gl.texParameteri(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_WRAP_T, GLES30.GL_CLAMP_TO_EDGE);
+        gl.bindTexture(GLES30.GL_TEXTURE_2D, 0);
+
+        mFramebuffer = gl.genFramebuffer();
+        gl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+        gl.framebufferTexture2D(GLES30.GL_FRAMEBUFFER, GLES30.GL_COLOR_ATTACHMENT0,
+                GLES30.GL_TEXTURE_2D, mTexture, 0);
+        gl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+    }
+
+    public int getFramebuffer() {
+        return mFramebuffer;
+    }
+
+    public int getTexture() {
+        return mTexture;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getInternalFormat() {
+        return mInternalFormat;
+    }
+
+    /** GPU memory held by the color texture, in bytes. */
+    public long getByteSize() {
+        return (long) mWidth * mHeight * RenderTargetPool.bytesPerPixel(mInternalFormat);
+    }
+
+    /** Binds the framebuffer and sets the viewport to cover it. */
+    public void bind() {
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+        mGl.viewport(0, 0, mWidth, mHeight);
+    }
+
+    public void unbind() {
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+    }
+
+    boolean matches(int width, int height, int internalFormat) {
+        return mWidth == width && mHeight == height && mInternalFormat == internalFormat;
+    }
+
+    void delete() {
+        mGl.deleteFramebuffer(mFramebuffer);
+        mGl.deleteTexture(mTexture);
+    }
+}
@@ -0,0 +1,281 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+import android.util.Log;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Full-screen geometry shared by all post-processing passes of a GL context. Passes link
+ * their fragment shader with {@link #getVertexShader()}, which outputs {@code v_TexCoord}
+ * (0..1, origin bottom-left); linked with {@link TextureInput#EXTERNAL_DEFINES} it also
+ * applies the {@code u_TexMatrix} transform.
+ *
+ * By default a pass draws a single triangle that covers the viewport, generated from
+ * {@code gl_VertexID} without any vertex buffer. Unlike a two-triangle quad it has no
+ * diagonal seam whose pixels are shaded twice, and tile-based GPUs bin one primitive
+ * instead of two. {@link Mode#QUAD} keeps the quad, read from a buffer object through a
+ * vertex array object, for drivers that mishandle attribute-less draws.
+ * {@link #onContextCreated()} picks the mode for the new context by linking the
+ * triangle's vertex shader once and falling back to the quad if that fails;
+ * {@link #setMode} overrides the probe.
+ *
+ * Both modes are created on first use, so a pass costs at most a bind and a draw. There
+ * is one instance per {@link Gl}, which passes get from their {@link RenderTargetPool}:
+ * {@link AndroidGl} for the app, a {@link CountingGl} or a fake when the calls are
+ * counted or tested. Like {@link ShaderProgramCache} an instance assumes one GL context
+ * at a time; call {@link #onContextCreated()} when a new one is created.
+ */
+public final class FullScreenQuad {
+
+    private static final String TAG = "FullScreenQuad";
+
+    public enum Mode {
+        /** One oversized triangle from gl_VertexID, no vertex input. */
+        TRIANGLE,
+        /** A four-vertex triangle strip from a vertex buffer. */
+        QUAD
+    }
+
+    /**
+     * Vertex shader of {@link Mode#TRIANGLE}. Vertices 0, 1 and 2 land on (-1, -1),
+     * (3, -1) and (-1, 3); the part outside the viewport is clipped, and the texture
+     * coordinates interpolate to exactly 0..1 across the part inside.
+     */
+    public static final String VERTEX_SHADER =
+            "#version 300 es\n" +
+                    "out vec2 v_TexCoord;\n" +
+                    "#ifdef EXTERNAL_INPUT\n" +
+                    "uniform mat4 u_TexMatrix;\n" +
+                    "#endif\n" +
+                    "void main() {\n" +
+                    "    vec2 corner = vec2(float((gl_VertexID << 1) & 2), float(gl_VertexID & 2));\n" +
+                    "    gl_Position = vec4(corner * 2.0 - 1.0, 0.0, 1.0);\n" +
+                    "#ifdef EXTERNAL_INPUT\n" +
+                    "    v_TexCoord = (u_TexMatrix * vec4(corner, 0.0, 1.0)).xy;\n" +
+                    "#else\n" +
+                    "    v_TexCoord = corner;\n" +
+                    "#endif\n" +
+                    "}\n";
+
+    /**
+     * Vertex shader of {@link Mode#QUAD}. Positions come from attribute location 0 and
+     * texture coordinates from location 1.
+     */
+    public static final String QUAD_VERTEX_SHADER =
+            "#version 300 es\n" +
+                    "layout(location = 0) in vec4 a_Position;\n" +
+                    "layout(location = 1) in vec2 a_TexCoord;\n" +
+                    "out vec2 v_TexCoord;\n" +
+                    "#ifdef EXTERNAL_INPUT\n" +
+                    "uniform mat4 u_TexMatrix;\n" +
+                    "#endif\n" +
+                    "void main() {\n" +
+                    "    gl_Position = a_Position;\n" +
+                    "#ifdef EXTERNAL_INPUT\n" +
+                    "    v_TexCoord = (u_TexMatrix * vec4(a_TexCoord, 0.0, 1.0)).xy;\n" +
+                    "#else\n" +
+                    "    v_TexCoord = a_TexCoord;\n" +
+                    "#endif\n" +
+                    "}\n";
+
+    public static final int POSITION_LOCATION = 0;
+    public static final int TEX_COORD_LOCATION = 1;
+
+    private static final float[] QUAD_COORDS = {
+            // x, y, u, v
+            -1f, -1f, 0f, 0f,
+            1f, -1f, 1f, 0f,
+            -1f, 1f, 0f, 1f,
+            1f, 1f, 1f, 1f
+    };
+    private static final int QUAD_STRIDE = 4 * 4;
+
+    // Only linked against VERTEX_SHADER by probeMode()
+    private static final String PROBE_FRAGMENT_SHADER =
+            "#version 300 es\n" +
+                    "precision mediump float;\n" +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    "void main() {\n" +
+                    "    o_Color = vec4(v_TexCoord, 0.0, 1.0);\n" +
+                    "}\n";
+
+    // Weak keys, and quads refer to their Gl weakly, so that the quads of wrappers made per
+    // context, and of fakes, go once nothing else uses the Gl
+    private static final Map<Gl, FullScreenQuad> INSTANCES = new WeakHashMap<>();
+
+    private final WeakReference<Gl> mGl;
+    private Mode mMode = Mode.TRIANGLE;
+    // Set by setMode(); null lets onContextCreated() probe
+    private Mode mForcedMode;
+    private int mVertexArray;
+    private int mBuffer;
+
+    /** The quad of {@link AndroidGl}. */
+    public static FullScreenQuad getInstance() {
+        return getInstance(AndroidGl.getInstance());
+    }
+
+    /** The quad whose calls go through {@code gl}. */
+    public static synchronized FullScreenQuad getInstance(Gl gl) {
+        FullScreenQuad quad = INSTANCES.get(gl);
+        if (quad == null) {
+            quad = new FullScreenQuad(gl);
+            INSTANCES.put(gl, quad);
+        }
+        return quad;
+    }
+
+    FullScreenQuad(Gl gl) {
+        mGl = new WeakReference<>(gl);
+    }
+
+    /**
+     * Switches between the triangle and the quad, for this and later contexts, or with
+     * null goes back to probing. Programs linked with the other mode's vertex shader do
+     * not draw correctly afterwards, so call this before any pass links.
+     */
+    public void setMode(Mode mode) {
+        mForcedMode = mode;
+        if (mode != null) {
+            mMode = mode;
+        }
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /** Vertex shader for the current mode. */
+    public String getVertexShader() {
+        return mMode == Mode.TRIANGLE ? VERTEX_SHADER : QUAD_VERTEX_SHADER;
+    }
+
+    /**
+     * Forgets the buffer and vertex array of the previous context, which died with it,
+     * and picks the mode for the new one. Call from onSurfaceCreated, before any pass
+     * links its programs.
+     */
+    public void onContextCreated() {
+        mVertexArray = 0;
+        mBuffer = 0;
+        if (mForcedMode != null) {
+            mMode = mForcedMode;
+            return;
+        }
+        mMode = probeMode(gl());
+        if (mMode == Mode.QUAD) {
+            Log.w(TAG, "gl_VertexID triangle does not link on "
+                    + gl().getString(GLES30.GL_RENDERER) + ", drawing a quad");
+        }
+    }
+
+    /**
+     * {@link Mode#TRIANGLE} if a program with its vertex shader compiles and links in the
+     * current context, {@link Mode#QUAD} otherwise. Costs one link per context.
+     */
+    static Mode probeMode(Gl gl) {
+        int vertexShader = compile(gl, GLES30.GL_VERTEX_SHADER, VERTEX_SHADER);
+        int fragmentShader = compile(gl, GLES30.GL_FRAGMENT_SHADER, PROBE_FRAGMENT_SHADER);
+        boolean linked = false;
+        if (vertexShader != 0 && fragmentShader != 0) {
+            int program = gl.createProgram();
+            gl.attachShader(program, vertexShader);
+            gl.attachShader(program, fragmentShader);
+            gl.linkProgram(program);
+            linked = gl.getProgrami(program, GLES30.GL_LINK_STATUS) == GLES30.GL_TRUE;
+            gl.deleteProgram(program);
+        }
+        if (vertexShader != 0) {
+            gl.deleteShader(vertexShader);
+        }
+        if (fragmentShader != 0) {
+            gl.deleteShader(fragmentShader);
+        }
+        return linked ? Mode.TRIANGLE : Mode.QUAD;
+    }
+
+    /** Like {@link GlUtil#loadShader}, but returns 0 instead of throwing. */
+    private static int compile(Gl gl, int type, String source) {
+        int shader = gl.createShader(type);
+        gl.shaderSource(shader, source);
+        gl.compileShader(shader);
+        if (gl.getShaderi(shader, GLES30.GL_COMPILE_STATUS) != GLES30.GL_TRUE) {
+            gl.deleteShader(shader);
+            return 0;
+        }
+        return shader;
+    }
+
+    /** Binds the quad's vertex array; the triangle needs no vertex state. */
+    public void bind() {
+        if (mMode == Mode.TRIANGLE) {
+            return;
+        }
+        if (mVertexArray == 0) {
+            create();
+        }
+        gl().bindVertexArray(mVertexArray);
+    }
+
+    public void draw() {
+        if (mMode == Mode.TRIANGLE) {
+            gl().drawArrays(GLES30.GL_TRIANGLES, 0, 3);
+        } else {
+            gl().drawArrays(GLES30.GL_TRIANGLE_STRIP, 0, 4);
+        }
+    }
+
+    public void unbind() {
+        if (mMode == Mode.QUAD) {
+            gl().bindVertexArray(0);
+        }
+    }
+
+    /** Deletes the buffer and vertex array; the next {@link #bind()} recreates them. */
+    public void release() {
+        if (mVertexArray != 0) {
+            Gl gl = gl();
+            gl.deleteVertexArray(mVertexArray);
+            gl.deleteBuffer(mBuffer);
+            mVertexArray = 0;
+            mBuffer = 0;
+        }
+    }
+
+    private void create() {
+        FloatBuffer coords = ByteBuffer.allocateDirect(QUAD_COORDS.length * 4)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        coords.put(QUAD_COORDS).position(0);
+
+        Gl gl = gl();
+        mVertexArray = gl.genVertexArray();
+        mBuffer = gl.genBuffer();
+        gl.bindVertexArray(mVertexArray);
+        gl.bindBuffer(GLES30.GL_ARRAY_BUFFER, mBuffer);
+        gl.bufferData(GLES30.GL_ARRAY_BUFFER, QUAD_COORDS.length * 4, coords, GLES30.GL_STATIC_DRAW);
+        gl.vertexAttribPointer(POSITION_LOCATION, 2, GLES30.GL_FLOAT, false, QUAD_STRIDE, 0);
+        gl.enableVertexAttribArray(POSITION_LOCATION);
+        gl.vertexAttribPointer(TEX_COORD_LOCATION, 2, GLES30.GL_FLOAT, false, QUAD_STRIDE, 2 * 4);
+        gl.enableVertexAttribArray(TEX_COORD_LOCATION);
+        // The vertex array keeps the buffer; GL_ARRAY_BUFFER itself is not part of its state
+        gl.bindVertexArray(0);
+        gl.bindBuffer(GLES30.GL_ARRAY_BUFFER, 0);
+    }
+
+    private Gl gl() {
+        Gl gl = mGl.get();
+        if (gl == null) {
+            // Only a pass that outlived the Gl it was made with can get here
+            throw new IllegalStateException("The quad's Gl is gone");
+        }
+        return gl;
+    }
+}
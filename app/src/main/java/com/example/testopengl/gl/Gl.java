@@ -0,0 +1,180 @@
+package com.example.testopengl.gl;
+
+import java.nio.Buffer;
+
+/**
+ * The subset of GLES 3.0/3.1 that the filters, the graph and the GL resource bookkeeping
+ * use, as an interface so that they can run against a fake on the JVM and be wrapped,
+ * e.g. by {@link CountingGl}. {@link AndroidGl} forwards to {@link android.opengl.GLES30}
+ * and {@link android.opengl.GLES31}.
+ *
+ * Object names are returned and taken one at a time, and queries return their single
+ * value; implementations must not allocate per call.
+ */
+public interface Gl {
+
+    /**
+     * Identifies the context that calls currently go to. Objects such as programs are
+     * only valid in the context they were created in.
+     */
+    long currentContext();
+
+    int getInteger(int pname);
+
+    String getString(int name);
+
+    int genTexture();
+
+    void deleteTexture(int texture);
+
+    void activeTexture(int unit);
+
+    void bindTexture(int target, int texture);
+
+    void texStorage2D(int target, int levels, int internalFormat, int width, int height);
+
+    void texParameteri(int target, int pname, int param);
+
+    int genFramebuffer();
+
+    void deleteFramebuffer(int framebuffer);
+
+    void bindFramebuffer(int target, int framebuffer);
+
+    void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level);
+
+    void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1,
+                         int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter);
+
+    /** Reads from the bound read framebuffer into {@code pixels}; waits for the GPU. */
+    void readPixels(int x, int y, int width, int height, int format, int type, Buffer pixels);
+
+    /**
+     * Reads into the buffer bound to GL_PIXEL_PACK_BUFFER, at {@code offset}; returns
+     * without waiting for the GPU.
+     */
+    void readPixels(int x, int y, int width, int height, int format, int type, int offset);
+
+    void viewport(int x, int y, int width, int height);
+
+    /** Takes effect while GL_SCISSOR_TEST is enabled. */
+    void scissor(int x, int y, int width, int height);
+
+    void enable(int cap);
+
+    void disable(int cap);
+
+    void blendFunc(int sfactor, int dfactor);
+
+    int genBuffer();
+
+    void deleteBuffer(int buffer);
+
+    void bindBuffer(int target, int buffer);
+
+    void bufferData(int target, int size, Buffer data, int usage);
+
+    void bufferSubData(int target, int offset, int size, Buffer data);
+
+    /** Binds {@code buffer} to the indexed binding point, e.g. of GL_UNIFORM_BUFFER. */
+    void bindBufferBase(int target, int index, int buffer);
+
+    /** Maps part of the buffer bound to {@code target}; null if that fails. */
+    Buffer mapBufferRange(int target, int offset, int length, int access);
+
+    /** Returns false if the mapped contents were lost while mapped. */
+    boolean unmapBuffer(int target);
+
+    int genVertexArray();
+
+    void deleteVertexArray(int vertexArray);
+
+    void bindVertexArray(int vertexArray);
+
+    /** Attribute sourced from the bound GL_ARRAY_BUFFER at byte {@code offset}. */
+    void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset);
+
+    void enableVertexAttribArray(int index);
+
+    void drawArrays(int mode, int first, int count);
+
+    int createShader(int type);
+
+    void shaderSource(int shader, String source);
+
+    void compileShader(int shader);
+
+    int getShaderi(int shader, int pname);
+
+    String getShaderInfoLog(int shader);
+
+    void deleteShader(int shader);
+
+    int createProgram();
+
+    void attachShader(int program, int shader);
+
+    void programParameteri(int program, int pname, int value);
+
+    void linkProgram(int program);
+
+    int getProgrami(int program, int pname);
+
+    String getProgramInfoLog(int program);
+
+    void deleteProgram(int program);
+
+    void programBinary(int program, int format, Buffer binary, int length);
+
+    /**
+     * Writes the program's binary, {@code GL_PROGRAM_BINARY_LENGTH} bytes, into
+     * {@code binary} and returns its format.
+     */
+    int getProgramBinary(int program, Buffer binary);
+
+    void useProgram(int program);
+
+    int getUniformLocation(int program, String name);
+
+    /** Index of the named uniform block, or {@code GL_INVALID_INDEX}. */
+    int getUniformBlockIndex(int program, String name);
+
+    void uniformBlockBinding(int program, int blockIndex, int binding);
+
+    void uniform1i(int location, int x);
+
+    void uniform1f(int location, float x);
+
+    void uniform2i(int location, int x, int y);
+
+    void uniform2f(int location, float x, float y);
+
+    void uniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void uniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset);
+
+    void dispatchCompute(int groupsX, int groupsY, int groupsZ);
+
+    void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format);
+
+    void memoryBarrier(int barriers);
+
+    int genQuery();
+
+    void deleteQuery(int query);
+
+    void beginQuery(int target, int query);
+
+    void endQuery(int target);
+
+    /** The value of {@code pname}, e.g. {@code GL_QUERY_RESULT_AVAILABLE}, for {@code query}. */
+    int getQueryObjectui(int query, int pname);
+
+    /** Inserts a {@code GL_SYNC_GPU_COMMANDS_COMPLETE} fence and returns it. */
+    long fenceSync();
+
+    /** Returns {@code GL_ALREADY_SIGNALED}, {@code GL_CONDITION_SATISFIED} or {@code GL_TIMEOUT_EXPIRED}. */
+    int clientWaitSync(long sync, int flags, long timeoutNanos);
+
+    void deleteSync(long sync);
+}
@@ -0,0 +1,25 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+/**
+ * Shader compile helpers. Programs are linked through {@link ShaderProgramCache}.
+ */
+public final class GlUtil {
+
+    private GlUtil() {
+    }
+
+    public static int loadShader(Gl gl, int type, String shaderCode) {
+        int shader = gl.createShader(type);
+        gl.shaderSource(shader, shaderCode);
+        gl.compileShader(shader);
+
+        if (gl.getShaderi(shader, GLES30.GL_COMPILE_STATUS) != GLES30.GL_TRUE) {
+            String error = gl.getShaderInfoLog(shader);
+            gl.deleteShader(shader);
+            throw new RuntimeException("Error compiling shader: " + error);
+        }
+        return shader;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+/**
+ * Measures how long the GPU takes per frame, without stalling the pipeline to find out:
+ * results are collected a few frames late, when they are ready.
+ *
+ * With {@code GL_EXT_disjoint_timer_query} each frame is bracketed by a
+ * {@code GL_TIME_ELAPSED_EXT} query, which measures GPU time exactly; results from
+ * intervals the driver flags as disjoint, e.g. across a frequency change, are dropped.
+ * Without it, a fence is inserted after the frame's commands and polled on later frames;
+ * the time from {@link #beginFrame()} until the fence is seen signaled bounds the GPU
+ * time from above, including the CPU's submission and the polling interval.
+ * When the driver reports a disjoint event, every query in flight is dropped, since any
+ * of them may span it; so is a fence whose wait fails.
+ *
+ * Call {@link #beginFrame()} and {@link #endFrame()} around a frame's GL work, and
+ * {@link #poll()} once per frame. Must be used on the GL thread; does not allocate.
+ */
+public final class GpuFrameTimer {
+
+    /** Queries or fences in flight; the oldest is reused once its result is in. */
+    static final int RING_SIZE = 4;
+
+    static final String TIMER_QUERY_EXTENSION = "GL_EXT_disjoint_timer_query";
+    static final int GL_TIME_ELAPSED_EXT = 0x88BF;
+    static final int GL_GPU_DISJOINT_EXT = 0x8FBB;
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    private final Gl mGl;
+    private final Clock mClock;
+    private final boolean mTimerQueries;
+    private final int[] mQueries = new int[RING_SIZE];
+    private final long[] mFences = new long[RING_SIZE];
+    private final long[] mStartTimes = new long[RING_SIZE];
+    // Frames in the ring: mHead is the oldest, mCount of them are pending
+    private int mHead;
+    private int mCount;
+    private boolean mInFrame;
+    // Whether the frame in progress is being timed
+    private boolean mTiming;
+    private int mDroppedCount;
+
+    /** Picks timer queries when the current context supports them. */
+    public GpuFrameTimer(Gl gl) {
+        this(gl, isTimerQuerySupported(gl), System::nanoTime);
+    }
+
+    public GpuFrameTimer(Gl gl, boolean timerQueries, Clock clock) {
+        mGl = gl;
+        mTimerQueries = timerQueries;
+        mClock = clock;
+    }
+
+    public static boolean isTimerQuerySupported(Gl gl) {
+        String extensions = gl.getString(GLES30.GL_EXTENSIONS);
+        return extensions != null && extensions.contains(TIMER_QUERY_EXTENSION);
+    }
+
+    public boolean usesTimerQueries() {
+        return mTimerQueries;
+    }
+
+    /**
+     * Starts timing a frame. If the ring is full the frame is not timed; that only
+     * happens when {@link #poll()} is not called, or the GPU is over {@link #RING_SIZE}
+     * frames behind.
+     */
+    public void beginFrame() {
+        if (mInFrame) {
+            throw new IllegalStateException("beginFrame() twice");
+        }
+        mInFrame = true;
+        mTiming = mCount < RING_SIZE;
+        if (!mTiming) {
+            mDroppedCount++;
+            return;
+        }
+        int slot = (mHead + mCount) % RING_SIZE;
+        mStartTimes[slot] = mClock.nanoTime();
+        if (mTimerQueries) {
+            if (mQueries[slot] == 0) {
+                mQueries[slot] = mGl.genQuery();
+            }
+            if (mCount == 0) {
+                // Clears a disjoint flag from before this measurement started
+                mGl.getInteger(GL_GPU_DISJOINT_EXT);
+            }
+            mGl.beginQuery(GL_TIME_ELAPSED_EXT, mQueries[slot]);
+        }
+    }
+
+    public void endFrame() {
+        if (!mInFrame) {
+            throw new IllegalStateException("endFrame() without beginFrame()");
+        }
+        mInFrame = false;
+        if (!mTiming) {
+            return;
+        }
+        int slot = (mHead + mCount) % RING_SIZE;
+        if (mTimerQueries) {
+            mGl.endQuery(GL_TIME_ELAPSED_EXT);
+        } else {
+            mFences[slot] = mGl.fenceSync();
+        }
+        mCount++;
+    }
+
+    /**
+     * Returns the GPU time, in nanoseconds, of the oldest frame whose result has come in
+     * since the last call, or -1 if none has.
+     */
+    public long poll() {
+        if (mInFrame) {
+            throw new IllegalStateException("poll() inside a frame");
+        }
+        if (mTimerQueries && mCount > 0 && mGl.getInteger(GL_GPU_DISJOINT_EXT) != 0) {
+            // Reading the flag cleared it; any interval in flight may span the event
+            mDroppedCount += mCount;
+            mHead = (mHead + mCount) % RING_SIZE;
+            mCount = 0;
+            return -1;
+        }
+        while (mCount > 0) {
+            int slot = mHead;
+            long elapsed;
+            if (mTimerQueries) {
+                int query = mQueries[slot];
+                if (mGl.getQueryObjectui(query, GLES30.GL_QUERY_RESULT_AVAILABLE)
+                        == GLES30.GL_FALSE) {
+                    return -1;
+                }
+                // Unsigned 32 bits of nanoseconds cover over four seconds
+                elapsed = mGl.getQueryObjectui(query, GLES30.GL_QUERY_RESULT) & 0xffffffffL;
+            } else {
+                int status = mGl.clientWaitSync(mFences[slot], 0, 0);
+                if (status == GLES30.GL_TIMEOUT_EXPIRED) {
+                    return -1;
+                }
+                mGl.deleteSync(mFences[slot]);
+                mFences[slot] = 0;
+                // A failed wait says nothing about when the frame finished
+                elapsed = status == GLES30.GL_WAIT_FAILED ? -1 : mClock.nanoTime() - mStartTimes[slot];
+            }
+            mHead = (mHead + 1) % RING_SIZE;
+            mCount--;
+            if (elapsed >= 0) {
+                return elapsed;
+            }
+            mDroppedCount++;
+        }
+        return -1;
+    }
+
+    /** Frames not timed because the ring was full or their measurement was disjoint. */
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /** Deletes the queries and fences; for when the context is still current. */
+    public void release() {
+        for (int i = 0; i < RING_SIZE; i++) {
+            if (mQueries[i] != 0) {
+                mGl.deleteQuery(mQueries[i]);
+                mQueries[i] = 0;
+            }
+            if (mFences[i] != 0) {
+                mGl.deleteSync(mFences[i]);
+                mFences[i] = 0;
+            }
+        }
+        mHead = 0;
+        mCount = 0;
+        mInFrame = false;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.testopengl.gl;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk cache of linked program binaries ({@code glGetProgramBinary} output).
+ *
+ * Binaries are only valid for the driver that produced them, so entries live in a
+ * sub-directory named after a hash of the GL vendor, renderer and version strings, and
+ * the directories of other drivers are deleted when the store is opened. Each entry is
+ * one file:
+ *
+ * <pre>
+ *   int  MAGIC ('GLPB')
+ *   int  FORMAT_VERSION
+ *   int  binary format (as returned by glGetProgramBinary)
+ *   int  payload length
+ *   long CRC32 of the payload
+ *   byte[length] payload
+ * </pre>
+ *
+ * Corrupt or truncated files are deleted on read. When the total size exceeds the budget
+ * the least recently used entries are removed first.
+ *
+ * Not thread-safe; {@link ShaderProgramCache} serialises access.
+ */
+public class ProgramBinaryStore {
+
+    static final int MAGIC = 0x474C5042;
+    static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+    private static final String SUFFIX = ".bin";
+
+    public static final long DEFAULT_MAX_BYTES = 4L * 1024 * 1024;
+
+    /** A binary read back from disk. */
+    public static final class Entry {
+        public final int format;
+        public final byte[] binary;
+
+        Entry(int format, byte[] binary) {
+            this.format = format;
+            this.binary = binary;
+        }
+    }
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    // Access-ordered: the first entry is the least recently used. Values are file sizes.
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mTotalBytes;
+
+    public ProgramBinaryStore(File root, String vendor, String renderer, String version) {
+        this(root, vendor, renderer, version, DEFAULT_MAX_BYTES);
+    }
+
+    public ProgramBinaryStore(File root, String vendor, String renderer, String version, long maxBytes) {
+        mMaxBytes = maxBytes;
+        String device = deviceKey(vendor, renderer, version);
+        mDirectory = new File(root, device);
+        removeOtherDevices(root, device);
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        loadIndex();
+    }
+
+    /** Directory name for one driver; a new driver version gets a fresh directory. */
+    static String deviceKey(String vendor, String renderer, String version) {
+        return ProgramKey.sha256Hex(String.valueOf(vendor), String.valueOf(renderer), String.valueOf(version))
+                .substring(0, 16);
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public boolean contains(String key) {
+        return mEntries.containsKey(key);
+    }
+
+    /** Returns the stored binary, or null if it is missing or unreadable. */
+    public Entry load(String key) {
+        // get() rather than containsKey() so the hit counts as a use for LRU order
+        if (mEntries.get(key) == null) {
+            return null;
+        }
+        File file = fileFor(key);
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Bad header");
+            }
+            int format = in.readInt();
+            int length = in.readInt();
+            long crc = in.readLong();
+            if (length < 0 || length != file.length() - HEADER_SIZE) {
+                throw new IOException("Bad length " + length);
+            }
+            byte[] binary = new byte[length];
+            in.readFully(binary);
+            if (crc32(binary) != crc) {
+                throw new IOException("Checksum mismatch");
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return new Entry(format, binary);
+        } catch (IOException e) {
+            remove(key);
+            return null;
+        }
+    }
+
+    public void store(String key, int format, byte[] binary) {
+        File file = fileFor(key);
+        File tmp = new File(mDirectory, key + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(format);
+            out.writeInt(binary.length);
+            out.writeLong(crc32(binary));
+            out.write(binary);
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        // Rename so that a crash mid-write never leaves a half-written entry behind
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            return;
+        }
+        Long previous = mEntries.put(key, file.length());
+        mTotalBytes += file.length() - (previous != null ? previous : 0L);
+        trimToSize(mMaxBytes);
+    }
+
+    public void remove(String key) {
+        Long size = mEntries.remove(key);
+        if (size != null) {
+            mTotalBytes -= size;
+        }
+        fileFor(key).delete();
+    }
+
+    /** Drops least recently used entries until the store uses at most {@code maxBytes}. */
+    public void trimToSize(long maxBytes) {
+        Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+        while (mTotalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            mTotalBytes -= eldest.getValue();
+            fileFor(eldest.getKey()).delete();
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(mDirectory, key + SUFFIX);
+    }
+
+    private void loadIndex() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                entries.add(file);
+            } else {
+                // Leftover from an interrupted store()
+                file.delete();
+            }
+        }
+        // Oldest first, so the access order starts out as last-use order
+        File[] sorted = entries.toArray(new File[0]);
+        Arrays.sort(sorted, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : sorted) {
+            String name = file.getName();
+            mEntries.put(name.substring(0, name.length() - SUFFIX.length()), file.length());
+            mTotalBytes += file.length();
+        }
+        trimToSize(mMaxBytes);
+    }
+
+    private static void removeOtherDevices(File root, String device) {
+        File[] children = root.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory() && !child.getName().equals(device)) {
+                File[] files = child.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                child.delete();
+            }
+        }
+    }
+
+    private static long crc32(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+}
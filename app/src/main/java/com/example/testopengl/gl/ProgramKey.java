@@ -0,0 +1,139 @@
+package com.example.testopengl.gl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Identity of a linked program: the final vertex and fragment sources, or the compute
+ * source, after any {@code #define}s have been injected. Two keys are equal when their
+ * sources hash to the same SHA-256, so the same shader requested from two filters links
+ * only once.
+ */
+public final class ProgramKey {
+
+    private final String mVertexSource;
+    private final String mFragmentSource;
+    private final String mComputeSource;
+    private final String mHash;
+
+    private ProgramKey(String vertexSource, String fragmentSource) {
+        mVertexSource = vertexSource;
+        mFragmentSource = fragmentSource;
+        mComputeSource = null;
+        mHash = sha256Hex(vertexSource, fragmentSource);
+    }
+
+    private ProgramKey(String computeSource) {
+        mVertexSource = null;
+        mFragmentSource = null;
+        mComputeSource = computeSource;
+        mHash = sha256Hex(computeSource);
+    }
+
+    public static ProgramKey of(String vertexSource, String fragmentSource) {
+        return new ProgramKey(vertexSource, fragmentSource);
+    }
+
+    /**
+     * Key for sources compiled with extra {@code #define NAME VALUE} lines. The defines are
+     * sorted by name so their order does not change the key.
+     */
+    public static ProgramKey of(String vertexSource, String fragmentSource, Map<String, String> defines) {
+        if (defines == null || defines.isEmpty()) {
+            return of(vertexSource, fragmentSource);
+        }
+        TreeMap<String, String> sorted = new TreeMap<>(defines);
+        return new ProgramKey(injectDefines(vertexSource, sorted), injectDefines(fragmentSource, sorted));
+    }
+
+    /** Key for a compute-only program. */
+    public static ProgramKey ofCompute(String computeSource) {
+        return new ProgramKey(computeSource);
+    }
+
+    public static ProgramKey ofCompute(String computeSource, Map<String, String> defines) {
+        if (defines == null || defines.isEmpty()) {
+            return ofCompute(computeSource);
+        }
+        return new ProgramKey(injectDefines(computeSource, new TreeMap<>(defines)));
+    }
+
+    /** Inserts the defines after the {@code #version} line, which must stay first. */
+    static String injectDefines(String source, Map<String, String> defines) {
+        StringBuilder block = new StringBuilder();
+        for (Map.Entry<String, String> define : defines.entrySet()) {
+            block.append("#define ").append(define.getKey());
+            if (define.getValue() != null && !define.getValue().isEmpty()) {
+                block.append(' ').append(define.getValue());
+            }
+            block.append('\n');
+        }
+        int insertAt = 0;
+        if (source.startsWith("#version")) {
+            int newline = source.indexOf('\n');
+            insertAt = newline < 0 ? source.length() : newline + 1;
+        }
+        return source.substring(0, insertAt) + block + source.substring(insertAt);
+    }
+
+    public String getVertexSource() {
+        return mVertexSource;
+    }
+
+    public String getFragmentSource() {
+        return mFragmentSource;
+    }
+
+    /** Source of a compute program; null for a vertex/fragment program. */
+    public String getComputeSource() {
+        return mComputeSource;
+    }
+
+    public boolean isCompute() {
+        return mComputeSource != null;
+    }
+
+    /** Lower-case hex SHA-256 of the sources; also used as the on-disk file name. */
+    public String getHash() {
+        return mHash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ProgramKey && ((ProgramKey) o).mHash.equals(mHash);
+    }
+
+    @Override
+    public int hashCode() {
+        return mHash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ProgramKey{" + mHash.substring(0, 12) + "}";
+    }
+
+    /** SHA-256 of the parts, each terminated by a NUL so ("ab", "c") != ("a", "bc"). */
+    static String sha256Hex(String... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[2 * i] = Character.forDigit((hash[i] >> 4) & 0xf, 16);
+            hex[2 * i + 1] = Character.forDigit(hash[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+}
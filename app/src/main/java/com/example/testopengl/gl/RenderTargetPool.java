@@ -0,0 +1,177 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import java.util.ArrayList;
+
+/**
+ * Hands out {@link FrameBufferObject}s by (width, height, internal format) and takes them
+ * back for reuse, so multi-pass filters stop creating and deleting GPU memory as they
+ * run and a resize only allocates the sizes that are actually drawn.
+ *
+ * Released targets are kept on a free list in least-recently-released order. Whenever
+ * the memory of all targets, in use or free, exceeds the budget, the oldest free targets
+ * are deleted. Targets in use are never deleted, so the budget can be exceeded by them.
+ *
+ * The pool also carries the {@link TextureFormat} that filters drawing from it keep
+ * their intermediate results in, so each pipeline, having a pool of its own, picks its
+ * own trade between bandwidth and precision.
+ *
+ * A pool belongs to one GL context and must only be used on its thread. When the context
+ * is lost, drop the pool with {@link #abandon()}; its names are no longer valid.
+ */
+public final class RenderTargetPool {
+
+    /** Room for a few full-screen RGBA8 targets at 1440x3200. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final Gl mGl;
+    private final long mMaxBytes;
+
+    // Oldest release first; scanned by index so acquire() and release() do not allocate
+    private final ArrayList<FrameBufferObject> mFree = new ArrayList<>();
+    private final ArrayList<FrameBufferObject> mInUse = new ArrayList<>();
+    private long mTotalBytes;
+    private int mCreateCount;
+    private TextureFormat mIntermediateFormat = TextureFormat.RGBA8;
+
+    public RenderTargetPool(Gl gl) {
+        this(gl, DEFAULT_MAX_BYTES);
+    }
+
+    public RenderTargetPool(Gl gl, long maxBytes) {
+        mGl = gl;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Returns a free target of exactly this size and format, creating one if none is free.
+     * Its contents are undefined. Give it back with {@link #release} once the pass that
+     * reads it has been issued.
+     */
+    public FrameBufferObject acquire(int width, int height, int internalFormat) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Bad render target size " + width + "x" + height);
+        }
+        FrameBufferObject target = null;
+        // Most recently released first: it is the most likely to still be resident
+        for (int i = mFree.size() - 1; i >= 0; i--) {
+            if (mFree.get(i).matches(width, height, internalFormat)) {
+                target = mFree.remove(i);
+                break;
+            }
+        }
+        if (target == null) {
+            target = new FrameBufferObject(mGl, width, height, internalFormat);
+            mTotalBytes += target.getByteSize();
+            mCreateCount++;
+            trimToSize(mMaxBytes);
+        }
+        mInUse.add(target);
+        return target;
+    }
+
+    public void release(FrameBufferObject target) {
+        if (!mInUse.remove(target)) {
+            throw new IllegalStateException("Render target not acquired from this pool");
+        }
+        mFree.add(target);
+        trimToSize(mMaxBytes);
+    }
+
+    /**
+     * For targets held across frames: returns {@code held} if it already has this size and
+     * format, otherwise releases it (when not null) and acquires a matching one.
+     */
+    public FrameBufferObject ensure(FrameBufferObject held, int width, int height, int internalFormat) {
+        if (held != null) {
+            if (held.matches(width, height, internalFormat)) {
+                return held;
+            }
+            release(held);
+        }
+        return acquire(width, height, internalFormat);
+    }
+
+    /** Deletes least recently released free targets until at most {@code maxBytes} are held. */
+    public void trimToSize(long maxBytes) {
+        while (mTotalBytes > maxBytes && !mFree.isEmpty()) {
+            FrameBufferObject eldest = mFree.remove(0);
+            mTotalBytes -= eldest.getByteSize();
+            eldest.delete();
+        }
+    }
+
+    /** Deletes every free target, e.g. from {@code onTrimMemory}. */
+    public void evictAll() {
+        trimToSize(0);
+    }
+
+    /** Forgets all targets without deleting them; for when their context is already gone. */
+    public void abandon() {
+        mFree.clear();
+        mInUse.clear();
+        mTotalBytes = 0;
+    }
+
+    /**
+     * Format for the targets filters use between their own passes; their results stay
+     * RGBA8. Check it with {@link TextureFormat#supported} first. Targets of the previous
+     * format are trimmed as they age.
+     */
+    public void setIntermediateFormat(TextureFormat format) {
+        mIntermediateFormat = format;
+    }
+
+    public TextureFormat getIntermediateFormat() {
+        return mIntermediateFormat;
+    }
+
+    /** The GL the targets are created through. */
+    public Gl getGl() {
+        return mGl;
+    }
+
+    /** Memory of all targets, in use or free, in bytes. */
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public int getFreeCount() {
+        return mFree.size();
+    }
+
+    public int getInUseCount() {
+        return mInUse.size();
+    }
+
+    /** Number of targets created since the pool was; stays flat once the pool is warm. */
+    public int getCreateCount() {
+        return mCreateCount;
+    }
+
+    /** Approximate storage per pixel of a sized internal format. */
+    public static int bytesPerPixel(int internalFormat) {
+        switch (internalFormat) {
+            case GLES30.GL_R8:
+                return 1;
+            case GLES30.GL_RG8:
+            case GLES30.GL_RGB565:
+            case GLES30.GL_RGBA4:
+            case GLES30.GL_RGB5_A1:
+            case GLES30.GL_R16F:
+                return 2;
+            case GLES30.GL_RGBA16F:
+                return 8;
+            case GLES30.GL_RGBA32F:
+                return 16;
+            default:
+                // RGBA8, RGB10_A2, R11F_G11F_B10F, RG16F, and RGB8, which drivers pad to 4
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.testopengl.gl;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One thread that owns an EGL context and everything drawn with it.
+ *
+ * Other threads talk to it through a lock-free command queue: {@link #post} runs a
+ * command, e.g. a new blur radius, on the render thread before its next frame, and
+ * {@link #requestRender()} asks for a frame. Neither blocks, so a UI thread animating a
+ * parameter never waits for a frame in progress. The render thread sleeps while there is
+ * nothing to do.
+ *
+ * The lifecycle is explicit. {@link #start()} creates the context, current on a 1x1
+ * pbuffer until {@link #setSurface} gives it a window; {@link #releaseSurface()} blocks
+ * until the window is no longer used, as {@code SurfaceHolder.Callback.surfaceDestroyed}
+ * requires; {@link #quit()} runs the commands still queued, tears everything down and
+ * waits for the thread to end. Workers from {@link #newWorker} run on their own threads
+ * with contexts shared with this one, e.g. to upload textures without stalling frames.
+ */
+public final class RenderThread {
+
+    /** Called on the render thread with its context current. */
+    public interface Renderer {
+        void onContextCreated();
+
+        /** Called before the first frame on a new surface, and whenever its size changes. */
+        void onSurfaceChanged(int width, int height);
+
+        void onDrawFrame();
+
+        /** Called before the context is destroyed; release GL objects here. */
+        void onContextDestroyed();
+    }
+
+    private final String mName;
+    private final Egl mEgl;
+    private final Renderer mRenderer;
+    private final Thread mThread;
+    private final ConcurrentLinkedQueue<Runnable> mCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mRenderRequested = new AtomicBoolean();
+    private final AtomicBoolean mStarted = new AtomicBoolean();
+    private final CountDownLatch mContextReady = new CountDownLatch(1);
+    private final CopyOnWriteArrayList<Worker> mWorkers = new CopyOnWriteArrayList<>();
+    private volatile boolean mQuit;
+    private volatile Object mContext;
+
+    // Render thread only
+    private Object mPbuffer;
+    private Object mWindow;
+    private int mWidth;
+    private int mHeight;
+    private boolean mSizeChanged;
+    private int mFrameCount;
+
+    public RenderThread(String name, Egl egl, Renderer renderer) {
+        mName = name;
+        mEgl = egl;
+        mRenderer = renderer;
+        mThread = new Thread(this::run, name);
+    }
+
+    public void start() {
+        if (!mStarted.compareAndSet(false, true)) {
+            throw new IllegalStateException(mName + " already started");
+        }
+        mThread.start();
+    }
+
+    /** Runs {@code command} on the render thread before its next frame. Any thread. */
+    public void post(Runnable command) {
+        if (mQuit) {
+            throw new IllegalStateException(mName + " has quit");
+        }
+        mCommands.add(command);
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Runs {@code command} on the render thread and waits for it. Returns at once if the
+     * thread has already ended.
+     */
+    public void postAndWait(Runnable command) {
+        if (isRenderThread()) {
+            command.run();
+            return;
+        }
+        CountDownLatch done = new CountDownLatch(1);
+        post(() -> {
+            try {
+                command.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        awaitWhileAlive(done);
+    }
+
+    /** Asks for a frame; requests made before the frame starts are merged into it. Any thread. */
+    public void requestRender() {
+        if (!mRenderRequested.getAndSet(true)) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /** Starts drawing into {@code nativeWindow}, replacing the previous window if any. */
+    public void setSurface(Object nativeWindow, int width, int height) {
+        post(() -> {
+            destroyWindow();
+            mWindow = mEgl.createWindowSurface(nativeWindow);
+            mEgl.makeCurrent(mWindow, mContext);
+            mWidth = width;
+            mHeight = height;
+            mSizeChanged = true;
+        });
+        requestRender();
+    }
+
+    public void setSize(int width, int height) {
+        post(() -> {
+            if (width != mWidth || height != mHeight) {
+                mWidth = width;
+                mHeight = height;
+                mSizeChanged = true;
+            }
+        });
+        requestRender();
+    }
+
+    /** Stops drawing into the window and returns once it is no longer used. */
+    public void releaseSurface() {
+        if (!mQuit) {
+            postAndWait(this::destroyWindow);
+        }
+    }
+
+    /** Ends the thread after the commands queued so far, and waits for it. Idempotent. */
+    public void quit() {
+        mQuit = true;
+        if (mStarted.compareAndSet(false, true)) {
+            // Never started; nothing to tear down
+            return;
+        }
+        LockSupport.unpark(mThread);
+        if (!isRenderThread()) {
+            boolean interrupted = false;
+            while (mThread.isAlive()) {
+                try {
+                    mThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts a worker thread whose context shares textures and buffers with the render
+     * thread's. Its tasks must finish their GL work, e.g. with a fence or {@code glFinish},
+     * before handing objects to the render thread. Workers quit with the render thread.
+     */
+    public Worker newWorker(String name) {
+        if (mQuit) {
+            throw new IllegalStateException(mName + " has quit");
+        }
+        Worker worker = new Worker(name);
+        mWorkers.add(worker);
+        worker.mThread.start();
+        return worker;
+    }
+
+    public boolean isRenderThread() {
+        return Thread.currentThread() == mThread;
+    }
+
+    public boolean isAlive() {
+        return mThread.isAlive();
+    }
+
+    /** Frames drawn so far; read it on the render thread. */
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    private void run() {
+        try {
+            mContext = mEgl.createContext(null);
+            mPbuffer = mEgl.createPbufferSurface(1, 1);
+            mEgl.makeCurrent(mPbuffer, mContext);
+            mContextReady.countDown();
+            mRenderer.onContextCreated();
+            while (!mQuit) {
+                // Take the request before running the commands: a command posted ahead of
+                // a request then always runs before the frame it asked for
+                boolean render = mRenderRequested.getAndSet(false);
+                runCommands();
+                if (render && mWindow != null) {
+                    drawFrame();
+                } else {
+                    if (render) {
+                        // Kept for when a surface arrives
+                        mRenderRequested.set(true);
+                    }
+                    if (!mQuit && mCommands.isEmpty() && (mWindow == null || !mRenderRequested.get())) {
+                        LockSupport.park(this);
+                    }
+                }
+            }
+            // Let the last parameter updates and surface releases through
+            runCommands();
+        } finally {
+            mQuit = true;
+            // Unblocks workers if the context was never created
+            mContextReady.countDown();
+            for (Worker worker : mWorkers) {
+                worker.quit();
+            }
+            if (mContext != null) {
+                try {
+                    mRenderer.onContextDestroyed();
+                } finally {
+                    destroyWindow();
+                    mEgl.makeNothingCurrent();
+                    if (mPbuffer != null) {
+                        mEgl.destroySurface(mPbuffer);
+                    }
+                    mEgl.destroyContext(mContext);
+                    mEgl.releaseThread();
+                    // Anything posted while tearing down; waiters are released, not run
+                    mCommands.clear();
+                }
+            }
+        }
+    }
+
+    private void runCommands() {
+        Runnable command;
+        while ((command = mCommands.poll()) != null) {
+            command.run();
+        }
+    }
+
+    private void drawFrame() {
+        if (mSizeChanged) {
+            mSizeChanged = false;
+            mRenderer.onSurfaceChanged(mWidth, mHeight);
+        }
+        mRenderer.onDrawFrame();
+        mFrameCount++;
+        if (!mEgl.swapBuffers(mWindow)) {
+            // The window went away without releaseSurface(); wait for a new one
+            destroyWindow();
+        }
+    }
+
+    private void destroyWindow() {
+        if (mWindow != null) {
+            mEgl.makeCurrent(mPbuffer, mContext);
+            mEgl.destroySurface(mWindow);
+            mWindow = null;
+        }
+    }
+
+    private void awaitWhileAlive(CountDownLatch done) {
+        boolean interrupted = false;
+        try {
+            while (done.getCount() > 0 && mThread.isAlive()) {
+                try {
+                    done.await(10, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /** A thread with a context shared with the render thread's, running tasks in order. */
+    public final class Worker {
+
+        private final Thread mThread;
+        private final LinkedBlockingQueue<Runnable> mTasks = new LinkedBlockingQueue<>();
+        private final Runnable mQuitTask = () -> { };
+        private volatile boolean mWorkerQuit;
+
+        private Worker(String name) {
+            mThread = new Thread(this::run, name);
+        }
+
+        /** Runs {@code task} on the worker with its context current. Any thread. */
+        public void execute(Runnable task) {
+            if (mWorkerQuit) {
+                throw new IllegalStateException(mThread.getName() + " has quit");
+            }
+            mTasks.add(task);
+        }
+
+        /** Ends the worker after the tasks queued so far, and waits for it. Idempotent. */
+        public void quit() {
+            if (!mWorkerQuit) {
+                mWorkerQuit = true;
+                mTasks.add(mQuitTask);
+            }
+            boolean interrupted = false;
+            while (mThread.isAlive() && Thread.currentThread() != mThread) {
+                try {
+                    mThread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            mWorkers.remove(this);
+        }
+
+        public boolean isAlive() {
+            return mThread.isAlive();
+        }
+
+        private void run() {
+            Object context = null;
+            Object pbuffer = null;
+            try {
+                mContextReady.await();
+                if (mContext == null) {
+                    return;
+                }
+                context = mEgl.createContext(mContext);
+                pbuffer = mEgl.createPbufferSurface(1, 1);
+                mEgl.makeCurrent(pbuffer, context);
+                Runnable task;
+                while ((task = mTasks.take()) != mQuitTask) {
+                    task.run();
+                }
+            } catch (InterruptedException e) {
+                // Asked to stop
+            } finally {
+                mWorkerQuit = true;
+                if (context != null) {
+                    mEgl.makeNothingCurrent();
+                    if (pbuffer != null) {
+                        mEgl.destroySurface(pbuffer);
+                    }
+                    mEgl.destroyContext(context);
+                    mEgl.releaseThread();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+import android.opengl.GLES31;
+import android.util.Log;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of linked shader programs.
+ *
+ * Within a GL context a program is linked once per {@link ProgramKey}; later requests for
+ * the same sources return the same program name. Programs are owned by the cache, so
+ * callers must not delete them. When a disk directory is set, linked binaries are also
+ * written out with {@code glGetProgramBinary} and reloaded with {@code glProgramBinary}
+ * in later contexts and later runs, which skips compilation on warm starts.
+ *
+ * Programs are created through the {@link Gl} the caller draws with, and kept per
+ * {@link Gl#currentContext()}. Renderers call {@link #onContextCreated(Gl)} from
+ * {@code onSurfaceCreated}, before creating any filter, because a new context may reuse
+ * the native handle of a lost one.
+ */
+public final class ShaderProgramCache {
+
+    private static final String TAG = "ShaderProgramCache";
+
+    private static final ShaderProgramCache INSTANCE = new ShaderProgramCache();
+
+    private final Map<Long, Map<ProgramKey, Integer>> mPrograms = new HashMap<>();
+    private File mDiskCacheDir;
+    private ProgramBinaryStore mStore;
+    private boolean mStoreChecked;
+
+    public static ShaderProgramCache getInstance() {
+        return INSTANCE;
+    }
+
+    private ShaderProgramCache() {
+    }
+
+    /**
+     * Enables binary persistence into an app-private directory, e.g.
+     * {@code new File(context.getCodeCacheDir(), "shaders")}, which the system clears
+     * whenever the app is updated.
+     */
+    public synchronized void setDiskCacheDir(File dir) {
+        mDiskCacheDir = dir;
+        mStore = null;
+        mStoreChecked = false;
+    }
+
+    /** Forgets the programs of {@link AndroidGl}'s current context. */
+    public void onContextCreated() {
+        onContextCreated(AndroidGl.getInstance());
+    }
+
+    /** Forgets the programs of the current context; call when it has just been created. */
+    public synchronized void onContextCreated(Gl gl) {
+        mPrograms.remove(gl.currentContext());
+    }
+
+    public int getProgram(Gl gl, String vertexSource, String fragmentSource) {
+        return getProgram(gl, ProgramKey.of(vertexSource, fragmentSource));
+    }
+
+    public synchronized int getProgram(Gl gl, ProgramKey key) {
+        long context = gl.currentContext();
+        Map<ProgramKey, Integer> programs = mPrograms.get(context);
+        if (programs == null) {
+            programs = new HashMap<>();
+            mPrograms.put(context, programs);
+        }
+        Integer program = programs.get(key);
+        if (program != null) {
+            return program;
+        }
+
+        ProgramBinaryStore store = getStore(gl);
+        int linked = store != null ? loadBinary(gl, store, key) : 0;
+        if (linked == 0) {
+            linked = link(gl, key, store != null);
+            if (store != null) {
+                saveBinary(gl, store, key, linked);
+            }
+        }
+        programs.put(key, linked);
+        return linked;
+    }
+
+    private ProgramBinaryStore getStore(Gl gl) {
+        if (mDiskCacheDir == null) {
+            return null;
+        }
+        if (!mStoreChecked) {
+            mStoreChecked = true;
+            if (gl.getInteger(GLES30.GL_NUM_PROGRAM_BINARY_FORMATS) > 0) {
+                mStore = new ProgramBinaryStore(mDiskCacheDir,
+                        gl.getString(GLES30.GL_VENDOR),
+                        gl.getString(GLES30.GL_RENDERER),
+                        gl.getString(GLES30.GL_VERSION));
+            }
+        }
+        return mStore;
+    }
+
+    private static int loadBinary(Gl gl, ProgramBinaryStore store, ProgramKey key) {
+        ProgramBinaryStore.Entry entry = store.load(key.getHash());
+        if (entry == null) {
+            return 0;
+        }
+        ByteBuffer binary = ByteBuffer.allocateDirect(entry.binary.length);
+        binary.put(entry.binary).position(0);
+
+        int program = gl.createProgram();
+        gl.programBinary(program, entry.format, binary, entry.binary.length);
+        if (gl.getProgrami(program, GLES30.GL_LINK_STATUS) != GLES30.GL_TRUE) {
+            // The driver is allowed to reject binaries at any time; fall back to compiling
+            Log.w(TAG, "Rejected program binary for " + key);
+            gl.deleteProgram(program);
+            store.remove(key.getHash());
+            return 0;
+        }
+        return program;
+    }
+
+    private static int link(Gl gl, ProgramKey key, boolean retrievable) {
+        int[] shaders;
+        if (key.isCompute()) {
+            shaders = new int[]{GlUtil.loadShader(gl, GLES31.GL_COMPUTE_SHADER, key.getComputeSource())};
+        } else {
+            shaders = new int[]{
+                    GlUtil.loadShader(gl, GLES30.GL_VERTEX_SHADER, key.getVertexSource()),
+                    GlUtil.loadShader(gl, GLES30.GL_FRAGMENT_SHADER, key.getFragmentSource())};
+        }
+
+        int program = gl.createProgram();
+        for (int shader : shaders) {
+            gl.attachShader(program, shader);
+        }
+        if (retrievable) {
+            gl.programParameteri(program, GLES30.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GLES30.GL_TRUE);
+        }
+        gl.linkProgram(program);
+        for (int shader : shaders) {
+            gl.deleteShader(shader);
+        }
+
+        if (gl.getProgrami(program, GLES30.GL_LINK_STATUS) != GLES30.GL_TRUE) {
+            String error = gl.getProgramInfoLog(program);
+            gl.deleteProgram(program);
+            throw new RuntimeException("Error linking program: " + error);
+        }
+        return program;
+    }
+
+    private static void saveBinary(Gl gl, ProgramBinaryStore store, ProgramKey key, int program) {
+        int length = gl.getProgrami(program, GLES30.GL_PROGRAM_BINARY_LENGTH);
+        if (length <= 0) {
+            return;
+        }
+        ByteBuffer binary = ByteBuffer.allocateDirect(length);
+        int format = gl.getProgramBinary(program, binary);
+        byte[] bytes = new byte[length];
+        binary.position(0);
+        binary.get(bytes);
+        store.store(key.getHash(), format, bytes);
+    }
+}
@@ -0,0 +1,565 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+
+/**
+ * {@link Gl} decorator that remembers the state set through it and drops calls that
+ * would not change it: the program, the active texture unit and the 2D and external
+ * textures bound on the first {@link #TRACKED_UNITS} units, the read and draw
+ * framebuffers, the viewport, the vertex array, the array buffer, and blending. A pass
+ * can then bind everything it needs without knowing what the one before left bound, and
+ * only the changes reach the driver.
+ *
+ * The tracked state starts unknown, so the first call of each kind always goes through.
+ * It stays right only while every change to it goes through this wrapper: use one per
+ * context, and call {@link #invalidate()} after code that changes state through
+ * {@code GLES30} directly. {@link #getSkippedCount()} tells how many calls were dropped.
+ */
+public final class StateTrackingGl implements Gl {
+
+    static final int TRACKED_UNITS = 8;
+
+    private static final int UNKNOWN = -1;
+
+    private final Gl mGl;
+    private int mProgram;
+    private int mActiveUnit;
+    // Per unit, the GL_TEXTURE_2D binding and then the GL_TEXTURE_EXTERNAL_OES one
+    private final int[] mTextures = new int[TRACKED_UNITS * 2];
+    private int mReadFramebuffer;
+    private int mDrawFramebuffer;
+    private int mViewportX;
+    private int mViewportY;
+    private int mViewportWidth;
+    private int mViewportHeight;
+    private int mVertexArray;
+    private int mArrayBuffer;
+    // UNKNOWN, 0 or 1
+    private int mBlend;
+    private int mBlendSrc;
+    private int mBlendDst;
+    private int mSkippedCount;
+
+    public StateTrackingGl(Gl gl) {
+        mGl = gl;
+        invalidate();
+    }
+
+    /** Forgets the tracked state, so that the next call of each kind goes through. */
+    public void invalidate() {
+        mProgram = UNKNOWN;
+        mActiveUnit = UNKNOWN;
+        for (int i = 0; i < mTextures.length; i++) {
+            mTextures[i] = UNKNOWN;
+        }
+        mReadFramebuffer = UNKNOWN;
+        mDrawFramebuffer = UNKNOWN;
+        mViewportWidth = UNKNOWN;
+        mVertexArray = UNKNOWN;
+        mArrayBuffer = UNKNOWN;
+        mBlend = UNKNOWN;
+        mBlendSrc = UNKNOWN;
+        mBlendDst = UNKNOWN;
+    }
+
+    /**
+     * Records a texture bound on the active unit behind this wrapper's back, as
+     * {@code SurfaceTexture.updateTexImage()} does with its texture.
+     */
+    public void onTextureBound(int target, int texture) {
+        int slot = textureSlot(target);
+        if (slot >= 0) {
+            mTextures[slot] = texture;
+        }
+    }
+
+    /** Calls dropped since the last {@link #resetSkippedCount()}. */
+    public int getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    public void resetSkippedCount() {
+        mSkippedCount = 0;
+    }
+
+    /** Where {@code target}'s binding on the active unit is kept, or -1 if it is not tracked. */
+    private int textureSlot(int target) {
+        int unit = mActiveUnit - GLES30.GL_TEXTURE0;
+        if (mActiveUnit == UNKNOWN || unit < 0 || unit >= TRACKED_UNITS) {
+            return -1;
+        }
+        if (target == GLES30.GL_TEXTURE_2D) {
+            return unit * 2;
+        }
+        if (target == GLES11Ext.GL_TEXTURE_EXTERNAL_OES) {
+            return unit * 2 + 1;
+        }
+        return -1;
+    }
+
+    @Override
+    public int genTexture() {
+        return mGl.genTexture();
+    }
+
+    @Override
+    public void deleteTexture(int texture) {
+        mGl.deleteTexture(texture);
+        // Deleting a texture unbinds it from every unit
+        for (int i = 0; i < mTextures.length; i++) {
+            if (mTextures[i] == texture) {
+                mTextures[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        int slot = textureSlot(target);
+        if (slot >= 0) {
+            if (mTextures[slot] == texture) {
+                mSkippedCount++;
+                return;
+            }
+            mTextures[slot] = texture;
+        }
+        mGl.bindTexture(target, texture);
+    }
+
+    @Override
+    public void texStorage2D(int target, int levels, int internalFormat, int width, int height) {
+        mGl.texStorage2D(target, levels, internalFormat, width, height);
+    }
+
+    @Override
+    public void texParameteri(int target, int pname, int param) {
+        mGl.texParameteri(target, pname, param);
+    }
+
+    @Override
+    public int genFramebuffer() {
+        return mGl.genFramebuffer();
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        mGl.deleteFramebuffer(framebuffer);
+        if (mReadFramebuffer == framebuffer) {
+            mReadFramebuffer = 0;
+        }
+        if (mDrawFramebuffer == framebuffer) {
+            mDrawFramebuffer = 0;
+        }
+    }
+
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+        switch (target) {
+            case GLES30.GL_FRAMEBUFFER:
+                if (mReadFramebuffer == framebuffer && mDrawFramebuffer == framebuffer) {
+                    mSkippedCount++;
+                    return;
+                }
+                mReadFramebuffer = framebuffer;
+                mDrawFramebuffer = framebuffer;
+                break;
+            case GLES30.GL_READ_FRAMEBUFFER:
+                if (mReadFramebuffer == framebuffer) {
+                    mSkippedCount++;
+                    return;
+                }
+                mReadFramebuffer = framebuffer;
+                break;
+            case GLES30.GL_DRAW_FRAMEBUFFER:
+                if (mDrawFramebuffer == framebuffer) {
+                    mSkippedCount++;
+                    return;
+                }
+                mDrawFramebuffer = framebuffer;
+                break;
+            default:
+                break;
+        }
+        mGl.bindFramebuffer(target, framebuffer);
+    }
+
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+        mGl.framebufferTexture2D(target, attachment, textureTarget, texture, level);
+    }
+
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+        if (x == mViewportX && y == mViewportY && width == mViewportWidth && height == mViewportHeight) {
+            mSkippedCount++;
+            return;
+        }
+        mViewportX = x;
+        mViewportY = y;
+        mViewportWidth = width;
+        mViewportHeight = height;
+        mGl.viewport(x, y, width, height);
+    }
+
+    @Override
+    public void scissor(int x, int y, int width, int height) {
+        mGl.scissor(x, y, width, height);
+    }
+
+    @Override
+    public void enable(int cap) {
+        if (cap == GLES30.GL_BLEND) {
+            if (mBlend == 1) {
+                mSkippedCount++;
+                return;
+            }
+            mBlend = 1;
+        }
+        mGl.enable(cap);
+    }
+
+    @Override
+    public void disable(int cap) {
+        if (cap == GLES30.GL_BLEND) {
+            if (mBlend == 0) {
+                mSkippedCount++;
+                return;
+            }
+            mBlend = 0;
+        }
+        mGl.disable(cap);
+    }
+
+    @Override
+    public void blendFunc(int sfactor, int dfactor) {
+        if (sfactor == mBlendSrc && dfactor == mBlendDst) {
+            mSkippedCount++;
+            return;
+        }
+        mBlendSrc = sfactor;
+        mBlendDst = dfactor;
+        mGl.blendFunc(sfactor, dfactor);
+    }
+
+    @Override
+    public int genBuffer() {
+        return mGl.genBuffer();
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        mGl.deleteBuffer(buffer);
+        if (mArrayBuffer == buffer) {
+            mArrayBuffer = 0;
+        }
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        // Other targets, e.g. GL_ELEMENT_ARRAY_BUFFER, belong to the vertex array
+        if (target == GLES30.GL_ARRAY_BUFFER) {
+            if (mArrayBuffer == buffer) {
+                mSkippedCount++;
+                return;
+            }
+            mArrayBuffer = buffer;
+        }
+        mGl.bindBuffer(target, buffer);
+    }
+
+    @Override
+    public void bufferData(int target, int size, Buffer data, int usage) {
+        mGl.bufferData(target, size, data, usage);
+    }
+
+    @Override
+    public void bufferSubData(int target, int offset, int size, Buffer data) {
+        mGl.bufferSubData(target, offset, size, data);
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        // Also binds the generic GL_UNIFORM_BUFFER point, which is not tracked
+        mGl.bindBufferBase(target, index, buffer);
+    }
+
+    @Override
+    public Buffer mapBufferRange(int target, int offset, int length, int access) {
+        return mGl.mapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        return mGl.unmapBuffer(target);
+    }
+
+    @Override
+    public int genVertexArray() {
+        return mGl.genVertexArray();
+    }
+
+    @Override
+    public void deleteVertexArray(int vertexArray) {
+        mGl.deleteVertexArray(vertexArray);
+        if (mVertexArray == vertexArray) {
+            mVertexArray = 0;
+        }
+    }
+
+    @Override
+    public void bindVertexArray(int vertexArray) {
+        if (mVertexArray == vertexArray) {
+            mSkippedCount++;
+            return;
+        }
+        mVertexArray = vertexArray;
+        mGl.bindVertexArray(vertexArray);
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+        mGl.vertexAttribPointer(index, size, type, normalized, stride, offset);
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+        mGl.enableVertexAttribArray(index);
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        mGl.drawArrays(mode, first, count);
+    }
+
+    @Override
+    public long currentContext() {
+        return mGl.currentContext();
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        return mGl.getInteger(pname);
+    }
+
+    @Override
+    public String getString(int name) {
+        return mGl.getString(name);
+    }
+
+    @Override
+    public void activeTexture(int unit) {
+        if (unit == mActiveUnit) {
+            mSkippedCount++;
+            return;
+        }
+        mActiveUnit = unit;
+        mGl.activeTexture(unit);
+    }
+
+    @Override
+    public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1,
+                                int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        mGl.blitFramebuffer(srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        mGl.readPixels(x, y, width, height, format, type, pixels);
+    }
+
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        mGl.readPixels(x, y, width, height, format, type, offset);
+    }
+
+    @Override
+    public int createShader(int type) {
+        return mGl.createShader(type);
+    }
+
+    @Override
+    public void shaderSource(int shader, String source) {
+        mGl.shaderSource(shader, source);
+    }
+
+    @Override
+    public void compileShader(int shader) {
+        mGl.compileShader(shader);
+    }
+
+    @Override
+    public int getShaderi(int shader, int pname) {
+        return mGl.getShaderi(shader, pname);
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return mGl.getShaderInfoLog(shader);
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        mGl.deleteShader(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        return mGl.createProgram();
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        mGl.attachShader(program, shader);
+    }
+
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+        mGl.programParameteri(program, pname, value);
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        mGl.linkProgram(program);
+    }
+
+    @Override
+    public int getProgrami(int program, int pname) {
+        return mGl.getProgrami(program, pname);
+    }
+
+    @Override
+    public String getProgramInfoLog(int program) {
+        return mGl.getProgramInfoLog(program);
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        mGl.deleteProgram(program);
+        if (mProgram == program) {
+            mProgram = UNKNOWN;
+        }
+    }
+
+    @Override
+    public void programBinary(int program, int format, Buffer binary, int length) {
+        mGl.programBinary(program, format, binary, length);
+    }
+
+    @Override
+    public int getProgramBinary(int program, Buffer binary) {
+        return mGl.getProgramBinary(program, binary);
+    }
+
+    @Override
+    public void useProgram(int program) {
+        if (mProgram == program) {
+            mSkippedCount++;
+            return;
+        }
+        mProgram = program;
+        mGl.useProgram(program);
+    }
+
+    @Override
+    public int getUniformLocation(int program, String name) {
+        return mGl.getUniformLocation(program, name);
+    }
+
+    @Override
+    public int getUniformBlockIndex(int program, String name) {
+        return mGl.getUniformBlockIndex(program, name);
+    }
+
+    @Override
+    public void uniformBlockBinding(int program, int blockIndex, int binding) {
+        mGl.uniformBlockBinding(program, blockIndex, binding);
+    }
+
+    @Override
+    public void uniform1i(int location, int x) {
+        mGl.uniform1i(location, x);
+    }
+
+    @Override
+    public void uniform1f(int location, float x) {
+        mGl.uniform1f(location, x);
+    }
+
+    @Override
+    public void uniform2i(int location, int x, int y) {
+        mGl.uniform2i(location, x, y);
+    }
+
+    @Override
+    public void uniform2f(int location, float x, float y) {
+        mGl.uniform2f(location, x, y);
+    }
+
+    @Override
+    public void uniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mGl.uniformMatrix2fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void uniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+        mGl.uniformMatrix4fv(location, count, transpose, value, offset);
+    }
+
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        mGl.dispatchCompute(groupsX, groupsY, groupsZ);
+    }
+
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+        mGl.bindImageTexture(unit, texture, level, layered, layer, access, format);
+    }
+
+    @Override
+    public void memoryBarrier(int barriers) {
+        mGl.memoryBarrier(barriers);
+    }
+
+    @Override
+    public int genQuery() {
+        return mGl.genQuery();
+    }
+
+    @Override
+    public void deleteQuery(int query) {
+        mGl.deleteQuery(query);
+    }
+
+    @Override
+    public void beginQuery(int target, int query) {
+        mGl.beginQuery(target, query);
+    }
+
+    @Override
+    public void endQuery(int target) {
+        mGl.endQuery(target);
+    }
+
+    @Override
+    public int getQueryObjectui(int query, int pname) {
+        return mGl.getQueryObjectui(query, pname);
+    }
+
+    @Override
+    public long fenceSync() {
+        return mGl.fenceSync();
+    }
+
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeoutNanos) {
+        return mGl.clientWaitSync(sync, flags, timeoutNanos);
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        mGl.deleteSync(sync);
+    }
+}
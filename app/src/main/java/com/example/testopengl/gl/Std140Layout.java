@@ -0,0 +1,73 @@
+package com.example.testopengl.gl;
+
+/**
+ * Byte offsets of the members of a {@code layout(std140)} uniform block, worked out in
+ * Java so that a {@link UniformBlock} can be filled without querying the program. Add the
+ * members in declaration order; each call returns the member's offset.
+ *
+ * The std140 rules used: scalars align to 4 bytes, vec2 to 8, vec3 and vec4 to 16. A
+ * matrix is an array of its column vectors and array elements are padded to a vec4, so
+ * a mat2 takes 32 bytes, a mat3 48 and a mat4 64, and a float[n] takes 16n. The block's
+ * size is rounded up to 16 bytes.
+ */
+public final class Std140Layout {
+
+    private static final int VEC4_SIZE = 16;
+
+    private int mSize;
+
+    public int addFloat() {
+        return add(4, 4);
+    }
+
+    public int addInt() {
+        return add(4, 4);
+    }
+
+    public int addVec2() {
+        return add(8, 8);
+    }
+
+    /** A vec3 aligns like a vec4, but a scalar can follow in its fourth component. */
+    public int addVec3() {
+        return add(VEC4_SIZE, 12);
+    }
+
+    public int addVec4() {
+        return add(VEC4_SIZE, VEC4_SIZE);
+    }
+
+    public int addMat2() {
+        return add(VEC4_SIZE, 2 * VEC4_SIZE);
+    }
+
+    public int addMat3() {
+        return add(VEC4_SIZE, 3 * VEC4_SIZE);
+    }
+
+    public int addMat4() {
+        return add(VEC4_SIZE, 4 * VEC4_SIZE);
+    }
+
+    public int addFloatArray(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Bad array length " + length);
+        }
+        return add(VEC4_SIZE, length * VEC4_SIZE);
+    }
+
+    private int add(int alignment, int size) {
+        int offset = align(mSize, alignment);
+        mSize = offset + size;
+        return offset;
+    }
+
+    /** Size of the block in bytes, i.e. of the buffer that backs it. */
+    public int getSize() {
+        return align(mSize, VEC4_SIZE);
+    }
+
+    private static int align(int offset, int alignment) {
+        return (offset + alignment - 1) / alignment * alignment;
+    }
+}
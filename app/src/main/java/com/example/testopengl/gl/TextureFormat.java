@@ -0,0 +1,91 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+/**
+ * Formats a filter can keep its intermediate results in, chosen per
+ * {@link RenderTargetPool} with {@link RenderTargetPool#setIntermediateFormat}.
+ *
+ * Blur passes are bound by memory bandwidth, so the smaller formats make them cheaper:
+ * {@link #RGB565} halves the bytes of {@link #RGBA8}, and {@link #R11G11B10F} keeps four
+ * bytes but trades alpha for range. Their few bits band smooth gradients, so passes that
+ * write them add {@link #DITHER} noise of one step of the format. {@link #RGBA16F} costs
+ * twice the bandwidth for results that no longer round between passes. Formats without
+ * alpha read back an alpha of 1.
+ *
+ * Float formats are only renderable with an extension; {@link #supported} falls back to
+ * {@link #RGBA8} without it.
+ */
+public enum TextureFormat {
+
+    RGBA8(GLES30.GL_RGBA8, true, 0f),
+    // Red and blue have 5 bits
+    RGB565(GLES30.GL_RGB565, false, 1f / 31f),
+    RGBA16F(GLES30.GL_RGBA16F, true, 0f,
+            "GL_EXT_color_buffer_half_float", "GL_EXT_color_buffer_float"),
+    // Blue has a 5-bit mantissa: at most 1/64 apart below 1.0
+    R11G11B10F(GLES30.GL_R11F_G11F_B10F, false, 1f / 64f,
+            "GL_EXT_color_buffer_float", "GL_APPLE_color_buffer_packed_float");
+
+    /**
+     * Declares {@code vec4 dither(vec4 color, float step)}, which adds noise of {@code step}
+     * peak to peak to the color channels; a step of 0 leaves them as they are. The noise is
+     * interleaved gradient noise of the pixel position, so it does not flicker.
+     */
+    public static final String DITHER =
+            "vec4 dither(vec4 color, float step) {\n" +
+                    "    float noise = fract(52.9829189 * fract(dot(gl_FragCoord.xy, vec2(0.06711056, 0.00583715))));\n" +
+                    "    return vec4(color.rgb + (noise - 0.5) * step, color.a);\n" +
+                    "}\n";
+
+    private final int mInternalFormat;
+    private final boolean mHasAlpha;
+    private final float mDitherStep;
+    // Any one of them makes the format renderable; none needed if empty
+    private final String[] mExtensions;
+
+    TextureFormat(int internalFormat, boolean hasAlpha, float ditherStep, String... extensions) {
+        mInternalFormat = internalFormat;
+        mHasAlpha = hasAlpha;
+        mDitherStep = ditherStep;
+        mExtensions = extensions;
+    }
+
+    public int getInternalFormat() {
+        return mInternalFormat;
+    }
+
+    public int getBytesPerPixel() {
+        return RenderTargetPool.bytesPerPixel(mInternalFormat);
+    }
+
+    public boolean hasAlpha() {
+        return mHasAlpha;
+    }
+
+    /** Dither amplitude for passes writing this format, 0 where it needs none. */
+    public float getDitherStep() {
+        return mDitherStep;
+    }
+
+    /** Whether a context with these {@code GL_EXTENSIONS} can render to this format. */
+    public boolean isRenderable(String extensions) {
+        if (mExtensions.length == 0) {
+            return true;
+        }
+        if (extensions == null) {
+            return false;
+        }
+        for (String extension : mExtensions) {
+            if (extensions.contains(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** {@code format} if the current context can render to it, {@link #RGBA8} otherwise. */
+    public static TextureFormat supported(TextureFormat format, Gl gl) {
+        return format.isRenderable(gl.getString(GLES30.GL_EXTENSIONS)) ? format : RGBA8;
+    }
+}
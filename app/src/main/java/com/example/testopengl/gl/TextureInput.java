@@ -0,0 +1,61 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Lets the first pass of a filter sample a SurfaceTexture's external OES texture
+ * directly instead of after a copy into a 2D texture.
+ *
+ * Shaders that support it declare {@code u_Texture} with {@link #SAMPLER} and put
+ * {@link #EXTENSION} right after {@code #version}. They are linked a second time with
+ * {@link #EXTERNAL_DEFINES}, which switches the sampler to {@code samplerExternalOES}
+ * and makes {@link FullScreenQuad#getVertexShader()} apply {@code u_TexMatrix}, the
+ * SurfaceTexture transform, to the texture coordinates.
+ *
+ * Sample offsets are given in output texture space; {@link #transformOffset} maps them
+ * into the external texture's space so the taps stay aligned with the output axes even
+ * when the transform rotates or flips the frame.
+ */
+public final class TextureInput {
+
+    public static final String EXTENSION =
+            "#ifdef EXTERNAL_INPUT\n" +
+                    "#extension GL_OES_EGL_image_external_essl3 : require\n" +
+                    "#endif\n";
+
+    public static final String SAMPLER =
+            "#ifdef EXTERNAL_INPUT\n" +
+                    "uniform samplerExternalOES u_Texture;\n" +
+                    "#else\n" +
+                    "uniform sampler2D u_Texture;\n" +
+                    "#endif\n";
+
+    public static final Map<String, String> EXTERNAL_DEFINES =
+            Collections.singletonMap("EXTERNAL_INPUT", "");
+
+    private TextureInput() {
+    }
+
+    /** Texture target to bind the input to. */
+    public static int target(boolean external) {
+        return external ? GLES11Ext.GL_TEXTURE_EXTERNAL_OES : GLES30.GL_TEXTURE_2D;
+    }
+
+    /**
+     * Applies the linear part of a column-major 4x4 texture matrix to the offset (x, y)
+     * and writes the result to {@code out[0..1]}. A null matrix is the identity.
+     */
+    public static void transformOffset(float[] matrix, float x, float y, float[] out) {
+        if (matrix == null) {
+            out[0] = x;
+            out[1] = y;
+            return;
+        }
+        out[0] = matrix[0] * x + matrix[4] * y;
+        out[1] = matrix[1] * x + matrix[5] * y;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The values of a std140 uniform block, laid out by a {@link Std140Layout}, and the
+ * uniform buffer they are uploaded to. The setters only mark the block changed when a
+ * value differs from the one already there, and {@link #bind} uploads it only then, so a
+ * pass whose parameters stay the same costs one {@code glBindBufferBase} per draw instead
+ * of a {@code glUniform*} call per value.
+ *
+ * Keep one block per set of values that is drawn with, e.g. per pass, rather than
+ * rewriting one block between draws. Must be used on the GL thread; the buffer is made
+ * on the first {@link #bind}.
+ */
+public final class UniformBlock {
+
+    private static final int MAT_COLUMN_STRIDE = 16;
+
+    private final Gl mGl;
+    private final ByteBuffer mData;
+    private int mBuffer;
+    private boolean mChanged = true;
+    private int mUploadCount;
+
+    public UniformBlock(Gl gl, Std140Layout layout) {
+        mGl = gl;
+        mData = ByteBuffer.allocateDirect(layout.getSize()).order(ByteOrder.nativeOrder());
+    }
+
+    public void setFloat(int offset, float x) {
+        int bits = Float.floatToIntBits(x);
+        if (mData.getInt(offset) != bits) {
+            mData.putInt(offset, bits);
+            mChanged = true;
+        }
+    }
+
+    public void setInt(int offset, int x) {
+        if (mData.getInt(offset) != x) {
+            mData.putInt(offset, x);
+            mChanged = true;
+        }
+    }
+
+    public void setVec2(int offset, float x, float y) {
+        setFloat(offset, x);
+        setFloat(offset + 4, y);
+    }
+
+    /** A column-major mat2 from {@code value[offset..offset + 3]}. */
+    public void setMat2(int blockOffset, float[] value, int offset) {
+        setVec2(blockOffset, value[offset], value[offset + 1]);
+        setVec2(blockOffset + MAT_COLUMN_STRIDE, value[offset + 2], value[offset + 3]);
+    }
+
+    /** A column-major mat4 from {@code value[offset..offset + 15]}. */
+    public void setMat4(int blockOffset, float[] value, int offset) {
+        for (int i = 0; i < 16; i++) {
+            setFloat(blockOffset + i * 4, value[offset + i]);
+        }
+    }
+
+    /** Uploads the values if they changed and binds the buffer to {@code binding}. */
+    public void bind(int binding) {
+        if (mBuffer == 0) {
+            mBuffer = mGl.genBuffer();
+            mGl.bindBuffer(GLES30.GL_UNIFORM_BUFFER, mBuffer);
+            mGl.bufferData(GLES30.GL_UNIFORM_BUFFER, mData.capacity(), mData, GLES30.GL_DYNAMIC_DRAW);
+            mChanged = false;
+            mUploadCount++;
+        } else if (mChanged) {
+            mGl.bindBuffer(GLES30.GL_UNIFORM_BUFFER, mBuffer);
+            mGl.bufferSubData(GLES30.GL_UNIFORM_BUFFER, 0, mData.capacity(), mData);
+            mChanged = false;
+            mUploadCount++;
+        }
+        mGl.bindBufferBase(GLES30.GL_UNIFORM_BUFFER, binding, mBuffer);
+    }
+
+    /** Times the values were sent to the buffer. */
+    public int getUploadCount() {
+        return mUploadCount;
+    }
+
+    /** Deletes the buffer; the next {@link #bind} makes a new one with the same values. */
+    public void release() {
+        if (mBuffer != 0) {
+            mGl.deleteBuffer(mBuffer);
+            mBuffer = 0;
+        }
+        mChanged = true;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.testopengl.graph;
+
+import com.example.testopengl.blur.BlurRenderer;
+
+/**
+ * Runs a {@link BlurRenderer}. Every renderer can sample an external texture in its
+ * first pass, so a blur directly after an {@link ExternalOesSource} needs no copy.
+ */
+public final class BlurNode extends EffectNode {
+
+    private final BlurRenderer mBlur;
+
+    public BlurNode(BlurRenderer blur) {
+        super("BlurNode");
+        mBlur = blur;
+    }
+
+    public BlurRenderer getBlur() {
+        return mBlur;
+    }
+
+    @Override
+    public boolean acceptsExternalInput() {
+        return true;
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mBlur.setSize(width, height);
+    }
+
+    @Override
+    public void draw(int texture, float[] textureMatrix, int framebuffer) {
+        if (textureMatrix != null) {
+            mBlur.drawExternal(texture, textureMatrix, framebuffer);
+        } else {
+            mBlur.draw(texture, framebuffer);
+        }
+    }
+
+    @Override
+    public void release() {
+        mBlur.release();
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.testopengl.graph;
+
+/**
+ * Where a {@link RoiBlurNode} blurs: the whole frame, a rectangle such as the area behind
+ * a panel, a circle or everything outside one, or the pixels a mask texture marks.
+ * Coordinates are pixels of the graph's size with the origin at the bottom left, like
+ * {@code gl_FragCoord}.
+ *
+ * Besides the shape it works out the boxes the node draws in: {@link #getBounds}, the
+ * pixels that can change, and {@link #getBlurBox}, the bounds grown by the blur's reach
+ * so that the blur near the edge of the region sees the neighbours it would see in the
+ * whole frame. Plain Java, so the geometry can be tested on the JVM.
+ */
+public final class BlurRegion {
+
+    public enum Shape {
+        FULL,
+        RECT,
+        CIRCLE,
+        MASK
+    }
+
+    /** Blur boxes are grown to multiples of this, so that pyramid levels halve evenly. */
+    public static final int ALIGNMENT = 8;
+
+    private Shape mShape = Shape.FULL;
+    // For a circle: blur outside it instead of inside
+    private boolean mOutside;
+    // Rectangle, or the box around a mask's marked pixels
+    private float mLeft;
+    private float mBottom;
+    private float mRight;
+    private float mTop;
+    private float mCenterX;
+    private float mCenterY;
+    private float mRadius;
+    private int mMaskTexture;
+
+    public void setFull() {
+        mShape = Shape.FULL;
+    }
+
+    public void setRect(float left, float bottom, float right, float top) {
+        mShape = Shape.RECT;
+        mLeft = left;
+        mBottom = bottom;
+        mRight = right;
+        mTop = top;
+    }
+
+    /**
+     * @param outside blur everything outside the circle, e.g. around a focus point,
+     *                instead of the inside
+     */
+    public void setCircle(float centerX, float centerY, float radius, boolean outside) {
+        mShape = Shape.CIRCLE;
+        mCenterX = centerX;
+        mCenterY = centerY;
+        mRadius = radius;
+        mOutside = outside;
+    }
+
+    /**
+     * Blurs where the red channel of {@code texture}, a GL_TEXTURE_2D covering the frame,
+     * is over one half. Nothing outside the box from ({@code left}, {@code bottom}) to
+     * ({@code right}, {@code top}) may be marked; pass the frame's size if unknown.
+     */
+    public void setMask(int texture, float left, float bottom, float right, float top) {
+        mShape = Shape.MASK;
+        mMaskTexture = texture;
+        mLeft = left;
+        mBottom = bottom;
+        mRight = right;
+        mTop = top;
+    }
+
+    public Shape getShape() {
+        return mShape;
+    }
+
+    public boolean isOutside() {
+        return mShape == Shape.CIRCLE && mOutside;
+    }
+
+    public float getLeft() {
+        return mLeft;
+    }
+
+    public float getBottom() {
+        return mBottom;
+    }
+
+    public float getRight() {
+        return mRight;
+    }
+
+    public float getTop() {
+        return mTop;
+    }
+
+    public float getCenterX() {
+        return mCenterX;
+    }
+
+    public float getCenterY() {
+        return mCenterY;
+    }
+
+    public float getRadius() {
+        return mRadius;
+    }
+
+    public int getMaskTexture() {
+        return mMaskTexture;
+    }
+
+    /**
+     * Writes x, y, width and height of the pixels the region covers, within a frame of
+     * {@code width} by {@code height}, to {@code box[0..3]}.
+     *
+     * @return false if it covers none
+     */
+    public boolean getBounds(int width, int height, int[] box) {
+        switch (mShape) {
+            case RECT:
+            case MASK:
+                return clip(mLeft, mBottom, mRight, mTop, width, height, box);
+            case CIRCLE:
+                if (mOutside) {
+                    // Empty only if the circle covers every corner
+                    float dx = Math.max(mCenterX, width - mCenterX);
+                    float dy = Math.max(mCenterY, height - mCenterY);
+                    if (dx * dx + dy * dy <= mRadius * mRadius) {
+                        return false;
+                    }
+                    return clip(0, 0, width, height, width, height, box);
+                }
+                return clip(mCenterX - mRadius, mCenterY - mRadius, mCenterX + mRadius, mCenterY + mRadius,
+                        width, height, box);
+            default:
+                return clip(0, 0, width, height, width, height, box);
+        }
+    }
+
+    /**
+     * Like {@link #getBounds}, grown by {@code padding} pixels on every side and then to
+     * multiples of {@link #ALIGNMENT}, within the frame: the part of the frame a blur of
+     * that reach has to run on.
+     */
+    public boolean getBlurBox(int width, int height, int padding, int[] box) {
+        if (!getBounds(width, height, box)) {
+            return false;
+        }
+        int left = Math.max(0, (box[0] - padding) / ALIGNMENT * ALIGNMENT);
+        int bottom = Math.max(0, (box[1] - padding) / ALIGNMENT * ALIGNMENT);
+        int right = Math.min(width, alignUp(box[0] + box[2] + padding));
+        int top = Math.min(height, alignUp(box[1] + box[3] + padding));
+        box[0] = left;
+        box[1] = bottom;
+        box[2] = right - left;
+        box[3] = top - bottom;
+        return true;
+    }
+
+    /**
+     * The box around the pixels that stay sharp, for when the blur runs on the whole
+     * frame and they are drawn back over it: the circle's bounds when blurring outside
+     * it, the whole frame for the other shapes.
+     *
+     * @return false if every pixel is blurred
+     */
+    public boolean getSharpBounds(int width, int height, int[] box) {
+        if (mShape == Shape.FULL) {
+            return false;
+        }
+        if (isOutside()) {
+            return clip(mCenterX - mRadius, mCenterY - mRadius, mCenterX + mRadius, mCenterY + mRadius,
+                    width, height, box);
+        }
+        return clip(0, 0, width, height, width, height, box);
+    }
+
+    /** Whether {@code box} is the whole frame, so there is nothing to crop. */
+    public static boolean isWholeFrame(int[] box, int width, int height) {
+        return box[0] == 0 && box[1] == 0 && box[2] == width && box[3] == height;
+    }
+
+    private static int alignUp(int value) {
+        return (value + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static boolean clip(float left, float bottom, float right, float top, int width, int height, int[] box) {
+        int x0 = Math.max(0, (int) Math.floor(left));
+        int y0 = Math.max(0, (int) Math.floor(bottom));
+        int x1 = Math.min(width, (int) Math.ceil(right));
+        int y1 = Math.min(height, (int) Math.ceil(top));
+        if (x1 <= x0 || y1 <= y0) {
+            return false;
+        }
+        box[0] = x0;
+        box[1] = y0;
+        box[2] = x1 - x0;
+        box[3] = y1 - y0;
+        return true;
+    }
+}
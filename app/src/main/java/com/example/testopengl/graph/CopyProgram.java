@@ -0,0 +1,78 @@
+package com.example.testopengl.graph;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.TextureInput;
+
+/**
+ * Draws a texture unchanged; the pass the scheduler falls back to when a result has to
+ * be converted to 2D or written to more than one place.
+ */
+final class CopyProgram {
+
+    private static final String FRAGMENT_SHADER =
+            "#version 300 es\n" +
+                    TextureInput.EXTENSION +
+                    "precision mediump float;\n" +
+                    TextureInput.SAMPLER +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    "void main() {\n" +
+                    "    o_Color = texture(u_Texture, v_TexCoord);\n" +
+                    "}\n";
+
+    private final Gl mGl;
+    private final FullScreenQuad mQuad;
+    private int mProgram;
+    private int mTextureLocation;
+    private int mExternalProgram;
+    private int mExternalTextureLocation;
+    private int mExternalTexMatrixLocation;
+
+    CopyProgram(Gl gl) {
+        mGl = gl;
+        mQuad = FullScreenQuad.getInstance(gl);
+    }
+
+    void draw(int texture, float[] textureMatrix, int framebuffer, int width, int height) {
+        draw(texture, textureMatrix, framebuffer, 0, 0, width, height);
+    }
+
+    /**
+     * Draws the whole texture into the viewport ({@code x}, {@code y}, {@code width},
+     * {@code height}) of {@code framebuffer}; with a negative offset and the size of the
+     * texture this crops the part at (-x, -y) into a smaller target.
+     */
+    void draw(int texture, float[] textureMatrix, int framebuffer, int x, int y, int width, int height) {
+        boolean external = textureMatrix != null;
+        if (external) {
+            if (mExternalProgram == 0) {
+                mExternalProgram = ShaderProgramCache.getInstance().getProgram(mGl, ProgramKey.of(
+                        mQuad.getVertexShader(), FRAGMENT_SHADER, TextureInput.EXTERNAL_DEFINES));
+                mExternalTextureLocation = mGl.getUniformLocation(mExternalProgram, "u_Texture");
+                mExternalTexMatrixLocation = mGl.getUniformLocation(mExternalProgram, "u_TexMatrix");
+            }
+            mGl.useProgram(mExternalProgram);
+            mGl.uniform1i(mExternalTextureLocation, 0);
+            mGl.uniformMatrix4fv(mExternalTexMatrixLocation, 1, false, textureMatrix, 0);
+        } else {
+            if (mProgram == 0) {
+                mProgram = ShaderProgramCache.getInstance().getProgram(mGl, mQuad.getVertexShader(), FRAGMENT_SHADER);
+                mTextureLocation = mGl.getUniformLocation(mProgram, "u_Texture");
+            }
+            mGl.useProgram(mProgram);
+            mGl.uniform1i(mTextureLocation, 0);
+        }
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+        mGl.viewport(x, y, width, height);
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(TextureInput.target(external), texture);
+        mQuad.bind();
+        mQuad.draw();
+        mQuad.unbind();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.testopengl.graph;
+
+/**
+ * Transforms one input texture into one output of the graph's size.
+ */
+public abstract class EffectNode extends Node {
+
+    protected EffectNode(String name) {
+        super(name);
+    }
+
+    /**
+     * Whether {@link #draw} can sample an external OES texture itself. If so the
+     * scheduler feeds an {@link ExternalOesSource} straight into it and skips the copy.
+     */
+    public abstract boolean acceptsExternalInput();
+
+    /** Called with the graph's size before the first draw and whenever it changes. */
+    public abstract void setSize(int width, int height);
+
+    /**
+     * Draws into {@code framebuffer}. {@code textureMatrix} is non-null only when
+     * {@code texture} is an external OES texture, which only happens if
+     * {@link #acceptsExternalInput()}.
+     */
+    public abstract void draw(int texture, float[] textureMatrix, int framebuffer);
+
+    public void release() {
+    }
+}
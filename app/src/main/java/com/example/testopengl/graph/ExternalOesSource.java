@@ -0,0 +1,57 @@
+package com.example.testopengl.graph;
+
+import android.graphics.SurfaceTexture;
+
+/**
+ * The external OES texture a {@link SurfaceTexture} is attached to, e.g. video frames
+ * from a MediaPlayer. Effects that accept external input sample it directly in their
+ * first pass; for anything else the scheduler inserts one copy into a 2D texture.
+ */
+public final class ExternalOesSource extends SourceNode {
+
+    private final int mTexture;
+    // Filled in place every frame so the render loop does not allocate
+    private final float[] mTransformMatrix = new float[16];
+    private long mTimestamp;
+
+    public ExternalOesSource(int texture) {
+        super("ExternalOesSource");
+        mTexture = texture;
+        // Identity until the first frame arrives
+        mTransformMatrix[0] = 1f;
+        mTransformMatrix[5] = 1f;
+        mTransformMatrix[10] = 1f;
+        mTransformMatrix[15] = 1f;
+    }
+
+    /** Latches the newest frame and its transform. Call on the GL thread before drawing. */
+    public void update(SurfaceTexture surfaceTexture) {
+        surfaceTexture.updateTexImage();
+        surfaceTexture.getTransformMatrix(mTransformMatrix);
+        mTimestamp = surfaceTexture.getTimestamp();
+    }
+
+    /** Timestamp of the latched frame in nanoseconds, or 0 before the first one. */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public void setTransformMatrix(float[] matrix) {
+        System.arraycopy(matrix, 0, mTransformMatrix, 0, 16);
+    }
+
+    @Override
+    public int getTexture() {
+        return mTexture;
+    }
+
+    @Override
+    public boolean isExternal() {
+        return true;
+    }
+
+    @Override
+    public float[] getTransformMatrix() {
+        return mTransformMatrix;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.testopengl.graph;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.RenderTargetPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A per-frame rendering pipeline: sources, effects and sinks connected by edges, e.g.
+ * <pre>
+ * ExternalOesSource video = graph.add(new ExternalOesSource(oesTexture));
+ * BlurNode blur = graph.add(new BlurNode(new AdaptiveBlurFilter(pool)));
+ * ScreenSink screen = graph.add(new ScreenSink());
+ * graph.connect(video, blur);
+ * graph.connect(blur, screen);
+ * </pre>
+ * The graph is resolved by {@link GraphScheduler} into a {@link GraphPlan} the first time
+ * it is drawn after a change; the example resolves to a single blur whose first pass
+ * samples the video frame and whose last pass writes the screen. Intermediate targets
+ * come from the {@link RenderTargetPool} and go back to it after their last reader.
+ *
+ * All nodes draw at the graph's size. Building and scheduling do not touch GL; drawing
+ * must happen on the GL thread, and the graph's own passes call GL through the pool's
+ * {@link com.example.testopengl.gl.Gl}.
+ */
+public final class FilterGraph {
+
+    private final RenderTargetPool mPool;
+    private final List<Node> mNodes = new ArrayList<>();
+    private final Map<Node, Node> mInputs = new HashMap<>();
+    private final CopyProgram mCopy;
+    private GraphPlan mPlan;
+    // Indexed by plan slot; only non-null while a frame is being drawn
+    private FrameBufferObject[] mTargets = new FrameBufferObject[0];
+    private int mWidth;
+    private int mHeight;
+
+    public FilterGraph(RenderTargetPool pool) {
+        mPool = pool;
+        mCopy = new CopyProgram(pool.getGl());
+    }
+
+    public <T extends Node> T add(T node) {
+        if (mNodes.contains(node)) {
+            throw new IllegalArgumentException(node + " is already in the graph");
+        }
+        mNodes.add(node);
+        if (node instanceof EffectNode && mWidth > 0) {
+            ((EffectNode) node).setSize(mWidth, mHeight);
+        }
+        mPlan = null;
+        return node;
+    }
+
+    /** Feeds the output of {@code from} into {@code to}; every effect and sink takes one input. */
+    public void connect(Node from, Node to) {
+        if (!mNodes.contains(from) || !mNodes.contains(to)) {
+            throw new IllegalArgumentException("Add " + from + " and " + to + " to the graph first");
+        }
+        if (from instanceof SinkNode) {
+            throw new IllegalArgumentException(from + " has no output");
+        }
+        if (to instanceof SourceNode) {
+            throw new IllegalArgumentException(to + " takes no input");
+        }
+        if (mInputs.containsKey(to)) {
+            throw new IllegalArgumentException(to + " already has an input");
+        }
+        mInputs.put(to, from);
+        mPlan = null;
+    }
+
+    /** Size of every pass. Call from onSurfaceChanged. */
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        for (Node node : mNodes) {
+            if (node instanceof EffectNode) {
+                ((EffectNode) node).setSize(width, height);
+            }
+        }
+    }
+
+    /** The resolved passes; throws IllegalStateException if the graph is incomplete. */
+    public GraphPlan getPlan() {
+        if (mPlan == null) {
+            mPlan = GraphScheduler.schedule(mNodes, mInputs);
+            mTargets = new FrameBufferObject[mPlan.getSlotCount()];
+        }
+        return mPlan;
+    }
+
+    public void draw() {
+        GraphPlan plan = getPlan();
+        for (int i = 0; i < plan.getPassCount(); i++) {
+            GraphPlan.Pass pass = plan.getPass(i);
+
+            int texture;
+            float[] textureMatrix = null;
+            SourceNode source = pass.getInputSource();
+            if (source != null) {
+                texture = source.getTexture();
+                textureMatrix = source.getTransformMatrix();
+            } else {
+                texture = mTargets[pass.getInputSlot()].getTexture();
+            }
+
+            int framebuffer;
+            if (pass.getOutputSink() != null) {
+                framebuffer = pass.getOutputSink().getFramebuffer();
+            } else {
+                FrameBufferObject target = mPool.acquire(mWidth, mHeight, GLES30.GL_RGBA8);
+                mTargets[pass.getOutputSlot()] = target;
+                framebuffer = target.getFramebuffer();
+            }
+
+            if (pass.getKind() == GraphPlan.Kind.EFFECT) {
+                pass.getEffect().draw(texture, textureMatrix, framebuffer);
+            } else {
+                mCopy.draw(texture, textureMatrix, framebuffer, mWidth, mHeight);
+            }
+
+            int[] released = pass.getReleasedSlots();
+            for (int slot : released) {
+                mPool.release(mTargets[slot]);
+                mTargets[slot] = null;
+            }
+        }
+        mPool.getGl().bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+    }
+
+    /** Releases every effect; the graph can not be drawn afterwards. */
+    public void release() {
+        for (Node node : mNodes) {
+            if (node instanceof EffectNode) {
+                ((EffectNode) node).release();
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.testopengl.graph;
+
+import java.util.List;
+
+/**
+ * The passes a {@link FilterGraph} draws each frame, in order, as resolved by
+ * {@link GraphScheduler}. Intermediate results live in numbered target slots; a slot is
+ * released after its last reader, so later passes can reuse it.
+ */
+public final class GraphPlan {
+
+    public enum Kind {
+        /** Runs an {@link EffectNode}. */
+        EFFECT,
+        /** Copies its input unchanged, converting an external texture to 2D if needed. */
+        COPY
+    }
+
+    /** No target slot: the pass reads a source or writes a sink. */
+    public static final int NO_SLOT = -1;
+
+    public static final class Pass {
+        private final Kind mKind;
+        private final EffectNode mEffect;
+        private final SourceNode mInputSource;
+        private final int mInputSlot;
+        private final SinkNode mOutputSink;
+        private final int mOutputSlot;
+        private final int[] mReleasedSlots;
+
+        Pass(Kind kind, EffectNode effect, SourceNode inputSource, int inputSlot,
+                SinkNode outputSink, int outputSlot, int[] releasedSlots) {
+            mKind = kind;
+            mEffect = effect;
+            mInputSource = inputSource;
+            mInputSlot = inputSlot;
+            mOutputSink = outputSink;
+            mOutputSlot = outputSlot;
+            mReleasedSlots = releasedSlots;
+        }
+
+        public Kind getKind() {
+            return mKind;
+        }
+
+        /** The effect of an {@link Kind#EFFECT} pass, null for a copy. */
+        public EffectNode getEffect() {
+            return mEffect;
+        }
+
+        /** The source read directly, or null if the pass reads {@link #getInputSlot()}. */
+        public SourceNode getInputSource() {
+            return mInputSource;
+        }
+
+        public int getInputSlot() {
+            return mInputSlot;
+        }
+
+        /** Whether the pass samples an external OES texture itself. */
+        public boolean readsExternal() {
+            return mInputSource != null && mInputSource.isExternal();
+        }
+
+        /** The sink written directly, or null if the pass writes {@link #getOutputSlot()}. */
+        public SinkNode getOutputSink() {
+            return mOutputSink;
+        }
+
+        public int getOutputSlot() {
+            return mOutputSlot;
+        }
+
+        /** Slots whose last reader is this pass, to release once it has been drawn. */
+        public int[] getReleasedSlots() {
+            return mReleasedSlots;
+        }
+
+        @Override
+        public String toString() {
+            String in = mInputSource != null ? mInputSource.getName() : "slot" + mInputSlot;
+            String out = mOutputSink != null ? mOutputSink.getName() : "slot" + mOutputSlot;
+            String what = mKind == Kind.EFFECT ? mEffect.getName() : "Copy";
+            return what + "(" + in + " -> " + out + ")";
+        }
+    }
+
+    private final Pass[] mPasses;
+    private final int mSlotCount;
+
+    GraphPlan(List<Pass> passes, int slotCount) {
+        mPasses = passes.toArray(new Pass[0]);
+        mSlotCount = slotCount;
+    }
+
+    public int getPassCount() {
+        return mPasses.length;
+    }
+
+    public Pass getPass(int index) {
+        return mPasses[index];
+    }
+
+    /** Number of passes of the given kind; copies are the passes fusion could not remove. */
+    public int countPasses(Kind kind) {
+        int count = 0;
+        for (Pass pass : mPasses) {
+            if (pass.mKind == kind) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** Most intermediate targets alive at once. */
+    public int getSlotCount() {
+        return mSlotCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Pass pass : mPasses) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(pass);
+        }
+        return sb.toString();
+    }
+}
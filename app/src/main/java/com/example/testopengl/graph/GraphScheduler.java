@@ -0,0 +1,183 @@
+package com.example.testopengl.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves a {@link FilterGraph} into the fewest passes that draw it:
+ * <ul>
+ * <li>an external source feeding an effect that accepts external input is sampled by
+ * that effect's first pass, not copied into a 2D texture first; otherwise it is copied
+ * once, however many effects read the copy;</li>
+ * <li>an effect whose only consumer is a sink draws straight into the sink;</li>
+ * <li>intermediate results get target slots by liveness, so a slot is reused as soon as
+ * its last reader has been drawn.</li>
+ * </ul>
+ * Pure bookkeeping; no GL calls.
+ */
+final class GraphScheduler {
+
+    private GraphScheduler() {
+    }
+
+    /**
+     * @param nodes  the graph's nodes in the order they were added
+     * @param inputs the input of every effect and sink
+     */
+    static GraphPlan schedule(List<Node> nodes, Map<Node, Node> inputs) {
+        Map<Node, List<Node>> consumers = validate(nodes, inputs);
+        List<Node> order = sort(nodes, inputs, consumers);
+
+        // Emit passes on virtual registers, one per intermediate result
+        List<Emitted> emitted = new ArrayList<>();
+        Map<Node, Value> values = new HashMap<>();
+        Map<SourceNode, Value> converted = new HashMap<>();
+        Set<SinkNode> drawnDirectly = new HashSet<>();
+        int registers = 0;
+        for (Node node : order) {
+            if (node instanceof SourceNode) {
+                values.put(node, new Value((SourceNode) node, GraphPlan.NO_SLOT));
+            } else if (node instanceof EffectNode) {
+                EffectNode effect = (EffectNode) node;
+                Value in = values.get(inputs.get(node));
+                if (in.mSource != null && in.mSource.isExternal() && !effect.acceptsExternalInput()) {
+                    Value copy = converted.get(in.mSource);
+                    if (copy == null) {
+                        copy = new Value(null, registers++);
+                        emitted.add(new Emitted(GraphPlan.Kind.COPY, null, in, null, copy.mRegister));
+                        converted.put(in.mSource, copy);
+                    }
+                    in = copy;
+                }
+                List<Node> out = consumers.get(node);
+                if (out.size() == 1 && out.get(0) instanceof SinkNode) {
+                    SinkNode sink = (SinkNode) out.get(0);
+                    emitted.add(new Emitted(GraphPlan.Kind.EFFECT, effect, in, sink, GraphPlan.NO_SLOT));
+                    drawnDirectly.add(sink);
+                } else {
+                    Value result = new Value(null, registers++);
+                    emitted.add(new Emitted(GraphPlan.Kind.EFFECT, effect, in, null, result.mRegister));
+                    values.put(node, result);
+                }
+            } else if (!drawnDirectly.contains(node)) {
+                Value in = values.get(inputs.get(node));
+                emitted.add(new Emitted(GraphPlan.Kind.COPY, null, in, (SinkNode) node, GraphPlan.NO_SLOT));
+            }
+        }
+
+        // Last pass reading each register
+        int[] lastUse = new int[registers];
+        for (int i = 0; i < emitted.size(); i++) {
+            Value in = emitted.get(i).mInput;
+            if (in.mRegister != GraphPlan.NO_SLOT) {
+                lastUse[in.mRegister] = i;
+            }
+        }
+
+        // Map registers onto the lowest free slot. The output is assigned before the
+        // input is released, so a pass never writes the target it reads
+        int[] slotOf = new int[registers];
+        List<Boolean> slotBusy = new ArrayList<>();
+        List<GraphPlan.Pass> passes = new ArrayList<>(emitted.size());
+        for (int i = 0; i < emitted.size(); i++) {
+            Emitted e = emitted.get(i);
+            int outputSlot = GraphPlan.NO_SLOT;
+            if (e.mOutputRegister != GraphPlan.NO_SLOT) {
+                outputSlot = slotBusy.indexOf(Boolean.FALSE);
+                if (outputSlot < 0) {
+                    outputSlot = slotBusy.size();
+                    slotBusy.add(Boolean.TRUE);
+                } else {
+                    slotBusy.set(outputSlot, Boolean.TRUE);
+                }
+                slotOf[e.mOutputRegister] = outputSlot;
+            }
+            int inputSlot = GraphPlan.NO_SLOT;
+            int[] released = new int[0];
+            if (e.mInput.mRegister != GraphPlan.NO_SLOT) {
+                inputSlot = slotOf[e.mInput.mRegister];
+                if (lastUse[e.mInput.mRegister] == i) {
+                    slotBusy.set(inputSlot, Boolean.FALSE);
+                    released = new int[]{inputSlot};
+                }
+            }
+            passes.add(new GraphPlan.Pass(e.mKind, e.mEffect, e.mInput.mSource, inputSlot,
+                    e.mSink, outputSlot, released));
+        }
+        return new GraphPlan(passes, slotBusy.size());
+    }
+
+    private static Map<Node, List<Node>> validate(List<Node> nodes, Map<Node, Node> inputs) {
+        Map<Node, List<Node>> consumers = new HashMap<>();
+        for (Node node : nodes) {
+            consumers.put(node, new ArrayList<Node>());
+        }
+        for (Node node : nodes) {
+            Node input = inputs.get(node);
+            if (node instanceof SourceNode) {
+                continue;
+            }
+            if (input == null) {
+                throw new IllegalStateException(node + " has no input");
+            }
+            consumers.get(input).add(node);
+        }
+        for (Node node : nodes) {
+            if (node instanceof EffectNode && consumers.get(node).isEmpty()) {
+                throw new IllegalStateException(node + " output is never used");
+            }
+        }
+        return consumers;
+    }
+
+    private static List<Node> sort(List<Node> nodes, Map<Node, Node> inputs, Map<Node, List<Node>> consumers) {
+        // Kahn's algorithm; every node has at most one input
+        List<Node> order = new ArrayList<>(nodes.size());
+        ArrayDeque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes) {
+            if (!inputs.containsKey(node)) {
+                ready.add(node);
+            }
+        }
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            order.add(node);
+            ready.addAll(consumers.get(node));
+        }
+        if (order.size() != nodes.size()) {
+            throw new IllegalStateException("Filter graph has a cycle");
+        }
+        return order;
+    }
+
+    private static final class Value {
+        final SourceNode mSource;
+        final int mRegister;
+
+        Value(SourceNode source, int register) {
+            mSource = source;
+            mRegister = register;
+        }
+    }
+
+    private static final class Emitted {
+        final GraphPlan.Kind mKind;
+        final EffectNode mEffect;
+        final Value mInput;
+        final SinkNode mSink;
+        final int mOutputRegister;
+
+        Emitted(GraphPlan.Kind kind, EffectNode effect, Value input, SinkNode sink, int outputRegister) {
+            mKind = kind;
+            mEffect = effect;
+            mInput = input;
+            mSink = sink;
+            mOutputRegister = outputRegister;
+        }
+    }
+}
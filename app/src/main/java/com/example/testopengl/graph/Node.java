@@ -0,0 +1,23 @@
+package com.example.testopengl.graph;
+
+/**
+ * A vertex of a {@link FilterGraph}: a {@link SourceNode} producing a texture, an
+ * {@link EffectNode} transforming one, or a {@link SinkNode} consuming one.
+ */
+public abstract class Node {
+
+    private final String mName;
+
+    Node(String name) {
+        mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    @Override
+    public String toString() {
+        return mName;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.testopengl.graph;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.ProgramKey;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.TextureInput;
+
+/**
+ * Draws a texture only where a {@link BlurRegion} covers, or only where it does not, and
+ * discards the other fragments. The region is tested at {@code gl_FragCoord}, so the
+ * framebuffer must be the whole frame; the texture may fill just a part of it through the
+ * viewport.
+ */
+final class RegionMaskProgram {
+
+    private static final String FRAGMENT_SHADER =
+            "#version 300 es\n" +
+                    TextureInput.EXTENSION +
+                    "precision mediump float;\n" +
+                    TextureInput.SAMPLER +
+                    "uniform sampler2D u_Mask;\n" +
+                    // BlurRegion.Shape ordinal
+                    "uniform int u_Shape;\n" +
+                    "uniform vec2 u_RectMin;\n" +
+                    "uniform vec2 u_RectMax;\n" +
+                    "uniform vec2 u_Center;\n" +
+                    "uniform float u_Radius;\n" +
+                    "uniform vec2 u_FrameSize;\n" +
+                    // Draw where the shape does not cover instead
+                    "uniform int u_Invert;\n" +
+                    "in vec2 v_TexCoord;\n" +
+                    "out vec4 o_Color;\n" +
+                    "bool covered(vec2 p) {\n" +
+                    "    if (u_Shape == 1) {\n" +
+                    "        return all(greaterThanEqual(p, u_RectMin)) && all(lessThan(p, u_RectMax));\n" +
+                    "    } else if (u_Shape == 2) {\n" +
+                    "        return distance(p, u_Center) < u_Radius;\n" +
+                    "    } else if (u_Shape == 3) {\n" +
+                    "        return texture(u_Mask, p / u_FrameSize).r > 0.5;\n" +
+                    "    }\n" +
+                    "    return true;\n" +
+                    "}\n" +
+                    "void main() {\n" +
+                    "    if (covered(gl_FragCoord.xy) == (u_Invert != 0)) {\n" +
+                    "        discard;\n" +
+                    "    }\n" +
+                    "    o_Color = texture(u_Texture, v_TexCoord);\n" +
+                    "}\n";
+
+    private static final int MASK_UNIT = 1;
+
+    private final Gl mGl;
+    private final FullScreenQuad mQuad;
+    private final Variant mVariant = new Variant(false);
+    private final Variant mExternalVariant = new Variant(true);
+
+    private final class Variant {
+        final boolean mExternal;
+        int mProgram;
+        int mTexMatrixLocation;
+        int mShapeLocation;
+        int mRectMinLocation;
+        int mRectMaxLocation;
+        int mCenterLocation;
+        int mRadiusLocation;
+        int mFrameSizeLocation;
+        int mInvertLocation;
+
+        Variant(boolean external) {
+            mExternal = external;
+        }
+
+        void use() {
+            if (mProgram == 0) {
+                mProgram = mExternal
+                        ? ShaderProgramCache.getInstance().getProgram(mGl, ProgramKey.of(
+                                mQuad.getVertexShader(), FRAGMENT_SHADER, TextureInput.EXTERNAL_DEFINES))
+                        : ShaderProgramCache.getInstance().getProgram(mGl, mQuad.getVertexShader(), FRAGMENT_SHADER);
+                mTexMatrixLocation = mGl.getUniformLocation(mProgram, "u_TexMatrix");
+                mShapeLocation = mGl.getUniformLocation(mProgram, "u_Shape");
+                mRectMinLocation = mGl.getUniformLocation(mProgram, "u_RectMin");
+                mRectMaxLocation = mGl.getUniformLocation(mProgram, "u_RectMax");
+                mCenterLocation = mGl.getUniformLocation(mProgram, "u_Center");
+                mRadiusLocation = mGl.getUniformLocation(mProgram, "u_Radius");
+                mFrameSizeLocation = mGl.getUniformLocation(mProgram, "u_FrameSize");
+                mInvertLocation = mGl.getUniformLocation(mProgram, "u_Invert");
+                mGl.useProgram(mProgram);
+                // Samplers never change
+                mGl.uniform1i(mGl.getUniformLocation(mProgram, "u_Texture"), 0);
+                mGl.uniform1i(mGl.getUniformLocation(mProgram, "u_Mask"), MASK_UNIT);
+            }
+            mGl.useProgram(mProgram);
+        }
+    }
+
+    RegionMaskProgram(Gl gl) {
+        mGl = gl;
+        mQuad = FullScreenQuad.getInstance(gl);
+    }
+
+    /**
+     * Draws {@code texture} into the viewport ({@code x}, {@code y}, {@code width},
+     * {@code height}) of {@code framebuffer}, a target of {@code frameWidth} by
+     * {@code frameHeight}, where {@code region} covers, or where it does not if
+     * {@code inside} is false. Set a scissor box around the pixels that can pass to save
+     * the fragments that would be discarded.
+     */
+    void draw(BlurRegion region, boolean inside, int texture, float[] textureMatrix, int framebuffer,
+              int x, int y, int width, int height, int frameWidth, int frameHeight) {
+        boolean external = textureMatrix != null;
+        Variant variant = external ? mExternalVariant : mVariant;
+        variant.use();
+        if (external) {
+            mGl.uniformMatrix4fv(variant.mTexMatrixLocation, 1, false, textureMatrix, 0);
+        }
+        BlurRegion.Shape shape = region.getShape();
+        mGl.uniform1i(variant.mShapeLocation, shape.ordinal());
+        mGl.uniform1i(variant.mInvertLocation, inside == region.isOutside() ? 1 : 0);
+        if (shape == BlurRegion.Shape.RECT) {
+            mGl.uniform2f(variant.mRectMinLocation, region.getLeft(), region.getBottom());
+            mGl.uniform2f(variant.mRectMaxLocation, region.getRight(), region.getTop());
+        } else if (shape == BlurRegion.Shape.CIRCLE) {
+            mGl.uniform2f(variant.mCenterLocation, region.getCenterX(), region.getCenterY());
+            mGl.uniform1f(variant.mRadiusLocation, region.getRadius());
+        } else if (shape == BlurRegion.Shape.MASK) {
+            mGl.uniform2f(variant.mFrameSizeLocation, frameWidth, frameHeight);
+            mGl.activeTexture(GLES30.GL_TEXTURE0 + MASK_UNIT);
+            mGl.bindTexture(GLES30.GL_TEXTURE_2D, region.getMaskTexture());
+        }
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+        mGl.viewport(x, y, width, height);
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(TextureInput.target(external), texture);
+        mQuad.bind();
+        mQuad.draw();
+        mQuad.unbind();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.testopengl.graph;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.blur.BlurRenderer;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.RenderTargetPool;
+
+/**
+ * Blurs only the part of the frame a {@link BlurRegion} covers and passes the rest
+ * through sharp, so that a blur behind a panel costs in proportion to the panel.
+ *
+ * When the region's blur box, its bounds grown by the blur's reach, is smaller than the
+ * frame, that box is cropped into a patch and the {@link BlurRenderer} runs at the patch's
+ * size: every pass, downsampled levels included, covers only the padded region. The
+ * blurred patch is then drawn back over a copy of the frame, with a scissor box around
+ * the region and a discard for the pixels of a circle or mask outside the shape. A region
+ * whose blur box is the whole frame, such as everything outside a focus circle, is
+ * blurred in place and the sharp pixels are drawn back, within the circle's box only.
+ *
+ * Pixels outside the patch do not reach the blur, so set the reach through
+ * {@link #setRadius} or {@link #setPadding}. A filter that depends on the position in
+ * the frame, like {@link com.example.testopengl.blur.RadialBlurFilter}'s center, sees
+ * the patch as its frame.
+ */
+public final class RoiBlurNode extends EffectNode {
+
+    private final BlurRenderer mBlur;
+    private final RenderTargetPool mPool;
+    private final Gl mGl;
+    private final CopyProgram mCopy;
+    private final RegionMaskProgram mMask;
+    private final BlurRegion mRegion = new BlurRegion();
+    private final int[] mBox = new int[4];
+    private final int[] mBounds = new int[4];
+    private int mPadding;
+    private int mWidth;
+    private int mHeight;
+    // Size the blur was last given, so moving a region of the same size reallocates nothing
+    private int mBlurWidth;
+    private int mBlurHeight;
+
+    public RoiBlurNode(BlurRenderer blur, RenderTargetPool pool) {
+        super("RoiBlurNode");
+        mBlur = blur;
+        mPool = pool;
+        mGl = pool.getGl();
+        mCopy = new CopyProgram(mGl);
+        mMask = new RegionMaskProgram(mGl);
+    }
+
+    public BlurRenderer getBlur() {
+        return mBlur;
+    }
+
+    /** The region to blur; change it in place, it is read at every draw. */
+    public BlurRegion getRegion() {
+        return mRegion;
+    }
+
+    /** Sets the blur's radius, and the padding around the region to as much. */
+    public void setRadius(float blurRadius) {
+        mBlur.setRadius(blurRadius);
+        setPadding((int) Math.ceil(blurRadius));
+    }
+
+    /** Pixels around the region the blur reads, for blurs not set through a radius. */
+    public void setPadding(int pixels) {
+        mPadding = Math.max(0, pixels);
+    }
+
+    public int getPadding() {
+        return mPadding;
+    }
+
+    @Override
+    public boolean acceptsExternalInput() {
+        return true;
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+    }
+
+    @Override
+    public void draw(int texture, float[] textureMatrix, int framebuffer) {
+        int[] box = mBox;
+        if (!mRegion.getBlurBox(mWidth, mHeight, mPadding, box)) {
+            mCopy.draw(texture, textureMatrix, framebuffer, mWidth, mHeight);
+            return;
+        }
+        if (BlurRegion.isWholeFrame(box, mWidth, mHeight)) {
+            drawInPlace(texture, textureMatrix, framebuffer);
+        } else {
+            drawPatch(texture, textureMatrix, framebuffer, box[0], box[1], box[2], box[3]);
+        }
+    }
+
+    private void drawInPlace(int texture, float[] textureMatrix, int framebuffer) {
+        setBlurSize(mWidth, mHeight);
+        if (textureMatrix != null) {
+            mBlur.drawExternal(texture, textureMatrix, framebuffer);
+        } else {
+            mBlur.draw(texture, framebuffer);
+        }
+        int[] bounds = mBounds;
+        if (mRegion.getSharpBounds(mWidth, mHeight, bounds)) {
+            mGl.enable(GLES30.GL_SCISSOR_TEST);
+            mGl.scissor(bounds[0], bounds[1], bounds[2], bounds[3]);
+            mMask.draw(mRegion, false, texture, textureMatrix, framebuffer,
+                    0, 0, mWidth, mHeight, mWidth, mHeight);
+            mGl.disable(GLES30.GL_SCISSOR_TEST);
+        }
+    }
+
+    private void drawPatch(int texture, float[] textureMatrix, int framebuffer, int x, int y, int width, int height) {
+        // The crop only feeds the blur, like its own intermediates. The blurred patch is the
+        // blur's output, written by a last pass that does not dither, so it stays RGBA8.
+        FrameBufferObject crop = mPool.acquire(width, height, mPool.getIntermediateFormat().getInternalFormat());
+        FrameBufferObject blurred = mPool.acquire(width, height, GLES30.GL_RGBA8);
+        mCopy.draw(texture, textureMatrix, crop.getFramebuffer(), -x, -y, mWidth, mHeight);
+        setBlurSize(width, height);
+        mBlur.draw(crop.getTexture(), blurred.getFramebuffer());
+
+        // The padding only fed the blur; the region's own bounds change
+        mCopy.draw(texture, textureMatrix, framebuffer, mWidth, mHeight);
+        int[] bounds = mBounds;
+        mRegion.getBounds(mWidth, mHeight, bounds);
+        mGl.enable(GLES30.GL_SCISSOR_TEST);
+        mGl.scissor(bounds[0], bounds[1], bounds[2], bounds[3]);
+        mMask.draw(mRegion, true, blurred.getTexture(), null, framebuffer,
+                x, y, width, height, mWidth, mHeight);
+        mGl.disable(GLES30.GL_SCISSOR_TEST);
+        mPool.release(crop);
+        mPool.release(blurred);
+    }
+
+    private void setBlurSize(int width, int height) {
+        if (width != mBlurWidth || height != mBlurHeight) {
+            mBlurWidth = width;
+            mBlurHeight = height;
+            mBlur.setSize(width, height);
+        }
+    }
+
+    @Override
+    public void release() {
+        mBlur.release();
+        mBlurWidth = 0;
+        mBlurHeight = 0;
+    }
+}
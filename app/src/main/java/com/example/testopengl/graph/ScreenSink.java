@@ -0,0 +1,16 @@
+package com.example.testopengl.graph;
+
+/**
+ * The window surface, framebuffer 0.
+ */
+public final class ScreenSink extends SinkNode {
+
+    public ScreenSink() {
+        super("ScreenSink");
+    }
+
+    @Override
+    public int getFramebuffer() {
+        return 0;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.testopengl.graph;
+
+/**
+ * Where a graph's result ends up. Sinks have exactly one input and no outputs.
+ */
+public abstract class SinkNode extends Node {
+
+    SinkNode(String name) {
+        super(name);
+    }
+
+    /** Framebuffer to draw into; 0 is the window surface. */
+    public abstract int getFramebuffer();
+}
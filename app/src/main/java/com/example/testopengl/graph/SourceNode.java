@@ -0,0 +1,20 @@
+package com.example.testopengl.graph;
+
+/**
+ * Supplies the texture a graph starts from. Sources have no inputs.
+ */
+public abstract class SourceNode extends Node {
+
+    SourceNode(String name) {
+        super(name);
+    }
+
+    /** Texture name to sample; read at draw time, so it may change between frames. */
+    public abstract int getTexture();
+
+    /** Whether the texture is GL_TEXTURE_EXTERNAL_OES rather than GL_TEXTURE_2D. */
+    public abstract boolean isExternal();
+
+    /** Texture coordinate transform for external sources, null otherwise. */
+    public abstract float[] getTransformMatrix();
+}
@@ -0,0 +1,122 @@
+package com.example.testopengl.graph;
+
+import android.opengl.GLES30;
+
+import com.example.testopengl.blur.BlurRenderer;
+import com.example.testopengl.gl.FrameBufferObject;
+import com.example.testopengl.gl.Gl;
+import com.example.testopengl.gl.RenderTargetPool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Runs a {@link BlurRenderer} only when its input has changed, and otherwise shows the
+ * previous result again: for paused video, or a static background, a frame costs a
+ * {@link TemporalReusePolicy#PROXY_SIZE}-pixel downsample, its readback and one blit
+ * instead of the whole blur.
+ *
+ * The result is kept in a target of the node's own, outside the graph's per-frame slots.
+ * The downsample samples the input with bilinear filtering, so detail finer than a proxy
+ * pixel can change without being seen; the policy's thresholds keep that to changes the
+ * blur would hide anyway. Change the radius through {@link #setRadius} so the next frame
+ * is blurred again.
+ */
+public final class TemporalBlurNode extends EffectNode {
+
+    private static final int PROXY_SIZE = TemporalReusePolicy.PROXY_SIZE;
+
+    private final BlurRenderer mBlur;
+    private final RenderTargetPool mPool;
+    private final Gl mGl;
+    private final CopyProgram mCopy;
+    private final TemporalReusePolicy mPolicy;
+    private final ByteBuffer mProxyPixels = ByteBuffer.allocateDirect(PROXY_SIZE * PROXY_SIZE * 4)
+            .order(ByteOrder.nativeOrder());
+    private FrameBufferObject mProxy;
+    private FrameBufferObject mHistory;
+    private int mWidth;
+    private int mHeight;
+    private float mRadius = -1f;
+
+    public TemporalBlurNode(BlurRenderer blur, RenderTargetPool pool) {
+        this(blur, pool, new TemporalReusePolicy());
+    }
+
+    public TemporalBlurNode(BlurRenderer blur, RenderTargetPool pool, TemporalReusePolicy policy) {
+        super("TemporalBlurNode");
+        mBlur = blur;
+        mPool = pool;
+        mGl = pool.getGl();
+        mCopy = new CopyProgram(mGl);
+        mPolicy = policy;
+    }
+
+    public BlurRenderer getBlur() {
+        return mBlur;
+    }
+
+    public TemporalReusePolicy getPolicy() {
+        return mPolicy;
+    }
+
+    /** Sets the blur's radius; a new radius makes the next frame blur again. */
+    public void setRadius(float blurRadius) {
+        if (blurRadius != mRadius) {
+            mRadius = blurRadius;
+            mBlur.setRadius(blurRadius);
+            mPolicy.invalidate();
+        }
+    }
+
+    @Override
+    public boolean acceptsExternalInput() {
+        return true;
+    }
+
+    @Override
+    public void setSize(int width, int height) {
+        mWidth = width;
+        mHeight = height;
+        mBlur.setSize(width, height);
+        mPolicy.invalidate();
+    }
+
+    @Override
+    public void draw(int texture, float[] textureMatrix, int framebuffer) {
+        mProxy = mPool.ensure(mProxy, PROXY_SIZE, PROXY_SIZE, GLES30.GL_RGBA8);
+        mCopy.draw(texture, textureMatrix, mProxy.getFramebuffer(), PROXY_SIZE, PROXY_SIZE);
+        mGl.readPixels(0, 0, PROXY_SIZE, PROXY_SIZE, GLES30.GL_RGBA, GLES30.GL_UNSIGNED_BYTE, mProxyPixels);
+
+        if (mHistory == null || mHistory.getWidth() != mWidth || mHistory.getHeight() != mHeight) {
+            mPolicy.invalidate();
+        }
+        if (mPolicy.shouldBlur(mProxyPixels)) {
+            mHistory = mPool.ensure(mHistory, mWidth, mHeight, GLES30.GL_RGBA8);
+            if (textureMatrix != null) {
+                mBlur.drawExternal(texture, textureMatrix, mHistory.getFramebuffer());
+            } else {
+                mBlur.draw(texture, mHistory.getFramebuffer());
+            }
+        }
+
+        mGl.bindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, mHistory.getFramebuffer());
+        mGl.bindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, framebuffer);
+        mGl.blitFramebuffer(0, 0, mWidth, mHeight, 0, 0, mWidth, mHeight,
+                GLES30.GL_COLOR_BUFFER_BIT, GLES30.GL_NEAREST);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+    }
+
+    @Override
+    public void release() {
+        mBlur.release();
+        if (mProxy != null) {
+            mPool.release(mProxy);
+            mProxy = null;
+        }
+        if (mHistory != null) {
+            mPool.release(mHistory);
+            mHistory = null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.testopengl.graph;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides per frame whether a blur has to be recomputed, from a tiny RGBA proxy of the
+ * input: {@link #PROXY_SIZE} pixels square. The proxy's luma is compared with that of
+ * the frame last blurred, not the previous frame, so a slow fade adds up until it
+ * crosses the threshold instead of slipping through a frame at a time.
+ *
+ * Two measures have to stay small for the previous blur to be reused: the mean
+ * difference, which catches global changes such as a cut or a camera move, and the
+ * largest single difference, which catches a small object moving over a still
+ * background. Both are fractions of full scale.
+ */
+public final class TemporalReusePolicy {
+
+    public static final int PROXY_SIZE = 32;
+
+    /** Mean difference of about one 8-bit step, i.e. decoder noise. */
+    public static final float DEFAULT_MEAN_THRESHOLD = 0.004f;
+
+    /** A proxy pixel changing by more than this always forces a new blur. */
+    public static final float DEFAULT_PEAK_THRESHOLD = 0.06f;
+
+    private static final int PIXELS = PROXY_SIZE * PROXY_SIZE;
+
+    private final float mMeanThreshold;
+    private final float mPeakThreshold;
+    // Luma of the proxy of the frame last blurred
+    private final int[] mReference = new int[PIXELS];
+    private boolean mHasReference;
+    private float mLastMeanDifference;
+    private float mLastPeakDifference;
+    private int mBlurCount;
+    private int mReuseCount;
+
+    public TemporalReusePolicy() {
+        this(DEFAULT_MEAN_THRESHOLD, DEFAULT_PEAK_THRESHOLD);
+    }
+
+    /**
+     * @param meanThreshold mean luma difference below which a frame counts as unchanged,
+     *                      0 to always blur
+     * @param peakThreshold largest per-pixel luma difference a reused frame may have
+     */
+    public TemporalReusePolicy(float meanThreshold, float peakThreshold) {
+        mMeanThreshold = meanThreshold;
+        mPeakThreshold = peakThreshold;
+    }
+
+    /**
+     * Whether the frame whose proxy is in {@code rgba}, {@link #PROXY_SIZE} squared RGBA
+     * pixels from index 0, has to be blurred. If so, it becomes the new reference. The
+     * buffer's position is not changed.
+     */
+    public boolean shouldBlur(ByteBuffer rgba) {
+        long sum = 0;
+        int peak = 0;
+        for (int i = 0; i < PIXELS; i++) {
+            int luma = luma(rgba, i * 4);
+            int difference = Math.abs(luma - mReference[i]);
+            sum += difference;
+            peak = Math.max(peak, difference);
+        }
+        mLastMeanDifference = sum / (255f * PIXELS);
+        mLastPeakDifference = peak / 255f;
+        if (mHasReference && mLastMeanDifference < mMeanThreshold && mLastPeakDifference <= mPeakThreshold) {
+            mReuseCount++;
+            return false;
+        }
+        for (int i = 0; i < PIXELS; i++) {
+            mReference[i] = luma(rgba, i * 4);
+        }
+        mHasReference = true;
+        mBlurCount++;
+        return true;
+    }
+
+    /** Forces a new blur for the next frame, e.g. after a radius or size change. */
+    public void invalidate() {
+        mHasReference = false;
+    }
+
+    /** Rec. 601 luma in 0..255, in fixed point. */
+    private static int luma(ByteBuffer rgba, int offset) {
+        int r = rgba.get(offset) & 0xff;
+        int g = rgba.get(offset + 1) & 0xff;
+        int b = rgba.get(offset + 2) & 0xff;
+        return (77 * r + 150 * g + 29 * b) >> 8;
+    }
+
+    public float getLastMeanDifference() {
+        return mLastMeanDifference;
+    }
+
+    public float getLastPeakDifference() {
+        return mLastPeakDifference;
+    }
+
+    public int getBlurCount() {
+        return mBlurCount;
+    }
+
+    public int getReuseCount() {
+        return mReuseCount;
+    }
+
+    @Override
+    public String toString() {
+        return "TemporalReusePolicy{blurred=" + mBlurCount + ", reused=" + mReuseCount
+                + ", lastMean=" + mLastMeanDifference + ", lastPeak=" + mLastPeakDifference + "}";
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.testopengl.graph;
+
+/**
+ * A GL_TEXTURE_2D the application renders or uploads itself.
+ */
+public final class TextureSource extends SourceNode {
+
+    private int mTexture;
+
+    public TextureSource(int texture) {
+        super("TextureSource");
+        mTexture = texture;
+    }
+
+    public void setTexture(int texture) {
+        mTexture = texture;
+    }
+
+    @Override
+    public int getTexture() {
+        return mTexture;
+    }
+
+    @Override
+    public boolean isExternal() {
+        return false;
+    }
+
+    @Override
+    public float[] getTransformMatrix() {
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.testopengl.image;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Identifies one blurred output: which source, decoded to which size, blurred how far and
+ * by which version of which algorithm. Bump the algorithm string whenever the output of
+ * a blur changes, so that stale files on disk are never served for it.
+ */
+public final class BlurCacheKey {
+
+    private final String mSource;
+    private final int mWidth;
+    private final int mHeight;
+    private final float mRadius;
+    private final String mAlgorithm;
+
+    /**
+     * @param source    identity of the source image, e.g. a content URI
+     * @param algorithm blur implementation and version, e.g. "argb-box-1"
+     */
+    public BlurCacheKey(String source, int width, int height, float radius, String algorithm) {
+        mSource = source;
+        mWidth = width;
+        mHeight = height;
+        mRadius = radius;
+        mAlgorithm = algorithm;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Name of the key's file in the disk tier: a 64-bit FNV-1a hash of the whole key, so
+     * that URIs of any length and character set map to short, safe names. Different keys
+     * can share a name; {@link #digest()} tells them apart.
+     */
+    public String toFileName() {
+        String canonical = toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < canonical.length(); i++) {
+            hash ^= canonical.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return String.format("%016x.blur", hash);
+    }
+
+    /** SHA-256 of the whole key, stored in its file to be compared on read. */
+    byte[] digest() {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(toString().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform provides SHA-256
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BlurCacheKey)) {
+            return false;
+        }
+        BlurCacheKey other = (BlurCacheKey) o;
+        return mWidth == other.mWidth && mHeight == other.mHeight
+                && Float.compare(mRadius, other.mRadius) == 0
+                && mSource.equals(other.mSource) && mAlgorithm.equals(other.mAlgorithm);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mSource.hashCode();
+        result = 31 * result + mWidth;
+        result = 31 * result + mHeight;
+        result = 31 * result + Float.floatToIntBits(mRadius);
+        result = 31 * result + mAlgorithm.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return mAlgorithm + "|" + mWidth + "x" + mHeight + "|" + mRadius + "|" + mSource;
+    }
+}
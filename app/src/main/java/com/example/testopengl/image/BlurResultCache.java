@@ -0,0 +1,291 @@
+package com.example.testopengl.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Two-tier cache of blurred ARGB pixels, so that picking the same image again, or coming
+ * back to it after a restart, skips both the decode's blur and its memory peak.
+ *
+ * The memory tier is an LRU map bounded by the bytes of the pixels it holds. The disk
+ * tier keeps one file per key in a private directory: a header with the key's SHA-256
+ * and the raw pixels, read back through a memory-mapped channel. A file whose digest does
+ * not match, e.g. of another key with the same file name, reads as a miss. It is also LRU, bounded by bytes,
+ * and ordered by the files' modification times across restarts. A disk hit is promoted
+ * to the memory tier.
+ *
+ * Arrays handed to {@link #put} and returned by {@link #get} are shared with the cache
+ * and must not be modified. All methods are thread-safe; disk I/O runs under the lock,
+ * so call them from a background thread.
+ */
+public final class BlurResultCache {
+
+    private static final int MAGIC = 0x424c5232; // "BLR2"
+    private static final int DIGEST_BYTES = 32;
+    // Magic, width, height, a reserved int and the key's digest
+    private static final int HEADER_BYTES = 16 + DIGEST_BYTES;
+    private static final String SUFFIX = ".blur";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final long mMaxMemoryBytes;
+    private final File mDirectory;
+    private final long mMaxDiskBytes;
+
+    private final LinkedHashMap<BlurCacheKey, int[]> mMemory = new LinkedHashMap<>(16, 0.75f, true);
+    private long mMemoryBytes;
+    // File name -> file size, least recently used first
+    private final LinkedHashMap<String, Long> mDisk = new LinkedHashMap<>(16, 0.75f, true);
+    private long mDiskBytes;
+
+    private int mHitCount;
+    private int mDiskHitCount;
+    private int mMissCount;
+    private int mEvictionCount;
+    private int mDiskEvictionCount;
+
+    /** A cache with a memory tier only. */
+    public BlurResultCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null, 0);
+    }
+
+    /**
+     * @param directory    private directory for the disk tier, created if missing; files
+     *                     left there by an earlier run are reused
+     * @param maxDiskBytes bound on the disk tier, headers included
+     */
+    public BlurResultCache(long maxMemoryBytes, File directory, long maxDiskBytes) {
+        if (maxMemoryBytes < 0 || maxDiskBytes < 0) {
+            throw new IllegalArgumentException("Bad cache size " + maxMemoryBytes + ", " + maxDiskBytes);
+        }
+        mMaxMemoryBytes = maxMemoryBytes;
+        mDirectory = directory;
+        mMaxDiskBytes = directory != null ? maxDiskBytes : 0;
+        if (directory != null) {
+            loadDiskIndex();
+        }
+    }
+
+    private void loadDiskIndex() {
+        if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+            return;
+        }
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(SUFFIX)) {
+                mDisk.put(name, file.length());
+                mDiskBytes += file.length();
+            } else if (name.endsWith(TEMP_SUFFIX)) {
+                // A write that did not finish
+                file.delete();
+            }
+        }
+        trimDisk();
+    }
+
+    /** Returns the pixels stored for {@code key}, or null on a miss in both tiers. */
+    public synchronized int[] get(BlurCacheKey key) {
+        int[] pixels = mMemory.get(key);
+        if (pixels != null) {
+            mHitCount++;
+            return pixels;
+        }
+        pixels = readFromDisk(key);
+        if (pixels != null) {
+            mDiskHitCount++;
+            putInMemory(key, pixels);
+            return pixels;
+        }
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Stores {@code pixels}, which must hold exactly the key's width times height, in
+     * both tiers.
+     *
+     * @throws IOException if the disk tier could not be written; the memory tier still is
+     */
+    public synchronized void put(BlurCacheKey key, int[] pixels) throws IOException {
+        if (pixels.length != (long) key.getWidth() * key.getHeight()) {
+            throw new IllegalArgumentException(pixels.length + " pixels for " + key);
+        }
+        putInMemory(key, pixels);
+        writeToDisk(key, pixels);
+    }
+
+    /** Empties the memory tier; the disk tier is kept. */
+    public synchronized void trimMemory() {
+        mMemory.clear();
+        mMemoryBytes = 0;
+    }
+
+    private void putInMemory(BlurCacheKey key, int[] pixels) {
+        long bytes = 4L * pixels.length;
+        int[] previous = mMemory.remove(key);
+        if (previous != null) {
+            mMemoryBytes -= 4L * previous.length;
+        }
+        if (bytes > mMaxMemoryBytes) {
+            // Would evict everything else and still not fit
+            return;
+        }
+        mMemory.put(key, pixels);
+        mMemoryBytes += bytes;
+        Iterator<Map.Entry<BlurCacheKey, int[]>> eldest = mMemory.entrySet().iterator();
+        while (mMemoryBytes > mMaxMemoryBytes) {
+            mMemoryBytes -= 4L * eldest.next().getValue().length;
+            eldest.remove();
+            mEvictionCount++;
+        }
+    }
+
+    private int[] readFromDisk(BlurCacheKey key) {
+        if (mDirectory == null) {
+            return null;
+        }
+        String name = key.toFileName();
+        if (mDisk.get(name) == null) {
+            return null;
+        }
+        File file = new File(mDirectory, name);
+        int count = key.getWidth() * key.getHeight();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() == HEADER_BYTES + 4L * count) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                byte[] digest = new byte[DIGEST_BYTES];
+                boolean match = map.getInt() == MAGIC && map.getInt() == key.getWidth()
+                        && map.getInt() == key.getHeight();
+                if (match) {
+                    map.getInt();
+                    map.get(digest);
+                }
+                // A file of another key with the same name, or of another format, reads as a miss
+                if (match && Arrays.equals(digest, key.digest())) {
+                    int[] pixels = new int[count];
+                    map.asIntBuffer().get(pixels);
+                    file.setLastModified(System.currentTimeMillis());
+                    return pixels;
+                }
+            }
+        } catch (IOException e) {
+            // Unreadable; dropped below like a corrupt file
+        }
+        removeFromDisk(name);
+        return null;
+    }
+
+    private void writeToDisk(BlurCacheKey key, int[] pixels) throws IOException {
+        long size = HEADER_BYTES + 4L * pixels.length;
+        if (mDirectory == null || size > mMaxDiskBytes) {
+            return;
+        }
+        String name = key.toFileName();
+        removeFromDisk(name);
+        File temp = new File(mDirectory, name + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(key.getWidth()).putInt(key.getHeight()).putInt(0).put(key.digest()).flip();
+            write(channel, header);
+            // Through a bounded direct buffer rather than one the size of the image
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            IntBuffer ints = buffer.asIntBuffer();
+            for (int offset = 0; offset < pixels.length; ) {
+                int n = Math.min(ints.capacity(), pixels.length - offset);
+                ints.clear();
+                ints.put(pixels, offset, n);
+                buffer.clear().limit(4 * n);
+                write(channel, buffer);
+                offset += n;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(new File(mDirectory, name))) {
+            temp.delete();
+            throw new IOException("Could not rename " + temp);
+        }
+        mDisk.put(name, size);
+        mDiskBytes += size;
+        trimDisk();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void trimDisk() {
+        Iterator<Map.Entry<String, Long>> eldest = mDisk.entrySet().iterator();
+        while (mDiskBytes > mMaxDiskBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> entry = eldest.next();
+            mDiskBytes -= entry.getValue();
+            new File(mDirectory, entry.getKey()).delete();
+            eldest.remove();
+            mDiskEvictionCount++;
+        }
+    }
+
+    private void removeFromDisk(String name) {
+        Long size = mDisk.remove(name);
+        if (size != null) {
+            mDiskBytes -= size;
+        }
+        new File(mDirectory, name).delete();
+    }
+
+    /** Lookups served from the memory tier. */
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /** Lookups served from the disk tier. */
+    public synchronized int getDiskHitCount() {
+        return mDiskHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /** Entries dropped from the memory tier to stay within its bound. */
+    public synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /** Files deleted to keep the disk tier within its bound. */
+    public synchronized int getDiskEvictionCount() {
+        return mDiskEvictionCount;
+    }
+
+    public synchronized long getMemoryBytes() {
+        return mMemoryBytes;
+    }
+
+    public synchronized long getDiskBytes() {
+        return mDiskBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlurResultCache{memory " + mMemory.size() + " / " + mMemoryBytes + " B, disk " + mDisk.size()
+                + " / " + mDiskBytes + " B, hits " + mHitCount + " + " + mDiskHitCount + " disk, misses "
+                + mMissCount + ", evictions " + mEvictionCount + " + " + mDiskEvictionCount + " disk}";
+    }
+}
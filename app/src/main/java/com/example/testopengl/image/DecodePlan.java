@@ -0,0 +1,92 @@
+package com.example.testopengl.image;
+
+/**
+ * What to decode from a source image so that it covers a target view the way
+ * {@code ImageView.ScaleType.CENTER_CROP} shows it: the centred region with the target's
+ * aspect ratio, and the largest power-of-two sample size that still leaves at least the
+ * target's pixels. The decoded bitmap is then at most twice the target in each
+ * direction, whatever the source resolution.
+ */
+public final class DecodePlan {
+
+    private final int mLeft;
+    private final int mTop;
+    private final int mRight;
+    private final int mBottom;
+    private final int mSampleSize;
+
+    private DecodePlan(int left, int top, int right, int bottom, int sampleSize) {
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+        mSampleSize = sampleSize;
+    }
+
+    /**
+     * @param sourceWidth  width of the encoded image, as decoded with inJustDecodeBounds
+     * @param targetWidth  width of the view the image is shown in
+     */
+    public static DecodePlan centerCrop(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        if (sourceWidth <= 0 || sourceHeight <= 0 || targetWidth <= 0 || targetHeight <= 0) {
+            throw new IllegalArgumentException("Bad sizes " + sourceWidth + "x" + sourceHeight
+                    + " -> " + targetWidth + "x" + targetHeight);
+        }
+        int cropWidth = sourceWidth;
+        int cropHeight = sourceHeight;
+        // Compare the aspect ratios without rounding: sw/sh > tw/th
+        if ((long) sourceWidth * targetHeight > (long) targetWidth * sourceHeight) {
+            cropWidth = (int) Math.max(1, Math.round((double) sourceHeight * targetWidth / targetHeight));
+        } else {
+            cropHeight = (int) Math.max(1, Math.round((double) sourceWidth * targetHeight / targetWidth));
+        }
+        int left = (sourceWidth - cropWidth) / 2;
+        int top = (sourceHeight - cropHeight) / 2;
+
+        int sampleSize = 1;
+        while (cropWidth / (sampleSize * 2) >= targetWidth && cropHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return new DecodePlan(left, top, left + cropWidth, top + cropHeight, sampleSize);
+    }
+
+    public int getLeft() {
+        return mLeft;
+    }
+
+    public int getTop() {
+        return mTop;
+    }
+
+    public int getRight() {
+        return mRight;
+    }
+
+    public int getBottom() {
+        return mBottom;
+    }
+
+    /** Power of two to pass as {@code BitmapFactory.Options.inSampleSize}. */
+    public int getSampleSize() {
+        return mSampleSize;
+    }
+
+    /** Width of the bitmap the region decodes to; decoders round the division up. */
+    public int getDecodedWidth() {
+        return (mRight - mLeft + mSampleSize - 1) / mSampleSize;
+    }
+
+    public int getDecodedHeight() {
+        return (mBottom - mTop + mSampleSize - 1) / mSampleSize;
+    }
+
+    /** Whether the whole source is decoded, so a plain stream decode will do. */
+    public boolean isFullImage(int sourceWidth, int sourceHeight) {
+        return mLeft == 0 && mTop == 0 && mRight == sourceWidth && mBottom == sourceHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "DecodePlan{[" + mLeft + ", " + mTop + ", " + mRight + ", " + mBottom + "] / " + mSampleSize + "}";
+    }
+}
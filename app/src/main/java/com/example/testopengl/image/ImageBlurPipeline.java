@@ -0,0 +1,210 @@
+package com.example.testopengl.image;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.util.Log;
+
+import com.example.testopengl.blur.ArgbBlurEngine;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads a picked image for a view of a given size and blurs it, off the UI thread.
+ *
+ * The image is decoded through a {@link DecodePlan}: only the centre-crop region the view
+ * shows, subsampled by a power of two, so a 48 MP photo for a 1080 px wide view decodes
+ * to about 2 MP instead of 48. Decoding runs on one background thread; the blur runs on
+ * {@link ArgbBlurEngine}'s fork-join pool. Results are delivered on the executor given to
+ * the constructor, normally the UI thread.
+ *
+ * Each {@link #load} supersedes the previous one: its task is interrupted, and if it
+ * still finishes its result is dropped instead of delivered. Peak memory is a few times
+ * the view's size, not the source's.
+ *
+ * With a {@link BlurResultCache}, a blur already computed for the same image, size,
+ * radius and kernel is reused instead of recomputed.
+ */
+public final class ImageBlurPipeline {
+
+    public interface Callback {
+        /** Called on the delivery executor with the decoded image and its blurred copy. */
+        void onImageLoaded(Bitmap image, Bitmap blurred);
+
+        void onImageFailed(Uri uri, Exception e);
+    }
+
+    private static final String TAG = "ImageBlurPipeline";
+
+    /** Bump whenever {@link ArgbBlurEngine}'s output changes, to invalidate cached blurs. */
+    private static final int ALGORITHM_VERSION = 1;
+
+    private final ContentResolver mResolver;
+    private final Executor mDelivery;
+    private final BlurResultCache mCache;
+    private final ExecutorService mDecoder = Executors.newSingleThreadExecutor();
+    private final ArgbBlurEngine mBlurEngine = new ArgbBlurEngine();
+    private Future<?> mPending;
+    // Bumped by every load() and cancel(); a task only delivers if it is still current
+    private volatile int mGeneration;
+
+    public ImageBlurPipeline(ContentResolver resolver, Executor delivery) {
+        this(resolver, delivery, null);
+    }
+
+    /** @param cache blurred results to reuse and fill, or null to always blur */
+    public ImageBlurPipeline(ContentResolver resolver, Executor delivery, BlurResultCache cache) {
+        mResolver = resolver;
+        mDelivery = delivery;
+        mCache = cache;
+    }
+
+    /** Must be called from the delivery thread, like {@link #cancel()}. */
+    public void load(Uri uri, int targetWidth, int targetHeight, float blurRadius, Callback callback) {
+        cancel();
+        int generation = mGeneration;
+        mPending = mDecoder.submit(() -> run(generation, uri, targetWidth, targetHeight, blurRadius, callback));
+    }
+
+    /** Drops the pending request, if any; its callback is not called. */
+    public void cancel() {
+        mGeneration++;
+        if (mPending != null) {
+            mPending.cancel(true);
+            mPending = null;
+        }
+    }
+
+    /** Cancels the pending request and stops the decode thread. */
+    public void shutdown() {
+        cancel();
+        mDecoder.shutdownNow();
+    }
+
+    private void run(int generation, Uri uri, int targetWidth, int targetHeight, float blurRadius,
+                     Callback callback) {
+        try {
+            Bitmap image = decode(generation, uri, targetWidth, targetHeight);
+            checkCurrent(generation);
+            Bitmap blurred = blur(uri, image, blurRadius);
+            checkCurrent(generation);
+            mDelivery.execute(() -> {
+                if (generation == mGeneration) {
+                    callback.onImageLoaded(image, blurred);
+                }
+            });
+        } catch (CancellationException e) {
+            // Superseded; nobody is waiting for this result
+        } catch (IOException | RuntimeException e) {
+            if (generation == mGeneration) {
+                mDelivery.execute(() -> {
+                    if (generation == mGeneration) {
+                        callback.onImageFailed(uri, e);
+                    }
+                });
+            }
+        }
+    }
+
+    private void checkCurrent(int generation) {
+        if (generation != mGeneration || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private Bitmap decode(int generation, Uri uri, int targetWidth, int targetHeight) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open(uri)) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Not a decodable image: " + uri);
+        }
+        checkCurrent(generation);
+
+        DecodePlan plan = DecodePlan.centerCrop(options.outWidth, options.outHeight, targetWidth, targetHeight);
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = plan.getSampleSize();
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded = null;
+        if (!plan.isFullImage(options.outWidth, options.outHeight)) {
+            decoded = decodeRegion(uri, plan, options);
+        }
+        if (decoded == null) {
+            // Formats without region support decode whole, still subsampled
+            try (InputStream in = open(uri)) {
+                decoded = BitmapFactory.decodeStream(in, null, options);
+            }
+        }
+        if (decoded == null) {
+            throw new IOException("Could not decode " + uri);
+        }
+        return decoded;
+    }
+
+    private Bitmap decodeRegion(Uri uri, DecodePlan plan, BitmapFactory.Options options) throws IOException {
+        try (InputStream in = open(uri)) {
+            @SuppressWarnings("deprecation")
+            BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(in, false);
+            try {
+                Rect region = new Rect(plan.getLeft(), plan.getTop(), plan.getRight(), plan.getBottom());
+                return decoder.decodeRegion(region, options);
+            } finally {
+                decoder.recycle();
+            }
+        } catch (IOException e) {
+            // Not a JPEG, PNG or WebP; fall back to a whole-image decode
+            return null;
+        }
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream in = mResolver.openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException("No content for " + uri);
+        }
+        return in;
+    }
+
+    /** Images are treated as opaque; pixels with transparency would need premultiplying. */
+    private Bitmap blur(Uri uri, Bitmap image, float blurRadius) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BlurCacheKey key = null;
+        int[] pixels = null;
+        if (mCache != null) {
+            String kernel = mBlurEngine.getKernel().name().toLowerCase(Locale.ROOT);
+            String algorithm = "argb-" + kernel + "-" + ALGORITHM_VERSION;
+            key = new BlurCacheKey(uri.toString(), width, height, blurRadius, algorithm);
+            pixels = mCache.get(key);
+        }
+        if (pixels == null) {
+            pixels = new int[width * height];
+            image.getPixels(pixels, 0, width, 0, 0, width, height);
+            mBlurEngine.blur(pixels, width, height, blurRadius);
+            if (mCache != null) {
+                try {
+                    mCache.put(key, pixels);
+                } catch (IOException e) {
+                    // Still cached in memory; the next run blurs again
+                    Log.w(TAG, "Could not cache the blur of " + uri, e);
+                }
+            }
+        }
+        Bitmap blurred = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        blurred.setPixels(pixels, 0, width, 0, 0, width, height);
+        return blurred;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.testopengl.perf;
+
+import android.opengl.GLSurfaceView;
+import android.util.Log;
+
+import javax.microedition.khronos.egl.EGLConfig;
+import javax.microedition.khronos.opengles.GL10;
+
+/**
+ * Wraps a renderer and measures what each {@link #onDrawFrame} allocates with a
+ * {@link FrameAllocationMonitor}. A frame over the budget is logged whenever it sets a new
+ * maximum, after the frame has been measured, so the log does not count against it.
+ */
+public final class AllocationMonitoringRenderer implements GLSurfaceView.Renderer {
+
+    private static final String TAG = "FrameAllocation";
+
+    private final GLSurfaceView.Renderer mRenderer;
+    private final FrameAllocationMonitor mMonitor;
+    private long mLoggedMaxBytes;
+
+    public AllocationMonitoringRenderer(GLSurfaceView.Renderer renderer, FrameAllocationMonitor monitor) {
+        mRenderer = renderer;
+        mMonitor = monitor;
+    }
+
+    public FrameAllocationMonitor getMonitor() {
+        return mMonitor;
+    }
+
+    @Override
+    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
+        mRenderer.onSurfaceCreated(gl, config);
+    }
+
+    @Override
+    public void onSurfaceChanged(GL10 gl, int width, int height) {
+        mRenderer.onSurfaceChanged(gl, width, height);
+        // Resizing reallocates targets; only the frames after it are steady state
+        mMonitor.reset();
+        mLoggedMaxBytes = 0;
+    }
+
+    @Override
+    public void onDrawFrame(GL10 gl) {
+        mMonitor.beginFrame();
+        mRenderer.onDrawFrame(gl);
+        mMonitor.endFrame();
+
+        long bytes = mMonitor.getLastFrameBytes();
+        if (bytes > mMonitor.getBudgetBytes() && bytes > mLoggedMaxBytes) {
+            mLoggedMaxBytes = bytes;
+            Log.w(TAG, "Frame " + mMonitor.getFrameCount() + " allocated " + bytes
+                    + " bytes, budget " + mMonitor.getBudgetBytes());
+        }
+    }
+}
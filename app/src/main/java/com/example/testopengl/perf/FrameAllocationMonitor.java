@@ -0,0 +1,112 @@
+package com.example.testopengl.perf;
+
+import android.os.Debug;
+
+/**
+ * Counts the bytes a render thread allocates per frame, so that allocation creeping back
+ * into a draw path shows up as a number instead of as GC pauses. Bracket the frame with
+ * {@link #beginFrame()} and {@link #endFrame()} on the thread being measured.
+ *
+ * The monitor itself does not allocate between the two calls.
+ */
+public final class FrameAllocationMonitor {
+
+    /** Running total of bytes allocated by the calling thread. */
+    public interface Counter {
+        long getAllocatedBytes();
+    }
+
+    private final Counter mCounter;
+    private final long mBudgetBytes;
+    private long mFrameStart = -1;
+    private long mLastFrameBytes;
+    private long mMaxFrameBytes;
+    private long mTotalBytes;
+    private int mFrameCount;
+    private int mFramesOverBudget;
+
+    /**
+     * @param budgetBytes bytes a frame may allocate before it counts as over budget;
+     *                    0 for an allocation-free render loop
+     */
+    public FrameAllocationMonitor(Counter counter, long budgetBytes) {
+        mCounter = counter;
+        mBudgetBytes = budgetBytes;
+    }
+
+    /**
+     * Monitor backed by ART's allocation counters, which count per thread, so frames are
+     * measured on whichever thread calls {@link #beginFrame()}. Counting slows every
+     * allocation in the process down; only use it in debug builds.
+     */
+    @SuppressWarnings("deprecation")
+    public static FrameAllocationMonitor forRenderThread(long budgetBytes) {
+        Debug.startAllocCounting();
+        return new FrameAllocationMonitor(new Counter() {
+            @Override
+            public long getAllocatedBytes() {
+                return Debug.getThreadAllocSize();
+            }
+        }, budgetBytes);
+    }
+
+    public void beginFrame() {
+        mFrameStart = mCounter.getAllocatedBytes();
+    }
+
+    public void endFrame() {
+        if (mFrameStart < 0) {
+            throw new IllegalStateException("endFrame() without beginFrame()");
+        }
+        long bytes = mCounter.getAllocatedBytes() - mFrameStart;
+        mFrameStart = -1;
+        mLastFrameBytes = bytes;
+        mMaxFrameBytes = Math.max(mMaxFrameBytes, bytes);
+        mTotalBytes += bytes;
+        mFrameCount++;
+        if (bytes > mBudgetBytes) {
+            mFramesOverBudget++;
+        }
+    }
+
+    /** Forgets the frames so far, e.g. once the renderer has warmed up. */
+    public void reset() {
+        mLastFrameBytes = 0;
+        mMaxFrameBytes = 0;
+        mTotalBytes = 0;
+        mFrameCount = 0;
+        mFramesOverBudget = 0;
+    }
+
+    public long getBudgetBytes() {
+        return mBudgetBytes;
+    }
+
+    public long getLastFrameBytes() {
+        return mLastFrameBytes;
+    }
+
+    public long getMaxFrameBytes() {
+        return mMaxFrameBytes;
+    }
+
+    public long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public int getFramesOverBudget() {
+        return mFramesOverBudget;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameAllocationMonitor{frames=" + mFrameCount
+                + ", overBudget=" + mFramesOverBudget
+                + ", maxBytes=" + mMaxFrameBytes
+                + ", totalBytes=" + mTotalBytes + "}";
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.testopengl.perf;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands frames from a {@code SurfaceTexture}'s producer to a render thread, always
+ * latching the newest one. The frame listener calls {@link #onFrameAvailable()} on
+ * whatever thread the producer uses; the render thread calls {@link #takeNewFrame()}
+ * before drawing and only latches, and blurs, when it returns true. Frames that arrived
+ * while the renderer was busy are dropped rather than queued, since
+ * {@code updateTexImage} skips to the most recent one anyway, so latency cannot build up.
+ *
+ * {@link #onFramePresented} measures the time from a frame's
+ * {@code SurfaceTexture.getTimestamp()} to the end of its draw. Everything apart from
+ * {@link #onFrameAvailable()} is for the render thread and does not allocate.
+ */
+public final class FrameArrivalTracker {
+
+    private final AtomicInteger mPending = new AtomicInteger();
+    private final AtomicInteger mArrivedCount = new AtomicInteger();
+    private int mLatchedCount;
+    private int mDroppedCount;
+    private int mIdleCount;
+    private long mLastLatencyNanos;
+    private long mMaxLatencyNanos;
+    private long mTotalLatencyNanos;
+    private int mLatencyCount;
+
+    /** Called by the frame listener, on any thread. */
+    public void onFrameAvailable() {
+        mPending.incrementAndGet();
+        mArrivedCount.incrementAndGet();
+    }
+
+    /**
+     * Whether a frame arrived since the last call; if so the caller latches it. Frames
+     * beyond the newest count as dropped; a call without a new frame counts as idle.
+     */
+    public boolean takeNewFrame() {
+        int pending = mPending.getAndSet(0);
+        if (pending == 0) {
+            mIdleCount++;
+            return false;
+        }
+        mLatchedCount++;
+        mDroppedCount += pending - 1;
+        return true;
+    }
+
+    /**
+     * Records the latency of the frame just drawn.
+     *
+     * @param frameTimestampNanos the latched frame's {@code SurfaceTexture.getTimestamp()}
+     * @param presentNanos        {@code System.nanoTime()} once the frame is drawn; both
+     *                            use the monotonic clock
+     */
+    public void onFramePresented(long frameTimestampNanos, long presentNanos) {
+        if (frameTimestampNanos <= 0) {
+            // Producers that do not stamp their frames
+            return;
+        }
+        long latency = Math.max(0, presentNanos - frameTimestampNanos);
+        mLastLatencyNanos = latency;
+        mMaxLatencyNanos = Math.max(mMaxLatencyNanos, latency);
+        mTotalLatencyNanos += latency;
+        mLatencyCount++;
+    }
+
+    /** Forgets the statistics so far; frames still pending stay pending. */
+    public void reset() {
+        mArrivedCount.set(0);
+        mLatchedCount = 0;
+        mDroppedCount = 0;
+        mIdleCount = 0;
+        mLastLatencyNanos = 0;
+        mMaxLatencyNanos = 0;
+        mTotalLatencyNanos = 0;
+        mLatencyCount = 0;
+    }
+
+    public boolean hasPendingFrame() {
+        return mPending.get() > 0;
+    }
+
+    public int getArrivedCount() {
+        return mArrivedCount.get();
+    }
+
+    public int getLatchedCount() {
+        return mLatchedCount;
+    }
+
+    /** Frames replaced by a newer one before the renderer got to them. */
+    public int getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /** Draws without a new frame, e.g. for a parameter change or a resize. */
+    public int getIdleCount() {
+        return mIdleCount;
+    }
+
+    public long getLastLatencyNanos() {
+        return mLastLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return mMaxLatencyNanos;
+    }
+
+    public long getMeanLatencyNanos() {
+        return mLatencyCount > 0 ? mTotalLatencyNanos / mLatencyCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameArrivalTracker{arrived=" + mArrivedCount.get()
+                + ", latched=" + mLatchedCount
+                + ", dropped=" + mDroppedCount
+                + ", idle=" + mIdleCount
+                + ", meanLatencyUs=" + getMeanLatencyNanos() / 1000
+                + ", maxLatencyUs=" + mMaxLatencyNanos / 1000 + "}";
+    }
+}
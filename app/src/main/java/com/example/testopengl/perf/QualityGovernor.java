@@ -0,0 +1,147 @@
+package com.example.testopengl.perf;
+
+/**
+ * Steps a renderer through quality levels to hold a frame-time budget. Level 0 is the
+ * best quality; each higher level must be cheaper than the one before.
+ *
+ * Frame times, e.g. from {@link com.example.testopengl.gl.GpuFrameTimer}, are smoothed
+ * with an exponential moving average. The level drops as soon as the average has been
+ * over budget for {@link #DOWN_FRAMES} frames, and rises only after it has been under
+ * {@link #UP_FRACTION} of the budget for a longer stretch, so that a level that just fits
+ * is kept rather than alternated with the one above. After every change the average
+ * restarts and the next {@link #SETTLE_FRAMES} frames are ignored, since frames still in
+ * flight were timed at the old level. A rise that has to be undone soon after doubles
+ * the wait before the next attempt at that level, up to {@link #MAX_BACKOFF} times,
+ * until a rise into it holds.
+ *
+ * Plain Java and allocation-free, so it can run every frame and be driven by simulated
+ * timings in tests.
+ */
+public final class QualityGovernor {
+
+    static final float SMOOTHING = 0.2f;
+    static final int DOWN_FRAMES = 5;
+    static final int UP_FRAMES = 60;
+    static final float UP_FRACTION = 0.7f;
+    static final int SETTLE_FRAMES = 4;
+    static final int MAX_BACKOFF = 16;
+
+    private final long mBudgetNanos;
+    private final int mLevelCount;
+    // Multiplier on UP_FRAMES for rising into each level
+    private final int[] mBackoff;
+    private int mLevel;
+    private float mAverageNanos = -1f;
+    private int mOverCount;
+    private int mUnderCount;
+    private int mSettleCount;
+    // Frames since the last rise, while it may still be undone
+    private int mSinceRise = -1;
+    private int mChangeCount;
+
+    /**
+     * @param budgetNanos frame time to stay under, e.g. 8 ms
+     * @param levelCount  number of quality levels, level 0 being the best
+     */
+    public QualityGovernor(long budgetNanos, int levelCount) {
+        if (budgetNanos <= 0 || levelCount <= 0) {
+            throw new IllegalArgumentException("Bad budget " + budgetNanos + " or level count " + levelCount);
+        }
+        mBudgetNanos = budgetNanos;
+        mLevelCount = levelCount;
+        mBackoff = new int[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            mBackoff[i] = 1;
+        }
+    }
+
+    /**
+     * Feeds one frame's time.
+     *
+     * @return whether {@link #getLevel()} changed
+     */
+    public boolean onFrameTime(long frameNanos) {
+        if (mSettleCount > 0) {
+            mSettleCount--;
+            return false;
+        }
+        mAverageNanos = mAverageNanos < 0 ? frameNanos : mAverageNanos + SMOOTHING * (frameNanos - mAverageNanos);
+        if (mSinceRise >= 0 && ++mSinceRise > UP_FRAMES) {
+            // The rise held; the next rise into this level need not wait longer
+            mBackoff[mLevel] = 1;
+            mSinceRise = -1;
+        }
+
+        if (mAverageNanos > mBudgetNanos) {
+            mUnderCount = 0;
+            if (++mOverCount >= DOWN_FRAMES && mLevel < mLevelCount - 1) {
+                if (mSinceRise >= 0) {
+                    mBackoff[mLevel] = Math.min(MAX_BACKOFF, mBackoff[mLevel] * 2);
+                }
+                mSinceRise = -1;
+                return changeLevel(mLevel + 1);
+            }
+        } else if (mAverageNanos < mBudgetNanos * UP_FRACTION) {
+            mOverCount = 0;
+            if (mLevel > 0 && ++mUnderCount >= UP_FRAMES * mBackoff[mLevel - 1]) {
+                mSinceRise = 0;
+                return changeLevel(mLevel - 1);
+            }
+        } else {
+            // Within the band: keep the level
+            mOverCount = 0;
+            mUnderCount = 0;
+        }
+        return false;
+    }
+
+    private boolean changeLevel(int level) {
+        mLevel = level;
+        mAverageNanos = -1f;
+        mOverCount = 0;
+        mUnderCount = 0;
+        mSettleCount = SETTLE_FRAMES;
+        mChangeCount++;
+        return true;
+    }
+
+    /** Jumps to {@code level}, e.g. to start a device known to be slow lower. */
+    public void setLevel(int level) {
+        if (level < 0 || level >= mLevelCount) {
+            throw new IllegalArgumentException("Bad level " + level);
+        }
+        if (level != mLevel) {
+            mSinceRise = -1;
+            changeLevel(level);
+        }
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public int getLevelCount() {
+        return mLevelCount;
+    }
+
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+
+    /** Smoothed frame time at the current level, or -1 before the first sample. */
+    public long getAverageNanos() {
+        return (long) mAverageNanos;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "QualityGovernor{level=" + mLevel + "/" + mLevelCount
+                + ", averageUs=" + getAverageNanos() / 1000
+                + ", budgetUs=" + mBudgetNanos / 1000
+                + ", changes=" + mChangeCount + "}";
+    }
+}
@@ -1,28 +1,58 @@
 package com.example.testopengl.three;
 
 import android.content.Context;
+import android.graphics.Rect;
 import android.graphics.SurfaceTexture;
+import android.opengl.GLES11Ext;
 import android.opengl.GLES30;
-import android.opengl.GLSurfaceView;
-import android.opengl.Matrix;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
 
-import javax.microedition.khronos.egl.EGLConfig;
-import javax.microedition.khronos.opengles.GL10;
+import com.example.testopengl.blur.AdaptiveBlurFilter;
+import com.example.testopengl.gl.AndroidEgl;
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.AsyncReadback;
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.RenderThread;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.StateTrackingGl;
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.graph.ExternalOesSource;
+import com.example.testopengl.graph.FilterGraph;
+import com.example.testopengl.graph.ScreenSink;
+import com.example.testopengl.graph.TemporalBlurNode;
+import com.example.testopengl.perf.FrameArrivalTracker;
 
-public class BlurGLSurfaceView extends GLSurfaceView implements GLSurfaceView.Renderer, SurfaceTexture.OnFrameAvailableListener {
+import java.util.ArrayDeque;
 
-    private SurfaceTexture mSurfaceTexture;
-    private int mTextureId;
-    private BlurFilter mBlurFilter;
-    private HandlerThread mRenderThread;
-    private Handler mRenderHandler;
-    private float[] mTextureMatrix = new float[16];
-    private boolean mUpdateSurface = false;
+/**
+ * Shows the frames rendered into {@link #getSurfaceTexture()} blurred. Drawing happens on
+ * a {@link RenderThread} that lives while the view is attached; parameter changes reach
+ * it as commands, and it only draws when a frame or a change arrives.
+ */
+public class BlurGLSurfaceView extends SurfaceView implements SurfaceHolder.Callback, RenderThread.Renderer,
+        SurfaceTexture.OnFrameAvailableListener {
+
+    private final FrameArrivalTracker mFrames = new FrameArrivalTracker();
+    private RenderThread mRenderThread;
+    // UI thread; the render thread gets it through a command
     private float mBlurRadius = 20.0f;
-    private float mAspectRatio = 1.0f;
+    private TextureFormat mIntermediateFormat = TextureFormat.RGBA8;
+    private volatile SurfaceTexture mSurfaceTexture;
+
+    // Render thread only
+    private StateTrackingGl mGl;
+    private int mTextureId;
+    private TemporalBlurNode mBlurNode;
+    private RenderTargetPool mTargetPool;
+    private FilterGraph mFilterGraph;
+    private ExternalOesSource mSource;
+    private AsyncReadback mReadback;
+    private final ArrayDeque<AsyncReadback.Callback> mSnapshotRequests = new ArrayDeque<>();
+    private int mWidth;
+    private int mHeight;
 
     public BlurGLSurfaceView(Context context) {
         this(context, null);
@@ -30,66 +60,200 @@ public class BlurGLSurfaceView extends GLSurfaceView implements GLSurfaceView.Re
 
     public BlurGLSurfaceView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        setEGLContextClientVersion(3); // Request an OpenGL ES 3.0 compatible context.
-        setRenderer(this);
-        setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY); // Only render when we have a frame to display.
+        getHolder().addCallback(this);
+    }
+
+    /** Frame arrival and latency statistics; read them on the render thread. */
+    public FrameArrivalTracker getFrameTracker() {
+        return mFrames;
+    }
+
+    /**
+     * The render thread's GL, for the calls it skipped in the last frame; read it on the
+     * render thread.
+     */
+    public StateTrackingGl getStateTracker() {
+        return mGl;
+    }
+
+    /** Surface texture to render frames into; valid once the render thread has started. */
+    public SurfaceTexture getSurfaceTexture() {
+        return mSurfaceTexture;
+    }
+
+    public void setBlurRadius(float radius) {
+        mBlurRadius = radius;
+        RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.post(() -> mBlurNode.setRadius(radius));
+            renderThread.requestRender();
+        }
+    }
+
+    /**
+     * Format the blur keeps its intermediate results in, e.g. {@link TextureFormat#RGB565}
+     * to save bandwidth; RGBA8 where the device cannot render to it.
+     */
+    public void setIntermediateFormat(TextureFormat format) {
+        mIntermediateFormat = format;
+        RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.post(() -> applyIntermediateFormat(format));
+            renderThread.requestRender();
+        }
+    }
+
+    private void applyIntermediateFormat(TextureFormat format) {
+        mTargetPool.setIntermediateFormat(TextureFormat.supported(format, mGl));
+        // The kept blur was made in the old format
+        mBlurNode.getPolicy().invalidate();
+    }
+
+    /**
+     * Reads the next frame back, as shown, without stalling the render thread:
+     * {@code callback} runs on the render thread once the pixels have arrived, usually one
+     * or two frames later. It is not called if the view is detached first.
+     */
+    public void requestSnapshot(AsyncReadback.Callback callback) {
+        RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.post(() -> mSnapshotRequests.add(callback));
+            renderThread.requestRender();
+        }
     }
 
     @Override
-    public void onSurfaceCreated(GL10 gl, EGLConfig config) {
-        // Create SurfaceTexture and get texture ID
-        int[] textures = new int[1];
-        GLES30.glGenTextures(1, textures, 0);
-        mTextureId = textures[0];
-        mSurfaceTexture = new SurfaceTexture(mTextureId);
-        mSurfaceTexture.setOnFrameAvailableListener(this);
-
-        // Create blur filter
-        mBlurFilter = new BlurFilter(getContext());
-
-        // Create render thread and handler
-        mRenderThread = new HandlerThread("RenderThread");
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mRenderThread = new RenderThread("BlurRenderThread", AndroidEgl.getInstance(), this);
         mRenderThread.start();
-        mRenderHandler = new Handler(mRenderThread.getLooper());
+        float radius = mBlurRadius;
+        TextureFormat format = mIntermediateFormat;
+        mRenderThread.post(() -> {
+            mBlurNode.setRadius(radius);
+            applyIntermediateFormat(format);
+        });
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // Waits for the render thread to release its GL objects and end
+        mRenderThread.quit();
+        mRenderThread = null;
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        Rect frame = holder.getSurfaceFrame();
+        mRenderThread.setSurface(holder.getSurface(), frame.width(), frame.height());
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        mRenderThread.setSize(width, height);
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        // The surface must not be drawn to once this returns
+        mRenderThread.releaseSurface();
+    }
+
+    @Override
+    public void onContextCreated() {
+        // All state changes of this context go through mGl, which drops the redundant ones
+        mGl = new StateTrackingGl(AndroidGl.getInstance());
+        ShaderProgramCache.getInstance().onContextCreated(mGl);
+        FullScreenQuad.getInstance(mGl).onContextCreated();
+        mTargetPool = new RenderTargetPool(mGl);
+        mReadback = new AsyncReadback(mGl);
+
+        // Create SurfaceTexture and get texture ID; its parameters are set once, here
+        mTextureId = mGl.genTexture();
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureId);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_MIN_FILTER, GLES30.GL_LINEAR);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_LINEAR);
+        SurfaceTexture surfaceTexture = new SurfaceTexture(mTextureId);
+        surfaceTexture.setOnFrameAvailableListener(this);
+        mSurfaceTexture = surfaceTexture;
+
+        // Frame -> blur -> screen, drawn on the render thread; the blur's first pass samples
+        // the surface texture directly, and is skipped while the frames do not change
+        mFilterGraph = new FilterGraph(mTargetPool);
+        mSource = mFilterGraph.add(new ExternalOesSource(mTextureId));
+        mBlurNode = mFilterGraph.add(new TemporalBlurNode(new AdaptiveBlurFilter(mTargetPool), mTargetPool));
+        ScreenSink screen = mFilterGraph.add(new ScreenSink());
+        mFilterGraph.connect(mSource, mBlurNode);
+        mFilterGraph.connect(mBlurNode, screen);
 
         // Enable transparency
         GLES30.glClearColor(0.0f, 0.0f, 0.0f, 0.0f);
-        GLES30.glEnable(GLES30.GL_BLEND);
-        GLES30.glBlendFunc(GLES30.GL_SRC_ALPHA, GLES30.GL_ONE_MINUS_SRC_ALPHA);
+        mGl.enable(GLES30.GL_BLEND);
+        mGl.blendFunc(GLES30.GL_SRC_ALPHA, GLES30.GL_ONE_MINUS_SRC_ALPHA);
     }
 
     @Override
-    public void onSurfaceChanged(GL10 gl, int width, int height) {
-        GLES30.glViewport(0, 0, width, height);
-        mAspectRatio = (float) height / (float) width;
+    public void onSurfaceChanged(int width, int height) {
+        mGl.viewport(0, 0, width, height);
+        mFilterGraph.setSize(width, height);
+        mWidth = width;
+        mHeight = height;
     }
 
     @Override
-    public void onDrawFrame(GL10 gl) {
-        GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT | GLES30.GL_DEPTH_BUFFER_BIT);
-
-        // Update surface texture
-        if (mUpdateSurface) {
-            mSurfaceTexture.updateTexImage();
-            mSurfaceTexture.getTransformMatrix(mTextureMatrix);
-            mUpdateSurface = false;
+    public void onDrawFrame() {
+        GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT);
+        mGl.resetSkippedCount();
+
+        // Latch only the newest frame, once, however many arrived since the last draw; the
+        // transform goes into the source's own matrix. Without a new frame this draw is for
+        // a radius change or a new surface and redraws the frame already latched.
+        boolean newFrame = mFrames.takeNewFrame();
+        if (newFrame) {
+            mSource.update(mSurfaceTexture);
+            mGl.onTextureBound(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureId);
         }
 
-        // Render blur
-        mRenderHandler.post(() -> {
-            mBlurFilter.draw(mTextureId, mTextureMatrix, getWidth(), getHeight());
-        });
+        mFilterGraph.draw();
+        if (newFrame) {
+            mFrames.onFramePresented(mSource.getTimestamp(), System.nanoTime());
+        }
+        readBack();
+    }
+
+    private void readBack() {
+        mReadback.poll();
+        while (!mSnapshotRequests.isEmpty()
+                && mReadback.request(0, 0, 0, mWidth, mHeight, mSnapshotRequests.peek())) {
+            mSnapshotRequests.remove();
+        }
+        if (mReadback.getPendingCount() > 0 || !mSnapshotRequests.isEmpty()) {
+            // Frames are only drawn on demand; ask for one to poll again. Without a new
+            // video frame the blur node shows its kept result, so this costs little.
+            mRenderThread.requestRender();
+        }
     }
 
     @Override
-    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
-        mUpdateSurface = true;
-        requestRender();
+    public void onContextDestroyed() {
+        // The shared quad's objects go with the context; FullScreenQuad forgets them in
+        // the next onContextCreated
+        mFilterGraph.release();
+        mReadback.release();
+        mTargetPool.evictAll();
+        mGl.deleteTexture(mTextureId);
+        SurfaceTexture surfaceTexture = mSurfaceTexture;
+        mSurfaceTexture = null;
+        surfaceTexture.release();
     }
 
-    public void setBlurRadius(float radius) {
-        mBlurRadius = radius;
-        requestRender();
+    @Override
+    public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        mFrames.onFrameAvailable();
+        RenderThread renderThread = mRenderThread;
+        if (renderThread != null) {
+            renderThread.requestRender();
+        }
     }
 }
-
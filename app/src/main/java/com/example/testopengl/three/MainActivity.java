@@ -11,53 +11,91 @@ import com.example.testopengl.R;
 
 import java.io.IOException;
 
-public class MainActivity extends AppCompatActivity implements SurfaceTexture.OnFrameAvailableListener {
+public class MainActivity extends AppCompatActivity implements SurfaceTexture.OnFrameAvailableListener,
+        MyRenderer.Callback {
     private GLSurfaceView mGLSurfaceView;
-    private SurfaceTexture mSurfaceTexture;
     private MyRenderer mRenderer;
+    private MediaPlayer mMediaPlayer;
+    private Surface mSurface;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
         mGLSurfaceView = findViewById(R.id.gl_surface_view);
-        mRenderer = new MyRenderer(this);
+        mRenderer = new MyRenderer(this, this);
         mGLSurfaceView.setEGLContextClientVersion(3);
         mGLSurfaceView.setRenderer(mRenderer);
-        mGLSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_CONTINUOUSLY);
+        // 只在有新的视频帧时绘制，暂停播放时不再空跑模糊
+        mGLSurfaceView.setRenderMode(GLSurfaceView.RENDERMODE_WHEN_DIRTY);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
+        // SurfaceTexture 在 GL 线程的 onSurfaceCreated 里创建，之后通过 onSurfaceTextureCreated 回调交给 MediaPlayer
         mGLSurfaceView.onResume();
-        mSurfaceTexture = new SurfaceTexture(mRenderer.getTextureId());
-        mSurfaceTexture.setOnFrameAvailableListener(this);
-        try {
-            AssetFileDescriptor afd = getResources().openRawResourceFd(R.raw.my_video);
-            MediaPlayer mediaPlayer = new MediaPlayer();
-            mediaPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            mediaPlayer.setSurface(new Surface(mSurfaceTexture));
-            mediaPlayer.prepare();
-            mediaPlayer.start();
+    }
+
+    @Override
+    public void onSurfaceTextureCreated(SurfaceTexture surfaceTexture) {
+        surfaceTexture.setOnFrameAvailableListener(this);
+        runOnUiThread(() -> startPlayback(surfaceTexture));
+    }
+
+    private void startPlayback(SurfaceTexture surfaceTexture) {
+        // 回调排队期间 Activity 可能已经 onPause，SurfaceTexture 已被释放
+        if (surfaceTexture.isReleased()) {
+            return;
+        }
+        releasePlayer();
+        mSurface = new Surface(surfaceTexture);
+        mMediaPlayer = new MediaPlayer();
+        try (AssetFileDescriptor afd = getResources().openRawResourceFd(R.raw.my_video)) {
+            mMediaPlayer.setDataSource(afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            mMediaPlayer.setSurface(mSurface);
+            mMediaPlayer.prepare();
+            mMediaPlayer.start();
         } catch (IOException e) {
             e.printStackTrace();
+            releasePlayer();
+        }
+    }
+
+    private void releasePlayer() {
+        if (mMediaPlayer != null) {
+            mMediaPlayer.release();
+            mMediaPlayer = null;
+        }
+        if (mSurface != null) {
+            mSurface.release();
+            mSurface = null;
         }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
+        releasePlayer();
+        // onPause 返回后 GL 线程已经停下，可以在这里释放 SurfaceTexture
         mGLSurfaceView.onPause();
-        mSurfaceTexture.release();
+        mRenderer.releaseSurfaceTexture();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        releasePlayer();
+        mRenderer.releaseSurfaceTexture();
     }
 
     @Override
     public void onFrameAvailable(SurfaceTexture surfaceTexture) {
+        mRenderer.onFrameAvailable();
         mGLSurfaceView.requestRender();
     }
     /**
-     * 这个 Activity 实现创建了一个 GLSurfaceView 并将其与 MyRenderer 关联。在 onResume 方法中，我们创建了一个新的 SurfaceTexture，并将其与 MediaPlayer 关联来播放视频。在 onPause 方法中，我们释放了 SurfaceTexture 对象。在 onFrameAvailable 方法中，我们请求 GLSurfaceView 进行渲染。
+     * 这个 Activity 实现创建了一个 GLSurfaceView 并将其与 MyRenderer 关联。SurfaceTexture 在 GL 线程的 onSurfaceCreated 中创建，再回到 UI 线程与 MediaPlayer 关联来播放视频。在 onPause 和 onDestroy 方法中，我们释放了 MediaPlayer、Surface 和 SurfaceTexture 对象。在 onFrameAvailable 方法中，我们记下新帧并请求 GLSurfaceView 进行渲染（RENDERMODE_WHEN_DIRTY）。
      *
      * 这就是在 Android 31 中使用 GLSurfaceView.Renderer 实现对视频的径向模糊处理的示例。这个示例可以作为一个基础框架，用来实现更加复杂和高级的图像处理效果。
      */
@@ -2,76 +2,190 @@ package com.example.testopengl.three;
 
 import android.content.Context;
 import android.graphics.SurfaceTexture;
-import android.media.MediaPlayer;
-import android.opengl.EGLConfig;
+import android.opengl.GLES11Ext;
 import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
 
+import com.example.testopengl.blur.RadialBlurFilter;
+import com.example.testopengl.blur.RadialBlurQuality;
+import com.example.testopengl.gl.AndroidGl;
+import com.example.testopengl.gl.FullScreenQuad;
+import com.example.testopengl.gl.GpuFrameTimer;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.ShaderProgramCache;
+import com.example.testopengl.gl.StateTrackingGl;
+import com.example.testopengl.gl.TextureFormat;
+import com.example.testopengl.graph.ExternalOesSource;
+import com.example.testopengl.graph.FilterGraph;
+import com.example.testopengl.graph.RoiBlurNode;
+import com.example.testopengl.graph.ScreenSink;
+import com.example.testopengl.perf.FrameArrivalTracker;
+import com.example.testopengl.perf.QualityGovernor;
+
+import javax.microedition.khronos.egl.EGLConfig;
 import javax.microedition.khronos.opengles.GL10;
 
 public class MyRenderer implements GLSurfaceView.Renderer {
-    private BlurFilter mBlurFilter;
-    private SurfaceTexture mSurfaceTexture;
+
+    /** 每帧 GPU 时间预算，超出时逐级降低径向模糊的质量 */
+    public static final long FRAME_BUDGET_NANOS = 8_000_000L;
+
+    /** SurfaceTexture 在 GL 线程上创建好之后的回调，在 GL 线程上调用 */
+    public interface Callback {
+        void onSurfaceTextureCreated(SurfaceTexture surfaceTexture);
+    }
+
+    private final Context mContext;
+    private final Callback mCallback;
+    private volatile SurfaceTexture mSurfaceTexture;
     private int mTextureId;
-    private MediaPlayer mMediaPlayer;
+    private RenderTargetPool mTargetPool;
+    private FilterGraph mFilterGraph;
+    private ExternalOesSource mVideoSource;
+    private final FrameArrivalTracker mFrames = new FrameArrivalTracker();
+    // 跨 GL 上下文保留，重建上下文后直接从上次的质量等级开始
+    private final QualityGovernor mGovernor = new QualityGovernor(FRAME_BUDGET_NANOS,
+            RadialBlurQuality.getLevelCount());
+    private RadialBlurFilter mRadialBlur;
+    private RoiBlurNode mBlurNode;
+    private StateTrackingGl mGl;
+    private GpuFrameTimer mFrameTimer;
+    // 中间纹理格式：任意线程设置，GL 线程在下一帧应用
+    private volatile TextureFormat mIntermediateFormat = TextureFormat.RGBA8;
+    private TextureFormat mAppliedFormat;
 
-    public MyRenderer(Context context) {
-        mBlurFilter = new BlurFilter(context);
-        mMediaPlayer = MediaPlayer.create(context, R.raw.my_video);
+    public MyRenderer(Context context, Callback callback) {
+        mContext = context;
+        mCallback = callback;
     }
 
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         GLES30.glClearColor(0.0f, 0.0f, 0.0f, 1.0f);
-        mBlurFilter.init();
-        mMediaPlayer.start();
+        // 每个上下文一个状态跟踪器，所有状态修改都经过它，重复的绑定、切换程序和设置视口直接丢掉
+        mGl = new StateTrackingGl(AndroidGl.getInstance());
+        ShaderProgramCache.getInstance().onContextCreated(mGl);
+        FullScreenQuad.getInstance(mGl).onContextCreated();
+        mTargetPool = new RenderTargetPool(mGl);
+        mAppliedFormat = null;
+        mTextureId = createTextureId();
+        // 纹理只能在 GL 线程上创建，SurfaceTexture 必须绑定在它上面，所以也在这里创建
+        releaseSurfaceTexture();
+        SurfaceTexture surfaceTexture = new SurfaceTexture(mTextureId);
+        mSurfaceTexture = surfaceTexture;
+
+        // 视频帧 -> 径向模糊 -> 屏幕。模糊的第一遍直接采样外部纹理，变换矩阵在顶点着色器里应用
+        mFilterGraph = new FilterGraph(mTargetPool);
+        mVideoSource = mFilterGraph.add(new ExternalOesSource(mTextureId));
+        mRadialBlur = new RadialBlurFilter(mTargetPool);
+        RadialBlurQuality.apply(mRadialBlur, mGovernor.getLevel());
+        mBlurNode = mFilterGraph.add(new RoiBlurNode(mRadialBlur, mTargetPool));
+        ScreenSink screen = mFilterGraph.add(new ScreenSink());
+        mFilterGraph.connect(mVideoSource, mBlurNode);
+        mFilterGraph.connect(mBlurNode, screen);
+
+        // 有 EXT_disjoint_timer_query 时用计时查询，否则用 fence 估计
+        mFrameTimer = new GpuFrameTimer(mGl);
+
+        mCallback.onSurfaceTextureCreated(surfaceTexture);
     }
 
     @Override
     public void onSurfaceChanged(GL10 gl, int width, int height) {
-        GLES30.glViewport(0, 0, width, height);
-        mBlurFilter.setAspectRatio((float) width / height);
+        mGl.viewport(0, 0, width, height);
+        mFilterGraph.setSize(width, height);
+        // 只模糊焦点圆以外的部分，圆内保持清晰；圆内的像素只在圆的外接框里重画
+        mBlurNode.getRegion().setCircle(width / 2f, height / 2f, Math.min(width, height) / 3f, true);
     }
 
     @Override
     public void onDrawFrame(GL10 gl) {
         GLES30.glClear(GLES30.GL_COLOR_BUFFER_BIT);
+        mGl.resetSkippedCount();
+        SurfaceTexture surfaceTexture = mSurfaceTexture;
+        if (surfaceTexture == null) {
+            return;
+        }
+
+        // 只在有新帧时更新 SurfaceTexture，多帧积压时 updateTexImage 直接取最新的一帧；
+        // 变换矩阵写进预先分配好的数组，每帧不再 new float[16]
+        boolean newFrame = mFrames.takeNewFrame();
+        if (newFrame) {
+            mVideoSource.update(surfaceTexture);
+            // updateTexImage 会在当前纹理单元上绑定视频纹理，告诉状态跟踪器
+            mGl.onTextureBound(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTextureId);
+        }
+
+        TextureFormat format = mIntermediateFormat;
+        if (format != mAppliedFormat) {
+            // 设备不能渲染到该格式时退回 RGBA8
+            mTargetPool.setIntermediateFormat(TextureFormat.supported(format, mGl));
+            mAppliedFormat = format;
+        }
 
-        // 更新 SurfaceTexture
-        mSurfaceTexture.updateTexImage();
-        float[] textureMatrix = new float[16];
-        mSurfaceTexture.getTransformMatrix(textureMatrix);
+        // 应用径向模糊；没有新帧时（尺寸变化、恢复）重画已经锁定的那一帧
+        mFrameTimer.beginFrame();
+        mFilterGraph.draw();
+        mFrameTimer.endFrame();
+        if (newFrame) {
+            mFrames.onFramePresented(mVideoSource.getTimestamp(), System.nanoTime());
+        }
 
-        // 应用径向模糊
-        mBlurFilter.drawTexture(mTextureId, textureMatrix);
+        // 几帧之前的 GPU 时间出来了就交给调节器，超出预算时降级，长期富余时再升级
+        long gpuNanos = mFrameTimer.poll();
+        if (gpuNanos >= 0 && mGovernor.onFrameTime(gpuNanos)) {
+            RadialBlurQuality.apply(mRadialBlur, mGovernor.getLevel());
+        }
     }
 
-    @Override
-    public void onSurfaceDestroyed() {
-        mMediaPlayer.release();
+    /**
+     * 模糊中间结果的纹理格式。带宽受限的设备可以用 RGB565 或 R11G11B10F（写入时加抖动），
+     * 画质优先用 RGBA16F；可以在任意线程调用
+     */
+    public void setIntermediateFormat(TextureFormat format) {
+        mIntermediateFormat = format;
     }
 
-    public void setSurfaceTexture(SurfaceTexture surfaceTexture) {
-        mSurfaceTexture = surfaceTexture;
-        mTextureId = createTextureId();
-        surfaceTexture.setDefaultBufferSize(mBlurFilter.getWidth(), mBlurFilter.getHeight());
-        surfaceTexture.setOnFrameAvailableListener(new SurfaceTexture.OnFrameAvailableListener() {
-            @Override
-            public void onFrameAvailable(SurfaceTexture surfaceTexture) {
-                mSurfaceTexture.updateTexImage();
-                mSurfaceTexture.getTransformMatrix(mTextureMatrix);
-            }
-        });
+    /** 状态跟踪器，getSkippedCount() 是上一帧省掉的调用数，在 GL 线程上读取 */
+    public StateTrackingGl getStateTracker() {
+        return mGl;
+    }
+
+    /** 质量调节器，在 GL 线程上读取 */
+    public QualityGovernor getQualityGovernor() {
+        return mGovernor;
+    }
+
+    /** 视频帧到达时调用，可以在任意线程；之后需要 requestRender */
+    public void onFrameAvailable() {
+        mFrames.onFrameAvailable();
+    }
+
+    /** 帧到达、丢帧和延迟统计，在 GL 线程上读取 */
+    public FrameArrivalTracker getFrameTracker() {
+        return mFrames;
+    }
+
+    /**
+     * 释放 SurfaceTexture。GL 线程暂停之后（GLSurfaceView.onPause 返回之后）可以在任意线程调用，
+     * 下次 onSurfaceCreated 会重新创建
+     */
+    public void releaseSurfaceTexture() {
+        SurfaceTexture surfaceTexture = mSurfaceTexture;
+        mSurfaceTexture = null;
+        if (surfaceTexture != null) {
+            surfaceTexture.release();
+        }
     }
 
+    /** 纹理参数只在创建时设置一次，之后每帧只绑定 */
     private int createTextureId() {
-        int[] textures = new int[1];
-        GLES30.glGenTextures(1, textures, 0);
-        GLES30.glBindTexture(GLES30.GL_TEXTURE_2D, textures[0]);
-        GLES30.glTexParameterf(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MIN_FILTER, GLES30.GL_LINEAR);
-        GLES30.glTexParameterf(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_LINEAR);
-        GLES30.glTexParameterf(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_WRAP_S, GLES30.GL_CLAMP_TO_EDGE);
-        GLES30.glTexParameterf(GLES30.GL_TEXTURE_2D, GLES30.GL_TEXTURE_WRAP_T, GLES30.GL_CLAMP_TO_EDGE);
-        return textures[0];
+        int texture = mGl.genTexture();
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, texture);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_MIN_FILTER, GLES30.GL_LINEAR);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_MAG_FILTER, GLES30.GL_LINEAR);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_WRAP_S, GLES30.GL_CLAMP_TO_EDGE);
+        mGl.texParameteri(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, GLES30.GL_TEXTURE_WRAP_T, GLES30.GL_CLAMP_TO_EDGE);
+        return texture;
     }
 }
@@ -0,0 +1,161 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class ArgbBlurEngineTest {
+
+    @Test
+    public void boxRadiiMatchTheGaussianVariance() {
+        for (float sigma : new float[]{1f, 2.5f, 7f, 33f}) {
+            double variance = 0;
+            for (int radius : ArgbBlurEngine.boxRadii(sigma, ArgbBlurEngine.BOX_PASSES)) {
+                int size = 2 * radius + 1;
+                variance += (size * size - 1) / 12.0;
+            }
+            assertEquals("sigma " + sigma, sigma * sigma, variance, sigma * sigma * 0.2 + 0.5);
+        }
+        assertArrayEquals(new int[3], ArgbBlurEngine.boxRadii(0f, 3));
+    }
+
+    @Test
+    public void closeToTheGlReferenceKernel() {
+        int width = 150;
+        int height = 97;
+        float[] src = ReferenceBlurTest.randomImage(width, height, 11);
+        for (ArgbBlurEngine.Kernel kernel : ArgbBlurEngine.Kernel.values()) {
+            for (float blurRadius : new float[]{9f, 24f, 60f}) {
+                float[] expected = ReferenceBlur.separable(src, width, height, GaussianKernel.forBlurRadius(blurRadius));
+                int[] pixels = toArgb(src, 1f, 0.5f);
+                ArgbBlurEngine engine = new ArgbBlurEngine();
+                engine.setKernel(kernel);
+                engine.blur(pixels, width, height, blurRadius);
+                String message = kernel + ", radius " + blurRadius;
+                assertEquals(message, 0f, ReferenceBlurTest.maxDifference(expected, channel(pixels, 16)), 0.02f);
+                // Every channel is blurred the same way
+                assertArrayEquals(message, channel(pixels, 16), channel(pixels, 8), 0f);
+                float[] halved = channel(pixels, 0);
+                for (int i = 0; i < halved.length; i++) {
+                    assertEquals(message, expected[i] * 0.5f, halved[i], 0.02f);
+                }
+                // Opaque stays opaque
+                assertArrayEquals(message, channelOf(1f, width * height), channel(pixels, 24), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void constantImagesAreUnchanged() {
+        int[] pixels = new int[37 * 41];
+        Arrays.fill(pixels, 0x80ff4001);
+        int[] expected = pixels.clone();
+        new ArgbBlurEngine().blur(pixels, 37, 41, 90f);
+        assertArrayEquals(expected, pixels);
+    }
+
+    @Test
+    public void smallRadiiAndOddSizes() {
+        int[] src = randomArgb(5 * 3, 4);
+        int[] pixels = src.clone();
+        new ArgbBlurEngine().blur(pixels, 5, 3, 0f);
+        assertArrayEquals(src, pixels);
+
+        // Single pixels, single rows and columns, and radii wider than the image
+        for (int[] size : new int[][]{{1, 1}, {1, 50}, {50, 1}, {17, 3}}) {
+            int[] one = new int[size[0] * size[1]];
+            Arrays.fill(one, 0xff102030);
+            new ArgbBlurEngine().blur(one, size[0], size[1], 200f);
+            for (int pixel : one) {
+                assertEquals(0xff102030, pixel);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShortArrays() {
+        new ArgbBlurEngine().blur(new int[10], 4, 4, 5f);
+    }
+
+    @Test
+    public void emptyImagesAreLeftAlone() {
+        int[] pixels = {1, 2, 3};
+        for (ArgbBlurEngine.Kernel kernel : ArgbBlurEngine.Kernel.values()) {
+            ArgbBlurEngine engine = new ArgbBlurEngine();
+            engine.setKernel(kernel);
+            engine.blur(pixels, 0, 5, 20f);
+            engine.blur(pixels, 5, 0, 20f);
+            engine.blur(new int[0], 0, 0, 20f);
+        }
+        assertArrayEquals(new int[]{1, 2, 3}, pixels);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNegativeSizes() {
+        new ArgbBlurEngine().blur(new int[10], -2, 5, 5f);
+    }
+
+    @Test
+    public void multithreadedMatchesSingleThreaded() {
+        int width = 301;
+        int height = 177;
+        int[] src = randomArgb(width * height, 9);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(4);
+        try {
+            for (ArgbBlurEngine.Kernel kernel : ArgbBlurEngine.Kernel.values()) {
+                int[] expected = src.clone();
+                ArgbBlurEngine engine = new ArgbBlurEngine(single);
+                engine.setKernel(kernel);
+                engine.blur(expected, width, height, 30f);
+                int[] actual = src.clone();
+                engine = new ArgbBlurEngine(many);
+                engine.setKernel(kernel);
+                engine.blur(actual, width, height, 30f);
+                assertArrayEquals(kernel.toString(), expected, actual);
+            }
+        } finally {
+            single.shutdown();
+            many.shutdown();
+        }
+    }
+
+    /** Packs a plane into red and green, {@code scale} times it into blue, and alpha. */
+    private static int[] toArgb(float[] plane, float alpha, float scale) {
+        int[] pixels = new int[plane.length];
+        int a = Math.round(alpha * 255);
+        for (int i = 0; i < plane.length; i++) {
+            int c = Math.round(plane[i] * 255);
+            int b = Math.round(plane[i] * scale * 255);
+            pixels[i] = a << 24 | c << 16 | c << 8 | b;
+        }
+        return pixels;
+    }
+
+    private static float[] channel(int[] pixels, int shift) {
+        float[] plane = new float[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            plane[i] = ((pixels[i] >>> shift) & 0xff) / 255f;
+        }
+        return plane;
+    }
+
+    private static float[] channelOf(float value, int count) {
+        float[] plane = new float[count];
+        Arrays.fill(plane, value);
+        return plane;
+    }
+
+    private static int[] randomArgb(int count, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ComputeBlurKernelTest {
+
+    private static void assertMatchesSeparable(int width, int height, float sigma, int tile) {
+        GaussianKernel kernel = GaussianKernel.forSigma(sigma);
+        float[] src = ReferenceBlurTest.randomImage(width, height, width * 31 + height);
+        float[] tiled = ComputeBlurKernel.compile(kernel, tile).simulate(src, width, height);
+        float[] expected = ReferenceBlur.separable(src, width, height, kernel);
+        assertEquals(width + "x" + height + " sigma " + sigma + " tile " + tile,
+                0f, ReferenceBlurTest.maxDifference(expected, tiled), 1e-5f);
+    }
+
+    @Test
+    public void partialTilesAtTheRightAndTopEdges() {
+        // Neither size is a multiple of the tile
+        assertMatchesSeparable(37, 23, 2f, 16);
+        assertMatchesSeparable(37, 23, 2f, 8);
+    }
+
+    @Test
+    public void apronWiderThanTheImageClampsToTheEdge() {
+        assertMatchesSeparable(5, 3, 3f, 16);
+        assertMatchesSeparable(1, 1, 2f, 8);
+        assertMatchesSeparable(40, 2, 6f, 8);
+    }
+
+    @Test
+    public void exactMultipleOfTheTile() {
+        assertMatchesSeparable(32, 48, 3.3f, 16);
+    }
+
+    @Test
+    public void zeroRadiusCopies() {
+        float[] src = ReferenceBlurTest.randomImage(20, 10, 3);
+        float[] dst = ComputeBlurKernel.compile(GaussianKernel.forSigma(0f), 16).simulate(src, 20, 10);
+        assertArrayEquals(src, dst, 0f);
+    }
+
+    @Test
+    public void sharedMemoryBoundsTheRadius() {
+        // 16 KiB is the GLES 3.1 minimum
+        assertEquals(10, ComputeBlurKernel.maxRadius(16, 16384));
+        assertEquals(20, ComputeBlurKernel.maxRadius(16, 32768));
+        for (int tile : new int[]{8, 16}) {
+            for (int bytes : new int[]{16384, 32768}) {
+                int radius = ComputeBlurKernel.maxRadius(tile, bytes);
+                assertTrue(ComputeBlurKernel.sharedBytes(tile, radius) <= bytes);
+                assertTrue(ComputeBlurKernel.sharedBytes(tile, radius + 1) > bytes);
+            }
+        }
+    }
+
+    @Test
+    public void fetchesFewerTexelsThanTwoPasses() {
+        ComputeBlurKernel kernel = ComputeBlurKernel.compile(GaussianKernel.forSigma(10f / 3f), 16);
+        assertEquals(10, kernel.getRadius());
+        assertEquals(36, kernel.getRegionSize());
+        // (36 / 16)^2 = 5.06 against 2 * 21 taps
+        assertTrue(kernel.getFetchesPerPixel() < 6f);
+        assertEquals(3, kernel.getGroupCount(33));
+        assertEquals(2, kernel.getGroupCount(32));
+    }
+
+    @Test
+    public void shaderBakesTheTilingConstants() {
+        ComputeBlurKernel kernel = ComputeBlurKernel.compile(GaussianKernel.forSigma(1f), 8);
+        String shader = kernel.toComputeShader();
+        assertTrue(shader.startsWith("#version 310 es\n"));
+        assertTrue(shader.contains("layout(local_size_x = 8, local_size_y = 8) in;"));
+        assertTrue(shader.contains("const int RADIUS = " + kernel.getRadius() + ";"));
+        assertTrue(shader.contains("shared uvec2 s_Input[REGION * REGION];"));
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DualKawasePlanTest {
+
+    @Test
+    public void depthGrowsWithRadius() {
+        int previous = 0;
+        for (float radius = 6f; radius <= 150f; radius += 6f) {
+            DualKawasePlan plan = DualKawasePlan.forBlurRadius(radius);
+            assertTrue(plan.getLevels() >= previous);
+            assertTrue(plan.getLevels() <= DualKawasePlan.MAX_LEVELS);
+            previous = plan.getLevels();
+        }
+        assertEquals(1, DualKawasePlan.forBlurRadius(6f).getLevels());
+        assertEquals(3, DualKawasePlan.forBlurRadius(20f).getLevels());
+        assertEquals(5, DualKawasePlan.forBlurRadius(90f).getLevels());
+    }
+
+    @Test
+    public void offsetStaysInRange() {
+        for (float radius = 6f; radius <= 150f; radius += 1f) {
+            DualKawasePlan plan = DualKawasePlan.forBlurRadius(radius);
+            assertTrue("radius " + radius, plan.getOffset() >= DualKawasePlan.MIN_OFFSET);
+            assertTrue("radius " + radius, plan.getOffset() <= DualKawasePlan.MAX_OFFSET);
+            assertEquals("radius " + radius, radius / 3f, plan.getSigma(), 1e-3f);
+        }
+    }
+
+    @Test
+    public void costIsFlatInRadius() {
+        float small = DualKawasePlan.forBlurRadius(10f).getRelativeCost();
+        float large = DualKawasePlan.forBlurRadius(150f).getRelativeCost();
+        assertTrue(large < 2f);
+        assertTrue(large - small < 0.2f);
+    }
+
+    @Test
+    public void impulseResponseMatchesPlannedSigma() {
+        int size = 256;
+        for (float radius : new float[]{12f, 20f, 45f}) {
+            DualKawasePlan plan = DualKawasePlan.forBlurRadius(radius);
+            float[] image = new float[size * size];
+            int center = size / 2;
+            image[center * size + center] = 1f;
+            float[] out = ReferenceBlur.dualKawase(image, size, size, plan.getLevels(), plan.getOffset());
+
+            double total = 0;
+            double mean = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    total += out[y * size + x];
+                    mean += out[y * size + x] * (x - center);
+                }
+            }
+            mean /= total;
+            double variance = 0;
+            for (int y = 0; y < size; y++) {
+                for (int x = 0; x < size; x++) {
+                    double d = x - center - mean;
+                    variance += out[y * size + x] * d * d;
+                }
+            }
+            double sigma = Math.sqrt(variance / total);
+            assertEquals("radius " + radius, 1.0, total, 1e-3);
+            assertEquals("radius " + radius, radius / 3f, sigma, 0.15 * radius / 3f);
+        }
+    }
+
+    @Test
+    public void closeToTrueGaussian() {
+        int width = 256;
+        int height = 192;
+        float[] src = ReferenceBlurTest.randomImage(width, height, 3);
+        // Checkerboard of 16px cells plus noise, so there is structure at the blur scale
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                float cell = ((x / 16 + y / 16) % 2 == 0) ? 0.7f : 0f;
+                src[y * width + x] = cell + 0.3f * src[y * width + x];
+            }
+        }
+        for (float radius : new float[]{12f, 20f, 30f, 60f}) {
+            float sigma = radius / 3f;
+            DualKawasePlan plan = DualKawasePlan.forSigma(sigma);
+            float[] pyramid = ReferenceBlur.dualKawase(src, width, height, plan.getLevels(), plan.getOffset());
+            float[] gaussian = ReferenceBlur.gaussian(src, width, height, sigma);
+            double squared = 0;
+            for (int i = 0; i < src.length; i++) {
+                double d = pyramid[i] - gaussian[i];
+                squared += d * d;
+            }
+            assertTrue("radius " + radius, Math.sqrt(squared / src.length) < 0.015);
+        }
+    }
+}
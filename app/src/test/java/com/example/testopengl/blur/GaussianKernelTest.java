@@ -0,0 +1,52 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GaussianKernelTest {
+
+    @Test
+    public void weightsSumToOne() {
+        for (float sigma : new float[]{0.5f, 1f, 2.5f, 6.67f, 10f}) {
+            GaussianKernel kernel = GaussianKernel.forSigma(sigma);
+            float sum = kernel.getWeight(0);
+            for (int i = 1; i <= kernel.getRadius(); i++) {
+                sum += 2 * kernel.getWeight(i);
+            }
+            assertEquals("sigma " + sigma, 1f, sum, 1e-5f);
+        }
+    }
+
+    @Test
+    public void tapCountFollowsSigma() {
+        assertEquals(3, GaussianKernel.forSigma(1f).getRadius());
+        assertEquals(7, GaussianKernel.forSigma(7f / 3f).getRadius());
+        assertEquals(15, GaussianKernel.forSigma(5f).getTapCount() / 2);
+        assertEquals(GaussianKernel.MAX_RADIUS, GaussianKernel.forSigma(100f).getRadius());
+    }
+
+    @Test
+    public void blurRadiusIsThreeSigma() {
+        GaussianKernel kernel = GaussianKernel.forBlurRadius(20f);
+        assertEquals(20f / 3f, kernel.getSigma(), 1e-6f);
+        assertEquals(20, kernel.getRadius());
+    }
+
+    @Test
+    public void zeroSigmaIsIdentity() {
+        GaussianKernel kernel = GaussianKernel.forSigma(0f);
+        assertEquals(0, kernel.getRadius());
+        assertEquals(1, kernel.getTapCount());
+        assertEquals(1f, kernel.getWeight(0), 0f);
+    }
+
+    @Test
+    public void weightsAreSymmetricAndDecreasing() {
+        GaussianKernel kernel = GaussianKernel.forSigma(3f);
+        for (int i = 1; i <= kernel.getRadius(); i++) {
+            assertEquals(kernel.getWeight(i), kernel.getWeight(-i), 0f);
+            assertTrue(kernel.getWeight(i) < kernel.getWeight(i - 1));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LinearSampledKernelTest {
+
+    private static final float[] SIGMAS = {0.5f, 1f, 2f, 3.3f, 6.67f, 10f};
+
+    @Test
+    public void weightsSumToOne() {
+        for (float sigma : SIGMAS) {
+            LinearSampledKernel kernel = LinearSampledKernel.compile(GaussianKernel.forSigma(sigma));
+            float sum = kernel.getCenterWeight();
+            for (int p = 0; p < kernel.getPairCount(); p++) {
+                sum += 2 * kernel.getWeight(p);
+            }
+            assertEquals("sigma " + sigma, 1f, sum, 1e-5f);
+        }
+    }
+
+    @Test
+    public void bilinearFetchesReproduceDiscreteGaussian() {
+        for (float sigma : SIGMAS) {
+            GaussianKernel gaussian = GaussianKernel.forSigma(sigma);
+            float[] texels = LinearSampledKernel.compile(gaussian).toTexelWeights();
+            assertEquals(gaussian.getRadius() + 1, texels.length);
+            for (int i = 0; i < texels.length; i++) {
+                assertEquals("sigma " + sigma + " tap " + i, gaussian.getWeight(i), texels[i], 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void offsetsLieBetweenTheirTexelPair() {
+        LinearSampledKernel kernel = LinearSampledKernel.compile(GaussianKernel.forSigma(4f));
+        for (int p = 0; p < kernel.getPairCount(); p++) {
+            float offset = kernel.getOffset(p);
+            assertTrue(offset >= 2 * p + 1);
+            assertTrue(offset <= 2 * p + 2);
+        }
+    }
+
+    @Test
+    public void halvesTheFetchCount() {
+        GaussianKernel gaussian = GaussianKernel.forSigma(20f / 3f);
+        LinearSampledKernel kernel = LinearSampledKernel.compile(gaussian);
+        assertEquals(41, gaussian.getTapCount());
+        assertEquals(21, kernel.getFetchCount());
+
+        GaussianKernel odd = GaussianKernel.forSigma(1f);
+        assertEquals(7, odd.getTapCount());
+        assertEquals(5, LinearSampledKernel.compile(odd).getFetchCount());
+    }
+
+    @Test
+    public void shaderIsUnrolledWithoutTranscendentals() {
+        LinearSampledKernel kernel = LinearSampledKernel.compile(GaussianKernel.forSigma(3f));
+        String shader = kernel.toFragmentShader();
+        assertTrue(shader.startsWith("#version 300 es\n"));
+        assertFalse(shader.contains("exp("));
+        assertFalse(shader.contains("for ("));
+
+        int fetches = 0;
+        for (int i = shader.indexOf("texture("); i >= 0; i = shader.indexOf("texture(", i + 1)) {
+            fetches++;
+        }
+        assertEquals(kernel.getFetchCount(), fetches);
+    }
+
+    @Test
+    public void identityKernelIsASingleFetch() {
+        LinearSampledKernel kernel = LinearSampledKernel.compile(GaussianKernel.forSigma(0f));
+        assertEquals(0, kernel.getPairCount());
+        assertEquals(1, kernel.getFetchCount());
+        assertEquals(1f, kernel.getCenterWeight(), 0f);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RadialBlurPlanTest {
+
+    @Test
+    public void sampleCountScalesWithDistance() {
+        RadialBlurPlan plan = new RadialBlurPlan(0.1f, 32, 1);
+        assertEquals(1, plan.getSampleCount(0, 0f));
+        assertEquals(1, plan.getSampleCount(0, 10f));
+        assertEquals(7, plan.getSampleCount(0, 100f));
+        assertEquals(14, plan.getSampleCount(0, 200f));
+        assertEquals(32, plan.getSampleCount(0, 1000f));
+
+        int previous = 0;
+        for (float distance = 0f; distance < 1000f; distance += 10f) {
+            int samples = plan.getSampleCount(0, distance);
+            assertTrue(samples >= previous);
+            previous = samples;
+        }
+    }
+
+    @Test
+    public void passesShrinkGeometrically() {
+        RadialBlurPlan plan = new RadialBlurPlan(0.2f, 8, 3);
+        assertEquals(0.2f, plan.getPassStrength(0), 1e-6f);
+        assertEquals(0.2f / 8, plan.getPassStrength(1), 1e-6f);
+        assertEquals(0.2f / 64, plan.getPassStrength(2), 1e-6f);
+        assertEquals(512, plan.getEffectiveSamples());
+    }
+
+    @Test
+    public void multiPassSamplesAreEvenlySpread() {
+        RadialBlurPlan plan = new RadialBlurPlan(0.05f, 4, 3);
+        float[] positions = plan.getSamplePositions();
+        assertEquals(64, positions.length);
+        Arrays.sort(positions);
+
+        // Compare against 64 evenly spaced samples over the same length
+        float spacing = 0.05f / 64;
+        for (int i = 0; i < positions.length; i++) {
+            assertEquals("sample " + i, i * spacing, positions[i], 0.6f * spacing);
+        }
+    }
+
+    @Test
+    public void parametersAreClamped() {
+        RadialBlurPlan plan = new RadialBlurPlan(2f, 1000, 10);
+        assertEquals(1f, plan.getStrength(), 0f);
+        assertEquals(RadialBlurPlan.MAX_SAMPLES, plan.getSamplesPerPass());
+        assertEquals(RadialBlurPlan.MAX_PASSES, plan.getPasses());
+
+        plan = new RadialBlurPlan(-1f, 0, 0);
+        assertEquals(0f, plan.getStrength(), 0f);
+        assertEquals(1, plan.getSamplesPerPass());
+        assertEquals(1, plan.getPasses());
+        assertEquals(1, plan.getSampleCount(0, 500f));
+    }
+}
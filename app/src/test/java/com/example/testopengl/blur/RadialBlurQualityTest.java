@@ -0,0 +1,28 @@
+package com.example.testopengl.blur;
+
+import com.example.testopengl.gl.FakeGl;
+import com.example.testopengl.gl.RenderTargetPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RadialBlurQualityTest {
+
+    @Test
+    public void levelsGetCheaper() {
+        for (int level = 1; level < RadialBlurQuality.getLevelCount(); level++) {
+            assertTrue("level " + level,
+                    RadialBlurQuality.estimateCost(level) < RadialBlurQuality.estimateCost(level - 1));
+        }
+    }
+
+    @Test
+    public void applySetsQualityAndDownsample() {
+        RadialBlurFilter radial = new RadialBlurFilter(new RenderTargetPool(new FakeGl()));
+        RadialBlurQuality.apply(radial, 0);
+        assertEquals(1, radial.getDownsample());
+        RadialBlurQuality.apply(radial, RadialBlurQuality.getLevelCount() - 1);
+        assertEquals(4, radial.getDownsample());
+    }
+}
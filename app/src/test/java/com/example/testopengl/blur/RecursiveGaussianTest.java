@@ -0,0 +1,93 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class RecursiveGaussianTest {
+
+    @Test
+    public void closeToTheExactGaussian() {
+        int width = 160;
+        int height = 90;
+        float[] src = ReferenceBlurTest.randomImage(width, height, 7);
+        float[] step = new float[width * height];
+        for (int y = 0; y < height; y++) {
+            Arrays.fill(step, y * width + width / 2, (y + 1) * width, 1f);
+        }
+        for (float sigma : new float[]{2f, 5f, 20f, 50f}) {
+            RecursiveGaussian filter = RecursiveGaussian.forSigma(sigma);
+            assertEquals("sigma " + sigma, 0f, ReferenceBlurTest.maxDifference(
+                    ReferenceBlur.gaussian(src, width, height, sigma), filter.blur(src, width, height)), 0.02f);
+            assertEquals("step, sigma " + sigma, 0f, ReferenceBlurTest.maxDifference(
+                    ReferenceBlur.gaussian(step, width, height, sigma), filter.blur(step, width, height)), 0.02f);
+        }
+    }
+
+    @Test
+    public void impulseResponseKeepsMassAndPeak() {
+        int size = 1001;
+        for (float sigma : new float[]{3f, 20f, 50f}) {
+            float[] line = new float[size];
+            line[size / 2] = 1f;
+            RecursiveGaussian.forSigma(sigma).blurLine(line, 0, 1, size, new double[size]);
+            double sum = 0;
+            for (float value : line) {
+                sum += value;
+            }
+            assertEquals(1.0, sum, 1e-4);
+            double peak = 1 / (Math.sqrt(2 * Math.PI) * sigma);
+            assertEquals("sigma " + sigma, peak, line[size / 2], peak * 0.03);
+        }
+    }
+
+    @Test
+    public void edgesAreClamped() {
+        // A step right at the border: clamping keeps a constant image constant and
+        // makes the far side of the border match a long run of the edge value
+        float[] constant = new float[40 * 3];
+        Arrays.fill(constant, 0.75f);
+        float[] blurred = RecursiveGaussian.forSigma(30f).blur(constant, 40, 3);
+        assertEquals(0f, ReferenceBlurTest.maxDifference(constant, blurred), 1e-4f);
+
+        float[] shortLine = {0f, 1f, 1f, 1f};
+        float[] longLine = new float[1000];
+        Arrays.fill(longLine, 0, 997, 0f);
+        Arrays.fill(longLine, 997, 1000, 1f);
+        RecursiveGaussian filter = RecursiveGaussian.forSigma(10f);
+        filter.blurLine(shortLine, 0, 1, 4, new double[4]);
+        filter.blurLine(longLine, 0, 1, 1000, new double[1000]);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(longLine[996 + i], shortLine[i], 1e-4f);
+        }
+    }
+
+    @Test
+    public void sigmaBeyondTheImageAndBelowTheFit() {
+        float[] src = ReferenceBlurTest.randomImage(64, 64, 3);
+        float[] wide = RecursiveGaussian.forSigma(100f).blur(src, 64, 64);
+        assertEquals(0f, ReferenceBlurTest.maxDifference(ReferenceBlur.gaussian(src, 64, 64, 100f), wide), 0.02f);
+        assertTrue(RecursiveGaussian.forSigma(0.2f).isIdentity());
+        assertArrayEquals(src, RecursiveGaussian.forSigma(0.2f).blur(src, 64, 64), 0f);
+    }
+
+    @Test
+    public void multithreadedMatchesSingleThreaded() {
+        int width = 123;
+        int height = 77;
+        float[] src = ReferenceBlurTest.randomImage(width, height, 11);
+        RecursiveGaussian filter = RecursiveGaussian.forBlurRadius(60f);
+        float[] expected = filter.blur(src, width, height);
+        float[] image = src.clone();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            filter.blur(image, width, height, pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertArrayEquals(expected, image, 0f);
+    }
+}
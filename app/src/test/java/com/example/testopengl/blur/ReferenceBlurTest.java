@@ -0,0 +1,55 @@
+package com.example.testopengl.blur;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReferenceBlurTest {
+
+    static float[] randomImage(int width, int height, long seed) {
+        Random random = new Random(seed);
+        float[] image = new float[width * height];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = random.nextFloat();
+        }
+        return image;
+    }
+
+    static float maxDifference(float[] a, float[] b) {
+        float max = 0f;
+        for (int i = 0; i < a.length; i++) {
+            max = Math.max(max, Math.abs(a[i] - b[i]));
+        }
+        return max;
+    }
+
+    @Test
+    public void separableMatchesBruteForce() {
+        int width = 37;
+        int height = 23;
+        float[] src = randomImage(width, height, 1);
+        for (float sigma : new float[]{0.8f, 2f, 4f}) {
+            GaussianKernel kernel = GaussianKernel.forSigma(sigma);
+            float[] separable = ReferenceBlur.separable(src, width, height, kernel);
+            float[] bruteForce = ReferenceBlur.bruteForce(src, width, height, sigma, kernel.getRadius());
+            assertEquals("sigma " + sigma, 0f, maxDifference(separable, bruteForce), 1e-5f);
+        }
+    }
+
+    @Test
+    public void constantImageIsUnchanged() {
+        float[] src = new float[16 * 16];
+        java.util.Arrays.fill(src, 0.25f);
+        float[] dst = ReferenceBlur.separable(src, 16, 16, GaussianKernel.forSigma(5f));
+        assertEquals(0f, maxDifference(src, dst), 1e-6f);
+    }
+
+    @Test
+    public void zeroSigmaCopiesInput() {
+        float[] src = randomImage(8, 8, 2);
+        float[] dst = ReferenceBlur.separable(src, 8, 8, GaussianKernel.forSigma(0f));
+        assertArrayEquals(src, dst, 0f);
+    }
+}
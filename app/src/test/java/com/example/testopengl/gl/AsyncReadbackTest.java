@@ -0,0 +1,84 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AsyncReadbackTest {
+
+    private final FakeGl mGl = new FakeGl();
+    private final AsyncReadback mReadback = new AsyncReadback(mGl);
+    private final List<String> mDelivered = new ArrayList<>();
+
+    private AsyncReadback.Callback record(String name) {
+        return (pixels, width, height) -> {
+            assertTrue(pixels.isDirect());
+            assertEquals(width * height * 4, pixels.remaining());
+            mDelivered.add(name + " " + width + "x" + height + " " + pixels.get(0));
+        };
+    }
+
+    @Test
+    public void resultsWaitForTheirFence() {
+        mGl.mFencesSignaled = false;
+        mGl.mReadValue = 42;
+        assertTrue(mReadback.request(0, 0, 0, 64, 32, record("a")));
+        assertEquals(0, mReadback.poll());
+        assertEquals(1, mReadback.getPendingCount());
+        assertTrue(mDelivered.isEmpty());
+
+        mGl.mFencesSignaled = true;
+        assertEquals(1, mReadback.poll());
+        assertEquals(0, mReadback.getPendingCount());
+        assertEquals("[a 64x32 42]", mDelivered.toString());
+        assertEquals(0, mGl.mSyncs.size());
+        // Unmapped and unbound, so a plain readPixels still reads into client memory
+        assertEquals(0, mGl.mMappedBuffer);
+        assertEquals(0, mGl.mPackBuffer);
+    }
+
+    @Test
+    public void ringIsFifoAndBounded() {
+        mGl.mFencesSignaled = false;
+        for (int i = 0; i < AsyncReadback.RING_SIZE; i++) {
+            assertTrue(mReadback.request(0, 0, 0, 8, 8, record("r" + i)));
+        }
+        assertFalse(mReadback.request(0, 0, 0, 8, 8, record("dropped")));
+
+        mGl.mFencesSignaled = true;
+        assertEquals(AsyncReadback.RING_SIZE, mReadback.poll());
+        assertEquals("[r0 8x8 0, r1 8x8 0, r2 8x8 0]", mDelivered.toString());
+        assertTrue(mReadback.request(0, 0, 0, 8, 8, record("r3")));
+    }
+
+    @Test
+    public void buffersAreReusedAndGrown() {
+        for (int i = 0; i < 10; i++) {
+            mReadback.request(0, 0, 0, 16, 16, record("small"));
+            mReadback.poll();
+        }
+        assertEquals(AsyncReadback.RING_SIZE, mGl.mBuffers.size());
+
+        mReadback.request(0, 0, 0, 128, 64, record("large"));
+        mReadback.poll();
+        assertEquals("large 128x64 0", mDelivered.get(mDelivered.size() - 1));
+        assertEquals(AsyncReadback.RING_SIZE, mGl.mBuffers.size());
+    }
+
+    @Test
+    public void releaseDropsPendingReadbacks() {
+        mGl.mFencesSignaled = false;
+        mReadback.request(0, 0, 0, 8, 8, record("a"));
+        mReadback.release();
+        assertEquals(0, mReadback.getPendingCount());
+        assertEquals(0, mGl.mBuffers.size());
+        assertEquals(0, mGl.mSyncs.size());
+
+        mGl.mFencesSignaled = true;
+        assertEquals(0, mReadback.poll());
+        assertTrue(mDelivered.isEmpty());
+    }
+}
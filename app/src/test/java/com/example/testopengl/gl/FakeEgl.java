@@ -0,0 +1,113 @@
+package com.example.testopengl.gl;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-memory {@link Egl} for JVM tests: tracks which contexts and surfaces are alive and
+ * which context each thread has current, and counts swaps.
+ */
+public class FakeEgl implements Egl {
+
+    static final class Handle {
+        final String mKind;
+        final Handle mShared;
+
+        Handle(String kind, Handle shared) {
+            mKind = kind;
+            mShared = shared;
+        }
+
+        @Override
+        public String toString() {
+            return mKind + "@" + Integer.toHexString(System.identityHashCode(this));
+        }
+    }
+
+    final Set<Handle> mContexts = new HashSet<>();
+    final Set<Handle> mSurfaces = new HashSet<>();
+    private final ThreadLocal<Handle> mCurrent = new ThreadLocal<>();
+    int mSwapCount;
+    int mReleasedThreads;
+    // Swaps into this window fail, like after the window was destroyed under EGL
+    volatile Object mLostWindow;
+
+    @Override
+    public synchronized Object createContext(Object sharedContext) {
+        if (sharedContext != null && !mContexts.contains(sharedContext)) {
+            throw new IllegalStateException("Sharing with dead context " + sharedContext);
+        }
+        Handle context = new Handle("context", (Handle) sharedContext);
+        mContexts.add(context);
+        return context;
+    }
+
+    @Override
+    public synchronized Object createWindowSurface(Object nativeWindow) {
+        Handle surface = new Handle("window:" + nativeWindow, null);
+        mSurfaces.add(surface);
+        return surface;
+    }
+
+    @Override
+    public synchronized Object createPbufferSurface(int width, int height) {
+        Handle surface = new Handle("pbuffer", null);
+        mSurfaces.add(surface);
+        return surface;
+    }
+
+    @Override
+    public synchronized void makeCurrent(Object surface, Object context) {
+        if (!mSurfaces.contains(surface) || !mContexts.contains(context)) {
+            throw new IllegalStateException("makeCurrent on dead " + surface + ", " + context);
+        }
+        mCurrent.set((Handle) context);
+    }
+
+    @Override
+    public void makeNothingCurrent() {
+        mCurrent.set(null);
+    }
+
+    @Override
+    public synchronized boolean swapBuffers(Object surface) {
+        if (!mSurfaces.contains(surface)) {
+            throw new IllegalStateException("Swap on dead " + surface);
+        }
+        mSwapCount++;
+        Object lost = mLostWindow;
+        return lost == null || !((Handle) surface).mKind.equals("window:" + lost);
+    }
+
+    @Override
+    public synchronized void destroySurface(Object surface) {
+        if (!mSurfaces.remove(surface)) {
+            throw new IllegalStateException("Double destroy of " + surface);
+        }
+    }
+
+    @Override
+    public synchronized void destroyContext(Object context) {
+        if (!mContexts.remove(context)) {
+            throw new IllegalStateException("Double destroy of " + context);
+        }
+    }
+
+    @Override
+    public synchronized void releaseThread() {
+        mReleasedThreads++;
+    }
+
+    /** The context current on the calling thread, or null. */
+    Object currentContext() {
+        return mCurrent.get();
+    }
+
+    synchronized boolean isEmpty() {
+        return mContexts.isEmpty() && mSurfaces.isEmpty();
+    }
+
+    synchronized int getSwapCount() {
+        return mSwapCount;
+    }
+}
@@ -0,0 +1,568 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory {@link Gl} for JVM tests: hands out increasing names and tracks which ones
+ * are alive, so tests can check for leaks and double deletes. Shaders always compile and
+ * programs always link; uniform locations are stable per program and name.
+ */
+public class FakeGl implements Gl {
+
+    private int mNextName = 1;
+    final Names mTextures = new Names();
+    final Names mFramebuffers = new Names();
+    final Names mBuffers = new Names();
+    final Names mVertexArrays = new Names();
+    int mBoundFramebuffer;
+    int mTextureAllocations;
+    int mBoundVertexArray;
+    int mDrawCount;
+    int mLastDrawMode;
+    int mLastDrawVertexArray;
+    final Names mShaders = new Names();
+    final Names mPrograms = new Names();
+    final Map<String, Integer> mUniformLocations = new HashMap<>();
+    // Values returned by getInteger; unknown names read as 0
+    final Map<Integer, Integer> mIntegers = new HashMap<>();
+    // Every fake is its own context, so ShaderProgramCache never hands one fake's
+    // programs to another
+    private static final AtomicLong sContexts = new AtomicLong();
+    long mContext = sContexts.incrementAndGet();
+    int mLinkCount;
+    // What readPixels returns in every byte
+    public byte mReadValue;
+    public int mReadPixelsCount;
+    // Pixel-pack buffers: the bound one, their contents and the mapped one
+    int mPackBuffer;
+    final Map<Integer, ByteBuffer> mPackStorage = new HashMap<>();
+    int mMappedBuffer;
+    final Names mQueries = new Names();
+    final Names mSyncs = new Names();
+    int mActiveQuery;
+    // What a finished query reads as, and whether fences have signaled
+    public int mQueryResult;
+    public boolean mFencesSignaled = true;
+    // Makes clientWaitSync fail, like on a lost context
+    public boolean mWaitFails;
+    // Returned for GL_EXTENSIONS
+    public String mExtensions = "";
+    // Programs with a shader whose source contains this fail to link, like on a driver
+    // that does not handle the construct
+    String mLinkFailure;
+    private final Names mFailingShaders = new Names();
+    private final Names mFailingPrograms = new Names();
+    int mCurrentProgram;
+
+    @Override
+    public long currentContext() {
+        return mContext;
+    }
+
+    @Override
+    public int getInteger(int pname) {
+        Integer value = mIntegers.get(pname);
+        return value != null ? value : 0;
+    }
+
+    @Override
+    public String getString(int name) {
+        if (name == GLES30.GL_EXTENSIONS) {
+            return mExtensions;
+        }
+        return "FakeGl";
+    }
+
+    @Override
+    public int genTexture() {
+        int name = mNextName++;
+        mTextures.add(name);
+        return name;
+    }
+
+    @Override
+    public void deleteTexture(int texture) {
+        if (!mTextures.remove(texture)) {
+            throw new IllegalStateException("Texture " + texture + " is not alive");
+        }
+    }
+
+    @Override
+    public void bindTexture(int target, int texture) {
+        if (texture != 0 && !mTextures.contains(texture)) {
+            throw new IllegalStateException("Texture " + texture + " is not alive");
+        }
+    }
+
+    @Override
+    public void texStorage2D(int target, int levels, int internalFormat, int width, int height) {
+        mTextureAllocations++;
+    }
+
+    @Override
+    public void texParameteri(int target, int pname, int param) {
+    }
+
+    @Override
+    public int genFramebuffer() {
+        int name = mNextName++;
+        mFramebuffers.add(name);
+        return name;
+    }
+
+    @Override
+    public void deleteFramebuffer(int framebuffer) {
+        if (!mFramebuffers.remove(framebuffer)) {
+            throw new IllegalStateException("Framebuffer " + framebuffer + " is not alive");
+        }
+    }
+
+    @Override
+    public void bindFramebuffer(int target, int framebuffer) {
+        if (framebuffer != 0 && !mFramebuffers.contains(framebuffer)) {
+            throw new IllegalStateException("Framebuffer " + framebuffer + " is not alive");
+        }
+        mBoundFramebuffer = framebuffer;
+    }
+
+    @Override
+    public void framebufferTexture2D(int target, int attachment, int textureTarget, int texture, int level) {
+    }
+
+    @Override
+    public void viewport(int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void scissor(int x, int y, int width, int height) {
+    }
+
+    @Override
+    public void enable(int cap) {
+    }
+
+    @Override
+    public void disable(int cap) {
+    }
+
+    @Override
+    public void blendFunc(int sfactor, int dfactor) {
+    }
+
+    @Override
+    public int genBuffer() {
+        int name = mNextName++;
+        mBuffers.add(name);
+        return name;
+    }
+
+    @Override
+    public void deleteBuffer(int buffer) {
+        if (!mBuffers.remove(buffer)) {
+            throw new IllegalStateException("Buffer " + buffer + " is not alive");
+        }
+        mPackStorage.remove(buffer);
+        if (mPackBuffer == buffer) {
+            mPackBuffer = 0;
+        }
+    }
+
+    @Override
+    public void bindBuffer(int target, int buffer) {
+        if (buffer != 0 && !mBuffers.contains(buffer)) {
+            throw new IllegalStateException("Buffer " + buffer + " is not alive");
+        }
+        if (target == GLES30.GL_PIXEL_PACK_BUFFER) {
+            mPackBuffer = buffer;
+        }
+    }
+
+    @Override
+    public void bufferData(int target, int size, Buffer data, int usage) {
+        if (target == GLES30.GL_PIXEL_PACK_BUFFER) {
+            mPackStorage.put(packBuffer(), ByteBuffer.allocateDirect(size));
+        }
+    }
+
+    @Override
+    public void bufferSubData(int target, int offset, int size, Buffer data) {
+    }
+
+    @Override
+    public void bindBufferBase(int target, int index, int buffer) {
+        if (buffer != 0 && !mBuffers.contains(buffer)) {
+            throw new IllegalStateException("Buffer " + buffer + " is not alive");
+        }
+    }
+
+    @Override
+    public Buffer mapBufferRange(int target, int offset, int length, int access) {
+        if (target != GLES30.GL_PIXEL_PACK_BUFFER || mMappedBuffer != 0) {
+            throw new IllegalStateException("Cannot map " + target);
+        }
+        ByteBuffer storage = mPackStorage.get(packBuffer());
+        if (storage == null || offset + length > storage.capacity()) {
+            throw new IllegalStateException("Range past the buffer's storage");
+        }
+        mMappedBuffer = mPackBuffer;
+        ByteBuffer range = storage.duplicate();
+        range.position(offset);
+        range.limit(offset + length);
+        return range.slice();
+    }
+
+    @Override
+    public boolean unmapBuffer(int target) {
+        if (mMappedBuffer == 0 || mMappedBuffer != mPackBuffer) {
+            throw new IllegalStateException("Buffer not mapped");
+        }
+        mMappedBuffer = 0;
+        return true;
+    }
+
+    private int packBuffer() {
+        if (mPackBuffer == 0) {
+            throw new IllegalStateException("No buffer bound to GL_PIXEL_PACK_BUFFER");
+        }
+        return mPackBuffer;
+    }
+
+    @Override
+    public int genVertexArray() {
+        int name = mNextName++;
+        mVertexArrays.add(name);
+        return name;
+    }
+
+    @Override
+    public void deleteVertexArray(int vertexArray) {
+        if (!mVertexArrays.remove(vertexArray)) {
+            throw new IllegalStateException("Vertex array " + vertexArray + " is not alive");
+        }
+    }
+
+    @Override
+    public void bindVertexArray(int vertexArray) {
+        if (vertexArray != 0 && !mVertexArrays.contains(vertexArray)) {
+            throw new IllegalStateException("Vertex array " + vertexArray + " is not alive");
+        }
+        mBoundVertexArray = vertexArray;
+    }
+
+    @Override
+    public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+    }
+
+    @Override
+    public void enableVertexAttribArray(int index) {
+    }
+
+    @Override
+    public void drawArrays(int mode, int first, int count) {
+        mDrawCount++;
+        mLastDrawMode = mode;
+        mLastDrawVertexArray = mBoundVertexArray;
+    }
+
+    @Override
+    public void activeTexture(int unit) {
+    }
+
+    @Override
+    public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1,
+                                int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+        mDrawCount++;
+    }
+
+    /** Fills {@code pixels} with {@link #mReadValue}, without moving its position. */
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, Buffer pixels) {
+        if (mPackBuffer != 0) {
+            throw new IllegalStateException("Client memory read with a pixel-pack buffer bound");
+        }
+        mReadPixelsCount++;
+        ByteBuffer bytes = (ByteBuffer) pixels;
+        for (int i = 0; i < width * height * 4; i++) {
+            bytes.put(bytes.position() + i, mReadValue);
+        }
+    }
+
+    /** Fills the bound pixel-pack buffer from {@code offset} with {@link #mReadValue}. */
+    @Override
+    public void readPixels(int x, int y, int width, int height, int format, int type, int offset) {
+        ByteBuffer storage = mPackStorage.get(packBuffer());
+        if (storage == null || offset + width * height * 4 > storage.capacity()) {
+            throw new IllegalStateException("Read past the buffer's storage");
+        }
+        mReadPixelsCount++;
+        for (int i = 0; i < width * height * 4; i++) {
+            storage.put(offset + i, mReadValue);
+        }
+    }
+
+    @Override
+    public int createShader(int type) {
+        int name = mNextName++;
+        mShaders.add(name);
+        return name;
+    }
+
+    @Override
+    public void shaderSource(int shader, String source) {
+        if (mLinkFailure != null && source.contains(mLinkFailure)) {
+            mFailingShaders.add(shader);
+        }
+    }
+
+    @Override
+    public void compileShader(int shader) {
+    }
+
+    @Override
+    public int getShaderi(int shader, int pname) {
+        return pname == GLES30.GL_COMPILE_STATUS ? GLES30.GL_TRUE : 0;
+    }
+
+    @Override
+    public String getShaderInfoLog(int shader) {
+        return "";
+    }
+
+    @Override
+    public void deleteShader(int shader) {
+        if (!mShaders.remove(shader)) {
+            throw new IllegalStateException("Shader " + shader + " is not alive");
+        }
+        mFailingShaders.remove(shader);
+    }
+
+    @Override
+    public int createProgram() {
+        int name = mNextName++;
+        mPrograms.add(name);
+        return name;
+    }
+
+    @Override
+    public void attachShader(int program, int shader) {
+        if (mFailingShaders.contains(shader)) {
+            mFailingPrograms.add(program);
+        }
+    }
+
+    @Override
+    public void programParameteri(int program, int pname, int value) {
+    }
+
+    @Override
+    public void linkProgram(int program) {
+        mLinkCount++;
+    }
+
+    @Override
+    public int getProgrami(int program, int pname) {
+        if (pname != GLES30.GL_LINK_STATUS) {
+            return 0;
+        }
+        return mFailingPrograms.contains(program) ? GLES30.GL_FALSE : GLES30.GL_TRUE;
+    }
+
+    @Override
+    public String getProgramInfoLog(int program) {
+        return "";
+    }
+
+    @Override
+    public void deleteProgram(int program) {
+        if (!mPrograms.remove(program)) {
+            throw new IllegalStateException("Program " + program + " is not alive");
+        }
+        mFailingPrograms.remove(program);
+    }
+
+    @Override
+    public void programBinary(int program, int format, Buffer binary, int length) {
+    }
+
+    @Override
+    public int getProgramBinary(int program, Buffer binary) {
+        return 0;
+    }
+
+    @Override
+    public void useProgram(int program) {
+        if (program != 0 && !mPrograms.contains(program)) {
+            throw new IllegalStateException("Program " + program + " is not alive");
+        }
+        mCurrentProgram = program;
+    }
+
+    @Override
+    public int getUniformLocation(int program, String name) {
+        String key = program + "/" + name;
+        Integer location = mUniformLocations.get(key);
+        if (location == null) {
+            location = mUniformLocations.size();
+            mUniformLocations.put(key, location);
+        }
+        return location;
+    }
+
+    /** Every program has one uniform block, at index 0. */
+    @Override
+    public int getUniformBlockIndex(int program, String name) {
+        return 0;
+    }
+
+    @Override
+    public void uniformBlockBinding(int program, int blockIndex, int binding) {
+        if (!mPrograms.contains(program)) {
+            throw new IllegalStateException("Program " + program + " is not alive");
+        }
+    }
+
+    @Override
+    public void uniform1i(int location, int x) {
+    }
+
+    @Override
+    public void uniform1f(int location, float x) {
+    }
+
+    @Override
+    public void uniform2i(int location, int x, int y) {
+    }
+
+    @Override
+    public void uniform2f(int location, float x, float y) {
+    }
+
+    @Override
+    public void uniformMatrix2fv(int location, int count, boolean transpose, float[] value, int offset) {
+    }
+
+    @Override
+    public void uniformMatrix4fv(int location, int count, boolean transpose, float[] value, int offset) {
+    }
+
+    @Override
+    public void dispatchCompute(int groupsX, int groupsY, int groupsZ) {
+        mDrawCount++;
+    }
+
+    @Override
+    public void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
+    }
+
+    @Override
+    public void memoryBarrier(int barriers) {
+    }
+
+    @Override
+    public int genQuery() {
+        int name = mNextName++;
+        mQueries.add(name);
+        return name;
+    }
+
+    @Override
+    public void deleteQuery(int query) {
+        if (!mQueries.contains(query)) {
+            throw new IllegalStateException("Query " + query + " is not alive");
+        }
+        mQueries.remove(query);
+    }
+
+    @Override
+    public void beginQuery(int target, int query) {
+        if (!mQueries.contains(query)) {
+            throw new IllegalStateException("Query " + query + " is not alive");
+        }
+        if (mActiveQuery != 0) {
+            throw new IllegalStateException("Query " + mActiveQuery + " is still active");
+        }
+        mActiveQuery = query;
+    }
+
+    @Override
+    public void endQuery(int target) {
+        if (mActiveQuery == 0) {
+            throw new IllegalStateException("No active query");
+        }
+        mActiveQuery = 0;
+    }
+
+    /** Results are always available and read {@link #mQueryResult}. */
+    @Override
+    public int getQueryObjectui(int query, int pname) {
+        if (!mQueries.contains(query) || query == mActiveQuery) {
+            throw new IllegalStateException("Query " + query + " is not readable");
+        }
+        return pname == GLES30.GL_QUERY_RESULT_AVAILABLE ? GLES30.GL_TRUE : mQueryResult;
+    }
+
+    @Override
+    public long fenceSync() {
+        int name = mNextName++;
+        mSyncs.add(name);
+        return name;
+    }
+
+    /** Fences signal once {@link #mFencesSignaled} is set. */
+    @Override
+    public int clientWaitSync(long sync, int flags, long timeoutNanos) {
+        if (!mSyncs.contains((int) sync)) {
+            throw new IllegalStateException("Sync " + sync + " is not alive");
+        }
+        if (mWaitFails) {
+            return GLES30.GL_WAIT_FAILED;
+        }
+        return mFencesSignaled ? GLES30.GL_ALREADY_SIGNALED : GLES30.GL_TIMEOUT_EXPIRED;
+    }
+
+    @Override
+    public void deleteSync(long sync) {
+        if (!mSyncs.contains((int) sync)) {
+            throw new IllegalStateException("Sync " + sync + " is not alive");
+        }
+        mSyncs.remove((int) sync);
+    }
+
+    /** Live object names; unlike a Set of Integer, checking a name never boxes it. */
+    static final class Names {
+        private final BitSet mBits = new BitSet();
+
+        void add(int name) {
+            mBits.set(name);
+        }
+
+        boolean remove(int name) {
+            boolean live = mBits.get(name);
+            mBits.clear(name);
+            return live;
+        }
+
+        boolean contains(int name) {
+            return mBits.get(name);
+        }
+
+        int size() {
+            return mBits.cardinality();
+        }
+
+        boolean isEmpty() {
+            return mBits.isEmpty();
+        }
+
+        void clear() {
+            mBits.clear();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import static org.junit.Assert.*;
+
+public class FullScreenQuadTest {
+
+    private final FakeGl mGl = new FakeGl();
+    private final CountingGl mCounting = new CountingGl(mGl);
+    private final FullScreenQuad mQuad = new FullScreenQuad(mCounting);
+
+    private void pass() {
+        mQuad.bind();
+        mQuad.draw();
+        mQuad.unbind();
+    }
+
+    @Test
+    public void triangleDrawsWithoutVertexState() {
+        assertEquals(FullScreenQuad.Mode.TRIANGLE, mQuad.getMode());
+        for (int i = 0; i < 10; i++) {
+            pass();
+        }
+        assertTrue(mGl.mVertexArrays.isEmpty());
+        assertTrue(mGl.mBuffers.isEmpty());
+        assertEquals(GLES30.GL_TRIANGLES, mGl.mLastDrawMode);
+        // Nothing but the draw itself
+        assertEquals(10, mCounting.getCallCount());
+        assertEquals(10, mCounting.getDrawCount());
+        assertFalse(mQuad.getVertexShader().contains(" in "));
+        assertTrue(mQuad.getVertexShader().contains("gl_VertexID"));
+    }
+
+    @Test
+    public void quadGeometryIsUploadedOnce() {
+        mQuad.setMode(FullScreenQuad.Mode.QUAD);
+        pass();
+        assertEquals(1, mGl.mVertexArrays.size());
+        assertEquals(1, mGl.mBuffers.size());
+        assertEquals(GLES30.GL_TRIANGLE_STRIP, mGl.mLastDrawMode);
+        assertNotEquals(0, mGl.mLastDrawVertexArray);
+        assertSame(FullScreenQuad.QUAD_VERTEX_SHADER, mQuad.getVertexShader());
+
+        mCounting.reset();
+        for (int i = 0; i < 10; i++) {
+            pass();
+        }
+        assertEquals(1, mGl.mVertexArrays.size());
+        assertEquals(10, mCounting.getDrawCount());
+        // A bind, a draw and the unbind; no attribute pointers
+        assertEquals(30, mCounting.getCallCount());
+        assertEquals(0, mGl.mBoundVertexArray);
+    }
+
+    @Test
+    public void newContextRecreatesTheGeometry() {
+        mQuad.setMode(FullScreenQuad.Mode.QUAD);
+        pass();
+        mGl.mVertexArrays.clear();
+        mGl.mBuffers.clear();
+
+        mQuad.onContextCreated();
+        pass();
+        assertEquals(1, mGl.mVertexArrays.size());
+        assertEquals(1, mGl.mBuffers.size());
+    }
+
+    @Test
+    public void releaseDeletesTheGeometry() {
+        mQuad.setMode(FullScreenQuad.Mode.QUAD);
+        pass();
+        mQuad.release();
+        assertTrue(mGl.mVertexArrays.isEmpty());
+        assertTrue(mGl.mBuffers.isEmpty());
+        mQuad.release();
+
+        pass();
+        assertEquals(1, mGl.mVertexArrays.size());
+    }
+
+    @Test
+    public void newContextProbesTheTriangle() {
+        mQuad.onContextCreated();
+        assertEquals(FullScreenQuad.Mode.TRIANGLE, mQuad.getMode());
+        assertEquals(1, mGl.mLinkCount);
+        // The probe cleans up after itself
+        assertTrue(mGl.mPrograms.isEmpty());
+        assertTrue(mGl.mShaders.isEmpty());
+    }
+
+    @Test
+    public void failedProbeFallsBackToTheQuad() {
+        mGl.mLinkFailure = "gl_VertexID";
+        assertEquals(FullScreenQuad.Mode.QUAD, FullScreenQuad.probeMode(mGl));
+        assertTrue(mGl.mPrograms.isEmpty());
+        assertTrue(mGl.mShaders.isEmpty());
+    }
+
+    @Test
+    public void forcedModeSkipsTheProbe() {
+        mQuad.setMode(FullScreenQuad.Mode.QUAD);
+        mQuad.onContextCreated();
+        assertEquals(FullScreenQuad.Mode.QUAD, mQuad.getMode());
+        assertEquals(0, mGl.mLinkCount);
+
+        mQuad.setMode(null);
+        mQuad.onContextCreated();
+        assertEquals(FullScreenQuad.Mode.TRIANGLE, mQuad.getMode());
+    }
+
+    @Test
+    public void quadsDoNotKeepTheirGlAlive() throws InterruptedException {
+        // Like the StateTrackingGl a renderer wraps around each new context
+        StateTrackingGl wrapper = new StateTrackingGl(mGl);
+        FullScreenQuad.getInstance(wrapper).onContextCreated();
+        WeakReference<Gl> dropped = new WeakReference<>(wrapper);
+        wrapper = null;
+        for (int i = 0; i < 50 && dropped.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(dropped.get());
+    }
+}
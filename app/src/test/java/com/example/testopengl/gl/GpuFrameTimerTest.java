@@ -0,0 +1,116 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GpuFrameTimerTest {
+
+    private final FakeGl mGl = new FakeGl();
+    private long mNow;
+
+    private GpuFrameTimer timer(boolean timerQueries) {
+        return new GpuFrameTimer(mGl, timerQueries, () -> mNow);
+    }
+
+    @Test
+    public void timerQueriesNeedTheExtension() {
+        assertFalse(GpuFrameTimer.isTimerQuerySupported(mGl));
+        mGl.mExtensions = "GL_OES_EGL_image_external " + GpuFrameTimer.TIMER_QUERY_EXTENSION;
+        assertTrue(GpuFrameTimer.isTimerQuerySupported(mGl));
+        assertTrue(new GpuFrameTimer(mGl).usesTimerQueries());
+    }
+
+    @Test
+    public void queryResultsAreReturnedOnce() {
+        GpuFrameTimer timer = timer(true);
+        mGl.mQueryResult = 3_000_000;
+        timer.beginFrame();
+        timer.endFrame();
+        assertEquals(3_000_000L, timer.poll());
+        assertEquals(-1L, timer.poll());
+        // Each slot of the ring makes its query once and reuses it
+        for (int i = 0; i < 10; i++) {
+            timer.beginFrame();
+            timer.endFrame();
+            timer.poll();
+        }
+        assertEquals(GpuFrameTimer.RING_SIZE, mGl.mQueries.size());
+    }
+
+    @Test
+    public void fencesMeasureUntilTheyAreSeenSignaled() {
+        GpuFrameTimer timer = timer(false);
+        mGl.mFencesSignaled = false;
+        mNow = 1_000;
+        timer.beginFrame();
+        timer.endFrame();
+        mNow = 2_000;
+        assertEquals(-1L, timer.poll());
+        mGl.mFencesSignaled = true;
+        mNow = 5_000;
+        assertEquals(4_000L, timer.poll());
+        assertEquals(0, mGl.mSyncs.size());
+    }
+
+    @Test
+    public void failedWaitsAreDropped() {
+        GpuFrameTimer timer = timer(false);
+        mGl.mWaitFails = true;
+        timer.beginFrame();
+        timer.endFrame();
+        mNow = 1_000;
+        assertEquals(-1L, timer.poll());
+        assertEquals(1, timer.getDroppedCount());
+        assertEquals(0, mGl.mSyncs.size());
+    }
+
+    @Test
+    public void disjointEventDropsEveryQueryInFlight() {
+        GpuFrameTimer timer = timer(true);
+        mGl.mQueryResult = 3_000_000;
+        for (int i = 0; i < 3; i++) {
+            timer.beginFrame();
+            timer.endFrame();
+        }
+        mGl.mIntegers.put(GpuFrameTimer.GL_GPU_DISJOINT_EXT, 1);
+        assertEquals(-1L, timer.poll());
+        assertEquals(3, timer.getDroppedCount());
+
+        // The driver clears the flag once read
+        mGl.mIntegers.remove(GpuFrameTimer.GL_GPU_DISJOINT_EXT);
+        timer.beginFrame();
+        timer.endFrame();
+        assertEquals(3_000_000L, timer.poll());
+        assertEquals(-1L, timer.poll());
+    }
+
+    @Test
+    public void framesAreDroppedWhileTheRingIsFull() {
+        GpuFrameTimer timer = timer(false);
+        mGl.mFencesSignaled = false;
+        for (int i = 0; i < GpuFrameTimer.RING_SIZE + 2; i++) {
+            timer.beginFrame();
+            timer.endFrame();
+        }
+        assertEquals(2, timer.getDroppedCount());
+        assertEquals(GpuFrameTimer.RING_SIZE, mGl.mSyncs.size());
+    }
+
+    @Test
+    public void releaseDeletesEverything() {
+        GpuFrameTimer queries = timer(true);
+        GpuFrameTimer fences = timer(false);
+        mGl.mFencesSignaled = false;
+        for (int i = 0; i < 3; i++) {
+            queries.beginFrame();
+            queries.endFrame();
+            fences.beginFrame();
+            fences.endFrame();
+        }
+        queries.release();
+        fences.release();
+        assertEquals(0, mGl.mQueries.size());
+        assertEquals(0, mGl.mSyncs.size());
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.testopengl.gl;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class ProgramBinaryStoreTest {
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private ProgramBinaryStore open(long maxBytes) {
+        return new ProgramBinaryStore(mFolder.getRoot(), "ARM", "Mali-G78", "OpenGL ES 3.2 v1.r32p1", maxBytes);
+    }
+
+    private static byte[] binary(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    @Test
+    public void roundTripsAcrossInstances() {
+        ProgramBinaryStore store = open(1 << 20);
+        store.store("key", 0x8740, binary(1000, 1));
+
+        ProgramBinaryStore reopened = open(1 << 20);
+        ProgramBinaryStore.Entry entry = reopened.load("key");
+        assertNotNull(entry);
+        assertEquals(0x8740, entry.format);
+        assertArrayEquals(binary(1000, 1), entry.binary);
+        assertNull(reopened.load("missing"));
+    }
+
+    @Test
+    public void newDriverInvalidatesOldBinaries() {
+        open(1 << 20).store("key", 1, binary(10, 1));
+
+        ProgramBinaryStore updated = new ProgramBinaryStore(mFolder.getRoot(),
+                "ARM", "Mali-G78", "OpenGL ES 3.2 v1.r40p0", 1 << 20);
+        assertNull(updated.load("key"));
+        File[] devices = mFolder.getRoot().listFiles();
+        assertEquals(1, devices.length);
+        assertEquals(updated.getDirectory(), devices[0]);
+    }
+
+    @Test
+    public void corruptFileIsDropped() throws Exception {
+        ProgramBinaryStore store = open(1 << 20);
+        store.store("key", 1, binary(100, 1));
+        File file = new File(store.getDirectory(), "key.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 1);
+            raf.write(0x55);
+        }
+        assertNull(store.load("key"));
+        assertFalse(file.exists());
+        assertEquals(0, store.size());
+        assertEquals(0, store.getTotalBytes());
+    }
+
+    @Test
+    public void truncatedFileIsDropped() throws Exception {
+        ProgramBinaryStore store = open(1 << 20);
+        store.store("key", 1, binary(100, 1));
+        File file = new File(store.getDirectory(), "key.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(50);
+        }
+        assertNull(open(1 << 20).load("key"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        // Each entry is 1000 bytes of payload plus a 24-byte header
+        ProgramBinaryStore store = open(3 * 1024);
+        store.store("a", 1, binary(1000, 1));
+        store.store("b", 1, binary(1000, 2));
+        store.store("c", 1, binary(1000, 3));
+        assertEquals(3, store.size());
+
+        assertNotNull(store.load("a"));
+        store.store("d", 1, binary(1000, 4));
+
+        assertEquals(3, store.size());
+        assertTrue(store.contains("a"));
+        assertFalse(store.contains("b"));
+        assertFalse(new File(store.getDirectory(), "b.bin").exists());
+        assertTrue(store.getTotalBytes() <= 3 * 1024);
+    }
+
+    @Test
+    public void replacingAnEntryKeepsTheSizeAccurate() {
+        ProgramBinaryStore store = open(1 << 20);
+        store.store("a", 1, binary(1000, 1));
+        store.store("a", 1, binary(10, 1));
+        assertEquals(1, store.size());
+        assertEquals(10 + 24, store.getTotalBytes());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProgramKeyTest {
+
+    private static final String VERTEX = "#version 300 es\nvoid main() {}\n";
+    private static final String FRAGMENT = "#version 300 es\nprecision mediump float;\nvoid main() {}\n";
+
+    @Test
+    public void sameSourcesGiveEqualKeys() {
+        ProgramKey a = ProgramKey.of(VERTEX, FRAGMENT);
+        ProgramKey b = ProgramKey.of(new String(VERTEX), new String(FRAGMENT));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(64, a.getHash().length());
+        assertTrue(a.getHash().matches("[0-9a-f]+"));
+    }
+
+    @Test
+    public void anySourceChangeGivesANewKey() {
+        ProgramKey key = ProgramKey.of(VERTEX, FRAGMENT);
+        assertNotEquals(key, ProgramKey.of(VERTEX, FRAGMENT + " "));
+        assertNotEquals(key, ProgramKey.of(FRAGMENT, VERTEX));
+        // The boundary between the two sources is part of the hash
+        assertNotEquals(ProgramKey.of("ab", "c"), ProgramKey.of("a", "bc"));
+    }
+
+    @Test
+    public void definesAreInjectedAfterVersion() {
+        Map<String, String> defines = new HashMap<>();
+        defines.put("TAPS", "9");
+        ProgramKey key = ProgramKey.of(VERTEX, FRAGMENT, defines);
+        assertTrue(key.getFragmentSource().startsWith("#version 300 es\n#define TAPS 9\nprecision"));
+        assertTrue(key.getVertexSource().startsWith("#version 300 es\n#define TAPS 9\n"));
+        assertNotEquals(ProgramKey.of(VERTEX, FRAGMENT), key);
+    }
+
+    @Test
+    public void defineOrderDoesNotMatter() {
+        Map<String, String> first = new LinkedHashMap<>();
+        first.put("A", "1");
+        first.put("EXTERNAL", "");
+        Map<String, String> second = new LinkedHashMap<>();
+        second.put("EXTERNAL", "");
+        second.put("A", "1");
+        assertEquals(ProgramKey.of(VERTEX, FRAGMENT, first), ProgramKey.of(VERTEX, FRAGMENT, second));
+        assertTrue(ProgramKey.of(VERTEX, FRAGMENT, first).getFragmentSource().contains("#define EXTERNAL\n"));
+    }
+
+    @Test
+    public void noDefinesIsThePlainKey() {
+        assertEquals(ProgramKey.of(VERTEX, FRAGMENT), ProgramKey.of(VERTEX, FRAGMENT, new HashMap<String, String>()));
+        assertEquals("#define X\nvoid main() {}",
+                ProgramKey.injectDefines("void main() {}", java.util.Collections.singletonMap("X", "")));
+    }
+
+    @Test
+    public void computeKeysAreSeparateFromGraphicsKeys() {
+        String compute = "#version 310 es\nlayout(local_size_x = 1) in;\nvoid main() {}\n";
+        ProgramKey key = ProgramKey.ofCompute(compute);
+        assertTrue(key.isCompute());
+        assertFalse(ProgramKey.of(VERTEX, FRAGMENT).isCompute());
+        assertEquals(key, ProgramKey.ofCompute(new String(compute)));
+        assertNotEquals(key, ProgramKey.of(compute, ""));
+
+        ProgramKey external = ProgramKey.ofCompute(compute, TextureInput.EXTERNAL_DEFINES);
+        assertTrue(external.getComputeSource().startsWith("#version 310 es\n#define EXTERNAL_INPUT\n"));
+        assertNotEquals(key, external);
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderTargetPoolTest {
+
+    private static final long FULL_SCREEN = 1080L * 1920 * 4;
+
+    private final FakeGl mGl = new FakeGl();
+
+    @Test
+    public void reusesReleasedTargetOfSameKey() {
+        RenderTargetPool pool = new RenderTargetPool(mGl);
+        FrameBufferObject first = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+        pool.release(first);
+        FrameBufferObject second = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+        assertSame(first, second);
+        assertEquals(1, pool.getCreateCount());
+        assertEquals(FULL_SCREEN, pool.getTotalBytes());
+    }
+
+    @Test
+    public void sizeAndFormatArePartOfTheKey() {
+        RenderTargetPool pool = new RenderTargetPool(mGl);
+        pool.release(pool.acquire(1080, 1920, GLES30.GL_RGBA8));
+        FrameBufferObject rotated = pool.acquire(1920, 1080, GLES30.GL_RGBA8);
+        FrameBufferObject half = pool.acquire(1080, 1920, GLES30.GL_RGBA16F);
+        assertEquals(3, pool.getCreateCount());
+        assertEquals(1920, rotated.getWidth());
+        assertEquals(GLES30.GL_RGBA16F, half.getInternalFormat());
+        assertEquals(FULL_SCREEN * 2, half.getByteSize());
+    }
+
+    @Test
+    public void targetsInUseAreNeverHandedOutTwice() {
+        RenderTargetPool pool = new RenderTargetPool(mGl);
+        FrameBufferObject a = pool.acquire(64, 64, GLES30.GL_RGBA8);
+        FrameBufferObject b = pool.acquire(64, 64, GLES30.GL_RGBA8);
+        assertNotSame(a, b);
+        assertNotEquals(a.getTexture(), b.getTexture());
+        assertEquals(2, pool.getInUseCount());
+    }
+
+    @Test
+    public void steadyStateFramesDoNotAllocate() {
+        RenderTargetPool pool = new RenderTargetPool(mGl);
+        // A six-level pyramid plus two full-size ping-pong targets, drawn 100 times
+        for (int frame = 0; frame < 100; frame++) {
+            FrameBufferObject[] levels = new FrameBufferObject[7];
+            for (int level = 0; level < levels.length; level++) {
+                levels[level] = pool.acquire(1080 >> level, 1920 >> level, GLES30.GL_RGBA8);
+            }
+            FrameBufferObject ping = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+            for (FrameBufferObject level : levels) {
+                pool.release(level);
+            }
+            pool.release(ping);
+        }
+        assertEquals(8, pool.getCreateCount());
+        assertEquals(8, mGl.mTextureAllocations);
+        assertEquals(8, mGl.mTextures.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyReleasedOverBudget() {
+        RenderTargetPool pool = new RenderTargetPool(mGl, 3 * FULL_SCREEN);
+        FrameBufferObject a = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+        FrameBufferObject b = pool.acquire(1920, 1080, GLES30.GL_RGBA8);
+        FrameBufferObject c = pool.acquire(1080, 1920, GLES30.GL_RGBA16F);
+        pool.release(a);
+        pool.release(b);
+        // Over budget with c in use: a went first, b fits
+        assertEquals(1, pool.getFreeCount());
+        assertFalse(mGl.mTextures.contains(a.getTexture()));
+        assertFalse(mGl.mFramebuffers.contains(a.getFramebuffer()));
+        assertTrue(mGl.mTextures.contains(b.getTexture()));
+        assertEquals(3 * FULL_SCREEN, pool.getTotalBytes());
+
+        pool.release(c);
+        assertSame(b, pool.acquire(1920, 1080, GLES30.GL_RGBA8));
+    }
+
+    @Test
+    public void targetsInUseSurviveTheBudget() {
+        RenderTargetPool pool = new RenderTargetPool(mGl, FULL_SCREEN);
+        FrameBufferObject a = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+        FrameBufferObject b = pool.acquire(1080, 1920, GLES30.GL_RGBA8);
+        assertEquals(2 * FULL_SCREEN, pool.getTotalBytes());
+        assertTrue(mGl.mTextures.contains(a.getTexture()));
+        pool.release(a);
+        assertEquals(0, pool.getFreeCount());
+        assertTrue(mGl.mTextures.contains(b.getTexture()));
+    }
+
+    @Test
+    public void resizingDoesNotLeak() {
+        RenderTargetPool pool = new RenderTargetPool(mGl, 2 * FULL_SCREEN);
+        FrameBufferObject held = null;
+        for (int i = 0; i < 20; i++) {
+            // Rotation flips between portrait and landscape; multi-window adds odd sizes
+            int width = i % 2 == 0 ? 1080 : 1920 - i;
+            int height = i % 2 == 0 ? 1920 : 1080;
+            held = pool.ensure(held, width, height, GLES30.GL_RGBA8);
+            assertEquals(width, held.getWidth());
+        }
+        assertTrue(pool.getTotalBytes() <= 2 * FULL_SCREEN);
+        assertTrue(mGl.mTextures.size() <= 2);
+        assertSame(held, pool.ensure(held, held.getWidth(), held.getHeight(), GLES30.GL_RGBA8));
+
+        pool.release(held);
+        pool.evictAll();
+        assertEquals(0, pool.getTotalBytes());
+        assertTrue(mGl.mTextures.isEmpty());
+        assertTrue(mGl.mFramebuffers.isEmpty());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void releasingTwiceFails() {
+        RenderTargetPool pool = new RenderTargetPool(mGl);
+        FrameBufferObject target = pool.acquire(16, 16, GLES30.GL_RGBA8);
+        pool.release(target);
+        pool.release(target);
+    }
+
+    @Test
+    public void bindSetsFramebufferAndUnbindRestoresDefault() {
+        FrameBufferObject target = new RenderTargetPool(mGl).acquire(16, 16, GLES30.GL_RGBA8);
+        target.bind();
+        assertEquals(target.getFramebuffer(), mGl.mBoundFramebuffer);
+        target.unbind();
+        assertEquals(0, mGl.mBoundFramebuffer);
+    }
+}
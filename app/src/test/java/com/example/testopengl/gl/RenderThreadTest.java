@@ -0,0 +1,208 @@
+package com.example.testopengl.gl;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class RenderThreadTest {
+
+    private final FakeEgl mEgl = new FakeEgl();
+    private final RecordingRenderer mRenderer = new RecordingRenderer();
+    private final RenderThread mThread = new RenderThread("TestRenderThread", mEgl, mRenderer);
+
+    /** Records its calls, checking that each one has a context current. */
+    private final class RecordingRenderer implements RenderThread.Renderer {
+        final List<String> mCalls = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger mFrames = new AtomicInteger();
+        volatile float mRadius;
+        volatile CountDownLatch mFrameLatch = new CountDownLatch(0);
+
+        private void record(String call) {
+            assertNotNull(call + " without a context", mEgl.currentContext());
+            mCalls.add(call);
+        }
+
+        @Override
+        public void onContextCreated() {
+            record("created");
+        }
+
+        @Override
+        public void onSurfaceChanged(int width, int height) {
+            record("changed " + width + "x" + height);
+        }
+
+        @Override
+        public void onDrawFrame() {
+            record("draw " + mRadius);
+            mFrames.incrementAndGet();
+            mFrameLatch.countDown();
+        }
+
+        @Override
+        public void onContextDestroyed() {
+            record("destroyed");
+        }
+    }
+
+    @After
+    public void tearDown() {
+        mThread.quit();
+    }
+
+    private void awaitFrames(int count) throws InterruptedException {
+        mRenderer.mFrameLatch = new CountDownLatch(count);
+        assertTrue("No frame", mRenderer.mFrameLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void lifecycleCreatesAndReleasesEverything() throws Exception {
+        mThread.start();
+        mThread.setSurface("window", 640, 480);
+        mThread.postAndWait(() -> { });
+        mThread.requestRender();
+        mThread.postAndWait(() -> { });
+        mThread.releaseSurface();
+        mThread.quit();
+
+        assertFalse(mThread.isAlive());
+        assertTrue(mEgl.isEmpty());
+        assertEquals(1, mEgl.mReleasedThreads);
+        assertEquals("created", mRenderer.mCalls.get(0));
+        assertEquals("changed 640x480", mRenderer.mCalls.get(1));
+        assertEquals("destroyed", mRenderer.mCalls.get(mRenderer.mCalls.size() - 1));
+        assertEquals(mEgl.getSwapCount(), mRenderer.mFrames.get());
+    }
+
+    @Test
+    public void doesNotDrawWithoutAWindow() throws Exception {
+        mThread.start();
+        mThread.requestRender();
+        mThread.postAndWait(() -> { });
+        assertEquals(0, mRenderer.mFrames.get());
+
+        mRenderer.mFrameLatch = new CountDownLatch(1);
+        mThread.setSurface("window", 100, 100);
+        assertTrue(mRenderer.mFrameLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void commandsRunOnTheRenderThreadBeforeTheNextFrame() throws Exception {
+        mThread.start();
+        mThread.setSurface("window", 100, 100);
+        awaitFrames(1);
+
+        AtomicReference<Boolean> onRenderThread = new AtomicReference<>();
+        mRenderer.mFrameLatch = new CountDownLatch(1);
+        mThread.post(() -> {
+            onRenderThread.set(mThread.isRenderThread());
+            mRenderer.mRadius = 12f;
+        });
+        mThread.requestRender();
+        assertTrue(mRenderer.mFrameLatch.await(5, TimeUnit.SECONDS));
+
+        assertTrue(onRenderThread.get());
+        assertEquals("draw 12.0", mRenderer.mCalls.get(mRenderer.mCalls.size() - 1));
+        assertFalse(mThread.isRenderThread());
+    }
+
+    @Test
+    public void sizeChangesReachTheRenderer() throws Exception {
+        mThread.start();
+        mThread.setSurface("window", 100, 100);
+        awaitFrames(1);
+        // Not a change
+        mThread.setSize(100, 100);
+        mThread.setSize(200, 50);
+        mThread.postAndWait(() -> { });
+        mThread.requestRender();
+        mThread.postAndWait(() -> { });
+        mThread.quit();
+
+        assertEquals(1, Collections.frequency(mRenderer.mCalls, "changed 100x100"));
+        assertEquals(1, Collections.frequency(mRenderer.mCalls, "changed 200x50"));
+    }
+
+    @Test
+    public void lostWindowStopsDrawingUntilANewOne() throws Exception {
+        mEgl.mLostWindow = "old";
+        mThread.start();
+        mThread.setSurface("old", 100, 100);
+        awaitFrames(1);
+        mThread.postAndWait(() -> { });
+        int frames = mRenderer.mFrames.get();
+        mThread.requestRender();
+        mThread.postAndWait(() -> { });
+        assertEquals(frames, mRenderer.mFrames.get());
+
+        mRenderer.mFrameLatch = new CountDownLatch(1);
+        mThread.setSurface("new", 100, 100);
+        assertTrue(mRenderer.mFrameLatch.await(5, TimeUnit.SECONDS));
+        mThread.quit();
+        assertTrue(mEgl.isEmpty());
+    }
+
+    @Test
+    public void queuedCommandsRunBeforeQuitting() {
+        AtomicInteger runs = new AtomicInteger();
+        mThread.start();
+        for (int i = 0; i < 100; i++) {
+            mThread.post(runs::incrementAndGet);
+        }
+        mThread.quit();
+        assertEquals(100, runs.get());
+        try {
+            mThread.post(runs::incrementAndGet);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // Safe to call again, and from surfaceDestroyed after quitting
+        mThread.releaseSurface();
+        mThread.quit();
+    }
+
+    @Test
+    public void workersShareTheRenderContext() throws Exception {
+        mThread.start();
+        RenderThread.Worker worker = mThread.newWorker("Upload");
+        AtomicReference<Object> workerContext = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        worker.execute(() -> {
+            workerContext.set(mEgl.currentContext());
+            done.countDown();
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        AtomicReference<Object> renderContext = new AtomicReference<>();
+        mThread.postAndWait(() -> renderContext.set(mEgl.currentContext()));
+
+        FakeEgl.Handle context = (FakeEgl.Handle) workerContext.get();
+        assertNotNull(context);
+        assertNotSame(renderContext.get(), context);
+        assertSame(renderContext.get(), context.mShared);
+
+        mThread.quit();
+        assertFalse(worker.isAlive());
+        assertTrue(mEgl.isEmpty());
+        assertEquals(2, mEgl.mReleasedThreads);
+    }
+
+    @Test
+    public void quitBeforeStartIsHarmless() {
+        mThread.quit();
+        assertFalse(mThread.isAlive());
+        try {
+            mThread.start();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.testopengl.gl;
+
+import android.opengl.GLES11Ext;
+import android.opengl.GLES30;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StateTrackingGlTest {
+
+    private final FakeGl mFake = new FakeGl();
+    // Sees only the calls the tracker lets through
+    private final CountingGl mDriver = new CountingGl(mFake);
+    private final StateTrackingGl mGl = new StateTrackingGl(mDriver);
+    private final int mProgram = mFake.createProgram();
+    private final int mTexture = mFake.genTexture();
+    private final int mOtherTexture = mFake.genTexture();
+    private final int mFramebuffer = mFake.genFramebuffer();
+    private final int mOtherFramebuffer = mFake.genFramebuffer();
+
+    @Test
+    public void repeatedStateIsSetOnce() {
+        for (int i = 0; i < 3; i++) {
+            mGl.useProgram(mProgram);
+            mGl.activeTexture(GLES30.GL_TEXTURE0);
+            mGl.bindTexture(GLES30.GL_TEXTURE_2D, mTexture);
+            mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+            mGl.viewport(0, 0, 1080, 1920);
+            mGl.enable(GLES30.GL_BLEND);
+            mGl.blendFunc(GLES30.GL_SRC_ALPHA, GLES30.GL_ONE_MINUS_SRC_ALPHA);
+        }
+        assertEquals(7, mDriver.getCallCount());
+        assertEquals(14, mGl.getSkippedCount());
+        mGl.resetSkippedCount();
+        assertEquals(0, mGl.getSkippedCount());
+    }
+
+    @Test
+    public void changesGoThrough() {
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mOtherFramebuffer);
+        mGl.viewport(0, 0, 540, 960);
+        mGl.viewport(0, 0, 1080, 1920);
+        mGl.enable(GLES30.GL_BLEND);
+        mGl.disable(GLES30.GL_BLEND);
+        assertEquals(6, mDriver.getCallCount());
+        assertEquals(0, mGl.getSkippedCount());
+    }
+
+    @Test
+    public void texturesAreTrackedPerUnitAndTarget() {
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, mTexture);
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTexture);
+        mGl.activeTexture(GLES30.GL_TEXTURE1);
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, mTexture);
+        assertEquals(5, mDriver.getCallCount());
+
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, mTexture);
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mTexture);
+        assertEquals(6, mDriver.getCallCount());
+    }
+
+    @Test
+    public void readAndDrawFramebuffersAreSeparate() {
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+        mGl.bindFramebuffer(GLES30.GL_READ_FRAMEBUFFER, mOtherFramebuffer);
+        mGl.bindFramebuffer(GLES30.GL_DRAW_FRAMEBUFFER, mFramebuffer);
+        assertEquals(2, mDriver.getCallCount());
+        // The read binding differs, so this is not redundant
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, mFramebuffer);
+        assertEquals(3, mDriver.getCallCount());
+    }
+
+    @Test
+    public void deletedObjectsAreNoLongerBound() {
+        int texture = mGl.genTexture();
+        int framebuffer = mGl.genFramebuffer();
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, texture);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, framebuffer);
+        mGl.deleteTexture(texture);
+        mGl.deleteFramebuffer(framebuffer);
+        mDriver.reset();
+
+        // GL unbound them on delete, so binding 0 is redundant
+        mGl.bindTexture(GLES30.GL_TEXTURE_2D, 0);
+        mGl.bindFramebuffer(GLES30.GL_FRAMEBUFFER, 0);
+        assertEquals(0, mDriver.getCallCount());
+    }
+
+    @Test
+    public void invalidateLetsEveryCallThrough() {
+        mGl.useProgram(mProgram);
+        mGl.viewport(0, 0, 10, 10);
+        mGl.invalidate();
+        mDriver.reset();
+        mGl.useProgram(mProgram);
+        mGl.viewport(0, 0, 10, 10);
+        assertEquals(2, mDriver.getCallCount());
+    }
+
+    @Test
+    public void bindingsMadeElsewhereCanBeRecorded() {
+        mGl.activeTexture(GLES30.GL_TEXTURE0);
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
+        // As SurfaceTexture.updateTexImage() would
+        mGl.onTextureBound(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mOtherTexture);
+        mDriver.reset();
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, mOtherTexture);
+        mGl.bindTexture(GLES11Ext.GL_TEXTURE_EXTERNAL_OES, 0);
+        assertEquals(1, mDriver.getCallCount());
+    }
+}
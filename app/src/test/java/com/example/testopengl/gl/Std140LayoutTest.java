@@ -0,0 +1,45 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class Std140LayoutTest {
+
+    @Test
+    public void membersFollowTheStd140Rules() {
+        // float a; vec2 b; vec3 c; float d; mat2 e; float f[2]; vec4 g; int h;
+        Std140Layout layout = new Std140Layout();
+        assertEquals(0, layout.addFloat());
+        // vec2 aligns to 8
+        assertEquals(8, layout.addVec2());
+        // vec3 aligns to 16 ...
+        assertEquals(16, layout.addVec3());
+        // ... and a scalar fits in its fourth component
+        assertEquals(28, layout.addFloat());
+        // Matrix columns and array elements each take a vec4
+        assertEquals(32, layout.addMat2());
+        assertEquals(64, layout.addFloatArray(2));
+        assertEquals(96, layout.addVec4());
+        assertEquals(112, layout.addInt());
+        assertEquals(128, layout.getSize());
+    }
+
+    @Test
+    public void matricesAlignToAVec4() {
+        Std140Layout layout = new Std140Layout();
+        layout.addFloat();
+        assertEquals(16, layout.addMat4());
+        assertEquals(80, layout.addMat3());
+        assertEquals(128, layout.getSize());
+    }
+
+    @Test
+    public void sizeIsRoundedToAVec4() {
+        Std140Layout layout = new Std140Layout();
+        layout.addVec2();
+        layout.addFloat();
+        assertEquals(16, layout.getSize());
+        assertEquals(0, new Std140Layout().getSize());
+    }
+}
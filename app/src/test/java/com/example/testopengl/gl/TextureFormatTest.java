@@ -0,0 +1,33 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextureFormatTest {
+
+    @Test
+    public void smallerFormatsDither() {
+        assertEquals(0f, TextureFormat.RGBA8.getDitherStep(), 0f);
+        assertEquals(0f, TextureFormat.RGBA16F.getDitherStep(), 0f);
+        assertTrue(TextureFormat.RGB565.getDitherStep() > TextureFormat.R11G11B10F.getDitherStep());
+        assertEquals(2, TextureFormat.RGB565.getBytesPerPixel());
+        assertEquals(4, TextureFormat.R11G11B10F.getBytesPerPixel());
+        assertEquals(8, TextureFormat.RGBA16F.getBytesPerPixel());
+    }
+
+    @Test
+    public void floatFormatsNeedAnExtension() {
+        FakeGl gl = new FakeGl();
+        assertSame(TextureFormat.RGB565, TextureFormat.supported(TextureFormat.RGB565, gl));
+        assertSame(TextureFormat.RGBA8, TextureFormat.supported(TextureFormat.RGBA16F, gl));
+        assertSame(TextureFormat.RGBA8, TextureFormat.supported(TextureFormat.R11G11B10F, gl));
+
+        gl.mExtensions = "GL_EXT_color_buffer_half_float GL_OES_EGL_image_external";
+        assertSame(TextureFormat.RGBA16F, TextureFormat.supported(TextureFormat.RGBA16F, gl));
+        assertSame(TextureFormat.RGBA8, TextureFormat.supported(TextureFormat.R11G11B10F, gl));
+
+        gl.mExtensions = "GL_EXT_color_buffer_float";
+        assertSame(TextureFormat.R11G11B10F, TextureFormat.supported(TextureFormat.R11G11B10F, gl));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextureInputTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    // Column-major, as SurfaceTexture.getTransformMatrix returns them
+    private static final float[] FLIP_Y = {
+            1f, 0f, 0f, 0f,
+            0f, -1f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 1f, 0f, 1f
+    };
+    private static final float[] ROTATE_90_CROPPED = {
+            0f, -0.9f, 0f, 0f,
+            1f, 0f, 0f, 0f,
+            0f, 0f, 1f, 0f,
+            0f, 0.95f, 0f, 1f
+    };
+
+    private static float[] apply(float[] m, float u, float v) {
+        return new float[]{m[0] * u + m[4] * v + m[12], m[1] * u + m[5] * v + m[13]};
+    }
+
+    @Test
+    public void nullMatrixIsIdentity() {
+        float[] out = new float[2];
+        TextureInput.transformOffset(null, 0.25f, -0.5f, out);
+        assertArrayEquals(new float[]{0.25f, -0.5f}, out, 0f);
+    }
+
+    @Test
+    public void flipMirrorsVerticalOffsets() {
+        float[] out = new float[2];
+        TextureInput.transformOffset(FLIP_Y, 0.01f, 0f, out);
+        assertArrayEquals(new float[]{0.01f, 0f}, out, EPSILON);
+        TextureInput.transformOffset(FLIP_Y, 0f, 0.01f, out);
+        assertArrayEquals(new float[]{0f, -0.01f}, out, EPSILON);
+    }
+
+    @Test
+    public void offsetTapsLandWhereTheTransformedTapWould() {
+        // The vertex shader transforms the pixel's coordinate; the offset added in the
+        // fragment shader must reach the same place as transforming the offset tap
+        float[][] matrices = {FLIP_Y, ROTATE_90_CROPPED};
+        float[] offset = new float[2];
+        for (float[] m : matrices) {
+            for (float u = 0f; u <= 1f; u += 0.25f) {
+                for (float v = 0f; v <= 1f; v += 0.25f) {
+                    float du = 3f / 1080f;
+                    float dv = -2f / 1920f;
+                    float[] base = apply(m, u, v);
+                    float[] expected = apply(m, u + du, v + dv);
+                    TextureInput.transformOffset(m, du, dv, offset);
+                    assertEquals(expected[0], base[0] + offset[0], EPSILON);
+                    assertEquals(expected[1], base[1] + offset[1], EPSILON);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rotationKeepsHorizontalPassOnTheOutputAxis() {
+        // With a 90 degree transform a horizontal output step moves along the input's v axis
+        float[] out = new float[2];
+        TextureInput.transformOffset(ROTATE_90_CROPPED, 1f / 1080f, 0f, out);
+        assertEquals(0f, out[0], EPSILON);
+        assertEquals(-0.9f / 1080f, out[1], EPSILON);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.testopengl.gl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class UniformBlockTest {
+
+    private final FakeGl mFake = new FakeGl();
+    private final CountingGl mGl = new CountingGl(mFake);
+
+    private UniformBlock block() {
+        Std140Layout layout = new Std140Layout();
+        layout.addVec2();
+        layout.addFloat();
+        layout.addMat2();
+        return new UniformBlock(mGl, layout);
+    }
+
+    @Test
+    public void unchangedValuesAreNotUploadedAgain() {
+        UniformBlock block = block();
+        block.setVec2(0, 1080f, 1920f);
+        block.setFloat(8, 0.1f);
+        block.bind(0);
+        assertEquals(1, block.getUploadCount());
+
+        mGl.reset();
+        block.setVec2(0, 1080f, 1920f);
+        block.setFloat(8, 0.1f);
+        block.bind(0);
+        assertEquals(1, block.getUploadCount());
+        // Only the bind
+        assertEquals(1, mGl.getCallCount());
+    }
+
+    @Test
+    public void aChangedValueIsUploaded() {
+        UniformBlock block = block();
+        block.setFloat(8, 0.1f);
+        block.bind(0);
+        block.setFloat(8, 0.2f);
+        mGl.reset();
+        block.bind(0);
+        assertEquals(2, block.getUploadCount());
+        assertEquals(1, mGl.getUniformCount());
+    }
+
+    @Test
+    public void matrixColumnsArePadded() {
+        UniformBlock block = block();
+        block.bind(0);
+        // The second column starts a vec4 after the first, so changing only it uploads
+        block.setMat2(16, new float[]{1f, 0f, 0f, 0f}, 0);
+        block.bind(0);
+        block.setMat2(16, new float[]{1f, 0f, 0f, 1f}, 0);
+        block.bind(0);
+        assertEquals(3, block.getUploadCount());
+    }
+
+    @Test
+    public void releaseDeletesTheBuffer() {
+        UniformBlock block = block();
+        block.setFloat(8, 0.5f);
+        block.bind(0);
+        block.release();
+        assertEquals(0, mFake.mBuffers.size());
+        // Rebinding makes a new buffer with the same values
+        block.bind(0);
+        assertEquals(1, mFake.mBuffers.size());
+        assertEquals(2, block.getUploadCount());
+    }
+}
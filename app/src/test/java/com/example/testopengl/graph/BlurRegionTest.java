@@ -0,0 +1,69 @@
+package com.example.testopengl.graph;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BlurRegionTest {
+
+    private final BlurRegion mRegion = new BlurRegion();
+    private final int[] mBox = new int[4];
+
+    @Test
+    public void fullRegionIsTheWholeFrame() {
+        assertTrue(mRegion.getBlurBox(1080, 1920, 20, mBox));
+        assertArrayEquals(new int[]{0, 0, 1080, 1920}, mBox);
+        assertTrue(BlurRegion.isWholeFrame(mBox, 1080, 1920));
+        assertFalse(mRegion.getSharpBounds(1080, 1920, mBox));
+    }
+
+    @Test
+    public void blurBoxIsPaddedAndAligned() {
+        mRegion.setRect(100, 200, 300, 400);
+        assertTrue(mRegion.getBounds(1080, 1920, mBox));
+        assertArrayEquals(new int[]{100, 200, 200, 200}, mBox);
+
+        assertTrue(mRegion.getBlurBox(1080, 1920, 12, mBox));
+        assertArrayEquals(new int[]{88, 184, 224, 232}, mBox);
+        for (int value : mBox) {
+            assertEquals(0, value % BlurRegion.ALIGNMENT);
+        }
+    }
+
+    @Test
+    public void boxesAreClippedToTheFrame() {
+        mRegion.setCircle(10, 1910, 50, false);
+        assertTrue(mRegion.getBounds(1080, 1920, mBox));
+        assertArrayEquals(new int[]{0, 1860, 60, 60}, mBox);
+
+        // Padding past the frame stops at its edges, which need not be aligned
+        assertTrue(mRegion.getBlurBox(70, 1920, 20, mBox));
+        assertArrayEquals(new int[]{0, 1840, 70, 80}, mBox);
+
+        mRegion.setRect(1100, 0, 1200, 100);
+        assertFalse(mRegion.getBounds(1080, 1920, mBox));
+        assertFalse(mRegion.getBlurBox(1080, 1920, 20, mBox));
+    }
+
+    @Test
+    public void outsideOfACircle() {
+        mRegion.setCircle(540, 960, 360, true);
+        assertTrue(mRegion.getBlurBox(1080, 1920, 20, mBox));
+        assertTrue(BlurRegion.isWholeFrame(mBox, 1080, 1920));
+        assertTrue(mRegion.getSharpBounds(1080, 1920, mBox));
+        assertArrayEquals(new int[]{180, 600, 720, 720}, mBox);
+
+        // A circle over every corner leaves nothing outside it
+        mRegion.setCircle(540, 960, 1200, true);
+        assertFalse(mRegion.getBounds(1080, 1920, mBox));
+    }
+
+    @Test
+    public void maskUsesItsBox() {
+        mRegion.setMask(7, 0, 0, 1080, 300);
+        assertEquals(BlurRegion.Shape.MASK, mRegion.getShape());
+        assertEquals(7, mRegion.getMaskTexture());
+        assertTrue(mRegion.getBlurBox(1080, 1920, 10, mBox));
+        assertArrayEquals(new int[]{0, 0, 1080, 312}, mBox);
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.testopengl.graph;
+
+import com.example.testopengl.blur.AdaptiveBlurFilter;
+import com.example.testopengl.blur.DualKawaseBlurFilter;
+import com.example.testopengl.blur.GaussianBlurFilter;
+import com.example.testopengl.blur.RadialBlurFilter;
+import com.example.testopengl.gl.FakeGl;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.perf.FrameAllocationMonitor;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntConsumer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Fails when drawing a warm graph allocates, e.g. because a pass started creating arrays
+ * or boxing, the pool stopped reusing targets, or a filter started building a kernel or
+ * plan per frame for an animated radius. Measured with the JVM's per-thread allocation
+ * counter.
+ */
+public class FilterGraphAllocationTest {
+
+    private static final int WARM_UP_FRAMES = 2000;
+    private static final int FRAMES = 1000;
+    private static final int ROUNDS = 3;
+
+    private com.sun.management.ThreadMXBean mThreads;
+    private long mThreadId;
+
+    /** Reads into its arguments like the real effects do, without allocating. */
+    private static final class FakeEffect extends EffectNode {
+        long mChecksum;
+
+        FakeEffect(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean acceptsExternalInput() {
+            return true;
+        }
+
+        @Override
+        public void setSize(int width, int height) {
+        }
+
+        @Override
+        public void draw(int texture, float[] textureMatrix, int framebuffer) {
+            mChecksum += texture + framebuffer + (textureMatrix != null ? (long) textureMatrix[0] : 0);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mThreads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(mThreads.isThreadAllocatedMemorySupported());
+        mThreads.setThreadAllocatedMemoryEnabled(true);
+        mThreadId = Thread.currentThread().getId();
+    }
+
+    private FrameAllocationMonitor monitor() {
+        return new FrameAllocationMonitor(() -> mThreads.getThreadAllocatedBytes(mThreadId), 0);
+    }
+
+    /**
+     * Draws {@code frame} for warm-up, then measures it. A JIT compilation finishing
+     * mid-round can allocate on the drawing thread in the VM itself, so a noisy round is
+     * measured again; a real per-frame allocation shows up in every round.
+     */
+    private void assertWarmFramesDoNotAllocate(IntConsumer frame) {
+        for (int i = 0; i < WARM_UP_FRAMES; i++) {
+            frame.accept(i);
+        }
+        for (int round = 1; ; round++) {
+            // Whatever the counter itself costs per read is not the graph's
+            FrameAllocationMonitor idle = monitor();
+            FrameAllocationMonitor frames = monitor();
+            for (int i = 0; i < FRAMES; i++) {
+                idle.beginFrame();
+                idle.endFrame();
+
+                frames.beginFrame();
+                frame.accept(i);
+                frames.endFrame();
+            }
+            if (frames.getMaxFrameBytes() <= idle.getMaxFrameBytes()) {
+                return;
+            }
+            if (round == ROUNDS) {
+                fail(frames + " vs idle " + idle);
+            }
+        }
+    }
+
+    @Test
+    public void warmGraphDrawsWithoutAllocating() {
+        RenderTargetPool pool = new RenderTargetPool(new FakeGl());
+        FilterGraph graph = new FilterGraph(pool);
+        ExternalOesSource video = graph.add(new ExternalOesSource(1));
+        EffectNode a = graph.add(new FakeEffect("a"));
+        EffectNode b = graph.add(new FakeEffect("b"));
+        EffectNode c = graph.add(new FakeEffect("c"));
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(video, a);
+        graph.connect(a, b);
+        graph.connect(b, c);
+        graph.connect(c, screen);
+        graph.setSize(1080, 1920);
+        float[] matrix = new float[16];
+
+        assertWarmFramesDoNotAllocate(frame -> {
+            video.setTransformMatrix(matrix);
+            graph.draw();
+        });
+
+        assertEquals(2, graph.getPlan().getSlotCount());
+        assertEquals(2, pool.getCreateCount());
+    }
+
+    @Test
+    public void animatedBlursDrawWithoutAllocating() {
+        FakeGl gl = new FakeGl();
+        RenderTargetPool pool = new RenderTargetPool(gl);
+        FilterGraph graph = new FilterGraph(pool);
+        ExternalOesSource video = graph.add(new ExternalOesSource(gl.genTexture()));
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(pool);
+        DualKawaseBlurFilter pyramid = new DualKawaseBlurFilter(pool);
+        RadialBlurFilter radial = new RadialBlurFilter(pool);
+        radial.setQuality(8, 2);
+        AdaptiveBlurFilter adaptive = new AdaptiveBlurFilter(pool);
+        EffectNode a = graph.add(new BlurNode(gaussian));
+        EffectNode b = graph.add(new BlurNode(pyramid));
+        EffectNode c = graph.add(new BlurNode(radial));
+        EffectNode d = graph.add(new BlurNode(adaptive));
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(video, a);
+        graph.connect(a, b);
+        graph.connect(b, c);
+        graph.connect(c, d);
+        graph.connect(d, screen);
+        graph.setSize(1080, 1920);
+        float[] matrix = new float[16];
+
+        // A radius sweeping 0..60 px over 200 frames, like a slider animation; the
+        // warm-up goes through every kernel the sweep needs
+        assertWarmFramesDoNotAllocate(frame -> {
+            float radius = (frame % 200) * 0.3f;
+            gaussian.setRadius(radius);
+            pyramid.setRadius(radius);
+            radial.setRadius(radius);
+            adaptive.setRadius(radius);
+            video.setTransformMatrix(matrix);
+            graph.draw();
+        });
+    }
+}
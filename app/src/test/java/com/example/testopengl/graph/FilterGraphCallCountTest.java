@@ -0,0 +1,274 @@
+package com.example.testopengl.graph;
+
+import com.example.testopengl.blur.BlurRenderer;
+import com.example.testopengl.blur.DualKawaseBlurFilter;
+import com.example.testopengl.blur.GaussianBlurFilter;
+import com.example.testopengl.blur.RadialBlurFilter;
+import com.example.testopengl.gl.CountingGl;
+import com.example.testopengl.gl.FakeGl;
+import com.example.testopengl.gl.RenderTargetPool;
+import com.example.testopengl.gl.StateTrackingGl;
+import com.example.testopengl.gl.TextureFormat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * The filters and the graph make their GL calls through the pool's {@link
+ * com.example.testopengl.gl.Gl}, so a {@link CountingGl} under the pool sees a whole frame.
+ */
+public class FilterGraphCallCountTest {
+
+    private final FakeGl mFake = new FakeGl();
+    private final CountingGl mGl = new CountingGl(mFake);
+    private final RenderTargetPool mPool = new RenderTargetPool(mGl);
+
+    private FilterGraph blurGraph(BlurRenderer blur, boolean external) {
+        FilterGraph graph = new FilterGraph(mPool);
+        int texture = mFake.genTexture();
+        SourceNode source = graph.add(external ? new ExternalOesSource(texture) : new TextureSource(texture));
+        BlurNode node = graph.add(new BlurNode(blur));
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(source, node);
+        graph.connect(node, screen);
+        graph.setSize(1080, 1920);
+        return graph;
+    }
+
+    @Test
+    public void separableGaussianIsTwoDraws() {
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(mPool);
+        gaussian.setRadius(12f);
+        FilterGraph graph = blurGraph(gaussian, false);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(2, mGl.getDrawCount());
+        assertTrue(mGl.getUniformCount() > 0);
+    }
+
+    @Test
+    public void radialBlurPassesAreCounted() {
+        RadialBlurFilter radial = new RadialBlurFilter(mPool);
+        radial.setStrength(0.3f);
+        radial.setQuality(8, 3);
+        FilterGraph graph = blurGraph(radial, true);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(3, mGl.getDrawCount());
+        assertTrue(mGl.getUniformCount() > 0);
+        int perFrame = mGl.getCallCount();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(perFrame, mGl.getCallCount());
+    }
+
+    @Test
+    public void radialParametersAreUploadedOnlyWhenTheyChange() {
+        RadialBlurFilter radial = new RadialBlurFilter(mPool);
+        radial.setStrength(0.3f);
+        radial.setQuality(8, 2);
+        FilterGraph graph = blurGraph(radial, false);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(0, mGl.getUniformCount());
+
+        radial.setStrength(0.2f);
+        mGl.reset();
+        graph.draw();
+        // One block per pass
+        assertEquals(2, mGl.getUniformCount());
+    }
+
+    @Test
+    public void downsampledRadialBlurAddsOneBlit() {
+        RadialBlurFilter radial = new RadialBlurFilter(mPool);
+        radial.setStrength(0.3f);
+        radial.setQuality(8, 3);
+        radial.setDownsample(2);
+        FilterGraph graph = blurGraph(radial, true);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        // Every pass at half size, then the blit up
+        assertEquals(4, mGl.getDrawCount());
+        int perFrame = mGl.getCallCount();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(perFrame, mGl.getCallCount());
+    }
+
+    @Test
+    public void stateTrackingDropsRedundantCalls() {
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(mPool);
+        gaussian.setRadius(12f);
+        FilterGraph graph = blurGraph(gaussian, false);
+        graph.draw();
+        mGl.reset();
+        graph.draw();
+        int untracked = mGl.getCallCount();
+
+        StateTrackingGl tracker = new StateTrackingGl(mGl);
+        RenderTargetPool pool = new RenderTargetPool(tracker);
+        GaussianBlurFilter trackedGaussian = new GaussianBlurFilter(pool);
+        trackedGaussian.setRadius(12f);
+        FilterGraph tracked = new FilterGraph(pool);
+        SourceNode source = tracked.add(new TextureSource(mFake.genTexture()));
+        BlurNode node = tracked.add(new BlurNode(trackedGaussian));
+        ScreenSink screen = tracked.add(new ScreenSink());
+        tracked.connect(source, node);
+        tracked.connect(node, screen);
+        tracked.setSize(1080, 1920);
+        tracked.draw();
+
+        mGl.reset();
+        tracker.resetSkippedCount();
+        tracked.draw();
+        assertEquals(2, mGl.getDrawCount());
+        assertTrue(tracker.getSkippedCount() > 0);
+        assertEquals(untracked, mGl.getCallCount() + tracker.getSkippedCount());
+    }
+
+    @Test
+    public void intermediatesUseThePoolsFormat() {
+        mPool.setIntermediateFormat(TextureFormat.RGB565);
+        DualKawaseBlurFilter pyramid = new DualKawaseBlurFilter(mPool);
+        pyramid.setRadius(60f);
+        FilterGraph graph = blurGraph(pyramid, false);
+        graph.draw();
+        long halfBytes = mPool.getTotalBytes();
+
+        RenderTargetPool rgba8 = new RenderTargetPool(mGl);
+        DualKawaseBlurFilter reference = new DualKawaseBlurFilter(rgba8);
+        reference.setRadius(60f);
+        reference.setSize(1080, 1920);
+        reference.draw(mFake.genTexture(), 0);
+        assertEquals(rgba8.getTotalBytes(), 2 * halfBytes);
+    }
+
+    @Test
+    public void pyramidDrawsTwicePerLevel() {
+        DualKawaseBlurFilter pyramid = new DualKawaseBlurFilter(mPool);
+        pyramid.setRadius(60f);
+        FilterGraph graph = blurGraph(pyramid, false);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(2 * pyramid.getPlan().getLevels(), mGl.getDrawCount());
+    }
+
+    @Test
+    public void temporalBlurSkipsUnchangedFrames() {
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(mPool);
+        TemporalBlurNode node = new TemporalBlurNode(gaussian, mPool);
+        node.setRadius(12f);
+        FilterGraph graph = new FilterGraph(mPool);
+        ExternalOesSource video = graph.add(new ExternalOesSource(mFake.genTexture()));
+        graph.add(node);
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(video, node);
+        graph.connect(node, screen);
+        graph.setSize(1080, 1920);
+
+        // Proxy, two blur passes, blit
+        mGl.reset();
+        graph.draw();
+        assertEquals(4, mGl.getDrawCount());
+
+        // Same proxy: only the proxy and the blit
+        mGl.reset();
+        graph.draw();
+        assertEquals(2, mGl.getDrawCount());
+        assertEquals(1, node.getPolicy().getReuseCount());
+
+        mFake.mReadValue = (byte) 200;
+        mGl.reset();
+        graph.draw();
+        assertEquals(4, mGl.getDrawCount());
+
+        node.setRadius(20f);
+        mGl.reset();
+        graph.draw();
+        assertEquals(4, mGl.getDrawCount());
+        assertEquals(3, node.getPolicy().getBlurCount());
+    }
+
+    @Test
+    public void regionBlurRunsOnThePaddedRegionOnly() {
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(mPool);
+        RoiBlurNode node = new RoiBlurNode(gaussian, mPool);
+        node.setRadius(12f);
+        node.getRegion().setRect(100, 200, 300, 400);
+        FilterGraph graph = new FilterGraph(mPool);
+        ExternalOesSource video = graph.add(new ExternalOesSource(mFake.genTexture()));
+        graph.add(node);
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(video, node);
+        graph.connect(node, screen);
+        graph.setSize(1080, 1920);
+        graph.draw();
+
+        // Crop, two blur passes, copy of the frame, blurred patch
+        mGl.reset();
+        graph.draw();
+        assertEquals(5, mGl.getDrawCount());
+        // Crop, blurred patch and the blur's intermediate, all the size of the padded box
+        assertEquals(3L * 224 * 232 * 4, mPool.getTotalBytes());
+
+        // Blurred in place, the circle drawn back sharp
+        node.getRegion().setCircle(540, 960, 360, true);
+        mGl.reset();
+        graph.draw();
+        assertEquals(3, mGl.getDrawCount());
+
+        // Nothing to blur: only the copy
+        node.getRegion().setRect(2000, 0, 2100, 100);
+        mGl.reset();
+        graph.draw();
+        assertEquals(1, mGl.getDrawCount());
+    }
+
+    @Test
+    public void regionBlurCropsInThePoolsFormat() {
+        mPool.setIntermediateFormat(TextureFormat.RGB565);
+        GaussianBlurFilter gaussian = new GaussianBlurFilter(mPool);
+        RoiBlurNode node = new RoiBlurNode(gaussian, mPool);
+        node.setRadius(12f);
+        node.getRegion().setRect(100, 200, 300, 400);
+        FilterGraph graph = new FilterGraph(mPool);
+        SourceNode source = graph.add(new TextureSource(mFake.genTexture()));
+        graph.add(node);
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(source, node);
+        graph.connect(node, screen);
+        graph.setSize(1080, 1920);
+        graph.draw();
+
+        // Crop and the blur's intermediate at 2 bytes a pixel, the blurred patch at 4
+        assertEquals((2L + 2 + 4) * 224 * 232, mPool.getTotalBytes());
+    }
+
+    @Test
+    public void copyPassesAreCounted() {
+        FilterGraph graph = new FilterGraph(mPool);
+        ExternalOesSource video = graph.add(new ExternalOesSource(mFake.genTexture()));
+        ScreenSink screen = graph.add(new ScreenSink());
+        graph.connect(video, screen);
+        graph.setSize(640, 480);
+        graph.draw();
+
+        mGl.reset();
+        graph.draw();
+        assertEquals(1, mGl.getDrawCount());
+    }
+}
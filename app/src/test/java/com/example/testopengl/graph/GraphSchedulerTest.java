@@ -0,0 +1,237 @@
+package com.example.testopengl.graph;
+
+import com.example.testopengl.gl.RenderTargetPool;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GraphSchedulerTest {
+
+    private final FilterGraph mGraph = new FilterGraph(new RenderTargetPool(null));
+
+    private static final class FakeEffect extends EffectNode {
+        private final boolean mAcceptsExternal;
+
+        FakeEffect(String name, boolean acceptsExternal) {
+            super(name);
+            mAcceptsExternal = acceptsExternal;
+        }
+
+        @Override
+        public boolean acceptsExternalInput() {
+            return mAcceptsExternal;
+        }
+
+        @Override
+        public void setSize(int width, int height) {
+        }
+
+        @Override
+        public void draw(int texture, float[] textureMatrix, int framebuffer) {
+        }
+    }
+
+    private EffectNode effect(String name, boolean acceptsExternal) {
+        return mGraph.add(new FakeEffect(name, acceptsExternal));
+    }
+
+    @Test
+    public void externalInputIsFusedIntoTheBlur() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        BlurNode blur = mGraph.add(new BlurNode(null));
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(video, blur);
+        mGraph.connect(blur, screen);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(1, plan.getPassCount());
+        GraphPlan.Pass pass = plan.getPass(0);
+        assertSame(blur, pass.getEffect());
+        assertTrue(pass.readsExternal());
+        assertSame(screen, pass.getOutputSink());
+        assertEquals(0, plan.getSlotCount());
+    }
+
+    @Test
+    public void radialBlurSamplesTheVideoFrameDirectly() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        BlurNode blur = mGraph.add(new BlurNode(null));
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(video, blur);
+        mGraph.connect(blur, screen);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(1, plan.getPassCount());
+        assertEquals(0, plan.countPasses(GraphPlan.Kind.COPY));
+        assertTrue(plan.getPass(0).readsExternal());
+        assertSame(video.getTransformMatrix(), plan.getPass(0).getInputSource().getTransformMatrix());
+    }
+
+    @Test
+    public void transformMatrixIsUpdatedInPlace() {
+        ExternalOesSource video = new ExternalOesSource(1);
+        float[] matrix = video.getTransformMatrix();
+        assertEquals(1f, matrix[0], 0f);
+        assertEquals(1f, matrix[15], 0f);
+        float[] flip = {1, 0, 0, 0, 0, -1, 0, 0, 0, 0, 1, 0, 0, 1, 0, 1};
+        video.setTransformMatrix(flip);
+        assertSame(matrix, video.getTransformMatrix());
+        assertArrayEquals(flip, matrix, 0f);
+    }
+
+    @Test
+    public void externalInputIsCopiedOnceForEffectsThatNeed2D() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        EffectNode a = effect("a", false);
+        EffectNode b = effect("b", false);
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        ScreenSink second = mGraph.add(new ScreenSink());
+        mGraph.connect(video, a);
+        mGraph.connect(video, b);
+        mGraph.connect(a, screen);
+        mGraph.connect(b, second);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(3, plan.getPassCount());
+        assertEquals(1, plan.countPasses(GraphPlan.Kind.COPY));
+        GraphPlan.Pass copy = plan.getPass(0);
+        assertEquals(GraphPlan.Kind.COPY, copy.getKind());
+        assertTrue(copy.readsExternal());
+        for (int i = 1; i < 3; i++) {
+            assertFalse(plan.getPass(i).readsExternal());
+            assertEquals(copy.getOutputSlot(), plan.getPass(i).getInputSlot());
+        }
+        // Only the last reader gives the copy back
+        assertEquals(0, plan.getPass(1).getReleasedSlots().length);
+        assertArrayEquals(new int[]{copy.getOutputSlot()}, plan.getPass(2).getReleasedSlots());
+    }
+
+    @Test
+    public void chainPingPongsBetweenTwoTargets() {
+        Node previous = mGraph.add(new ExternalOesSource(1));
+        for (int i = 0; i < 5; i++) {
+            EffectNode next = effect("e" + i, true);
+            mGraph.connect(previous, next);
+            previous = next;
+        }
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(previous, screen);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(5, plan.getPassCount());
+        assertEquals(0, plan.countPasses(GraphPlan.Kind.COPY));
+        assertEquals(2, plan.getSlotCount());
+        assertTrue(plan.getPass(0).readsExternal());
+        assertSame(screen, plan.getPass(4).getOutputSink());
+        for (int i = 1; i < 5; i++) {
+            GraphPlan.Pass pass = plan.getPass(i);
+            assertNotEquals("pass " + i + " reads its own target", pass.getInputSlot(), pass.getOutputSlot());
+            assertArrayEquals(new int[]{pass.getInputSlot()}, pass.getReleasedSlots());
+        }
+    }
+
+    @Test
+    public void sourceStraightToScreenIsOneCopy() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(video, screen);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(1, plan.getPassCount());
+        assertEquals(GraphPlan.Kind.COPY, plan.getPass(0).getKind());
+        assertTrue(plan.getPass(0).readsExternal());
+        assertSame(screen, plan.getPass(0).getOutputSink());
+    }
+
+    @Test
+    public void sharedResultIsKeptUntilItsLastReader() {
+        TextureSource image = mGraph.add(new TextureSource(1));
+        EffectNode blur = effect("blur", true);
+        EffectNode left = effect("left", true);
+        EffectNode right = effect("right", true);
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        ScreenSink other = mGraph.add(new ScreenSink());
+        mGraph.connect(image, blur);
+        mGraph.connect(blur, left);
+        mGraph.connect(blur, right);
+        mGraph.connect(left, screen);
+        mGraph.connect(right, other);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(3, plan.getPassCount());
+        assertFalse(plan.getPass(0).readsExternal());
+        int shared = plan.getPass(0).getOutputSlot();
+        assertEquals(shared, plan.getPass(1).getInputSlot());
+        assertEquals(0, plan.getPass(1).getReleasedSlots().length);
+        assertArrayEquals(new int[]{shared}, plan.getPass(2).getReleasedSlots());
+        assertEquals(1, plan.getSlotCount());
+    }
+
+    @Test
+    public void resultWithTwoSinksIsCopiedToEach() {
+        TextureSource image = mGraph.add(new TextureSource(1));
+        EffectNode blur = effect("blur", true);
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        ScreenSink other = mGraph.add(new ScreenSink());
+        mGraph.connect(image, blur);
+        mGraph.connect(blur, screen);
+        mGraph.connect(blur, other);
+
+        GraphPlan plan = mGraph.getPlan();
+        assertEquals(3, plan.getPassCount());
+        assertEquals(2, plan.countPasses(GraphPlan.Kind.COPY));
+        assertEquals(GraphPlan.NO_SLOT, plan.getPass(0).getInputSlot());
+        assertNotEquals(GraphPlan.NO_SLOT, plan.getPass(0).getOutputSlot());
+    }
+
+    @Test
+    public void planIsRebuiltAfterAChange() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(video, screen);
+        GraphPlan first = mGraph.getPlan();
+        assertSame(first, mGraph.getPlan());
+
+        ScreenSink other = mGraph.add(new ScreenSink());
+        mGraph.connect(video, other);
+        assertNotSame(first, mGraph.getPlan());
+        assertEquals(2, mGraph.getPlan().getPassCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void effectWithoutInputIsRejected() {
+        EffectNode blur = effect("blur", true);
+        mGraph.connect(blur, mGraph.add(new ScreenSink()));
+        mGraph.getPlan();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unusedEffectIsRejected() {
+        ExternalOesSource video = mGraph.add(new ExternalOesSource(1));
+        mGraph.connect(video, effect("blur", true));
+        mGraph.getPlan();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cycleIsRejected() {
+        EffectNode a = effect("a", true);
+        EffectNode b = effect("b", true);
+        mGraph.connect(a, b);
+        mGraph.connect(b, a);
+        mGraph.getPlan();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void secondInputIsRejected() {
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(mGraph.add(new TextureSource(1)), screen);
+        mGraph.connect(mGraph.add(new TextureSource(2)), screen);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sinkHasNoOutput() {
+        ScreenSink screen = mGraph.add(new ScreenSink());
+        mGraph.connect(screen, effect("blur", true));
+    }
+}
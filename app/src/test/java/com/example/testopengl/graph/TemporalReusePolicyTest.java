@@ -0,0 +1,94 @@
+package com.example.testopengl.graph;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static com.example.testopengl.graph.TemporalReusePolicy.PROXY_SIZE;
+import static org.junit.Assert.*;
+
+public class TemporalReusePolicyTest {
+
+    /** A grey frame with a brighter square of {@code size} proxy pixels at {@code x}. */
+    private static ByteBuffer frame(int grey, int x, int size) {
+        ByteBuffer rgba = ByteBuffer.allocate(PROXY_SIZE * PROXY_SIZE * 4);
+        for (int py = 0; py < PROXY_SIZE; py++) {
+            for (int px = 0; px < PROXY_SIZE; px++) {
+                boolean inside = px >= x && px < x + size && py >= 8 && py < 8 + size;
+                int value = inside ? Math.min(255, grey + 100) : grey;
+                int offset = (py * PROXY_SIZE + px) * 4;
+                rgba.put(offset, (byte) value);
+                rgba.put(offset + 1, (byte) value);
+                rgba.put(offset + 2, (byte) value);
+                rgba.put(offset + 3, (byte) 255);
+            }
+        }
+        return rgba;
+    }
+
+    @Test
+    public void firstFrameIsBlurred() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        assertTrue(policy.shouldBlur(frame(0, 0, 0)));
+    }
+
+    @Test
+    public void stillFramesAreReused() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        assertTrue(policy.shouldBlur(frame(100, 4, 4)));
+        for (int i = 0; i < 10; i++) {
+            assertFalse(policy.shouldBlur(frame(100, 4, 4)));
+        }
+        assertEquals(1, policy.getBlurCount());
+        assertEquals(10, policy.getReuseCount());
+        assertEquals(0f, policy.getLastMeanDifference(), 0f);
+    }
+
+    @Test
+    public void noiseIsReusedButACutIsNot() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        policy.shouldBlur(frame(100, 4, 4));
+        assertFalse(policy.shouldBlur(frame(101, 4, 4)));
+        assertTrue(policy.shouldBlur(frame(160, 4, 4)));
+    }
+
+    @Test
+    public void smallMovingObjectIsNotReused() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        policy.shouldBlur(frame(50, 4, 2));
+        // 2x2 of 1024 proxy pixels: a small mean difference, but a large peak
+        assertTrue(policy.shouldBlur(frame(50, 6, 2)));
+        assertTrue(policy.getLastMeanDifference() < TemporalReusePolicy.DEFAULT_MEAN_THRESHOLD);
+        assertTrue(policy.getLastPeakDifference() > TemporalReusePolicy.DEFAULT_PEAK_THRESHOLD);
+    }
+
+    @Test
+    public void slowFadeIsComparedWithTheLastBlurredFrame() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        policy.shouldBlur(frame(100, 0, 0));
+        // Each step is noise next to the previous frame, but they add up
+        int blurs = 0;
+        for (int grey = 101; grey <= 110; grey++) {
+            if (policy.shouldBlur(frame(grey, 0, 0))) {
+                blurs++;
+            }
+        }
+        assertTrue(blurs >= 3);
+    }
+
+    @Test
+    public void invalidateForcesABlur() {
+        TemporalReusePolicy policy = new TemporalReusePolicy();
+        policy.shouldBlur(frame(100, 0, 0));
+        policy.invalidate();
+        assertTrue(policy.shouldBlur(frame(100, 0, 0)));
+        assertFalse(policy.shouldBlur(frame(100, 0, 0)));
+    }
+
+    @Test
+    public void zeroThresholdAlwaysBlurs() {
+        TemporalReusePolicy policy = new TemporalReusePolicy(0f, 0f);
+        policy.shouldBlur(frame(100, 0, 0));
+        assertTrue(policy.shouldBlur(frame(100, 0, 0)));
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.testopengl.image;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.*;
+
+public class BlurResultCacheTest {
+
+    // Magic, size, a reserved int and the key's SHA-256
+    private static final int HEADER_BYTES = 16 + 32;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private static BlurCacheKey key(String source, int size) {
+        return new BlurCacheKey(source, size, size, 24f, "argb-box-1");
+    }
+
+    private static int[] pixels(int size, int seed) {
+        int[] pixels = new int[size * size];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | (seed * 31 + i);
+        }
+        return pixels;
+    }
+
+    @Test
+    public void keysDifferInEveryPart() {
+        BlurCacheKey key = key("content://a", 10);
+        assertEquals(key, key("content://a", 10));
+        assertEquals(key.toFileName(), key("content://a", 10).toFileName());
+        assertNotEquals(key, key("content://b", 10));
+        assertNotEquals(key, key("content://a", 11));
+        assertNotEquals(key, new BlurCacheKey("content://a", 10, 10, 25f, "argb-box-1"));
+        assertNotEquals(key, new BlurCacheKey("content://a", 10, 10, 24f, "argb-box-2"));
+        assertNotEquals(key.toFileName(), new BlurCacheKey("content://a", 10, 10, 24f, "argb-box-2").toFileName());
+    }
+
+    @Test
+    public void memoryTierEvictsLeastRecentlyUsedByBytes() throws Exception {
+        // Room for two 10x10 images
+        BlurResultCache cache = new BlurResultCache(2 * 400);
+        cache.put(key("a", 10), pixels(10, 1));
+        cache.put(key("b", 10), pixels(10, 2));
+        assertNotNull(cache.get(key("a", 10)));
+        cache.put(key("c", 10), pixels(10, 3));
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(key("b", 10)));
+        assertArrayEquals(pixels(10, 1), cache.get(key("a", 10)));
+        assertArrayEquals(pixels(10, 3), cache.get(key("c", 10)));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(800, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void oversizedEntriesSkipTheMemoryTier() throws Exception {
+        BlurResultCache cache = new BlurResultCache(100);
+        cache.put(key("a", 10), pixels(10, 1));
+        assertNull(cache.get(key("a", 10)));
+        assertEquals(0, cache.getMemoryBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void diskTierSurvivesANewCache() throws Exception {
+        File dir = new File(mFolder.getRoot(), "blur");
+        new BlurResultCache(1 << 20, dir, 1 << 20).put(key("a", 64), pixels(64, 7));
+
+        BlurResultCache cache = new BlurResultCache(1 << 20, dir, 1 << 20);
+        assertArrayEquals(pixels(64, 7), cache.get(key("a", 64)));
+        assertEquals(1, cache.getDiskHitCount());
+        // Promoted to memory
+        assertNotNull(cache.get(key("a", 64)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(HEADER_BYTES + 4 * 64 * 64, cache.getDiskBytes());
+    }
+
+    @Test
+    public void diskTierEvictsByBytes() throws Exception {
+        File dir = mFolder.getRoot();
+        long entry = HEADER_BYTES + 4 * 100;
+        BlurResultCache cache = new BlurResultCache(0, dir, 2 * entry);
+        cache.put(key("a", 10), pixels(10, 1));
+        cache.put(key("b", 10), pixels(10, 2));
+        assertNotNull(cache.get(key("a", 10)));
+        cache.put(key("c", 10), pixels(10, 3));
+
+        assertEquals(1, cache.getDiskEvictionCount());
+        assertEquals(2 * entry, cache.getDiskBytes());
+        assertNull(cache.get(key("b", 10)));
+        assertNotNull(cache.get(key("a", 10)));
+        assertNotNull(cache.get(key("c", 10)));
+        assertEquals(2, mFolder.getRoot().list().length);
+    }
+
+    @Test
+    public void corruptFilesReadAsMisses() throws Exception {
+        File dir = mFolder.getRoot();
+        BlurResultCache cache = new BlurResultCache(0, dir, 1 << 20);
+        cache.put(key("a", 10), pixels(10, 1));
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, key("a", 10).toFileName()), "rw")) {
+            file.setLength(100);
+        }
+
+        assertNull(cache.get(key("a", 10)));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getDiskBytes());
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void keysSharingAFileNameDoNotServeEachOther() throws Exception {
+        File dir = mFolder.getRoot();
+        BlurResultCache writer = new BlurResultCache(0, dir, 1 << 20);
+        writer.put(key("a", 10), pixels(10, 1));
+        // As if the hash of "b" collided with that of "a": same size, same file name
+        assertTrue(new File(dir, key("a", 10).toFileName()).renameTo(new File(dir, key("b", 10).toFileName())));
+
+        BlurResultCache cache = new BlurResultCache(0, dir, 1 << 20);
+        assertNull(cache.get(key("b", 10)));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getDiskHitCount());
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPixelsOfTheWrongSize() throws Exception {
+        new BlurResultCache(1 << 20).put(key("a", 10), new int[99]);
+    }
+}
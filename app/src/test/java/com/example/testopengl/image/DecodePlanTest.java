@@ -0,0 +1,63 @@
+package com.example.testopengl.image;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DecodePlanTest {
+
+    @Test
+    public void largePhotoDecodesNearTheViewSize() {
+        // 48 MP, 4:3, into a 540x960 portrait view
+        DecodePlan plan = DecodePlan.centerCrop(8000, 6000, 540, 960);
+        int cropWidth = plan.getRight() - plan.getLeft();
+        int cropHeight = plan.getBottom() - plan.getTop();
+        assertEquals(6000, cropHeight);
+        assertEquals(3375, cropWidth);
+        assertEquals((8000 - 3375) / 2, plan.getLeft());
+        assertEquals(4, plan.getSampleSize());
+        assertTrue(plan.getDecodedWidth() >= 540 && plan.getDecodedWidth() < 2 * 540);
+        assertTrue(plan.getDecodedHeight() >= 960 && plan.getDecodedHeight() < 2 * 960);
+        assertFalse(plan.isFullImage(8000, 6000));
+    }
+
+    @Test
+    public void wideViewsCropTopAndBottom() {
+        DecodePlan plan = DecodePlan.centerCrop(1000, 1000, 400, 100);
+        assertEquals(0, plan.getLeft());
+        assertEquals(1000, plan.getRight());
+        assertEquals(375, plan.getTop());
+        assertEquals(625, plan.getBottom());
+        assertEquals(2, plan.getSampleSize());
+    }
+
+    @Test
+    public void smallSourcesAreNotSubsampled() {
+        DecodePlan plan = DecodePlan.centerCrop(300, 200, 1080, 720);
+        assertEquals(1, plan.getSampleSize());
+        assertTrue(plan.isFullImage(300, 200));
+        assertEquals(300, plan.getDecodedWidth());
+        assertEquals(200, plan.getDecodedHeight());
+    }
+
+    @Test
+    public void decodedSizeNeverDropsBelowTheTarget() {
+        for (int source = 100; source < 9000; source += 137) {
+            for (int target = 50; target < 2000; target += 91) {
+                DecodePlan plan = DecodePlan.centerCrop(source, source * 3 / 4 + 1, target, target);
+                int cropWidth = plan.getRight() - plan.getLeft();
+                int cropHeight = plan.getBottom() - plan.getTop();
+                if (Math.min(cropWidth, cropHeight) >= target) {
+                    assertTrue(plan.getDecodedWidth() >= target);
+                    assertTrue(plan.getDecodedHeight() >= target);
+                    assertTrue(plan.getDecodedWidth() <= 2 * target || plan.getSampleSize() == 1);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyTargets() {
+        DecodePlan.centerCrop(100, 100, 0, 100);
+    }
+}
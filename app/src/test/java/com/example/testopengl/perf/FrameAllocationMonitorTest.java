@@ -0,0 +1,48 @@
+package com.example.testopengl.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameAllocationMonitorTest {
+
+    private long mAllocated;
+
+    private final FrameAllocationMonitor mMonitor = new FrameAllocationMonitor(() -> mAllocated, 100);
+
+    private void frame(long bytes) {
+        mMonitor.beginFrame();
+        mAllocated += bytes;
+        mMonitor.endFrame();
+    }
+
+    @Test
+    public void countsBytesPerFrame() {
+        frame(0);
+        frame(40);
+        mAllocated += 1000; // between frames, not counted
+        frame(250);
+        frame(10);
+
+        assertEquals(4, mMonitor.getFrameCount());
+        assertEquals(10, mMonitor.getLastFrameBytes());
+        assertEquals(250, mMonitor.getMaxFrameBytes());
+        assertEquals(300, mMonitor.getTotalBytes());
+        assertEquals(1, mMonitor.getFramesOverBudget());
+    }
+
+    @Test
+    public void resetForgetsWarmUp() {
+        frame(5000);
+        mMonitor.reset();
+        frame(0);
+        assertEquals(1, mMonitor.getFrameCount());
+        assertEquals(0, mMonitor.getMaxFrameBytes());
+        assertEquals(0, mMonitor.getFramesOverBudget());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void endWithoutBeginThrows() {
+        mMonitor.endFrame();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.testopengl.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameArrivalTrackerTest {
+
+    @Test
+    public void drawsWithoutNewFramesAreIdle() {
+        FrameArrivalTracker tracker = new FrameArrivalTracker();
+        assertFalse(tracker.takeNewFrame());
+        tracker.onFrameAvailable();
+        assertTrue(tracker.hasPendingFrame());
+        assertTrue(tracker.takeNewFrame());
+        assertFalse(tracker.takeNewFrame());
+        assertEquals(1, tracker.getLatchedCount());
+        assertEquals(2, tracker.getIdleCount());
+        assertEquals(0, tracker.getDroppedCount());
+    }
+
+    @Test
+    public void backlogIsDroppedToTheNewestFrame() {
+        FrameArrivalTracker tracker = new FrameArrivalTracker();
+        tracker.onFrameAvailable();
+        tracker.onFrameAvailable();
+        tracker.onFrameAvailable();
+        assertTrue(tracker.takeNewFrame());
+        assertFalse(tracker.hasPendingFrame());
+        assertEquals(3, tracker.getArrivedCount());
+        assertEquals(1, tracker.getLatchedCount());
+        assertEquals(2, tracker.getDroppedCount());
+    }
+
+    @Test
+    public void framesFromAnotherThreadAreAllCounted() throws Exception {
+        FrameArrivalTracker tracker = new FrameArrivalTracker();
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10000; i++) {
+                tracker.onFrameAvailable();
+            }
+        });
+        producer.start();
+        while (producer.isAlive()) {
+            tracker.takeNewFrame();
+        }
+        producer.join();
+        tracker.takeNewFrame();
+        assertEquals(10000, tracker.getArrivedCount());
+        assertEquals(10000, tracker.getLatchedCount() + tracker.getDroppedCount());
+    }
+
+    @Test
+    public void latencyIsMeasuredFromTheFrameTimestamp() {
+        FrameArrivalTracker tracker = new FrameArrivalTracker();
+        tracker.onFramePresented(1_000_000, 9_000_000);
+        tracker.onFramePresented(20_000_000, 24_000_000);
+        // Unstamped frames are not measured
+        tracker.onFramePresented(0, 50_000_000);
+        assertEquals(4_000_000, tracker.getLastLatencyNanos());
+        assertEquals(8_000_000, tracker.getMaxLatencyNanos());
+        assertEquals(6_000_000, tracker.getMeanLatencyNanos());
+
+        tracker.reset();
+        assertEquals(0, tracker.getMeanLatencyNanos());
+        assertEquals(0, tracker.getArrivedCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.testopengl.perf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorTest {
+
+    private static final long BUDGET = 8_000_000L;
+
+    /** Feeds {@code frames} frames of {@code nanos} each; returns how many changed the level. */
+    private static int feed(QualityGovernor governor, long nanos, int frames) {
+        int changes = 0;
+        for (int i = 0; i < frames; i++) {
+            if (governor.onFrameTime(nanos)) {
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    @Test
+    public void stepsDownWhenOverBudget() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 4);
+        assertEquals(0, feed(governor, 12_000_000L, QualityGovernor.DOWN_FRAMES - 1));
+        assertTrue(governor.onFrameTime(12_000_000L));
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void framesInFlightAfterAChangeAreIgnored() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 4);
+        feed(governor, 12_000_000L, QualityGovernor.DOWN_FRAMES);
+        assertEquals(1, governor.getLevel());
+        // Still timed at the old level: these must not drop another level
+        feed(governor, 50_000_000L, QualityGovernor.SETTLE_FRAMES);
+        assertEquals(1, governor.getLevel());
+        assertEquals(-1, governor.getAverageNanos());
+    }
+
+    @Test
+    public void withinTheBandTheLevelHolds() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 4);
+        governor.setLevel(2);
+        // Between UP_FRACTION of the budget and the budget
+        assertEquals(0, feed(governor, 7_000_000L, 1000));
+        assertEquals(2, governor.getLevel());
+    }
+
+    @Test
+    public void stepsUpAfterASustainedMargin() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 4);
+        governor.setLevel(2);
+        feed(governor, 2_000_000L, QualityGovernor.SETTLE_FRAMES + QualityGovernor.UP_FRAMES - 1);
+        assertEquals(2, governor.getLevel());
+        assertTrue(governor.onFrameTime(2_000_000L));
+        assertEquals(1, governor.getLevel());
+    }
+
+    @Test
+    public void aLevelThatDoesNotFitIsRetriedLessOften() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 4);
+        governor.setLevel(1);
+        // Level 1 is fast and level 0 is too slow: rises into level 0 keep being undone
+        int[] waits = new int[4];
+        for (int attempt = 0; attempt < waits.length; attempt++) {
+            int frames = 0;
+            while (governor.getLevel() == 1) {
+                governor.onFrameTime(3_000_000L);
+                frames++;
+            }
+            waits[attempt] = frames;
+            feed(governor, 20_000_000L, QualityGovernor.SETTLE_FRAMES + QualityGovernor.DOWN_FRAMES);
+            assertEquals(1, governor.getLevel());
+        }
+        for (int attempt = 1; attempt < waits.length; attempt++) {
+            assertTrue(waits[attempt] > waits[attempt - 1]);
+        }
+    }
+
+    @Test
+    public void aRiseThatHoldsResetsTheBackoff() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 3);
+        governor.setLevel(1);
+        feed(governor, 3_000_000L, 1000);
+        assertEquals(0, governor.getLevel());
+        feed(governor, 20_000_000L, QualityGovernor.SETTLE_FRAMES + QualityGovernor.DOWN_FRAMES);
+        assertEquals(1, governor.getLevel());
+        int changes = governor.getChangeCount();
+        // Undone after holding: the next rise waits the normal time
+        feed(governor, 3_000_000L, QualityGovernor.SETTLE_FRAMES + QualityGovernor.UP_FRAMES);
+        assertEquals(changes + 1, governor.getChangeCount());
+        assertEquals(0, governor.getLevel());
+    }
+
+    @Test
+    public void levelsStayInRange() {
+        QualityGovernor governor = new QualityGovernor(BUDGET, 3);
+        feed(governor, 100_000_000L, 1000);
+        assertEquals(2, governor.getLevel());
+        feed(governor, 1_000_000L, 10000);
+        assertEquals(0, governor.getLevel());
+    }
+}